@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2012 Global Radio UK Limited
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.    
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+
+package org.radiodns.bench;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.minidns.record.CNAME;
+import org.minidns.record.SRV;
+import org.radiodns.Application;
+import org.radiodns.LookupException;
+import org.radiodns.MiniDnsResolver;
+import org.radiodns.RadioDNS;
+import org.radiodns.ResolverConfig;
+import org.radiodns.Service;
+
+/**
+ * Load test of concurrent blocking lookups, one thread per lookup, through
+ * MiniDnsResolver against two in-process UDP DNS servers answering with a
+ * fixed latency. Neither the resolution cache nor the minidns cache is used,
+ * so every lookup queries an upstream. The primary server stops answering
+ * during the second round, so lookups time out on it and fail over to the
+ * secondary until its circuit breaker opens, then go straight to the
+ * secondary; the third round finds the primary back once the circuit lets
+ * a trial query through.
+ * Throughput should grow with the concurrency until the per-upstream limit
+ * is reached. Virtual threads are used on Java 21, the library-managed pool
+ * otherwise.
+ * 
+ * <pre>
+ * java -cp &lt;classpath&gt; org.radiodns.bench.LoadTest [latencyMillis] [upstreamLimit]
+ * </pre>
+ */
+public class LoadTest {
+
+	private static final int STATIONS = 4096;
+	private static final int[] CONCURRENCY = { 100, 1000, 10000 };
+	private static final int ROUNDS = 3;
+	private static final int TIMEOUT = 500;
+	private static final int FAILURE_THRESHOLD = 5;
+	private static final int OPEN_TIME = 1000;
+
+	public static void main(String[] args) throws Exception {
+		long latency = (args.length > 0) ? Long.parseLong(args[0]) : 20;
+		int upstreamLimit = (args.length > 1) ? Integer.parseInt(args[1]) : 256;
+
+		System.out.printf("virtual threads: %s, latency: %dms, upstream limit: %d%n",
+				RadioDNS.isVirtualThreadSupported(), latency, upstreamLimit);
+		for (int concurrency : CONCURRENCY) {
+			/*
+			 * New servers listen on new ports, so every run gets its own
+			 * pooled MiniDnsResolver with closed circuits
+			 */
+			UdpDnsServer primary = newServer(latency);
+			UdpDnsServer secondary = newServer(latency);
+			try {
+				ResolverConfig config = new ResolverConfig(primary.getUpstream(), secondary.getUpstream())
+						.withTimeout(TIMEOUT)
+						.withRetries(0)
+						.withCacheSize(0)
+						.withCircuitBreaker(FAILURE_THRESHOLD, OPEN_TIME)
+						.withMaxConcurrency(upstreamLimit);
+				RadioDNS rdns = new RadioDNS(config);
+				rdns.setVirtualThreads(true);
+				run(rdns, concurrency, primary, secondary, MiniDnsResolver.forConfig(config));
+			} finally {
+				primary.close();
+				secondary.close();
+			}
+		}
+	}
+
+	private static UdpDnsServer newServer(long latency) throws IOException {
+		UdpDnsServer server = new UdpDnsServer(latency);
+		for (int i = 0; i < STATIONS; i++) {
+			String host = "s" + i + ".example.com";
+			server.addRecord(String.format("09580.c%03x.ce1.fm.radiodns.org", i), 3600, new CNAME(host));
+			server.addRecord("_radiovis._tcp." + host, 3600, new SRV(0, 100, 61613, "vis." + host));
+		}
+		return server;
+	}
+
+	private static void run(RadioDNS rdns, int concurrency, UdpDnsServer primary, UdpDnsServer secondary,
+			MiniDnsResolver resolver) throws LookupException, InterruptedException {
+		for (int round = 0; round < ROUNDS; round++) {
+			primary.setDown(round == 1);
+			if (round == 2) {
+				Thread.sleep(OPEN_TIME);
+			}
+			long primaryQueries = primary.getQueryCount();
+			long secondaryQueries = secondary.getQueryCount();
+			long rejected = resolver.getRejectedCount();
+			long lookups = 0;
+			long failures = 0;
+			long start = System.nanoTime();
+			List<CompletableFuture<Application>> futures = new ArrayList<CompletableFuture<Application>>(concurrency);
+			for (int i = 0; i < concurrency; i++) {
+				Service service = rdns.lookupFMService("ce1", String.format("c%03x", i % STATIONS), 95800);
+				futures.add(service.getApplicationAsync(RadioDNS.RADIOVIS, null));
+			}
+			for (CompletableFuture<Application> future : futures) {
+				if (future.join() == null) {
+					failures++;
+				}
+				lookups++;
+			}
+			long elapsed = System.nanoTime() - start;
+			System.out.printf("concurrency %6d, primary %-4s: %8.0f lookups/s (%d lookups, %d failed, %d ms),"
+					+ " queries %d/%d, rejected %d, circuit %s%n", concurrency, (round == 1) ? "down" : "up",
+					lookups * 1e9 / elapsed, lookups, failures, TimeUnit.NANOSECONDS.toMillis(elapsed),
+					primary.getQueryCount() - primaryQueries, secondary.getQueryCount() - secondaryQueries,
+					resolver.getRejectedCount() - rejected,
+					resolver.isCircuitOpen(primary.getUpstream()) ? "open" : "closed");
+		}
+	}
+}
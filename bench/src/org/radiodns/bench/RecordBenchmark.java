@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2012 Global Radio UK Limited
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.    
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+
+package org.radiodns.bench;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.minidns.record.SRV;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.radiodns.Application;
+import org.radiodns.Record;
+
+/**
+ * Wrapping of SRV answers into Records and an Application
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RecordBenchmark {
+
+	@Param({ "1", "4", "16" })
+	public int records;
+
+	private Set<SRV> mAnswers;
+
+	@Setup
+	public void setup() {
+		mAnswers = new LinkedHashSet<SRV>();
+		for (int i = 0; i < records; i++) {
+			mAnswers.add(new SRV(i % 3, 10 * (i + 1), 61613, "vis" + i + ".musicradio.com"));
+		}
+	}
+
+	@Benchmark
+	public Application wrap() {
+		List<Record> wrapped = new ArrayList<Record>();
+		for (SRV srv : mAnswers) {
+			wrapped.add(new Record(srv));
+		}
+		return new Application("radiovis", wrapped);
+	}
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2012 Global Radio UK Limited
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.    
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+
+package org.radiodns.bench;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.radiodns.Application;
+import org.radiodns.InMemoryResolver;
+import org.radiodns.LookupException;
+import org.radiodns.RadioDNS;
+import org.radiodns.ResolutionCache;
+import org.radiodns.Service;
+
+/**
+ * Service.getApplications() against an in-process InMemoryResolver, so only
+ * the library's own resolution path is measured
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ResolutionBenchmark {
+
+	static final String ZONE =
+			"$ORIGIN radiodns.org.\n" +
+			"$TTL 3600\n" +
+			"09580.c479.ce1.fm            CNAME rdns.musicradio.com.\n" +
+			"0.c5a8.c185.ce1.dab          CNAME rdns.musicradio.com.\n" +
+			"$ORIGIN rdns.musicradio.com.\n" +
+			"_radioepg._tcp               SRV   0 100 80 epg.musicradio.com.\n" +
+			"_radiospi._tcp               SRV   0 100 80 epg.musicradio.com.\n" +
+			"_radiotag._tcp               SRV   0 100 80 radiotag.musicradio.com.\n" +
+			"_radiovis._tcp               SRV   0 100 61613 vis.musicradio.com.\n" +
+			"                             SRV   10 50 61613 vis2.musicradio.com.\n" +
+			"_radiovis-http._tcp          SRV   0 100 80 vis.musicradio.com.\n";
+
+	private RadioDNS mUncached;
+	private RadioDNS mCached;
+	private Service mCachedService;
+
+	@Setup
+	public void setup() throws LookupException {
+		InMemoryResolver resolver = InMemoryResolver.fromZone(ZONE);
+
+		mUncached = new RadioDNS();
+		mUncached.setResolver(resolver);
+
+		mCached = new RadioDNS();
+		mCached.setResolver(resolver);
+		mCached.setResolutionCache(new ResolutionCache());
+		mCachedService = mCached.lookupFMService("ce1", "c479", 95800);
+		mCachedService.getApplications();
+	}
+
+	/**
+	 * Full CNAME and SRV resolution on a new Service
+	 */
+	@Benchmark
+	public Map<String, Application> getApplicationsUncached() throws LookupException {
+		return mUncached.lookupFMService("ce1", "c479", 95800).getApplications();
+	}
+
+	/**
+	 * New Service per call, answered from the shared resolution cache
+	 */
+	@Benchmark
+	public Map<String, Application> getApplicationsCached() throws LookupException {
+		return mCached.lookupFMService("ce1", "c479", 95800).getApplications();
+	}
+
+	/**
+	 * Reused Service with its memoized authoritative FQDN
+	 */
+	@Benchmark
+	public Map<String, Application> getApplicationsMemoized() throws LookupException {
+		return mCachedService.getApplications();
+	}
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) 2012 Global Radio UK Limited
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.    
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+
+package org.radiodns.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.radiodns.AMService;
+import org.radiodns.DABService;
+import org.radiodns.FMService;
+import org.radiodns.HDService;
+import org.radiodns.IPService;
+import org.radiodns.LookupException;
+import org.radiodns.Service;
+
+/**
+ * Service construction and RadioDNS FQDN building for each bearer type
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ServiceBenchmark {
+
+	private Service mFMService;
+	private Service mDABService;
+	private Service mAMService;
+	private Service mHDService;
+	private Service mIPService;
+
+	@Setup
+	public void setup() throws LookupException {
+		mFMService = new FMService("ce1", "c479", 95800);
+		mDABService = new DABService("ce1", "c185", "c5a8", "0");
+		mAMService = new AMService("drm", "e1c238");
+		mHDService = new HDService("337", "00000");
+		mIPService = new IPService("rdns.musicradio.com");
+	}
+
+	@Benchmark
+	public Service constructFM() throws LookupException {
+		return new FMService("ce1", "c479", 95800);
+	}
+
+	@Benchmark
+	public Service constructFMNumeric() throws LookupException {
+		return new FMService(0xce1, 0xc479, 95800);
+	}
+
+	@Benchmark
+	public Service constructFMIso3166() throws LookupException {
+		return new FMService("gb", "c479", 95800);
+	}
+
+	@Benchmark
+	public Service constructDAB() throws LookupException {
+		return new DABService("ce1", "c185", "c5a8", "0");
+	}
+
+	@Benchmark
+	public Service constructDABNumeric() throws LookupException {
+		return new DABService(0xce1, 0xc185, 0xc5a8, 0);
+	}
+
+	@Benchmark
+	public String fqdnFMNumeric() throws LookupException {
+		return new FMService(0xce1, 0xc479, 95800).getRadioDNSFqdn();
+	}
+
+	@Benchmark
+	public Service constructDABXpad() throws LookupException {
+		return new DABService("ce1", "c185", "c5a8", "0", "0d-1c0");
+	}
+
+	@Benchmark
+	public Service constructAM() throws LookupException {
+		return new AMService("drm", "e1c238");
+	}
+
+	@Benchmark
+	public Service constructHD() throws LookupException {
+		return new HDService("337", "00000");
+	}
+
+	@Benchmark
+	public Service constructIP() {
+		return new IPService("rdns.musicradio.com");
+	}
+
+	/**
+	 * Baseline: the String.matches validation the Service constructors used
+	 * before switching to character checks, for comparing allocation rates
+	 * against the construct benchmarks
+	 */
+	@Benchmark
+	public boolean validateRegexBaseline() {
+		return "ce1".matches("(?i)^[0-9A-F]{3}$")
+				& "c185".matches("(?i)^[0-9A-F]{4}$")
+				& "c5a8".matches("(?i)^[0-9A-F]{4}$|^[0-9A-F]{8}$")
+				& "0".matches("(?i)^[0-9A-F]{1}$|^[0-9A-F]{3}$");
+	}
+
+	@Benchmark
+	public String fqdnFM() {
+		return mFMService.getRadioDNSFqdn();
+	}
+
+	@Benchmark
+	public String fqdnDAB() {
+		return mDABService.getRadioDNSFqdn();
+	}
+
+	@Benchmark
+	public String fqdnAM() {
+		return mAMService.getRadioDNSFqdn();
+	}
+
+	@Benchmark
+	public String fqdnHD() {
+		return mHDService.getRadioDNSFqdn();
+	}
+
+	@Benchmark
+	public String fqdnIP() {
+		return mIPService.getAuthoritativeFqdn();
+	}
+}
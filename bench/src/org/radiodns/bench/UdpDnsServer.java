@@ -0,0 +1,165 @@
+/*
+ * Copyright (c) 2012 Global Radio UK Limited
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.    
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+
+package org.radiodns.bench;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.minidns.dnsmessage.DnsMessage;
+import org.minidns.dnsmessage.DnsMessage.RESPONSE_CODE;
+import org.minidns.dnsmessage.Question;
+import org.minidns.dnsname.DnsName;
+import org.minidns.record.Data;
+import org.minidns.record.Record;
+import org.minidns.record.Record.CLASS;
+
+/**
+ * DNS server answering UDP queries on the loopback interface from records
+ * held in memory, after a fixed latency. The server can be taken down, in
+ * which case queries are received but never answered, as with an upstream
+ * that stopped responding.
+ */
+final class UdpDnsServer implements Closeable {
+
+	private final DatagramSocket mSocket;
+	private final Map<DnsName, Record<? extends Data>> mRecords =
+			new ConcurrentHashMap<DnsName, Record<? extends Data>>();
+	private final ScheduledExecutorService mScheduler;
+	private final long mLatency;
+	private final AtomicLong mQueryCount = new AtomicLong();
+	private volatile boolean mDown = false;
+
+	/**
+	 * Class constructor, starting the server on an ephemeral port
+	 * 
+	 * @param latency	Time in milliseconds before each query is answered
+	 * @throws IOException
+	 */
+	UdpDnsServer(long latency) throws IOException {
+		mLatency = latency;
+		mSocket = new DatagramSocket(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+		mScheduler = Executors.newScheduledThreadPool(2, new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "UdpDnsServer-" + mSocket.getLocalPort());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		Thread receiver = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				receive();
+			}
+		}, "UdpDnsServer-" + mSocket.getLocalPort() + "-receiver");
+		receiver.setDaemon(true);
+		receiver.start();
+	}
+
+	/**
+	 * Add the single record to answer queries for its name and type with
+	 */
+	void addRecord(String name, long ttl, Data data) {
+		DnsName dnsName = DnsName.from(name);
+		mRecords.put(dnsName, new Record<Data>(dnsName, data.getType(), CLASS.IN, ttl, data, false));
+	}
+
+	/**
+	 * @return		Upstream to configure a resolver with, see
+	 * 				{@link org.radiodns.ResolverConfig#ResolverConfig(String...)}
+	 */
+	String getUpstream() {
+		return "127.0.0.1:" + mSocket.getLocalPort();
+	}
+
+	/**
+	 * Stop or resume answering queries
+	 */
+	void setDown(boolean down) {
+		mDown = down;
+	}
+
+	/**
+	 * @return		Number of queries received, answered or not
+	 */
+	long getQueryCount() {
+		return mQueryCount.get();
+	}
+
+	@Override
+	public void close() {
+		mSocket.close();
+		mScheduler.shutdownNow();
+	}
+
+	private void receive() {
+		byte[] buffer = new byte[1500];
+		while (!mSocket.isClosed()) {
+			DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+			final DnsMessage query;
+			try {
+				mSocket.receive(packet);
+				mQueryCount.incrementAndGet();
+				if (mDown) {
+					continue;
+				}
+				query = new DnsMessage(Arrays.copyOf(packet.getData(), packet.getLength()));
+			} catch (IOException e) {
+				continue;
+			}
+			final SocketAddress client = packet.getSocketAddress();
+			mScheduler.schedule(new Runnable() {
+				@Override
+				public void run() {
+					answer(query, client);
+				}
+			}, mLatency, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	private void answer(DnsMessage query, SocketAddress client) {
+		Question question = query.getQuestion();
+		DnsMessage.Builder response = query.asBuilder()
+				.setQrFlag(true)
+				.setRecursionAvailable(true);
+		Record<? extends Data> record = mRecords.get(question.name);
+		if (record == null) {
+			response.setResponseCode(RESPONSE_CODE.NX_DOMAIN);
+		} else if (record.type == question.type) {
+			response.addAnswer(record);
+		}
+		byte[] bytes = response.build().toArray();
+		try {
+			mSocket.send(new DatagramPacket(bytes, bytes.length, client));
+		} catch (IOException e) {
+			// the client has given up on the query
+		}
+	}
+}
@@ -30,6 +30,14 @@ public class AMService extends Service {
 	 * SID value for AM Service
 	 */
 	private String mSid;
+	/*
+	 * Numeric SID value, or -1 when constructed from a String
+	 */
+	private int mSidValue = -1;
+	/*
+	 * RadioDNS FQDN, built on first use
+	 */
+	private String mRadioDNSFqdn;
 
 	public AMService(String type, String sid) throws LookupException {
 		/*
@@ -52,7 +60,7 @@ public class AMService extends Service {
 		/*
 		 * Validate sid value
 		 */
-		if (sid.matches("(?i)^[0-9A-F]{6}$")) {
+		if (Validation.isHex(sid, 6)) {
 			mSid = sid;
 		} else {
 			throw new LookupException(
@@ -60,12 +68,48 @@ public class AMService extends Service {
 		}
 	}
 
+	/**
+	 * Class constructor taking the numeric SID value
+	 * 
+	 * @param type		Type of AM Service (either "drm" or "amss")
+	 * @param sid		SID value for AM Service, 24 bits
+	 * @throws LookupException
+	 */
+	public AMService(String type, int sid) throws LookupException {
+		/*
+		 * check for required variables
+		 */
+		if (type == null) {
+			throw new LookupException("Required values are missing.");
+		}
+
+		/*
+		 * Validate type value
+		 */
+		if (type.equals("drm") || type.equals("amss")) {
+			mType = type;
+		} else {
+			throw new LookupException(
+					"Invalid type value. Must be either 'drm' (Digital Radio Mondiale) or 'amss' (AM Signalling System).");
+		}
+
+		/*
+		 * Validate sid value
+		 */
+		if (sid >= 0 && sid <= 0xffffff) {
+			mSidValue = sid;
+		} else {
+			throw new LookupException(
+					"Invalid Service Identifier (SId) value. Must be a valid 6-character hexadecimal.");
+		}
+	}
+
 	public String getType() {
 		return mType;
 	}
 	
 	public String getSid() {
-		return mSid;
+		return (mSidValue >= 0) ? Fqdn.toHex(mSidValue, 6) : mSid;
 	}
 	
 	/*
@@ -73,9 +117,18 @@ public class AMService extends Service {
 	 */
 	@Override
 	public String getRadioDNSFqdn() {
-		String fqdn = String.format("%s.%s.am.radiodns.org", mSid, mType);
-		fqdn = fqdn.toLowerCase();
-
+		String fqdn = mRadioDNSFqdn;
+		if (fqdn == null) {
+			StringBuilder sb = new StringBuilder(32);
+			if (mSidValue >= 0) {
+				Fqdn.appendHex(sb, mSidValue, 6).append('.');
+			} else {
+				Fqdn.appendLower(sb, mSid).append('.');
+			}
+			Fqdn.appendLower(sb, mType).append(".am").append(Fqdn.RADIODNS_SUFFIX);
+			fqdn = Fqdn.canonicalize(sb.toString());
+			mRadioDNSFqdn = fqdn;
+		}
 		return fqdn;
 	}
 
@@ -16,29 +16,236 @@
 
 package org.radiodns;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
 
 /**
  * RadioDNS Application
  * 
+ * Records are kept sorted by priority. {@link #selectRecord()} picks the
+ * target to connect to as described in RFC 2782: the lowest priority with an
+ * available target wins, and targets of equal priority are chosen at random
+ * in proportion to their weight. Targets reported with
+ * {@link #markFailed(Record)} are skipped for a backoff period doubling with
+ * every consecutive failure.
+ * 
  * @author Byrion Smith <byrion.smith@thisisglobal.com>
  * @version 1.0.3
  */
 public class Application {
+
+	public static final long INITIAL_BACKOFF = 1000;
+	public static final long MAXIMUM_BACKOFF = 60000;
+
+	private static final Comparator<Record> BY_PRIORITY = new Comparator<Record>() {
+		@Override
+		public int compare(Record r1, Record r2) {
+			return Integer.compare(r1.getPriority(), r2.getPriority());
+		}
+	};
+
 	private String mApplicationId;
 	private List<Record> mRecords;
+	private boolean mStale;
+
+	/*
+	 * Per record, indexed like mRecords: time until which the target is
+	 * skipped, and number of consecutive failures
+	 */
+	private final AtomicLongArray mFailedUntil;
+	private final AtomicIntegerArray mFailures;
 	
 	public Application(String applicationId, List<Record> records) {
+		this(applicationId, records, false);
+	}
+
+	Application(String applicationId, List<Record> records, boolean stale) {
 		mApplicationId = applicationId;
-		mRecords = records;
+		List<Record> sorted = (records != null) ? new ArrayList<Record>(records) : new ArrayList<Record>();
+		Collections.sort(sorted, BY_PRIORITY);
+		mRecords = Collections.unmodifiableList(sorted);
+		mStale = stale;
+		mFailedUntil = new AtomicLongArray(sorted.size());
+		mFailures = new AtomicIntegerArray(sorted.size());
+	}
+
+	private Application(Application fresh) {
+		mApplicationId = fresh.mApplicationId;
+		mRecords = fresh.mRecords;
+		mStale = true;
+		mFailedUntil = fresh.mFailedUntil;
+		mFailures = fresh.mFailures;
 	}
 	
 	public String getApplicationId() {
 		return mApplicationId;
 	}
 	
+	/**
+	 * @return		Records, sorted by priority
+	 */
 	public List<Record> getRecords() {
 		return mRecords;
 	}
+
+	/**
+	 * Select the target to connect to next. Among the targets of the lowest
+	 * priority that are not backing off after a failure, one is picked at
+	 * random in proportion to its weight; targets of weight 0 are only picked
+	 * when no target of that priority has a weight. If every target is backing
+	 * off, the one whose backoff ends first is returned.
+	 * 
+	 * @return		Record of the target, or null if the Application has no
+	 * 				usable target
+	 */
+	public Record selectRecord() {
+		long now = System.currentTimeMillis();
+		int size = mRecords.size();
+		int start = 0;
+		while (start < size) {
+			int priority = mRecords.get(start).getPriority();
+			int end = start;
+			int totalWeight = 0;
+			int available = 0;
+			while (end < size && mRecords.get(end).getPriority() == priority) {
+				if (isAvailable(end, now)) {
+					totalWeight += mRecords.get(end).getWeight();
+					available++;
+				}
+				end++;
+			}
+			if (available > 0) {
+				return mRecords.get(pick(start, end, now, totalWeight, available));
+			}
+			start = end;
+		}
+
+		int soonest = -1;
+		for (int i = 0; i < size; i++) {
+			if (mRecords.get(i).isAvailable()
+					&& (soonest < 0 || mFailedUntil.get(i) < mFailedUntil.get(soonest))) {
+				soonest = i;
+			}
+		}
+		return (soonest >= 0) ? mRecords.get(soonest) : null;
+	}
+
+	private int pick(int start, int end, long now, int totalWeight, int available) {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		if (totalWeight == 0) {
+			int n = random.nextInt(available);
+			for (int i = start; i < end; i++) {
+				if (isAvailable(i, now) && n-- == 0) {
+					return i;
+				}
+			}
+		} else {
+			int n = random.nextInt(totalWeight);
+			for (int i = start; i < end; i++) {
+				if (isAvailable(i, now)) {
+					n -= mRecords.get(i).getWeight();
+					if (n < 0) {
+						return i;
+					}
+				}
+			}
+		}
+		return start;
+	}
+
+	private boolean isAvailable(int index, long now) {
+		return mFailedUntil.get(index) <= now && mRecords.get(index).isAvailable();
+	}
+
+	/**
+	 * Report a failure to connect to the target, so it is skipped by
+	 * {@link #selectRecord()} for a backoff period starting at
+	 * {@link #INITIAL_BACKOFF} and doubling with every consecutive failure, up
+	 * to {@link #MAXIMUM_BACKOFF} milliseconds
+	 * 
+	 * @param record	Record of the failed target
+	 */
+	public void markFailed(Record record) {
+		int index = indexOf(record);
+		if (index < 0) {
+			return;
+		}
+		int failures = mFailures.incrementAndGet(index);
+		long backoff = Math.min(INITIAL_BACKOFF << Math.min(failures - 1, 16), MAXIMUM_BACKOFF);
+		mFailedUntil.set(index, System.currentTimeMillis() + backoff);
+	}
+
+	/**
+	 * Report a failure to connect to the target, so it is skipped by
+	 * {@link #selectRecord()} for the given time
+	 * 
+	 * @param record	Record of the failed target
+	 * @param backoff	Time for which the target is skipped
+	 * @param unit		Unit of the backoff
+	 */
+	public void markFailed(Record record, long backoff, TimeUnit unit) {
+		int index = indexOf(record);
+		if (index < 0) {
+			return;
+		}
+		mFailures.incrementAndGet(index);
+		mFailedUntil.set(index, System.currentTimeMillis() + unit.toMillis(backoff));
+	}
+
+	/**
+	 * Report a successful connection to the target, clearing its backoff
+	 * 
+	 * @param record	Record of the target
+	 */
+	public void markSucceeded(Record record) {
+		int index = indexOf(record);
+		if (index < 0) {
+			return;
+		}
+		mFailures.set(index, 0);
+		mFailedUntil.set(index, 0);
+	}
+
+	/**
+	 * @return		Whether the target is backing off after a failure
+	 */
+	public boolean isFailed(Record record) {
+		int index = indexOf(record);
+		return index >= 0 && mFailedUntil.get(index) > System.currentTimeMillis();
+	}
+
+	private int indexOf(Record record) {
+		for (int i = 0; i < mRecords.size(); i++) {
+			if (mRecords.get(i) == record) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Whether the Application is an expired answer served because resolving
+	 * it again failed
+	 * 
+	 * @return		true if the records may be out of date
+	 */
+	public boolean isStale() {
+		return mStale;
+	}
+
+	/**
+	 * @return		Stale view of this Application. It shares the failure
+	 * 				count and backoff of each target, so failures reported on
+	 * 				either are seen by both.
+	 */
+	Application asStale() {
+		return mStale ? this : new Application(this);
+	}
 	
 }
\ No newline at end of file
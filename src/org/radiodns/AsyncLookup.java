@@ -0,0 +1,171 @@
+/*
+ * Copyright (c) 2012 Global Radio UK Limited
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.    
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+
+package org.radiodns;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BiConsumer;
+
+/**
+ * Helpers for the CompletableFuture based lookup methods of Service.
+ * Futures returned by these helpers interrupt the underlying lookup when they
+ * are cancelled or time out.
+ */
+final class AsyncLookup {
+
+	private AsyncLookup() {
+	}
+
+	/**
+	 * Run a lookup on the given Executor
+	 * 
+	 * @param task		Lookup to run
+	 * @param executor	Executor on which to run the lookup
+	 * @return			Future completed with the result of the lookup
+	 */
+	static <T> CompletableFuture<T> supply(final Callable<T> task, Executor executor) {
+		final CompletableFuture<T> result = new CompletableFuture<T>();
+		final FutureTask<T> futureTask = new FutureTask<T>(task) {
+			@Override
+			protected void done() {
+				if (isCancelled()) {
+					result.cancel(false);
+					return;
+				}
+				try {
+					result.complete(get());
+				} catch (ExecutionException e) {
+					result.completeExceptionally(e.getCause());
+				} catch (InterruptedException e) {
+					result.completeExceptionally(e);
+				}
+			}
+		};
+		cancelOnFailure(result, futureTask);
+		try {
+			executor.execute(futureTask);
+		} catch (RuntimeException e) {
+			result.completeExceptionally(e);
+		}
+		return result;
+	}
+
+	/**
+	 * Run lookups concurrently on the given Executor and wait for all of them.
+	 * The calling thread runs the lookups the Executor has not started yet
+	 * itself, so a saturated Executor cannot deadlock a lookup already running
+	 * on it.
+	 * 
+	 * @param tasks		Lookups to run
+	 * @param executor	Executor on which to run the lookups
+	 * @return			Results, in the order of the lookups
+	 * @throws InterruptedException	if interrupted while waiting; the
+	 * 								outstanding lookups are cancelled
+	 * @throws ExecutionException	if a lookup threw an exception
+	 */
+	static <T> List<T> invokeAll(List<Callable<T>> tasks, Executor executor)
+			throws InterruptedException, ExecutionException {
+		List<FutureTask<T>> futures = new ArrayList<FutureTask<T>>(tasks.size());
+		boolean done = false;
+		try {
+			for (Callable<T> task : tasks) {
+				FutureTask<T> future = new FutureTask<T>(task);
+				futures.add(future);
+				if (futures.size() < tasks.size()) {
+					try {
+						executor.execute(future);
+					} catch (RejectedExecutionException e) {
+						// run by the calling thread below
+					}
+				}
+			}
+			for (int i = futures.size() - 1; i >= 0; i--) {
+				futures.get(i).run();
+			}
+			List<T> results = new ArrayList<T>(futures.size());
+			for (FutureTask<T> future : futures) {
+				results.add(future.get());
+			}
+			done = true;
+			return results;
+		} finally {
+			if (!done) {
+				for (FutureTask<T> future : futures) {
+					future.cancel(true);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Complete the future with a TimeoutException if it has not completed
+	 * within the given time
+	 * 
+	 * @param future	Future
+	 * @param timeout	Timeout
+	 * @param unit		Unit of the timeout
+	 * @return			The given future
+	 */
+	static <T> CompletableFuture<T> withTimeout(final CompletableFuture<T> future, long timeout, TimeUnit unit) {
+		if (future.isDone()) {
+			return future;
+		}
+		final ScheduledFuture<?> timer = LookupExecutor.getScheduler().schedule(new Runnable() {
+			@Override
+			public void run() {
+				future.completeExceptionally(new TimeoutException("Lookup timed out"));
+			}
+		}, timeout, unit);
+		future.whenComplete(new BiConsumer<T, Throwable>() {
+			@Override
+			public void accept(T value, Throwable t) {
+				timer.cancel(false);
+			}
+		});
+		return future;
+	}
+
+	/**
+	 * Cancel, and interrupt, the given lookups when the future is cancelled or
+	 * otherwise completes exceptionally
+	 * 
+	 * @param future	Future
+	 * @param lookups	Lookups backing the future
+	 */
+	static void cancelOnFailure(CompletableFuture<?> future, final Future<?>... lookups) {
+		future.whenComplete(new BiConsumer<Object, Throwable>() {
+			@Override
+			public void accept(Object value, Throwable t) {
+				if (t != null) {
+					for (Future<?> lookup : lookups) {
+						lookup.cancel(true);
+					}
+				}
+			}
+		});
+	}
+}
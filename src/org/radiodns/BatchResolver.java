@@ -0,0 +1,295 @@
+/*
+ * Copyright (c) 2012 Global Radio UK Limited
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.    
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+
+package org.radiodns;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.BiConsumer;
+
+/**
+ * Resolves the RadioDNS Applications of many Services with bounded
+ * concurrency, e.g. when ingesting a station catalogue. Services sharing an
+ * authoritative FQDN have the SRV lookups of that FQDN done only once. Results
+ * are passed to a {@link Listener} as soon as each Service is resolved and a
+ * failing item never aborts the batch. Each worker resolves one item at a
+ * time, its SRV lookups included, so results stream out while later items are
+ * still queued.
+ * 
+ * <pre>
+ * BatchResolver batch = new BatchResolver(rdns, 64);
+ * batch.addFMService("ce1", "c479", 95800);
+ * batch.addAll(services);
+ * batch.resolve(listener);
+ * </pre>
+ */
+public class BatchResolver {
+
+	/**
+	 * Receives the result of each item of a batch. Calls are serialized, so
+	 * implementations need not be thread-safe.
+	 */
+	public interface Listener {
+		void onResult(BatchResult result);
+	}
+
+	private final RadioDNS mRadioDNS;
+	private final int mConcurrency;
+	private final List<BatchResult> mItems = new ArrayList<BatchResult>();
+
+	/**
+	 * Class constructor
+	 * 
+	 * @param radioDNS		RadioDNS instance used to create Services from
+	 * 						bearer parameters
+	 * @param concurrency	Maximum number of lookups in flight
+	 */
+	public BatchResolver(RadioDNS radioDNS, int concurrency) {
+		if (concurrency <= 0) {
+			throw new IllegalArgumentException("Concurrency must be greater than zero");
+		}
+		mRadioDNS = radioDNS;
+		mConcurrency = concurrency;
+	}
+
+	public int getConcurrency() {
+		return mConcurrency;
+	}
+
+	public synchronized int size() {
+		return mItems.size();
+	}
+
+	public synchronized void add(Service service) {
+		mItems.add(new BatchResult(describe(service), service, null, null, null));
+	}
+
+	public synchronized void addAll(Collection<? extends Service> services) {
+		for (Service service : services) {
+			add(service);
+		}
+	}
+
+	/**
+	 * Add a Service based on FM broadcast parameters. Invalid parameters are
+	 * reported as a failed item when the batch is resolved.
+	 * 
+	 * @param country			Global Country Code (GCC) or ISO 3166-1 alpha-2 country code
+	 * @param pi				Programme Identification (PI) value
+	 * @param frequency			Frequency value in KHz
+	 */
+	public void addFMService(String country, String pi, int frequency) {
+		String bearer = String.format("fm:%s.%s.%d", country, pi, frequency);
+		try {
+			addItem(bearer, mRadioDNS.lookupFMService(country, pi, frequency));
+		} catch (LookupException e) {
+			addFailure(bearer, e);
+		}
+	}
+
+	/**
+	 * Add a Service based on DAB broadcast parameters. Invalid parameters are
+	 * reported as a failed item when the batch is resolved.
+	 * 
+	 * @param gcc		Global Country Code (GCC)
+	 * @param eid		Ensemble Identifier (EId)
+	 * @param sid		Service Identifer (SId)
+	 * @param scids		Service Component Identifer within the Service (SCIdS)
+	 */
+	public void addDABService(String gcc, String eid, String sid, String scids) {
+		String bearer = String.format("dab:%s.%s.%s.%s", gcc, eid, sid, scids);
+		try {
+			addItem(bearer, mRadioDNS.lookupDABService(gcc, eid, sid, scids));
+		} catch (LookupException e) {
+			addFailure(bearer, e);
+		}
+	}
+
+	/**
+	 * Add a Service based on AM broadcast parameters. Invalid parameters are
+	 * reported as a failed item when the batch is resolved.
+	 * 
+	 * @param type		Type of AM Service (either "drm" or "amss")
+	 * @param sid		SID value for AM Service
+	 */
+	public void addAMService(String type, String sid) {
+		String bearer = String.format("%s:%s", type, sid);
+		try {
+			addItem(bearer, mRadioDNS.lookupAMService(type, sid));
+		} catch (LookupException e) {
+			addFailure(bearer, e);
+		}
+	}
+
+	/**
+	 * Add a Service based on HD broadcast parameters. Invalid parameters are
+	 * reported as a failed item when the batch is resolved.
+	 * 
+	 * @param tx		Transmitter identifier
+	 * @param cc		Country code
+	 */
+	public void addHDService(String tx, String cc) {
+		String bearer = String.format("hd:%s.%s", tx, cc);
+		try {
+			addItem(bearer, mRadioDNS.lookupHDService(tx, cc));
+		} catch (LookupException e) {
+			addFailure(bearer, e);
+		}
+	}
+
+	private synchronized void addItem(String bearer, Service service) {
+		mItems.add(new BatchResult(bearer, service, null, null, null));
+	}
+
+	private synchronized void addFailure(String bearer, Exception e) {
+		mItems.add(new BatchResult(bearer, null, null, null, e));
+	}
+
+	/**
+	 * Resolve every item added so far, blocking until the result of each item
+	 * has been passed to the listener
+	 * 
+	 * @param listener		Listener receiving the result of each item
+	 * @throws InterruptedException
+	 */
+	public void resolve(final Listener listener) throws InterruptedException {
+		final List<BatchResult> items;
+		synchronized (this) {
+			items = new ArrayList<BatchResult>(mItems);
+		}
+		final CountDownLatch remaining = new CountDownLatch(items.size());
+		final Listener serialized = new Listener() {
+			@Override
+			public void onResult(BatchResult result) {
+				try {
+					synchronized (this) {
+						listener.onResult(result);
+					}
+				} finally {
+					remaining.countDown();
+				}
+			}
+		};
+		final Map<String, CompletableFuture<Map<String, Application>>> applicationsByFqdn =
+				new ConcurrentHashMap<String, CompletableFuture<Map<String, Application>>>();
+
+		ExecutorService executor = Executors.newFixedThreadPool(mConcurrency,
+				LookupExecutor.newThreadFactory("radiodns-batch"));
+		try {
+			for (final BatchResult item : items) {
+				if (item.getService() == null) {
+					serialized.onResult(item);
+					continue;
+				}
+				executor.execute(new ItemTask(item, applicationsByFqdn, serialized));
+			}
+			remaining.await();
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/*
+	 * Resolves the authoritative FQDN of one item, then joins (or starts) the
+	 * SRV lookups for that FQDN
+	 */
+	private static class ItemTask implements Runnable {
+
+		private final BatchResult mItem;
+		private final Map<String, CompletableFuture<Map<String, Application>>> mApplicationsByFqdn;
+		private final Listener mListener;
+
+		ItemTask(BatchResult item, Map<String, CompletableFuture<Map<String, Application>>> applicationsByFqdn,
+				Listener listener) {
+			mItem = item;
+			mApplicationsByFqdn = applicationsByFqdn;
+			mListener = listener;
+		}
+
+		@Override
+		public void run() {
+			final Service service = mItem.getService();
+			final String authoritativeFqdn;
+			try {
+				authoritativeFqdn = service.fetchAuthoritativeFqdn();
+			} catch (IOException e) {
+				mListener.onResult(new BatchResult(mItem.getBearer(), service, null, null, e));
+				return;
+			} catch (RuntimeException e) {
+				mListener.onResult(new BatchResult(mItem.getBearer(), service, null, null, e));
+				return;
+			}
+			if (authoritativeFqdn == null) {
+				mListener.onResult(new BatchResult(mItem.getBearer(), service, null,
+						new HashMap<String, Application>(), null));
+				return;
+			}
+
+			String key = authoritativeFqdn.toLowerCase();
+			CompletableFuture<Map<String, Application>> applications = mApplicationsByFqdn.get(key);
+			if (applications == null) {
+				CompletableFuture<Map<String, Application>> created = new CompletableFuture<Map<String, Application>>();
+				applications = mApplicationsByFqdn.putIfAbsent(key, created);
+				if (applications == null) {
+					applications = created;
+					resolveApplications(service, authoritativeFqdn, created);
+				}
+			}
+
+			applications.whenComplete(new BiConsumer<Map<String, Application>, Throwable>() {
+				@Override
+				public void accept(Map<String, Application> value, Throwable t) {
+					Exception e = (t == null) ? null
+							: (t instanceof Exception) ? (Exception) t : new RuntimeException(t);
+					mListener.onResult(new BatchResult(mItem.getBearer(), service, authoritativeFqdn,
+							(t == null) ? new HashMap<String, Application>(value) : null, e));
+				}
+			});
+		}
+
+		/*
+		 * The SRV lookups run on this worker rather than being queued behind
+		 * the items still waiting for one
+		 */
+		private void resolveApplications(Service service, String authoritativeFqdn,
+				CompletableFuture<Map<String, Application>> result) {
+			Map<String, Application> applications = new HashMap<String, Application>();
+			try {
+				for (String applicationId : RadioDNS.KNOWN_APPLICATIONS) {
+					applications.put(applicationId, service.resolveApplication(applicationId, null, authoritativeFqdn));
+				}
+			} catch (RuntimeException e) {
+				result.completeExceptionally(e);
+				return;
+			}
+			result.complete(applications);
+		}
+	}
+
+	private static String describe(Service service) {
+		String fqdn = service.getRadioDNSFqdn();
+		return (fqdn != null) ? fqdn : service.getAuthoritativeFqdn();
+	}
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2012 Global Radio UK Limited
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.    
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+
+package org.radiodns;
+
+import java.util.Map;
+
+/**
+ * Outcome of resolving one item of a {@link BatchResolver} batch
+ */
+public class BatchResult {
+
+	private final String mBearer;
+	private final Service mService;
+	private final String mAuthoritativeFqdn;
+	private final Map<String, Application> mApplications;
+	private final Exception mException;
+
+	BatchResult(String bearer, Service service, String authoritativeFqdn,
+			Map<String, Application> applications, Exception exception) {
+		mBearer = bearer;
+		mService = service;
+		mAuthoritativeFqdn = authoritativeFqdn;
+		mApplications = applications;
+		mException = exception;
+	}
+
+	/**
+	 * Get a description of the bearer parameters the item was created from
+	 * 
+	 * @return		Bearer description, e.g. the RadioDNS FQDN
+	 */
+	public String getBearer() {
+		return mBearer;
+	}
+
+	/**
+	 * @return		Service, or null if the bearer parameters were invalid
+	 */
+	public Service getService() {
+		return mService;
+	}
+
+	/**
+	 * @return		Authoritative FQDN, or null if it could not be resolved
+	 */
+	public String getAuthoritativeFqdn() {
+		return mAuthoritativeFqdn;
+	}
+
+	/**
+	 * @return		Map of RadioDNS Applications, or null on failure
+	 */
+	public Map<String, Application> getApplications() {
+		return mApplications;
+	}
+
+	/**
+	 * @return		Cause of the failure, or null on success
+	 */
+	public Exception getException() {
+		return mException;
+	}
+
+	public boolean isSuccessful() {
+		return mException == null;
+	}
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2012 Global Radio UK Limited
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.    
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+
+package org.radiodns;
+
+/**
+ * A resolved value together with the time at which it stops being valid. A
+ * null value records a negative answer (NXDOMAIN or an empty answer section).
+ */
+final class CacheEntry<T> {
+
+	private final T mValue;
+	private final long mCreated;
+	private final long mExpires;
+
+	/*
+	 * Approximate number of times the entry was served, and whether a
+	 * refresh-ahead is in progress
+	 */
+	private volatile int mHits = 0;
+	private boolean mRefreshing = false;
+
+	/**
+	 * @param value		Resolved value, or null for a negative answer
+	 * @param expires	Expiry time in milliseconds since the epoch
+	 */
+	CacheEntry(T value, long expires) {
+		this(value, System.currentTimeMillis(), expires);
+	}
+
+	/**
+	 * @param value		Resolved value, or null for a negative answer
+	 * @param created	Resolution time in milliseconds since the epoch
+	 * @param expires	Expiry time in milliseconds since the epoch
+	 */
+	CacheEntry(T value, long created, long expires) {
+		mValue = value;
+		mCreated = created;
+		mExpires = expires;
+	}
+
+	T getValue() {
+		return mValue;
+	}
+
+	long getCreated() {
+		return mCreated;
+	}
+
+	long getExpires() {
+		return mExpires;
+	}
+
+	void recordHit() {
+		mHits++;
+	}
+
+	int getHits() {
+		return mHits;
+	}
+
+	/**
+	 * Mark the entry as being refreshed
+	 * 
+	 * @return		false if a refresh is already in progress
+	 */
+	synchronized boolean startRefresh() {
+		if (mRefreshing) {
+			return false;
+		}
+		mRefreshing = true;
+		return true;
+	}
+
+	/**
+	 * Allow the entry to be refreshed again, after a failed refresh
+	 */
+	synchronized void endRefresh() {
+		mRefreshing = false;
+	}
+
+	boolean isNegative() {
+		return mValue == null;
+	}
+
+	boolean isExpired(long now) {
+		return now >= mExpires;
+	}
+}
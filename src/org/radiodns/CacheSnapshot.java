@@ -0,0 +1,239 @@
+/*
+ * Copyright (c) 2012 Global Radio UK Limited
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.    
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+
+package org.radiodns;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.nio.charset.Charset;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.minidns.record.SRV;
+
+/**
+ * Compact binary snapshot of a {@link ResolutionCache}. The file holds a
+ * header followed by one record per entry, in least recently used order:
+ * 
+ * <pre>
+ * header:  magic (int) version (short) count (int)
+ * entry:   kind (byte) key (string) created (long) expires (long)
+ *          kind FQDN:        present (byte) [authoritative FQDN (string)]
+ *          kind APPLICATION: present (byte) [id (string) records (short)
+ *                            { priority (short) weight (short) port (short) target (string)
+ *                              addresses (byte) { length (byte) address bytes } }]
+ * string:  length (short) UTF-8 bytes
+ * </pre>
+ */
+final class CacheSnapshot {
+
+	static final int MAGIC = 0x52444e53;
+	static final short VERSION = 1;
+
+	private static final byte KIND_FQDN = 1;
+	private static final byte KIND_APPLICATION = 2;
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private CacheSnapshot() {
+	}
+
+	/**
+	 * Write the entries to the file, replacing it atomically where the file
+	 * system allows it
+	 * 
+	 * @param entries	Entries to write, least recently used first
+	 * @param file		Snapshot file
+	 * @throws IOException
+	 */
+	static void save(List<Map.Entry<String, CacheEntry<?>>> entries, File file) throws IOException {
+		File parent = file.getAbsoluteFile().getParentFile();
+		File temp = File.createTempFile(file.getName() + ".snap", ".tmp", parent);
+		try {
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+			try {
+				out.writeInt(MAGIC);
+				out.writeShort(VERSION);
+				out.writeInt(entries.size());
+				for (Map.Entry<String, CacheEntry<?>> entry : entries) {
+					write(out, entry.getKey(), entry.getValue());
+				}
+			} finally {
+				out.close();
+			}
+			try {
+				Files.move(temp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE,
+						StandardCopyOption.REPLACE_EXISTING);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+		} finally {
+			temp.delete();
+		}
+	}
+
+	private static void write(DataOutputStream out, String key, CacheEntry<?> entry) throws IOException {
+		Object value = entry.getValue();
+		boolean application = value instanceof Application;
+		out.writeByte(application ? KIND_APPLICATION : KIND_FQDN);
+		writeString(out, key);
+		out.writeLong(entry.getCreated());
+		out.writeLong(entry.getExpires());
+		out.writeBoolean(value != null);
+		if (value == null) {
+			return;
+		}
+		if (application) {
+			Application app = (Application) value;
+			writeString(out, app.getApplicationId());
+			List<Record> records = app.getRecords();
+			out.writeShort(records.size());
+			for (Record record : records) {
+				out.writeShort(record.getPriority());
+				out.writeShort(record.getWeight());
+				out.writeShort(record.getPort());
+				writeString(out, record.getTarget().toString());
+				List<InetAddress> addresses = record.getAddresses();
+				int count = Math.min(addresses.size(), 255);
+				out.writeByte(count);
+				for (int i = 0; i < count; i++) {
+					byte[] address = addresses.get(i).getAddress();
+					out.writeByte(address.length);
+					out.write(address);
+				}
+			}
+		} else {
+			writeString(out, (String) value);
+		}
+	}
+
+	private static void writeString(DataOutputStream out, String s) throws IOException {
+		byte[] bytes = s.getBytes(UTF_8);
+		out.writeShort(bytes.length);
+		out.write(bytes);
+	}
+
+	/**
+	 * Read the file and decode its entries
+	 * 
+	 * @param file		Snapshot file
+	 * @param minimumExpires	Entries expiring before this time, in
+	 * 							milliseconds since the epoch, are skipped
+	 * @return			Entries, least recently used first
+	 * @throws IOException	if the file cannot be read or is not a valid
+	 * 						snapshot
+	 */
+	static List<Map.Entry<String, CacheEntry<?>>> load(File file, long minimumExpires) throws IOException {
+		ByteBuffer buffer;
+		FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		try {
+			long size = channel.size();
+			if (size > Integer.MAX_VALUE) {
+				throw new IOException("Resolution cache snapshot too large: " + file);
+			}
+			/*
+			 * Read into a heap buffer rather than mapping the file, as a
+			 * mapping is only released on garbage collection and blocks the
+			 * replacement of the file on some platforms
+			 */
+			buffer = ByteBuffer.allocate((int) size);
+			while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+			}
+			buffer.flip();
+		} finally {
+			channel.close();
+		}
+
+		try {
+			if (buffer.getInt() != MAGIC) {
+				throw new IOException("Not a resolution cache snapshot: " + file);
+			}
+			short version = buffer.getShort();
+			if (version != VERSION) {
+				throw new IOException("Unsupported resolution cache snapshot version " + version);
+			}
+			int count = buffer.getInt();
+			List<Map.Entry<String, CacheEntry<?>>> entries = new ArrayList<Map.Entry<String, CacheEntry<?>>>(
+					Math.max(0, Math.min(count, ResolutionCache.DEFAULT_MAXIMUM_SIZE)));
+			for (int i = 0; i < count; i++) {
+				byte kind = buffer.get();
+				String key = readString(buffer);
+				long created = buffer.getLong();
+				long expires = buffer.getLong();
+				boolean present = buffer.get() != 0;
+				Object value = null;
+				if (present) {
+					if (kind == KIND_APPLICATION) {
+						value = readApplication(buffer);
+					} else if (kind == KIND_FQDN) {
+						value = readString(buffer);
+					} else {
+						throw new IOException("Corrupt resolution cache snapshot: " + file);
+					}
+				}
+				if (expires >= minimumExpires) {
+					entries.add(new SimpleImmutableEntry<String, CacheEntry<?>>(key,
+							new CacheEntry<Object>(value, created, expires)));
+				}
+			}
+			return entries;
+		} catch (BufferUnderflowException e) {
+			throw new IOException("Truncated resolution cache snapshot: " + file);
+		}
+	}
+
+	private static Application readApplication(ByteBuffer buffer) throws IOException {
+		String applicationId = readString(buffer);
+		int size = buffer.getShort() & 0xffff;
+		List<Record> records = new ArrayList<Record>(size);
+		for (int i = 0; i < size; i++) {
+			int priority = buffer.getShort() & 0xffff;
+			int weight = buffer.getShort() & 0xffff;
+			int port = buffer.getShort() & 0xffff;
+			Record record = new Record(new SRV(priority, weight, port, readString(buffer)));
+			int count = buffer.get() & 0xff;
+			List<InetAddress> addresses = new ArrayList<InetAddress>(count);
+			for (int j = 0; j < count; j++) {
+				byte[] address = new byte[buffer.get() & 0xff];
+				buffer.get(address);
+				addresses.add(InetAddress.getByAddress(address));
+			}
+			record.setAddresses(addresses);
+			records.add(record);
+		}
+		return new Application(applicationId, records);
+	}
+
+	private static String readString(ByteBuffer buffer) {
+		int length = buffer.getShort() & 0xffff;
+		byte[] bytes = new byte[length];
+		buffer.get(bytes);
+		return new String(bytes, UTF_8);
+	}
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2012 Global Radio UK Limited
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.    
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+
+package org.radiodns;
+
+/**
+ * Circuit breaker of a single upstream DNS server. After a number of
+ * consecutive failures the circuit opens and requests are rejected without
+ * being sent. Once the open time has elapsed a single trial request is let
+ * through: its success closes the circuit, its failure opens it again.
+ */
+final class CircuitBreaker {
+
+	private final int mFailureThreshold;
+	private final long mOpenTime;
+
+	private int mFailures = 0;
+	private volatile long mOpenUntil = 0;
+	private boolean mTrialInFlight = false;
+	private long mRejectedCount = 0;
+
+	/**
+	 * Class constructor
+	 * 
+	 * @param failureThreshold	Number of consecutive failures opening the
+	 * 							circuit, or 0 to never open it
+	 * @param openTime			Time in milliseconds the circuit stays open
+	 */
+	CircuitBreaker(int failureThreshold, long openTime) {
+		mFailureThreshold = failureThreshold;
+		mOpenTime = openTime;
+	}
+
+	/**
+	 * Whether a request may be sent. Returns true for at most one trial
+	 * request once the open time has elapsed.
+	 */
+	boolean allowRequest() {
+		if (mOpenUntil == 0) {
+			return true;
+		}
+		synchronized (this) {
+			if (mOpenUntil == 0) {
+				return true;
+			}
+			if (!mTrialInFlight && System.currentTimeMillis() >= mOpenUntil) {
+				mTrialInFlight = true;
+				return true;
+			}
+			mRejectedCount++;
+			return false;
+		}
+	}
+
+	synchronized void recordSuccess() {
+		mFailures = 0;
+		mOpenUntil = 0;
+		mTrialInFlight = false;
+	}
+
+	synchronized void recordFailure() {
+		mFailures++;
+		if (mTrialInFlight || (mFailureThreshold > 0 && mFailures >= mFailureThreshold)) {
+			mOpenUntil = System.currentTimeMillis() + mOpenTime;
+			mTrialInFlight = false;
+		}
+	}
+
+	/**
+	 * End a request let through without recording its outcome, e.g. when it
+	 * was interrupted or failed with an unexpected exception. A trial request
+	 * ended this way lets the next request through as the trial.
+	 */
+	synchronized void abandonRequest() {
+		mTrialInFlight = false;
+	}
+
+	/**
+	 * Whether requests are currently being rejected
+	 */
+	boolean isOpen() {
+		return mOpenUntil != 0;
+	}
+
+	/**
+	 * @return		Number of requests rejected while the circuit was open
+	 */
+	synchronized long getRejectedCount() {
+		return mRejectedCount;
+	}
+}
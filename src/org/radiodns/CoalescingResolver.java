@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2012 Global Radio UK Limited
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.    
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+
+package org.radiodns;
+
+import java.io.IOException;
+
+import org.minidns.record.Data;
+
+/**
+ * {@link Resolver} sharing one outstanding query between concurrent callers
+ * asking for the same name and type. {@link MiniDnsResolver} already does
+ * this; wrap other resolvers, e.g. an {@link InMemoryResolver}, to get the
+ * same behaviour.
+ * 
+ * <pre>
+ * CoalescingResolver resolver = new CoalescingResolver(InMemoryResolver.fromZone(zone));
+ * rdns.setResolver(resolver);
+ * </pre>
+ */
+public class CoalescingResolver implements Resolver {
+
+	private final Resolver mResolver;
+	private final SingleFlight mSingleFlight = new SingleFlight();
+
+	/**
+	 * Class constructor
+	 * 
+	 * @param resolver	Resolver performing the queries
+	 */
+	public CoalescingResolver(Resolver resolver) {
+		if (resolver == null) {
+			throw new IllegalArgumentException("Resolver is null");
+		}
+		mResolver = resolver;
+	}
+
+	public Resolver getResolver() {
+		return mResolver;
+	}
+
+	/**
+	 * @return		Number of lookups answered by joining an identical lookup
+	 * 				already in flight
+	 */
+	public long getCoalescedCount() {
+		return mSingleFlight.getCoalescedCount();
+	}
+
+	/*
+	 * @see org.radiodns.Resolver#resolve(java.lang.String, java.lang.Class)
+	 */
+	@Override
+	public <D extends Data> LookupResult<D> resolve(final String name, final Class<D> type) throws IOException {
+		return mSingleFlight.execute(key(name, type), new SingleFlight.Call<LookupResult<D>>() {
+			@Override
+			public LookupResult<D> call() throws IOException {
+				return mResolver.resolve(name, type);
+			}
+		});
+	}
+
+	/**
+	 * Key identifying a query of the given name and type
+	 */
+	static String key(String name, Class<?> type) {
+		return new StringBuilder(name.length() + 16).append(type.getSimpleName()).append(' ')
+				.append(name.toLowerCase()).toString();
+	}
+}
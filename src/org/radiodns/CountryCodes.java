@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2012 Global Radio UK Limited
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.    
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+
+package org.radiodns;
+
+/**
+ * ISO 3166-1 alpha-2 country code to RDS Global Country Code (GCC) table, so
+ * an FM Service given an ISO country code is looked up under the same FQDN as
+ * one given the GCC decoded from RDS.
+ * 
+ * The GCC is the country nibble of the PI code followed by the Extended
+ * Country Code (ECC). Countries are listed with their ECC and the PI country
+ * nibbles allocated to them in IEC 62106 Annex D; the table covers the
+ * European Broadcasting Area (ECC E0 to E4). The table is built once into an
+ * array indexed by the two letters of the ISO code, holding the ECC and a
+ * mask of the allocated nibbles.
+ */
+final class CountryCodes {
+
+	/**
+	 * The country is not in the table
+	 */
+	static final int UNKNOWN = -1;
+
+	/**
+	 * The country is in the table, but the PI country nibble is not allocated
+	 * to it
+	 */
+	static final int MISMATCH = -2;
+
+	/*
+	 * ISO code, ECC and allocated PI country nibbles of each country
+	 */
+	private static final String TABLE =
+			"DZE02 ADE03 ILE04 ITE05 BEE06 RUE07 PSE08 ALE09 ATE0A HUE0B MTE0C DEE01D EGE0F " +
+			"GRE11 CYE12 SME13 CHE14 JOE15 FIE16 LUE17 BGE18 DKE19 FOE19 GIE1A IQE1B GBE1C " +
+			"LYE1D ROE1E FRE1F " +
+			"MAE21 CZE22 PLE23 VAE24 SKE25 SYE26 TNE27 LIE29 ISE2A MCE2B LTE2C RSE2D ESE2E " +
+			"NOE2F " +
+			"MEE31 IEE32 TRE33 MKE34 NLE38 LVE39 LBE3A AZE3B HRE3C KZE3D SEE3E BYE3F " +
+			"MDE41 EEE42 KGE43 UAE46 XKE47 PTE48 SIE49 AME4A UZE4B GEE4C TME4E BAE4F";
+
+	/*
+	 * Indexed by (first letter * 26 + second letter): ECC in the low byte,
+	 * mask of allocated nibbles in the next 16 bits, 0 if unknown
+	 */
+	private static final int[] GCC = new int[26 * 26];
+
+	static {
+		for (String entry : TABLE.split(" ")) {
+			int index = index(entry);
+			int ecc = Integer.parseInt(entry.substring(2, 4), 16);
+			int mask = 0;
+			for (int i = 4; i < entry.length(); i++) {
+				mask |= 1 << Character.digit(entry.charAt(i), 16);
+			}
+			GCC[index] = (mask << 8) | ecc;
+		}
+	}
+
+	private CountryCodes() {
+	}
+
+	/**
+	 * Get the GCC of a country for a PI code
+	 * 
+	 * @param iso3166CountryCode	ISO 3166-1 alpha-2 country code
+	 * @param piCountryCode			Country nibble of the PI code (its first
+	 * 								hexadecimal digit)
+	 * @return			GCC, {@link #UNKNOWN} if the country is not in the
+	 * 					table or {@link #MISMATCH} if the nibble is not
+	 * 					allocated to the country
+	 */
+	static int getGcc(String iso3166CountryCode, int piCountryCode) {
+		int index = index(iso3166CountryCode);
+		if (index < 0 || piCountryCode < 0 || piCountryCode > 0xf) {
+			return UNKNOWN;
+		}
+		int value = GCC[index];
+		if (value == 0) {
+			return UNKNOWN;
+		}
+		if ((value & (1 << (piCountryCode + 8))) == 0) {
+			return MISMATCH;
+		}
+		return (piCountryCode << 8) | (value & 0xff);
+	}
+
+	private static int index(String code) {
+		if (code == null || code.length() < 2) {
+			return -1;
+		}
+		int c0 = letter(code.charAt(0));
+		int c1 = letter(code.charAt(1));
+		return (c0 < 0 || c1 < 0) ? -1 : c0 * 26 + c1;
+	}
+
+	private static int letter(char c) {
+		if (c >= 'a' && c <= 'z') {
+			return c - 'a';
+		}
+		if (c >= 'A' && c <= 'Z') {
+			return c - 'A';
+		}
+		return -1;
+	}
+}
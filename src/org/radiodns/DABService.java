@@ -46,6 +46,18 @@ public class DABService extends Service {
 	 * Packet Address (PA) value
 	 */
 	private Integer mPa;
+	/*
+	 * Numeric GCC, EId, SId and SCIdS values, or -1 when constructed from
+	 * Strings
+	 */
+	private int mGccValue = -1;
+	private int mEidValue = -1;
+	private long mSidValue = -1;
+	private int mScidsValue = -1;
+	/*
+	 * RadioDNS FQDN, built on first use
+	 */
+	private String mRadioDNSFqdn;
 
 	public DABService(String gcc, String eid, String sid, String scids, int pa) throws LookupException {
 		this(gcc, eid, sid, scids);
@@ -65,7 +77,7 @@ public class DABService extends Service {
 			throw new LookupException("Required values are missing.");
 		}
 		
-		if (xpad.matches("(?i)^[0-9A-F]{2}-[0-9A-F]{3}$")) {
+		if (Validation.isXpad(xpad)) {
 			mXpad = xpad;
 		}
 	}
@@ -81,7 +93,7 @@ public class DABService extends Service {
 		/*
 		 * Validate gcc value
 		 */
-		if (gcc.matches("(?i)^[0-9A-F]{3}$")) {
+		if (Validation.isHex(gcc, 3)) {
 			mGcc = gcc;
 		} else {
 			throw new LookupException(
@@ -91,7 +103,7 @@ public class DABService extends Service {
 		/*
 		 * Validate eid value
 		 */
-		if (eid.matches("(?i)^[0-9A-F]{4}$")) {
+		if (Validation.isHex(eid, 4)) {
 			mEid = eid;
 		} else {
 			throw new LookupException(
@@ -101,7 +113,7 @@ public class DABService extends Service {
 		/*
 		 * Validate sid value
 		 */
-		if (sid.matches("(?i)^[0-9A-F]{4}$|^[0-9A-F]{8}$")) {
+		if (Validation.isHex(sid, 4, 8)) {
 			mSid = sid;
 		} else{
 			throw new LookupException(
@@ -111,7 +123,7 @@ public class DABService extends Service {
 		/*
 		 * Validate scids value
 		 */
-		if (scids.matches("(?i)^[0-9A-F]{1}$|^[0-9A-F]{3}$")) {
+		if (Validation.isHex(scids, 1, 3)) {
 			mScids = scids;
 		} else {
 			throw new LookupException(
@@ -122,20 +134,108 @@ public class DABService extends Service {
 		mPa = -1;
 	}
 	
+	/**
+	 * Class constructor taking the numeric values decoded from the FIC, with
+	 * Packet Address
+	 * 
+	 * @param gcc		Global Country Code (GCC)
+	 * @param eid		Ensemble Identifier (EId)
+	 * @param sid		Service Identifer (SId), 16 or 32 bits
+	 * @param scids		Service Component Identifer within the Service (SCIdS),
+	 * 					4 or 12 bits
+	 * @param pa		Packet Address (PA)
+	 * @throws LookupException
+	 */
+	public DABService(int gcc, int eid, long sid, int scids, int pa) throws LookupException {
+		this(gcc, eid, sid, scids);
+		
+		if (pa > 0 && pa < 1023) {
+			mPa = pa;
+		} else {
+			throw new LookupException(
+					"Invalid data value. Must be a valid Packet Address integer.");
+		}
+	}
+
+	/**
+	 * Class constructor taking the numeric values decoded from the FIC. An SId
+	 * above 0xFFFF is rendered with 8 hexadecimal characters and an SCIdS
+	 * above 0xF with 3.
+	 * 
+	 * @param gcc		Global Country Code (GCC)
+	 * @param eid		Ensemble Identifier (EId)
+	 * @param sid		Service Identifer (SId), 16 or 32 bits
+	 * @param scids		Service Component Identifer within the Service (SCIdS),
+	 * 					4 or 12 bits
+	 * @throws LookupException
+	 */
+	public DABService(int gcc, int eid, long sid, int scids) throws LookupException {
+		/*
+		 * Validate gcc value
+		 */
+		if (gcc >= 0 && gcc <= 0xfff) {
+			mGccValue = gcc;
+		} else {
+			throw new LookupException(
+					"Invalid Global Country Code (GCC) value. Must be a valid 3-character hexadecimal.");
+		}
+		
+		/*
+		 * Validate eid value
+		 */
+		if (eid >= 0 && eid <= 0xffff) {
+			mEidValue = eid;
+		} else {
+			throw new LookupException(
+					"Invalid Ensemble Identifier (EId) value. Must be a valid 4-character hexadecimal.");
+		}
+		
+		/*
+		 * Validate sid value
+		 */
+		if (sid >= 0 && sid <= 0xffffffffL) {
+			mSidValue = sid;
+		} else{
+			throw new LookupException(
+					"Invalid Service Identifier (SId) value. Must be a valid 4 or 8-character hexadecimal.");
+		}
+		
+		/*
+		 * Validate scids value
+		 */
+		if (scids >= 0 && scids <= 0xfff) {
+			mScidsValue = scids;
+		} else {
+			throw new LookupException(
+					"Invalid Service Component Identifier within the Service (SCIdS) value. Must be a valid 1 or 3-character hexadecimal.");
+		}
+		
+		mXpad = null;
+		mPa = -1;
+	}
+	
 	public String getScids() {
-		return mScids;
+		return (mScidsValue >= 0) ? Fqdn.toHex(mScidsValue, getScidsWidth()) : mScids;
 	}
 	
 	public String getSid() {
-		return mSid;
+		return (mSidValue >= 0) ? Fqdn.toHex(mSidValue, getSidWidth()) : mSid;
 	}
 	
 	public String getEid() {
-		return mEid;
+		return (mEidValue >= 0) ? Fqdn.toHex(mEidValue, 4) : mEid;
 	}
 	
 	public String getGcc() {
-		return mGcc;
+		return (mGccValue >= 0) ? Fqdn.toHex(mGccValue, 3) : mGcc;
+	}
+
+	private int getSidWidth() {
+		return (mSidValue > 0xffff) ? 8 : 4;
+	}
+
+	private int getScidsWidth() {
+		return (mScidsValue > 0xf) ? 3 : 1;
 	}
 	
 	public String getXpad() {
@@ -146,15 +246,34 @@ public class DABService extends Service {
 		return mPa;
 	}
 
+	/*
+	 * @see org.radiodns.Service#getRadioDNSFqdn()
+	 */
 	@Override
 	public String getRadioDNSFqdn() {
-		String fqdn = String
-				.format("%s.%s.%s.%s.dab.radiodns.org", mScids, mSid, mEid, mGcc);
-		if (mXpad != null || mPa > -1) {
-			fqdn = String.format("%s.%s", (mXpad != null) ? mXpad : mPa, fqdn);
+		String fqdn = mRadioDNSFqdn;
+		if (fqdn == null) {
+			StringBuilder sb = new StringBuilder(48);
+			if (mXpad != null) {
+				Fqdn.appendLower(sb, mXpad).append('.');
+			} else if (mPa > -1) {
+				sb.append(mPa.intValue()).append('.');
+			}
+			if (mGccValue >= 0) {
+				Fqdn.appendHex(sb, mScidsValue, getScidsWidth()).append('.');
+				Fqdn.appendHex(sb, mSidValue, getSidWidth()).append('.');
+				Fqdn.appendHex(sb, mEidValue, 4).append('.');
+				Fqdn.appendHex(sb, mGccValue, 3);
+			} else {
+				Fqdn.appendLower(sb, mScids).append('.');
+				Fqdn.appendLower(sb, mSid).append('.');
+				Fqdn.appendLower(sb, mEid).append('.');
+				Fqdn.appendLower(sb, mGcc);
+			}
+			sb.append(".dab").append(Fqdn.RADIODNS_SUFFIX);
+			fqdn = Fqdn.canonicalize(sb.toString());
+			mRadioDNSFqdn = fqdn;
 		}
-		fqdn = fqdn.toLowerCase();
-
 		return fqdn;
 	}
 }
\ No newline at end of file
@@ -0,0 +1,40 @@
+/*
+ * Copyright (c) 2012 Global Radio UK Limited
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.    
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+
+package org.radiodns;
+
+/**
+ * DNSSEC validation policy of RadioDNS lookups
+ */
+public enum DnssecPolicy {
+
+	/**
+	 * Answers are not validated, and no DNSSEC records are requested
+	 */
+	OFF,
+
+	/**
+	 * Answers are validated where the zone is signed; answers carrying no
+	 * signatures are accepted too, but signed answers failing validation,
+	 * e.g. with expired signatures, are rejected
+	 */
+	OPPORTUNISTIC,
+
+	/**
+	 * Only validated answers are accepted; any other answer is rejected
+	 */
+	REQUIRED
+}
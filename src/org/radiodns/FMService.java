@@ -23,7 +23,8 @@ package org.radiodns;
 public class FMService extends Service {
 
 	/**
-	 * Global Country Code (GCC) value
+	 * Global Country Code (GCC) value, given or derived from the ISO 3166-1
+	 * alpha-2 country code
 	 */
 	private String mGcc;
 	/**
@@ -38,6 +39,15 @@ public class FMService extends Service {
 	 * Frequency value in KHz
 	 */
 	private int mFrequency;
+	/**
+	 * Numeric GCC and PI values, or -1 when constructed from Strings
+	 */
+	private int mGccValue = -1;
+	private int mPiValue = -1;
+	/**
+	 * RadioDNS FQDN, built on first use
+	 */
+	private String mRadioDNSFqdn;
 
 	/**
 	 * Class constructor
@@ -62,7 +72,7 @@ public class FMService extends Service {
 		if (country.length() == 2) {
 			mGcc = null;
 			mIso3166CountryCode = country;
-		} else if (country.matches("(?i)^[0-9A-F]{3}$")) {
+		} else if (Validation.isHex(country, 3)) {
 			mGcc = country;
 			mIso3166CountryCode = null;
 		} else {
@@ -73,7 +83,7 @@ public class FMService extends Service {
 		/**
 		 * pi value
 		 */
-		if (piCode.matches("(?i)^[0-9A-F]{4}$")
+		if (Validation.isHex(piCode, 4)
 				&& (mIso3166CountryCode != null || piCode.charAt(0) == mGcc
 						.charAt(0))) {
 			mPi = piCode;
@@ -82,6 +92,21 @@ public class FMService extends Service {
 					"Invalid PI value. Must be a valid hexadecimal RDS Programme Identifier (PI) code and the first character must match the first character of the combined RDS Country Code and RDS Extended Country Code (ECC) value (if supplied).");
 		}
 
+		/**
+		 * map a known ISO country code to the GCC, so the Service has the
+		 * same FQDN whichever form it was given
+		 */
+		if (mIso3166CountryCode != null) {
+			int gcc = CountryCodes.getGcc(mIso3166CountryCode, Character.digit(piCode.charAt(0), 16));
+			if (gcc == CountryCodes.MISMATCH) {
+				throw new LookupException(
+						"Invalid PI value. Must be a valid hexadecimal RDS Programme Identifier (PI) code and the first character must be a RDS Country Code allocated to the ISO 3166-1 alpha-2 country code.");
+			}
+			if (gcc >= 0) {
+				mGcc = Fqdn.toHex(gcc, 3);
+			}
+		}
+
 		/**
 		 * frequency value
 		 */
@@ -93,12 +118,81 @@ public class FMService extends Service {
 		}
 	}
 	
+	/**
+	 * Class constructor taking the numeric values decoded from RDS
+	 * 
+	 * @param gcc			Global Country Code (GCC), i.e. the PI country code
+	 * 						nibble followed by the Extended Country Code (ECC)
+	 * @param piCode		Programme Identification (PI)
+	 * @param frequency		Frequency value in KHz
+	 * @throws LookupException
+	 */
+	public FMService(int gcc, int piCode, int frequency)
+			throws LookupException {
+		/**
+		 * country value
+		 */
+		if (gcc >= 0 && gcc <= 0xfff) {
+			mGccValue = gcc;
+		} else {
+			throw new LookupException(
+					"Invalid country value. Must be either a ISO 3166-1 alpha-2 country code or valid hexadecimal value of a RDS Country Code concatanated with a RDS Extended Country Code (ECC).");
+		}
+
+		/**
+		 * pi value
+		 */
+		if (piCode >= 0 && piCode <= 0xffff && (piCode >> 12) == (gcc >> 8)) {
+			mPiValue = piCode;
+		} else {
+			throw new LookupException(
+					"Invalid PI value. Must be a valid hexadecimal RDS Programme Identifier (PI) code and the first character must match the first character of the combined RDS Country Code and RDS Extended Country Code (ECC) value (if supplied).");
+		}
+
+		/**
+		 * frequency value
+		 */
+		if (frequency >= 76000 && frequency <= 108000) {
+			this.mFrequency = frequency;
+		} else {
+			throw new LookupException(
+					"Invalid frequency value. Must be int between the values 76000 and 108000.");
+		}
+	}
+	
+	/**
+	 * @return		Country value the Service was created with, i.e. the GCC or
+	 * 				the ISO 3166-1 alpha-2 country code
+	 */
 	public String getCountry() {
-		return (mGcc != null) ? mGcc : mIso3166CountryCode;
+		if (mGccValue >= 0) {
+			return Fqdn.toHex(mGccValue, 3);
+		}
+		return (mIso3166CountryCode != null) ? mIso3166CountryCode : mGcc;
+	}
+
+	/**
+	 * @return		GCC, as given or derived from the ISO 3166-1 alpha-2
+	 * 				country code and the PI, or null if the country code has
+	 * 				no known GCC
+	 */
+	public String getGcc() {
+		if (mGccValue >= 0) {
+			return Fqdn.toHex(mGccValue, 3);
+		}
+		return mGcc;
+	}
+
+	/**
+	 * @return		ISO 3166-1 alpha-2 country code, if the Service was
+	 * 				created with one
+	 */
+	public String getIso3166CountryCode() {
+		return mIso3166CountryCode;
 	}
 	
 	public String getPiCode() {
-		return mPi;
+		return (mPiValue >= 0) ? Fqdn.toHex(mPiValue, 4) : mPi;
 	}
 	
 	public int getFrequency() {
@@ -110,14 +204,22 @@ public class FMService extends Service {
 	 */
 	@Override
 	public String getRadioDNSFqdn() {
-		String country = (mGcc != null) ? mGcc : mIso3166CountryCode;
-
-		String fqdn = String
-				.format("%s.%s.%s.fm.radiodns.org",
-						String.format("%5s", (int) (mFrequency / 10)).replace(
-								" ", "0"), mPi, country);
-		fqdn = fqdn.toLowerCase();
-
+		String fqdn = mRadioDNSFqdn;
+		if (fqdn == null) {
+			StringBuilder sb = new StringBuilder(32);
+			Fqdn.appendPadded(sb, mFrequency / 10, 5).append('.');
+			if (mPiValue >= 0) {
+				Fqdn.appendHex(sb, mPiValue, 4).append('.');
+				Fqdn.appendHex(sb, mGccValue, 3);
+			} else {
+				String country = (mGcc != null) ? mGcc : mIso3166CountryCode;
+				Fqdn.appendLower(sb, mPi).append('.');
+				Fqdn.appendLower(sb, country);
+			}
+			sb.append(".fm").append(Fqdn.RADIODNS_SUFFIX);
+			fqdn = Fqdn.canonicalize(sb.toString());
+			mRadioDNSFqdn = fqdn;
+		}
 		return fqdn;
 	}
 }
@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2012 Global Radio UK Limited
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.    
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+
+package org.radiodns;
+
+/**
+ * Helpers for building canonical (lowercase) RadioDNS FQDNs without a
+ * formatter, and a bounded pool through which built FQDNs are canonicalized so
+ * that recurring stations share a single String instance.
+ * 
+ * The pool is direct-mapped: each FQDN hashes to one slot and replaces
+ * whatever FQDN held it before, so memory use is fixed and no locking is
+ * needed.
+ */
+final class Fqdn {
+
+	static final String RADIODNS_SUFFIX = ".radiodns.org";
+
+	private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+	private static final int POOL_SIZE = 4096;
+	private static final String[] sPool = new String[POOL_SIZE];
+
+	private Fqdn() {
+	}
+
+	/**
+	 * Append a value, lower-cased
+	 */
+	static StringBuilder appendLower(StringBuilder sb, String value) {
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c >= 'A' && c <= 'Z') {
+				c = (char) (c + ('a' - 'A'));
+			} else if (c >= 128) {
+				c = Character.toLowerCase(c);
+			}
+			sb.append(c);
+		}
+		return sb;
+	}
+
+	/**
+	 * Append a non-negative value in decimal, left-padded with zeros to the
+	 * given width
+	 */
+	static StringBuilder appendPadded(StringBuilder sb, int value, int width) {
+		int digits = 1;
+		for (int v = value / 10; v > 0; v /= 10) {
+			digits++;
+		}
+		for (int i = digits; i < width; i++) {
+			sb.append('0');
+		}
+		return sb.append(value);
+	}
+
+	/**
+	 * Append a non-negative value in lowercase hexadecimal, left-padded with
+	 * zeros to the given width
+	 */
+	static StringBuilder appendHex(StringBuilder sb, long value, int width) {
+		for (int shift = (width - 1) * 4; shift >= 0; shift -= 4) {
+			sb.append(HEX_DIGITS[(int) (value >>> shift) & 0xf]);
+		}
+		return sb;
+	}
+
+	/**
+	 * Format a non-negative value in lowercase hexadecimal, left-padded with
+	 * zeros to the given width
+	 */
+	static String toHex(long value, int width) {
+		return appendHex(new StringBuilder(width), value, width).toString();
+	}
+
+	/**
+	 * Return the pooled instance equal to the given FQDN, adding it to the
+	 * pool if absent
+	 * 
+	 * @param fqdn		FQDN
+	 * @return			Canonical instance
+	 */
+	static String canonicalize(String fqdn) {
+		int h = fqdn.hashCode();
+		int slot = (h ^ (h >>> 16)) & (POOL_SIZE - 1);
+		String pooled = sPool[slot];
+		if (pooled != null && pooled.equals(fqdn)) {
+			return pooled;
+		}
+		sPool[slot] = fqdn;
+		return fqdn;
+	}
+}
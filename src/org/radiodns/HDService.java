@@ -30,6 +30,15 @@ public class HDService extends Service {
 	 * Country code value
 	 */
 	private String mCc;
+	/*
+	 * Numeric TX and CC values, or -1 when constructed from Strings
+	 */
+	private int mTxValue = -1;
+	private int mCcValue = -1;
+	/*
+	 * RadioDNS FQDN, built on first use
+	 */
+	private String mRadioDNSFqdn;
 
 	/**
 	 * Class constructor
@@ -49,7 +58,7 @@ public class HDService extends Service {
 		/*
 		 * Validate cc value
 		 */
-		if (cc.matches("(?i)^[0-9A-F]{3}$")) {
+		if (Validation.isHex(cc, 3)) {
 			mCc = cc;
 		} else {
 			throw new LookupException(
@@ -59,7 +68,7 @@ public class HDService extends Service {
 		/*
 		 * Validate tx value
 		 */
-		if (tx.matches("(?i)^[0-9A-F]{5}$")) {
+		if (Validation.isHex(tx, 5)) {
 			mTx = tx;
 		} else {
 			throw new LookupException(
@@ -67,12 +76,41 @@ public class HDService extends Service {
 		}
 	}
 	
+	/**
+	 * Class constructor taking numeric values
+	 * 
+	 * @param cc		Country code, 12 bits
+	 * @param tx		Transmitter identifier value, 20 bits
+	 * @throws LookupException
+	 */
+	public HDService(int cc, int tx) throws LookupException {
+		/*
+		 * Validate cc value
+		 */
+		if (cc >= 0 && cc <= 0xfff) {
+			mCcValue = cc;
+		} else {
+			throw new LookupException(
+					"Invalid Country Code (CC) value. Must be a valid 3-character hexadecimal Country Code.");
+		}
+
+		/*
+		 * Validate tx value
+		 */
+		if (tx >= 0 && tx <= 0xfffff) {
+			mTxValue = tx;
+		} else {
+			throw new LookupException(
+					"Invalid Transmitter Identifier (TX) value. Must be a valid 5-character hexadecimal.");
+		}
+	}
+	
 	public String getTx() {
-		return mTx;
+		return (mTxValue >= 0) ? Fqdn.toHex(mTxValue, 5) : mTx;
 	}
 	
 	public String getCc() {
-		return mCc;
+		return (mCcValue >= 0) ? Fqdn.toHex(mCcValue, 3) : mCc;
 	}
 
 	/*
@@ -80,9 +118,20 @@ public class HDService extends Service {
 	 */
 	@Override
 	public String getRadioDNSFqdn() {
-		String fqdn = String.format("%s.%s.hd.radiodns.org", mTx, mCc);
-		fqdn = fqdn.toLowerCase();
-
+		String fqdn = mRadioDNSFqdn;
+		if (fqdn == null) {
+			StringBuilder sb = new StringBuilder(32);
+			if (mTxValue >= 0) {
+				Fqdn.appendHex(sb, mTxValue, 5).append('.');
+				Fqdn.appendHex(sb, mCcValue, 3);
+			} else {
+				Fqdn.appendLower(sb, mTx).append('.');
+				Fqdn.appendLower(sb, mCc);
+			}
+			sb.append(".hd").append(Fqdn.RADIODNS_SUFFIX);
+			fqdn = Fqdn.canonicalize(sb.toString());
+			mRadioDNSFqdn = fqdn;
+		}
 		return fqdn;
 	}
 }
\ No newline at end of file
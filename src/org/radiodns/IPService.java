@@ -48,4 +48,20 @@ public class IPService extends Service {
 	public String getAuthoritativeFqdn() {
 		return mAuthoritativeFqdn;
 	}
+
+	/*
+	 * @see org.radiodns.Service#refreshAuthoritativeFqdn()
+	 */
+	@Override
+	public String refreshAuthoritativeFqdn() {
+		return mAuthoritativeFqdn;
+	}
+
+	/*
+	 * @see org.radiodns.Service#fetchAuthoritativeFqdn()
+	 */
+	@Override
+	String fetchAuthoritativeFqdn() {
+		return mAuthoritativeFqdn;
+	}
 }
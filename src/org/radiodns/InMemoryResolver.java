@@ -0,0 +1,365 @@
+/*
+ * Copyright (c) 2012 Global Radio UK Limited
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.    
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+
+package org.radiodns;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.net.Inet4Address;
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.minidns.dnsmessage.DnsMessage.RESPONSE_CODE;
+import org.minidns.record.A;
+import org.minidns.record.AAAA;
+import org.minidns.record.CNAME;
+import org.minidns.record.Data;
+import org.minidns.record.InternetAddressRR;
+import org.minidns.record.SRV;
+
+/**
+ * Resolver answering from records held in memory, for reproducible tests and
+ * benchmarks without real DNS. Records can be loaded from a zone-file-like
+ * text format supporting $ORIGIN, $TTL, comments and CNAME, SRV, A and AAAA
+ * records:
+ * 
+ * <pre>
+ * $ORIGIN radiodns.org.
+ * $TTL 3600
+ * 09580.c479.ce1.fm        CNAME  rdns.musicradio.com.
+ * _radiovis._tcp.rdns.musicradio.com.  300 IN SRV 0 100 61613 vis.musicradio.com.
+ * vis.musicradio.com.      A      203.0.113.10
+ * </pre>
+ * 
+ * Artificial latency and a failure rate can be configured to simulate a real
+ * upstream.
+ */
+public class InMemoryResolver implements Resolver {
+
+	public static final long DEFAULT_TTL = 3600;
+
+	/*
+	 * Record held for a name
+	 */
+	private static class Entry {
+		final long ttl;
+		final Data data;
+
+		Entry(long ttl, Data data) {
+			this.ttl = ttl;
+			this.data = data;
+		}
+	}
+
+	private final ConcurrentMap<String, List<Entry>> mRecords = new ConcurrentHashMap<String, List<Entry>>();
+
+	private volatile long mMinimumLatency = 0;
+	private volatile long mMaximumLatency = 0;
+	private volatile double mFailureRate = 0;
+
+	private final AtomicLong mQueryCount = new AtomicLong();
+	private final AtomicLong mFailureCount = new AtomicLong();
+
+	public InMemoryResolver() {
+	}
+
+	/**
+	 * Create a resolver holding the records of the given zone text
+	 * 
+	 * @param zone		Zone text
+	 * @return			Resolver
+	 */
+	public static InMemoryResolver fromZone(String zone) {
+		InMemoryResolver resolver = new InMemoryResolver();
+		try {
+			resolver.load(new StringReader(zone));
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+		return resolver;
+	}
+
+	/**
+	 * Add a record
+	 * 
+	 * @param name		Owner name
+	 * @param ttl		TTL in seconds
+	 * @param data		Record data, e.g. new SRV(0, 100, 61613, "vis.musicradio.com")
+	 */
+	public void addRecord(String name, long ttl, Data data) {
+		String key = normalize(name);
+		List<Entry> entries = mRecords.get(key);
+		if (entries == null) {
+			List<Entry> created = new CopyOnWriteArrayList<Entry>();
+			entries = mRecords.putIfAbsent(key, created);
+			if (entries == null) {
+				entries = created;
+			}
+		}
+		entries.add(new Entry(ttl, data));
+	}
+
+	/**
+	 * Remove all records
+	 */
+	public void clear() {
+		mRecords.clear();
+	}
+
+	/**
+	 * Load records in the zone-file-like text format
+	 * 
+	 * @param reader	Zone text
+	 * @throws IOException
+	 * @throws IllegalArgumentException		if a line cannot be parsed
+	 */
+	public void load(Reader reader) throws IOException {
+		BufferedReader in = new BufferedReader(reader);
+		String origin = null;
+		long defaultTtl = DEFAULT_TTL;
+		String previousName = null;
+		String line;
+		int lineNumber = 0;
+		while ((line = in.readLine()) != null) {
+			lineNumber++;
+			int comment = line.indexOf(';');
+			if (comment >= 0) {
+				line = line.substring(0, comment);
+			}
+			if (line.trim().isEmpty()) {
+				continue;
+			}
+			boolean continuation = Character.isWhitespace(line.charAt(0));
+			String[] tokens = line.trim().split("\\s+");
+			try {
+				if (tokens[0].equalsIgnoreCase("$ORIGIN")) {
+					origin = normalize(tokens[1]);
+					continue;
+				}
+				if (tokens[0].equalsIgnoreCase("$TTL")) {
+					defaultTtl = Long.parseLong(tokens[1]);
+					continue;
+				}
+
+				int i = 0;
+				String name;
+				if (continuation) {
+					if (previousName == null) {
+						throw new IllegalArgumentException("No owner name");
+					}
+					name = previousName;
+				} else {
+					name = absolute(tokens[i++], origin);
+				}
+				long ttl = defaultTtl;
+				if (isNumber(tokens[i])) {
+					ttl = Long.parseLong(tokens[i++]);
+				}
+				if (tokens[i].equalsIgnoreCase("IN")) {
+					i++;
+				}
+				String type = tokens[i++].toUpperCase();
+				addRecord(name, ttl, parseData(type, tokens, i, origin));
+				previousName = name;
+			} catch (RuntimeException e) {
+				throw new IllegalArgumentException("Invalid zone line " + lineNumber + ": " + line.trim(), e);
+			}
+		}
+	}
+
+	private static Data parseData(String type, String[] tokens, int i, String origin) {
+		if (type.equals("CNAME")) {
+			return new CNAME(absolute(tokens[i], origin));
+		} else if (type.equals("SRV")) {
+			return new SRV(Integer.parseInt(tokens[i]), Integer.parseInt(tokens[i + 1]),
+					Integer.parseInt(tokens[i + 2]), absolute(tokens[i + 3], origin));
+		} else if (type.equals("A") || type.equals("AAAA")) {
+			InetAddress address;
+			try {
+				address = InetAddress.getByName(tokens[i]);
+			} catch (IOException e) {
+				throw new IllegalArgumentException("Invalid address " + tokens[i]);
+			}
+			if (type.equals("A") && address instanceof Inet4Address) {
+				return new A((Inet4Address) address);
+			} else if (type.equals("AAAA") && address instanceof Inet6Address) {
+				return new AAAA((Inet6Address) address);
+			}
+			throw new IllegalArgumentException("Invalid " + type + " address " + tokens[i]);
+		}
+		throw new IllegalArgumentException("Unsupported record type " + type);
+	}
+
+	/**
+	 * Add artificial latency to every query, chosen uniformly between the
+	 * minimum and maximum
+	 * 
+	 * @param minimum	Minimum latency
+	 * @param maximum	Maximum latency
+	 * @param unit		Unit of the latencies
+	 */
+	public void setLatency(long minimum, long maximum, TimeUnit unit) {
+		if (minimum < 0 || maximum < minimum) {
+			throw new IllegalArgumentException("Invalid latency range");
+		}
+		mMinimumLatency = unit.toNanos(minimum);
+		mMaximumLatency = unit.toNanos(maximum);
+	}
+
+	/**
+	 * Make the given fraction of queries fail with an IOException, as if the
+	 * upstream had timed out
+	 * 
+	 * @param rate		Failure rate between 0 and 1
+	 */
+	public void setFailureRate(double rate) {
+		if (rate < 0 || rate > 1) {
+			throw new IllegalArgumentException("Failure rate must be between 0 and 1");
+		}
+		mFailureRate = rate;
+	}
+
+	public long getQueryCount() {
+		return mQueryCount.get();
+	}
+
+	public long getFailureCount() {
+		return mFailureCount.get();
+	}
+
+	/*
+	 * @see org.radiodns.Resolver#resolve(java.lang.String, java.lang.Class)
+	 */
+	@Override
+	public <D extends Data> LookupResult<D> resolve(String name, Class<D> type) throws IOException {
+		mQueryCount.incrementAndGet();
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+
+		long latency = mMinimumLatency;
+		if (mMaximumLatency > mMinimumLatency) {
+			latency += random.nextLong(mMaximumLatency - mMinimumLatency + 1);
+		}
+		if (latency > 0) {
+			try {
+				TimeUnit.NANOSECONDS.sleep(latency);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while resolving " + name);
+			}
+		}
+
+		if (mFailureRate > 0 && random.nextDouble() < mFailureRate) {
+			mFailureCount.incrementAndGet();
+			throw new IOException("Simulated failure resolving " + name);
+		}
+
+		List<Entry> entries = mRecords.get(normalize(name));
+		if (entries == null) {
+			return new LookupResult<D>(RESPONSE_CODE.NX_DOMAIN, null, false, 0);
+		}
+		Set<D> answers = new HashSet<D>();
+		long ttl = Long.MAX_VALUE;
+		for (Entry entry : entries) {
+			if (type.isInstance(entry.data)) {
+				answers.add(type.cast(entry.data));
+				ttl = Math.min(ttl, entry.ttl);
+			}
+		}
+		if (type == SRV.class && !answers.isEmpty()) {
+			return withAdditionalAddresses(answers, ttl);
+		}
+		return new LookupResult<D>(RESPONSE_CODE.NO_ERROR, answers, false, answers.isEmpty() ? 0 : ttl);
+	}
+
+	/**
+	 * Answer an SRV query with the A and AAAA records held for its targets in
+	 * the additional section, as DNS servers usually do
+	 */
+	private <D extends Data> LookupResult<D> withAdditionalAddresses(Set<D> answers, long ttl) {
+		Map<String, List<InetAddress>> additional = new HashMap<String, List<InetAddress>>();
+		long additionalTtl = Long.MAX_VALUE;
+		for (D answer : answers) {
+			String target = normalize(((SRV) answer).target.toString());
+			List<Entry> entries = mRecords.get(target);
+			if (entries == null || additional.containsKey(target)) {
+				continue;
+			}
+			List<InetAddress> addresses = new ArrayList<InetAddress>();
+			for (Entry entry : entries) {
+				if (entry.data instanceof InternetAddressRR) {
+					addresses.add(((InternetAddressRR<?>) entry.data).getInetAddress());
+					additionalTtl = Math.min(additionalTtl, entry.ttl);
+				}
+			}
+			if (!addresses.isEmpty()) {
+				additional.put(target, addresses);
+			}
+		}
+		return new LookupResult<D>(RESPONSE_CODE.NO_ERROR, answers, false, ttl, additional,
+				additional.isEmpty() ? 0 : additionalTtl);
+	}
+
+	/**
+	 * Get the names for which records are held
+	 * 
+	 * @return		Names
+	 */
+	public List<String> getNames() {
+		return new ArrayList<String>(mRecords.keySet());
+	}
+
+	private static boolean isNumber(String token) {
+		for (int i = 0; i < token.length(); i++) {
+			if (!Character.isDigit(token.charAt(i))) {
+				return false;
+			}
+		}
+		return token.length() > 0;
+	}
+
+	private static String absolute(String name, String origin) {
+		if (name.equals("@")) {
+			if (origin == null) {
+				throw new IllegalArgumentException("No $ORIGIN for @");
+			}
+			return origin;
+		}
+		if (name.endsWith(".") || origin == null) {
+			return normalize(name);
+		}
+		return normalize(name) + "." + origin;
+	}
+
+	private static String normalize(String name) {
+		name = name.toLowerCase();
+		return name.endsWith(".") ? name.substring(0, name.length() - 1) : name;
+	}
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2012 Global Radio UK Limited
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.    
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+
+package org.radiodns;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.Semaphore;
+
+import org.minidns.record.Data;
+
+/**
+ * {@link Resolver} limiting the number of queries in flight to the wrapped
+ * resolver. Callers beyond the limit wait for their turn, which costs nothing
+ * when lookups run on virtual threads. {@link MiniDnsResolver} applies the
+ * same limit per upstream through
+ * {@link ResolverConfig#withMaxConcurrency(int)}.
+ */
+public class LimitingResolver implements Resolver {
+
+	private final Resolver mResolver;
+	private final int mMaxConcurrency;
+	private final Semaphore mPermits;
+
+	/**
+	 * Class constructor
+	 * 
+	 * @param resolver			Resolver performing the queries
+	 * @param maxConcurrency	Maximum number of queries in flight
+	 */
+	public LimitingResolver(Resolver resolver, int maxConcurrency) {
+		if (resolver == null) {
+			throw new IllegalArgumentException("Resolver is null");
+		}
+		if (maxConcurrency <= 0) {
+			throw new IllegalArgumentException("Maximum concurrency must be greater than zero");
+		}
+		mResolver = resolver;
+		mMaxConcurrency = maxConcurrency;
+		mPermits = new Semaphore(maxConcurrency);
+	}
+
+	public Resolver getResolver() {
+		return mResolver;
+	}
+
+	public int getMaxConcurrency() {
+		return mMaxConcurrency;
+	}
+
+	/**
+	 * @return		Number of queries in flight
+	 */
+	public int getActiveCount() {
+		return mMaxConcurrency - mPermits.availablePermits();
+	}
+
+	/**
+	 * @return		Approximate number of queries waiting for their turn
+	 */
+	public int getWaitingCount() {
+		return mPermits.getQueueLength();
+	}
+
+	/*
+	 * @see org.radiodns.Resolver#resolve(java.lang.String, java.lang.Class)
+	 */
+	@Override
+	public <D extends Data> LookupResult<D> resolve(String name, Class<D> type) throws IOException {
+		try {
+			mPermits.acquire();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting to resolve " + name);
+		}
+		try {
+			return mResolver.resolve(name, type);
+		} finally {
+			mPermits.release();
+		}
+	}
+}
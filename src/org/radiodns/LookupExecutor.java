@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) 2012 Global Radio UK Limited
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.    
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+
+package org.radiodns;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Holder of the library-managed Executor used for concurrent lookups when no
+ * Executor has been supplied by the caller. Threads are daemon threads so the
+ * pool never keeps the JVM alive.
+ */
+final class LookupExecutor {
+
+	private static volatile ExecutorService sDefault = null;
+	private static volatile ScheduledExecutorService sScheduler = null;
+	private static volatile ExecutorService sVirtual = null;
+
+	private LookupExecutor() {
+	}
+
+	/**
+	 * Get the shared library-managed Executor, creating it on first use
+	 * 
+	 * @return		Executor
+	 */
+	static ExecutorService getDefault() {
+		ExecutorService executor = sDefault;
+		if (executor == null) {
+			synchronized (LookupExecutor.class) {
+				executor = sDefault;
+				if (executor == null) {
+					executor = Executors.newCachedThreadPool(newThreadFactory("radiodns-lookup"));
+					sDefault = executor;
+				}
+			}
+		}
+		return executor;
+	}
+
+	/**
+	 * Get the shared Executor starting one virtual thread per lookup, creating
+	 * it on first use. Virtual threads need Java 21; on older runtimes the
+	 * library-managed Executor is returned instead.
+	 * 
+	 * @return		Executor
+	 */
+	static ExecutorService getVirtualThreadExecutor() {
+		ExecutorService executor = sVirtual;
+		if (executor == null) {
+			synchronized (LookupExecutor.class) {
+				executor = sVirtual;
+				if (executor == null) {
+					executor = newVirtualThreadExecutor("radiodns-vlookup");
+					if (executor == null) {
+						executor = getDefault();
+					}
+					sVirtual = executor;
+				}
+			}
+		}
+		return executor;
+	}
+
+	/**
+	 * Whether the runtime supports virtual threads
+	 */
+	static boolean isVirtualThreadSupported() {
+		try {
+			Thread.class.getMethod("ofVirtual");
+			return true;
+		} catch (NoSuchMethodException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Create a thread-per-task Executor of named virtual threads through
+	 * reflection, so the library still runs on Java 8
+	 * 
+	 * @param prefix	Thread name prefix
+	 * @return			Executor, or null if virtual threads are not supported
+	 */
+	static ExecutorService newVirtualThreadExecutor(String prefix) {
+		try {
+			Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+			Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+			builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, prefix + "-", 1L);
+			ThreadFactory factory = (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+			Method newExecutor = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+			return (ExecutorService) newExecutor.invoke(null, factory);
+		} catch (ReflectiveOperationException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Get the shared single-threaded scheduler used for lookup timeouts,
+	 * creating it on first use
+	 * 
+	 * @return		Scheduler
+	 */
+	static ScheduledExecutorService getScheduler() {
+		ScheduledExecutorService scheduler = sScheduler;
+		if (scheduler == null) {
+			synchronized (LookupExecutor.class) {
+				scheduler = sScheduler;
+				if (scheduler == null) {
+					scheduler = Executors.newSingleThreadScheduledExecutor(newThreadFactory("radiodns-timer"));
+					sScheduler = scheduler;
+				}
+			}
+		}
+		return scheduler;
+	}
+
+	/**
+	 * Create a ThreadFactory producing named daemon threads
+	 * 
+	 * @param prefix	Thread name prefix
+	 * @return			ThreadFactory
+	 */
+	static ThreadFactory newThreadFactory(final String prefix) {
+		return new ThreadFactory() {
+			private final AtomicInteger mCount = new AtomicInteger();
+
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, prefix + "-" + mCount.incrementAndGet());
+				t.setDaemon(true);
+				return t;
+			}
+		};
+	}
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2012 Global Radio UK Limited
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.    
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+
+package org.radiodns;
+
+/**
+ * Receives the outcome and latency of every DNS query made by a Service, and
+ * the result of every resolution cache read. Register one on
+ * {@link RadioDNS#setLookupListener(LookupListener)}.
+ * 
+ * Callbacks run on the lookup thread, on the hot path: implementations should
+ * return quickly and avoid allocating, e.g. by incrementing counters as
+ * {@link LookupMetrics} does.
+ */
+public interface LookupListener {
+
+	/**
+	 * Phase of the resolution of a Service
+	 */
+	enum Phase {
+		/** CNAME lookup of the Authoritative FQDN */
+		CNAME,
+		/** SRV lookup of an Application */
+		SRV,
+		/** A or AAAA lookup of an SRV target */
+		ADDRESS
+	}
+
+	/**
+	 * Outcome of a DNS query
+	 */
+	enum Outcome {
+		/** Records were returned */
+		SUCCESS,
+		/** The name does not exist */
+		NXDOMAIN,
+		/** The name exists but has no records of the type */
+		EMPTY,
+		/** The query timed out or was interrupted */
+		TIMEOUT,
+		/** The answer failed DNSSEC validation, or was not validated while validation is required */
+		DNSSEC_REJECTED,
+		/** Any other failure, e.g. SERVFAIL or a network error */
+		ERROR
+	}
+
+	/**
+	 * Result of a resolution cache read
+	 */
+	enum CacheEvent {
+		HIT,
+		MISS,
+		/** An expired answer was served after a failed lookup */
+		STALE
+	}
+
+	/**
+	 * Listener ignoring all events
+	 */
+	LookupListener NONE = new LookupListener() {
+		@Override
+		public void onQuery(Phase phase, Outcome outcome, long nanos) {
+		}
+
+		@Override
+		public void onCache(Phase phase, CacheEvent event) {
+		}
+
+		@Override
+		public void onError(Phase phase, String name, Exception e) {
+		}
+	};
+
+	/**
+	 * Listener printing the stack trace of failed queries and ignoring all
+	 * other events, used when none is registered
+	 */
+	LookupListener DEFAULT = new LookupListener() {
+		@Override
+		public void onQuery(Phase phase, Outcome outcome, long nanos) {
+		}
+
+		@Override
+		public void onCache(Phase phase, CacheEvent event) {
+		}
+
+		@Override
+		public void onError(Phase phase, String name, Exception e) {
+			e.printStackTrace();
+		}
+	};
+
+	/**
+	 * Called after every DNS query
+	 * 
+	 * @param phase		Phase of the query
+	 * @param outcome	Outcome of the query
+	 * @param nanos		Duration of the query in nanoseconds
+	 */
+	void onQuery(Phase phase, Outcome outcome, long nanos);
+
+	/**
+	 * Called after every resolution cache read
+	 * 
+	 * @param phase		Phase of the read
+	 * @param event		Result of the read
+	 */
+	void onCache(Phase phase, CacheEvent event);
+
+	/**
+	 * Called with the exception of a failed DNS query, after
+	 * {@link #onQuery(Phase, Outcome, long)}
+	 * 
+	 * @param phase		Phase of the query
+	 * @param name		Queried name
+	 * @param e			Exception
+	 */
+	void onError(Phase phase, String name, Exception e);
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright (c) 2012 Global Radio UK Limited
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.    
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+
+package org.radiodns;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@link LookupListener} keeping outcome counters, cache counters and a
+ * latency histogram per phase. Recording only increments counters and does
+ * not allocate.
+ * 
+ * Latencies are counted in power-of-two buckets of microseconds: bucket 0
+ * holds queries under 1us, bucket n those from 2^(n-1) up to 2^n us.
+ * 
+ * <pre>
+ * LookupMetrics metrics = new LookupMetrics();
+ * rdns.setLookupListener(metrics);
+ * ...
+ * metrics.getCount(Phase.SRV, Outcome.TIMEOUT);
+ * metrics.getLatencyPercentile(Phase.CNAME, 0.99, TimeUnit.MILLISECONDS);
+ * </pre>
+ */
+public class LookupMetrics implements LookupListener {
+
+	public static final int BUCKETS = 32;
+
+	private static final int PHASES = Phase.values().length;
+	private static final int OUTCOMES = Outcome.values().length;
+	private static final int CACHE_EVENTS = CacheEvent.values().length;
+
+	private final LongAdder[] mOutcomes = newAdders(PHASES * OUTCOMES);
+	private final LongAdder[] mCacheEvents = newAdders(PHASES * CACHE_EVENTS);
+	private final LongAdder[] mLatencies = newAdders(PHASES * BUCKETS);
+	private final LongAdder[] mLatencySums = newAdders(PHASES);
+
+	private static LongAdder[] newAdders(int size) {
+		LongAdder[] adders = new LongAdder[size];
+		for (int i = 0; i < size; i++) {
+			adders[i] = new LongAdder();
+		}
+		return adders;
+	}
+
+	/*
+	 * @see org.radiodns.LookupListener#onQuery(org.radiodns.LookupListener.Phase, org.radiodns.LookupListener.Outcome, long)
+	 */
+	@Override
+	public void onQuery(Phase phase, Outcome outcome, long nanos) {
+		mOutcomes[phase.ordinal() * OUTCOMES + outcome.ordinal()].increment();
+		mLatencies[phase.ordinal() * BUCKETS + bucket(nanos)].increment();
+		mLatencySums[phase.ordinal()].add(nanos);
+	}
+
+	/*
+	 * @see org.radiodns.LookupListener#onCache(org.radiodns.LookupListener.Phase, org.radiodns.LookupListener.CacheEvent)
+	 */
+	@Override
+	public void onCache(Phase phase, CacheEvent event) {
+		mCacheEvents[phase.ordinal() * CACHE_EVENTS + event.ordinal()].increment();
+	}
+
+	/*
+	 * @see org.radiodns.LookupListener#onError(org.radiodns.LookupListener.Phase, java.lang.String, java.lang.Exception)
+	 */
+	@Override
+	public void onError(Phase phase, String name, Exception e) {
+	}
+
+	static int bucket(long nanos) {
+		long micros = Math.max(nanos, 0) / 1000;
+		return Math.min(64 - Long.numberOfLeadingZeros(micros), BUCKETS - 1);
+	}
+
+	/**
+	 * @return		Number of queries of the phase with the given outcome
+	 */
+	public long getCount(Phase phase, Outcome outcome) {
+		return mOutcomes[phase.ordinal() * OUTCOMES + outcome.ordinal()].sum();
+	}
+
+	/**
+	 * @return		Number of cache reads of the phase with the given result
+	 */
+	public long getCacheCount(Phase phase, CacheEvent event) {
+		return mCacheEvents[phase.ordinal() * CACHE_EVENTS + event.ordinal()].sum();
+	}
+
+	/**
+	 * @return		Number of queries of the phase
+	 */
+	public long getQueryCount(Phase phase) {
+		long count = 0;
+		for (int i = 0; i < OUTCOMES; i++) {
+			count += mOutcomes[phase.ordinal() * OUTCOMES + i].sum();
+		}
+		return count;
+	}
+
+	/**
+	 * @return		Number of queries of the phase in each latency bucket
+	 */
+	public long[] getLatencyHistogram(Phase phase) {
+		long[] histogram = new long[BUCKETS];
+		for (int i = 0; i < BUCKETS; i++) {
+			histogram[i] = mLatencies[phase.ordinal() * BUCKETS + i].sum();
+		}
+		return histogram;
+	}
+
+	/**
+	 * @return		Mean query latency of the phase, or 0 if none was made
+	 */
+	public long getMeanLatency(Phase phase, TimeUnit unit) {
+		long count = getQueryCount(phase);
+		return (count > 0) ? unit.convert(mLatencySums[phase.ordinal()].sum() / count, TimeUnit.NANOSECONDS) : 0;
+	}
+
+	/**
+	 * Estimate a latency percentile from the histogram, as the upper bound of
+	 * the bucket holding it
+	 * 
+	 * @param phase			Phase
+	 * @param percentile	Percentile between 0 and 1, e.g. 0.99
+	 * @param unit			Unit of the result
+	 * @return				Latency, or 0 if no query was made
+	 */
+	public long getLatencyPercentile(Phase phase, double percentile, TimeUnit unit) {
+		if (percentile < 0 || percentile > 1) {
+			throw new IllegalArgumentException("Percentile must be between 0 and 1");
+		}
+		long[] histogram = getLatencyHistogram(phase);
+		long total = 0;
+		for (long count : histogram) {
+			total += count;
+		}
+		if (total == 0) {
+			return 0;
+		}
+		long rank = (long) Math.ceil(percentile * total);
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += histogram[i];
+			if (seen >= Math.max(rank, 1)) {
+				return unit.convert(1L << i, TimeUnit.MICROSECONDS);
+			}
+		}
+		return unit.convert(1L << (BUCKETS - 1), TimeUnit.MICROSECONDS);
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder("LookupMetrics[");
+		for (Phase phase : Phase.values()) {
+			if (phase.ordinal() > 0) {
+				sb.append(", ");
+			}
+			sb.append(phase).append("={");
+			for (Outcome outcome : Outcome.values()) {
+				sb.append(outcome.name().toLowerCase()).append('=').append(getCount(phase, outcome)).append(", ");
+			}
+			for (CacheEvent event : CacheEvent.values()) {
+				sb.append("cache_").append(event.name().toLowerCase()).append('=')
+						.append(getCacheCount(phase, event)).append(", ");
+			}
+			sb.append("mean=").append(getMeanLatency(phase, TimeUnit.MICROSECONDS)).append("us, p99=")
+					.append(getLatencyPercentile(phase, 0.99, TimeUnit.MICROSECONDS)).append("us}");
+		}
+		return sb.append(']').toString();
+	}
+}
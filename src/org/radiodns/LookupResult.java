@@ -0,0 +1,203 @@
+/*
+ * Copyright (c) 2012 Global Radio UK Limited
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.    
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+
+package org.radiodns;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.minidns.dnsmessage.DnsMessage;
+import org.minidns.dnsmessage.DnsMessage.RESPONSE_CODE;
+import org.minidns.dnsmessage.Question;
+import org.minidns.record.Data;
+import org.minidns.record.InternetAddressRR;
+import org.minidns.record.SRV;
+
+/**
+ * Answer to a single DNS query made for a RadioDNS lookup
+ */
+public class LookupResult<D extends Data> {
+
+	private final RESPONSE_CODE mResponseCode;
+	private final Set<D> mAnswers;
+	private final boolean mAuthenticData;
+	private final long mTtl;
+	private final Map<String, List<InetAddress>> mAdditionalAddresses;
+	private final long mAdditionalTtl;
+
+	/**
+	 * Class constructor
+	 * 
+	 * @param responseCode		DNS response code
+	 * @param answers			Answer records of the queried type
+	 * @param authenticData		Whether the answer was DNSSEC validated
+	 * @param ttl				Minimum TTL of the answer records in seconds
+	 */
+	public LookupResult(RESPONSE_CODE responseCode, Set<D> answers, boolean authenticData, long ttl) {
+		this(responseCode, answers, authenticData, ttl, null, 0);
+	}
+
+	/**
+	 * Class constructor
+	 * 
+	 * @param responseCode		DNS response code
+	 * @param answers			Answer records of the queried type
+	 * @param authenticData		Whether the answer was DNSSEC validated
+	 * @param ttl				Minimum TTL of the answer records in seconds
+	 * @param additionalAddresses	A and AAAA addresses of the additional
+	 * 							section, keyed on lower case host names
+	 * 							without the trailing dot
+	 * @param additionalTtl		Minimum TTL of the additional addresses
+	 */
+	public LookupResult(RESPONSE_CODE responseCode, Set<D> answers, boolean authenticData, long ttl,
+			Map<String, List<InetAddress>> additionalAddresses, long additionalTtl) {
+		mResponseCode = responseCode;
+		mAnswers = (answers != null) ? Collections.unmodifiableSet(answers) : Collections.<D>emptySet();
+		mAuthenticData = authenticData;
+		mTtl = ttl;
+		mAdditionalAddresses = (additionalAddresses != null) ? additionalAddresses
+				: Collections.<String, List<InetAddress>>emptyMap();
+		mAdditionalTtl = additionalTtl;
+	}
+
+	/**
+	 * Create from a DNS response message to the given question
+	 */
+	static <D extends Data> LookupResult<D> from(Question question, DnsMessage response) {
+		return from(question, response, response.authenticData);
+	}
+
+	/**
+	 * Create from a DNS response message to the given question, validated or
+	 * not as given
+	 */
+	static <D extends Data> LookupResult<D> from(Question question, DnsMessage response, boolean authenticData) {
+		Set<D> answers = null;
+		if (response.responseCode == RESPONSE_CODE.NO_ERROR) {
+			answers = response.getAnswersFor(question);
+		}
+		Map<String, List<InetAddress>> additional = new HashMap<String, List<InetAddress>>();
+		long additionalTtl = readAdditionalAddresses(response, answers, additional);
+		return new LookupResult<D>(response.responseCode, answers, authenticData,
+				response.getAnswersMinTtl(), additional, additionalTtl);
+	}
+
+	/**
+	 * Collect the A and AAAA records of the additional section of a message
+	 * owned by the target of one of the SRV answers. Records of other owners
+	 * are left out, so a server cannot supply addresses for hosts it was not
+	 * asked about.
+	 * 
+	 * @return		Minimum TTL of the collected records
+	 */
+	private static long readAdditionalAddresses(DnsMessage message, Set<? extends Data> answers,
+			Map<String, List<InetAddress>> addresses) {
+		if (message.additionalSection == null || answers == null) {
+			return 0;
+		}
+		Set<String> targets = new HashSet<String>();
+		for (Data answer : answers) {
+			if (answer instanceof SRV) {
+				targets.add(hostKey(((SRV) answer).target.toString()));
+			}
+		}
+		if (targets.isEmpty()) {
+			return 0;
+		}
+		long ttl = Long.MAX_VALUE;
+		for (org.minidns.record.Record<? extends Data> record : message.additionalSection) {
+			Data payload = record.getPayload();
+			if (!(payload instanceof InternetAddressRR)) {
+				continue;
+			}
+			String host = hostKey(record.name.toString());
+			if (!targets.contains(host)) {
+				continue;
+			}
+			List<InetAddress> list = addresses.get(host);
+			if (list == null) {
+				list = new ArrayList<InetAddress>();
+				addresses.put(host, list);
+			}
+			list.add(((InternetAddressRR<?>) payload).getInetAddress());
+			ttl = Math.min(ttl, record.getTtl());
+		}
+		return addresses.isEmpty() ? 0 : ttl;
+	}
+
+	static String hostKey(String host) {
+		host = host.toLowerCase();
+		return host.endsWith(".") ? host.substring(0, host.length() - 1) : host;
+	}
+
+	public RESPONSE_CODE getResponseCode() {
+		return mResponseCode;
+	}
+
+	public boolean wasSuccessful() {
+		return mResponseCode == RESPONSE_CODE.NO_ERROR;
+	}
+
+	/**
+	 * @return		Answer records, empty if the query was unsuccessful
+	 */
+	public Set<D> getAnswers() {
+		return mAnswers;
+	}
+
+	public boolean isAuthenticData() {
+		return mAuthenticData;
+	}
+
+	/**
+	 * @return		Minimum TTL of the answer records in seconds
+	 */
+	public long getTtl() {
+		return mTtl;
+	}
+
+	/**
+	 * Get the addresses given for a host in the additional section
+	 * 
+	 * @param host		Host name
+	 * @return			A and AAAA addresses, empty if none were given
+	 */
+	public List<InetAddress> getAdditionalAddresses(String host) {
+		List<InetAddress> addresses = mAdditionalAddresses.get(hostKey(host));
+		return (addresses != null) ? addresses : Collections.<InetAddress>emptyList();
+	}
+
+	/**
+	 * @return		Minimum TTL of the additional section addresses in seconds
+	 */
+	public long getAdditionalTtl() {
+		return mAdditionalTtl;
+	}
+
+	/**
+	 * Whether the result is a negative answer (NXDOMAIN, or success with no
+	 * records) that may be cached
+	 */
+	public boolean isNegative() {
+		return mResponseCode == RESPONSE_CODE.NX_DOMAIN || (wasSuccessful() && mAnswers.isEmpty());
+	}
+}
@@ -0,0 +1,398 @@
+/*
+ * Copyright (c) 2012 Global Radio UK Limited
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.    
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+
+package org.radiodns;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+
+import org.minidns.DnsClient;
+import org.minidns.cache.LruCache;
+import org.minidns.dnsmessage.DnsMessage;
+import org.minidns.dnsmessage.DnsMessage.RESPONSE_CODE;
+import org.minidns.dnsmessage.Question;
+import org.minidns.dnsqueryresult.DnsQueryResult;
+import org.minidns.dnssec.DnssecClient;
+import org.minidns.dnssec.DnssecQueryResult;
+import org.minidns.dnssec.DnssecUnverifiedReason;
+import org.minidns.dnssec.DnssecValidationFailedException;
+import org.minidns.record.Data;
+import org.minidns.record.Record.TYPE;
+import org.minidns.source.DnsDataSource;
+import org.minidns.source.NetworkDataSource;
+import org.minidns.util.MultipleIoException;
+
+/**
+ * Default {@link Resolver}, backed by minidns. One instance exists per
+ * {@link ResolverConfig}, see {@link #forConfig(ResolverConfig)}. Concurrent
+ * lookups of the same name and type share one outstanding query. Lookups
+ * fail fast with an IOException while the circuit breakers of all upstreams
+ * are open, and wait while the configured number of queries is already in
+ * flight to an upstream.
+ * 
+ * The system DNS servers are queried with the configured timeout and
+ * retries. With DNSSEC off they are queried without validation. Otherwise
+ * they are queried through a validating client, except for names whose
+ * answers were recently found to carry no signatures, which would only pay
+ * for DNSKEY and DS queries without getting a validated answer. An answer
+ * that is not validated for any other reason than carrying no signatures,
+ * e.g. one whose signatures have expired, is rejected with a
+ * DnssecValidationFailedException under either policy.
+ */
+public class MiniDnsResolver implements Resolver {
+
+	private static final ConcurrentMap<ResolverConfig, MiniDnsResolver> sPool =
+			new ConcurrentHashMap<ResolverConfig, MiniDnsResolver>();
+
+	private final ResolverConfig mConfig;
+	private final DnsClient mClient;
+	private final DnssecClient mDnssecClient;
+	private volatile List<Upstream> mUpstreams = null;
+	private final SingleFlight mSingleFlight = new SingleFlight();
+	private final CircuitBreaker mSystemBreaker;
+	private final Semaphore mSystemPermits;
+	private final UnsignedNames mUnsignedNames;
+
+	/*
+	 * Address and port of a configured upstream
+	 */
+	private static class Upstream {
+		final String name;
+		final InetAddress address;
+		final int port;
+		final CircuitBreaker breaker;
+		final Semaphore permits;
+
+		Upstream(String name, InetAddress address, int port, CircuitBreaker breaker, Semaphore permits) {
+			this.name = name;
+			this.address = address;
+			this.port = port;
+			this.breaker = breaker;
+			this.permits = permits;
+		}
+	}
+
+	private MiniDnsResolver(ResolverConfig config) {
+		this(config, new NetworkDataSource());
+	}
+
+	/**
+	 * Class constructor taking the data source the queries are sent through
+	 * 
+	 * @param config		Resolver configuration
+	 * @param dataSource	Data source, given the configured timeout
+	 */
+	MiniDnsResolver(ResolverConfig config, DnsDataSource dataSource) {
+		mConfig = config;
+		mSystemBreaker = newCircuitBreaker();
+		mSystemPermits = newPermits();
+		mUnsignedNames = new UnsignedNames(UnsignedNames.DEFAULT_CAPACITY);
+		dataSource.setTimeout(config.getTimeout());
+		mClient = new DnsClient(new LruCache(config.getCacheSize()));
+		mClient.setDataSource(dataSource);
+		mClient.setAskForDnssec(config.getDnssecPolicy() != DnssecPolicy.OFF);
+		if (config.isSystem() && config.getDnssecPolicy() != DnssecPolicy.OFF) {
+			mDnssecClient = new DnssecClient(new LruCache(config.getCacheSize()));
+			mDnssecClient.setDataSource(dataSource);
+		} else {
+			mDnssecClient = null;
+		}
+	}
+
+	/**
+	 * Get the pooled resolver client for the given configuration, creating it
+	 * on first use
+	 * 
+	 * @param config	Resolver configuration
+	 * @return			Resolver client
+	 */
+	public static MiniDnsResolver forConfig(ResolverConfig config) {
+		MiniDnsResolver resolver = sPool.get(config);
+		if (resolver == null) {
+			MiniDnsResolver created = new MiniDnsResolver(config);
+			resolver = sPool.putIfAbsent(config, created);
+			if (resolver == null) {
+				resolver = created;
+			}
+		}
+		return resolver;
+	}
+
+	/**
+	 * Get the pooled resolver client using the system DNS servers
+	 * 
+	 * @return			Resolver client
+	 */
+	public static MiniDnsResolver getDefault() {
+		return forConfig(ResolverConfig.SYSTEM);
+	}
+
+	public ResolverConfig getConfig() {
+		return mConfig;
+	}
+
+	/**
+	 * Whether the circuit breaker of an upstream is open, i.e. lookups skip it
+	 * 
+	 * @param upstream	Upstream as given in the configuration, or null for
+	 * 					the system DNS servers
+	 * @return			true if the upstream is being skipped
+	 */
+	public boolean isCircuitOpen(String upstream) {
+		if (upstream == null) {
+			return mSystemBreaker.isOpen();
+		}
+		List<Upstream> upstreams = mUpstreams;
+		if (upstreams != null) {
+			for (Upstream u : upstreams) {
+				if (u.name.equalsIgnoreCase(upstream.trim())) {
+					return u.breaker.isOpen();
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return		Number of queries not sent because the circuit breaker of
+	 * 				their upstream was open
+	 */
+	public long getRejectedCount() {
+		long count = mSystemBreaker.getRejectedCount();
+		List<Upstream> upstreams = mUpstreams;
+		if (upstreams != null) {
+			for (Upstream upstream : upstreams) {
+				count += upstream.breaker.getRejectedCount();
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * @return		Number of lookups answered by joining an identical lookup
+	 * 				already in flight
+	 */
+	public long getCoalescedCount() {
+		return mSingleFlight.getCoalescedCount();
+	}
+
+	/**
+	 * @return		Number of names currently remembered as unsigned
+	 */
+	public int getUnsignedNameCount() {
+		return mUnsignedNames.size();
+	}
+
+	/*
+	 * @see org.radiodns.Resolver#resolve(java.lang.String, java.lang.Class)
+	 */
+	@Override
+	public <D extends Data> LookupResult<D> resolve(final String name, final Class<D> type) throws IOException {
+		return mSingleFlight.execute(CoalescingResolver.key(name, type), new SingleFlight.Call<LookupResult<D>>() {
+			@Override
+			public LookupResult<D> call() throws IOException {
+				return query(name, type);
+			}
+		});
+	}
+
+	private <D extends Data> LookupResult<D> query(String name, Class<D> type) throws IOException {
+		if (mConfig.isSystem()) {
+			if (!mSystemBreaker.allowRequest()) {
+				throw new IOException("Circuit open for the system DNS servers");
+			}
+			boolean recorded = false;
+			try {
+				acquire(mSystemPermits);
+				try {
+					LookupResult<D> result = querySystem(name, type);
+					recorded = true;
+					mSystemBreaker.recordSuccess();
+					return result;
+				} catch (DnssecValidationFailedException e) {
+					recorded = true;
+					mSystemBreaker.recordSuccess();
+					throw e;
+				} catch (IOException e) {
+					recorded = true;
+					mSystemBreaker.recordFailure();
+					throw e;
+				} finally {
+					release(mSystemPermits);
+				}
+			} finally {
+				if (!recorded) {
+					mSystemBreaker.abandonRequest();
+				}
+			}
+		}
+
+		Question question = new Question(name, TYPE.getType(type));
+		IOException lastException = null;
+		LookupResult<D> lastResult = null;
+		for (Upstream upstream : getUpstreams()) {
+			for (int attempt = 0; attempt <= mConfig.getRetries(); attempt++) {
+				if (!upstream.breaker.allowRequest()) {
+					if (lastException == null) {
+						lastException = new IOException("Circuit open for " + upstream.name);
+					}
+					break;
+				}
+				boolean recorded = false;
+				try {
+					acquire(upstream.permits);
+					try {
+						DnsQueryResult result = mClient.query(question, upstream.address, upstream.port);
+						DnsMessage response = (result != null) ? result.response : null;
+						recorded = true;
+						if (response == null) {
+							upstream.breaker.recordFailure();
+							lastException = new IOException("No response from " + upstream.address);
+							continue;
+						}
+						upstream.breaker.recordSuccess();
+						lastResult = LookupResult.from(question, response);
+						break;
+					} catch (IOException e) {
+						recorded = true;
+						upstream.breaker.recordFailure();
+						lastException = e;
+					} finally {
+						release(upstream.permits);
+					}
+				} finally {
+					if (!recorded) {
+						upstream.breaker.abandonRequest();
+					}
+				}
+			}
+			if (lastResult != null && lastResult.getResponseCode() != RESPONSE_CODE.SERVER_FAIL
+					&& lastResult.getResponseCode() != RESPONSE_CODE.REFUSED) {
+				return lastResult;
+			}
+		}
+		if (lastResult != null) {
+			return lastResult;
+		}
+		throw (lastException != null) ? lastException : new IOException("No upstream available");
+	}
+
+	private <D extends Data> LookupResult<D> querySystem(String name, Class<D> type) throws IOException {
+		Question question = new Question(name, TYPE.getType(type));
+		IOException lastException = null;
+		for (int attempt = 0; attempt <= mConfig.getRetries(); attempt++) {
+			try {
+				return querySystem(question);
+			} catch (IOException e) {
+				DnssecValidationFailedException failure = validationFailure(e);
+				if (failure != null) {
+					throw failure;
+				}
+				lastException = e;
+			}
+		}
+		throw lastException;
+	}
+
+	private <D extends Data> LookupResult<D> querySystem(Question question) throws IOException {
+		String name = question.name.toString();
+		if (mDnssecClient == null || mUnsignedNames.contains(name)) {
+			DnsQueryResult result = mClient.query(question);
+			if (result == null || result.response == null) {
+				throw new IOException("No response from the system DNS servers");
+			}
+			return LookupResult.from(question, result.response);
+		}
+		DnssecQueryResult result = mDnssecClient.queryDnssec(question.name, question.type);
+		LookupResult<D> lookup = LookupResult.from(question, result.synthesizedResponse, result.isAuthenticData());
+		if (!lookup.isAuthenticData()) {
+			Set<DnssecUnverifiedReason> reasons = result.getUnverifiedReasons();
+			if (!UnsignedNames.isUnsigned(reasons)) {
+				throw new DnssecValidationFailedException(question, "Answer not validated: " + reasons);
+			}
+			if (lookup.wasSuccessful()) {
+				mUnsignedNames.add(name, lookup.getTtl());
+			}
+		}
+		return lookup;
+	}
+
+	/*
+	 * DnsClient reports the failures of all the servers it tried together in
+	 * a MultipleIoException, validation failures included
+	 */
+	private static DnssecValidationFailedException validationFailure(IOException e) {
+		if (e instanceof DnssecValidationFailedException) {
+			return (DnssecValidationFailedException) e;
+		}
+		if (e instanceof MultipleIoException) {
+			for (IOException cause : ((MultipleIoException) e).getExceptions()) {
+				DnssecValidationFailedException failure = validationFailure(cause);
+				if (failure != null) {
+					return failure;
+				}
+			}
+		}
+		return null;
+	}
+
+	private List<Upstream> getUpstreams() throws IOException {
+		List<Upstream> upstreams = mUpstreams;
+		if (upstreams == null) {
+			upstreams = new ArrayList<Upstream>();
+			for (String upstream : mConfig.getUpstreams()) {
+				upstreams.add(new Upstream(upstream, InetAddress.getByName(ResolverConfig.getHost(upstream)),
+						ResolverConfig.getPort(upstream), newCircuitBreaker(), newPermits()));
+			}
+			mUpstreams = upstreams;
+		}
+		return upstreams;
+	}
+
+	private CircuitBreaker newCircuitBreaker() {
+		return new CircuitBreaker(mConfig.getFailureThreshold(), mConfig.getOpenTime());
+	}
+
+	private Semaphore newPermits() {
+		int maxConcurrency = mConfig.getMaxConcurrency();
+		return (maxConcurrency != ResolverConfig.UNLIMITED) ? new Semaphore(maxConcurrency) : null;
+	}
+
+	private static void acquire(Semaphore permits) throws InterruptedIOException {
+		if (permits == null) {
+			return;
+		}
+		try {
+			permits.acquire();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for an upstream");
+		}
+	}
+
+	private static void release(Semaphore permits) {
+		if (permits != null) {
+			permits.release();
+		}
+	}
+}
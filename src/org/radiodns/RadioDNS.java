@@ -16,6 +16,8 @@
 
 package org.radiodns;
 
+import java.util.concurrent.Executor;
+
 /**
  * This class is used to return a Service object for a given set of broadcast
  * parameters. The Service can then be used to obtain available RadioDNS
@@ -35,6 +37,13 @@ public class RadioDNS {
 	static final String[] KNOWN_APPLICATIONS = { RADIOEPG, RADIOSPI, RADIOTAG, RADIOVIS, RADIOVIS_HTTP };
 
 	String mDNSHostname;
+	ResolverConfig mResolverConfig = ResolverConfig.SYSTEM;
+	Resolver mResolver = null;
+	ResolutionCache mResolutionCache = null;
+	Executor mExecutor = null;
+	LookupListener mLookupListener = null;
+	boolean mResolveAddresses = false;
+	final ServiceRegistry mServiceRegistry = new ServiceRegistry();
 	
 	public RadioDNS() {
 		mDNSHostname = null;
@@ -47,8 +56,159 @@ public class RadioDNS {
 	 */
 	public RadioDNS(String hostname) {
 		mDNSHostname = hostname;
+		if (hostname != null) {
+			mResolverConfig = new ResolverConfig(hostname);
+		}
+	}
+
+	/**
+	 * Supply the configuration of the DNS servers to query when performing
+	 * lookups, e.g. a list of upstreams to fail over between
+	 * 
+	 * @param config	Resolver configuration
+	 */
+	public RadioDNS(ResolverConfig config) {
+		setResolverConfig(config);
+	}
+
+	/**
+	 * Supply the configuration of the DNS servers to query when performing
+	 * lookups for every Service subsequently returned by this instance
+	 * 
+	 * @param config	Resolver configuration
+	 */
+	public void setResolverConfig(ResolverConfig config) {
+		if (config == null) {
+			throw new IllegalArgumentException("Resolver configuration is null");
+		}
+		mResolverConfig = config;
+		mServiceRegistry.clear();
+		mDNSHostname = config.isSystem() ? null : config.getUpstreams().get(0);
+	}
+
+	public ResolverConfig getResolverConfig() {
+		return mResolverConfig;
+	}
+
+	/**
+	 * Set the DNSSEC validation policy of every Service subsequently
+	 * returned by this instance. With {@link DnssecPolicy#OFF}, the default,
+	 * no validation work is done. With {@link DnssecPolicy#OPPORTUNISTIC},
+	 * answers are validated where the zone is signed and accepted either
+	 * way. With {@link DnssecPolicy#REQUIRED}, answers that were not
+	 * validated are rejected.
+	 * 
+	 * @param policy	DNSSEC validation policy
+	 */
+	public void setDnssecPolicy(DnssecPolicy policy) {
+		if (policy == null) {
+			throw new IllegalArgumentException("DNSSEC policy is null");
+		}
+		mResolverConfig = mResolverConfig.withDnssecPolicy(policy);
+		mServiceRegistry.clear();
+	}
+
+	public DnssecPolicy getDnssecPolicy() {
+		return mResolverConfig.getDnssecPolicy();
+	}
+
+	/**
+	 * Supply the Resolver used by every Service subsequently returned by this
+	 * instance, in place of the one built from the resolver configuration
+	 * 
+	 * @param resolver	Resolver, or null to use the resolver configuration
+	 */
+	public void setResolver(Resolver resolver) {
+		mResolver = resolver;
+		mServiceRegistry.clear();
+	}
+
+	public Resolver getResolver() {
+		return mResolver;
 	}
 	
+	/**
+	 * Supply a cache shared by every Service returned by this instance
+	 * 
+	 * @param cache		Resolution cache, or null to disable caching
+	 */
+	public void setResolutionCache(ResolutionCache cache) {
+		mResolutionCache = cache;
+		mServiceRegistry.clear();
+	}
+
+	public ResolutionCache getResolutionCache() {
+		return mResolutionCache;
+	}
+
+	/**
+	 * Supply the Executor used by every Service returned by this instance for
+	 * concurrent lookups, e.g. {@link Service#getApplications(long, java.util.concurrent.TimeUnit)}
+	 * 
+	 * @param executor	Executor, or null to use the library-managed Executor
+	 */
+	public void setExecutor(Executor executor) {
+		mExecutor = executor;
+		mServiceRegistry.clear();
+	}
+
+	public Executor getExecutor() {
+		return mExecutor;
+	}
+
+	/**
+	 * Resolve the A and AAAA addresses of the SRV targets of the Applications
+	 * of every Service returned by this instance along with them, so the
+	 * records are ready to connect to, see {@link Record#getAddresses()}
+	 * 
+	 * @param resolveAddresses	true to resolve the addresses of SRV targets
+	 */
+	public void setResolveAddresses(boolean resolveAddresses) {
+		mResolveAddresses = resolveAddresses;
+		mServiceRegistry.clear();
+	}
+
+	public boolean isResolveAddresses() {
+		return mResolveAddresses;
+	}
+
+	/**
+	 * Run the concurrent lookups of every Service returned by this instance on
+	 * virtual threads, one per lookup, instead of a thread pool. Combine with
+	 * {@link ResolverConfig#withMaxConcurrency(int)} or a
+	 * {@link LimitingResolver} to bound the queries sent to each upstream.
+	 * Virtual threads need Java 21; on older runtimes the library-managed
+	 * Executor is used.
+	 * 
+	 * @param enabled	true to use virtual threads, false to use the
+	 * 					library-managed Executor
+	 */
+	public void setVirtualThreads(boolean enabled) {
+		setExecutor(enabled ? LookupExecutor.getVirtualThreadExecutor() : null);
+	}
+
+	/**
+	 * @return		Whether the runtime supports virtual threads
+	 */
+	public static boolean isVirtualThreadSupported() {
+		return LookupExecutor.isVirtualThreadSupported();
+	}
+
+	/**
+	 * Supply the listener notified of the DNS queries and cache reads of every
+	 * Service returned by this instance, e.g. a {@link LookupMetrics}
+	 * 
+	 * @param listener	Listener, or null to use {@link LookupListener#DEFAULT}
+	 */
+	public void setLookupListener(LookupListener listener) {
+		mLookupListener = listener;
+		mServiceRegistry.clear();
+	}
+
+	public LookupListener getLookupListener() {
+		return mLookupListener;
+	}
+
 	/**
 	 * Lookup a Service based on FM broadcast parameters
 	 * 
@@ -61,9 +221,7 @@ public class RadioDNS {
 	public Service lookupFMService(String country, String pi, int frequency)
 			throws LookupException {
 		Service s = new FMService(country, pi, frequency);
-		if (mDNSHostname != null)
-			s.setDNSHostname(mDNSHostname);
-		return s;
+		return configure(s);
 	}
 
 	/**
@@ -80,9 +238,7 @@ public class RadioDNS {
 	public Service lookupDABService(String gcc, String eid, String sid,
 			String scids, int pa) throws LookupException {
 		Service s = new DABService(gcc, eid, sid, scids, pa);
-		if (mDNSHostname != null)
-			s.setDNSHostname(mDNSHostname);
-		return s;
+		return configure(s);
 	}
 
 	/**
@@ -99,9 +255,7 @@ public class RadioDNS {
 	public Service lookupDABService(String gcc, String eid, String sid,
 			String scids, String xpad) throws LookupException {
 		Service s = new DABService(gcc, eid, sid, scids, xpad);
-		if (mDNSHostname != null)
-			s.setDNSHostname(mDNSHostname);
-		return s;
+		return configure(s);
 	}
 
 	/**
@@ -117,9 +271,7 @@ public class RadioDNS {
 	public Service lookupDABService(String gcc, String eid, String sid,
 			String scids) throws LookupException {
 		Service s = new DABService(gcc, eid, sid, scids);
-		if (mDNSHostname != null)
-			s.setDNSHostname(mDNSHostname);
-		return s;
+		return configure(s);
 	}
 
 	/**
@@ -133,9 +285,7 @@ public class RadioDNS {
 	public Service lookupAMService(String type, String sid)
 			throws LookupException {
 		Service s = new AMService(type, sid);
-		if (mDNSHostname != null)
-			s.setDNSHostname(mDNSHostname);
-		return s;
+		return configure(s);
 	}
 
 	/**
@@ -147,10 +297,85 @@ public class RadioDNS {
 	 * @throws LookupException
 	 */
 	public Service lookupHDService(String tx, String cc) throws LookupException {
-		Service s = new HDService(tx, cc);
-		if (mDNSHostname != null)
-			s.setDNSHostname(mDNSHostname);
-		return s;
+		Service s = new HDService(cc, tx);
+		return configure(s);
+	}
+
+	/**
+	 * Lookup a Service based on numeric FM broadcast parameters, as decoded
+	 * from RDS
+	 * 
+	 * @param gcc				Global Country Code (GCC)
+	 * @param pi				Programme Identification (PI) value
+	 * @param frequency			Frequency value in KHz
+	 * @return					Service
+	 * @throws LookupException
+	 */
+	public Service lookupFMService(int gcc, int pi, int frequency)
+			throws LookupException {
+		Service s = new FMService(gcc, pi, frequency);
+		return configure(s);
+	}
+
+	/**
+	 * Lookup a Service based on numeric DAB broadcast parameters with Packet
+	 * Address
+	 * 
+	 * @param gcc		Global Country Code (GCC)
+	 * @param eid		Ensemble Identifier (EId)
+	 * @param sid		Service Identifer (SId)
+	 * @param scids		Service Component Identifer within the Service (SCIdS)
+	 * @param pa		Packet Address (PA)
+	 * @return			Service
+	 * @throws LookupException
+	 */
+	public Service lookupDABService(int gcc, int eid, long sid,
+			int scids, int pa) throws LookupException {
+		Service s = new DABService(gcc, eid, sid, scids, pa);
+		return configure(s);
+	}
+
+	/**
+	 * Lookup a Service based on numeric DAB broadcast parameters
+	 * 
+	 * @param gcc		Global Country Code (GCC)
+	 * @param eid		Ensemble Identifier (EId)
+	 * @param sid		Service Identifer (SId)
+	 * @param scids		Service Component Identifer within the Service (SCIdS)
+	 * @return			Service
+	 * @throws LookupException
+	 */
+	public Service lookupDABService(int gcc, int eid, long sid,
+			int scids) throws LookupException {
+		Service s = new DABService(gcc, eid, sid, scids);
+		return configure(s);
+	}
+
+	/**
+	 * Lookup a Service based on AM broadcast parameters with a numeric SID
+	 * 
+	 * @param type		Type of AM Service (either "drm" or "amss")
+	 * @param sid		SID value for AM Service
+	 * @return			Service
+	 * @throws LookupException
+	 */
+	public Service lookupAMService(String type, int sid)
+			throws LookupException {
+		Service s = new AMService(type, sid);
+		return configure(s);
+	}
+
+	/**
+	 * Lookup a Service based on numeric HD broadcast parameters
+	 * 
+	 * @param cc		Country code
+	 * @param tx		Transmitter identifier
+	 * @return			Service
+	 * @throws LookupException
+	 */
+	public Service lookupHDService(int cc, int tx) throws LookupException {
+		Service s = new HDService(cc, tx);
+		return configure(s);
 	}
 
 	/**
@@ -164,8 +389,230 @@ public class RadioDNS {
 	public Service lookupIPService(String authoritativeFqdn)
 			throws LookupException {
 		Service s = new IPService(authoritativeFqdn);
-		if (mDNSHostname != null)
-			s.setDNSHostname(mDNSHostname);
+		return configure(s);
+	}
+
+	/**
+	 * Get the shared Service for the given FM broadcast parameters. Unlike
+	 * {@link #lookupFMService(String, String, int)}, repeated calls with the
+	 * same parameters return the same instance, along with its memoized
+	 * Authoritative FQDN, without allocating. Parameters are compared
+	 * case-insensitively, so the returned Service may report them in the case
+	 * first used. The lookup settings of a shared Service are those of this
+	 * instance and cannot be changed; its setters throw
+	 * IllegalStateException.
+	 * 
+	 * @param country			Global Country Code (GCC) or ISO 3166-1 alpha-2 country code
+	 * @param pi				Programme Identification (PI) value
+	 * @param frequency			Frequency value in KHz
+	 * @return					Shared Service
+	 * @throws LookupException
+	 */
+	public Service getFMService(String country, String pi, int frequency)
+			throws LookupException {
+		long key = ServiceRegistry.fmKey(country, pi, frequency);
+		if (key == ServiceRegistry.NO_KEY) {
+			return lookupFMService(country, pi, frequency);
+		}
+		Service s = mServiceRegistry.get(key);
+		if (s == null) {
+			s = mServiceRegistry.putIfAbsent(key, share(lookupFMService(country, pi, frequency)));
+		}
+		return s;
+	}
+
+	/**
+	 * Get the shared Service for the given DAB broadcast parameters, see
+	 * {@link #getFMService(String, String, int)}. Only Services with a
+	 * 4-character SId are shared.
+	 * 
+	 * @param gcc		Global Country Code (GCC)
+	 * @param eid		Ensemble Identifier (EId)
+	 * @param sid		Service Identifer (SId)
+	 * @param scids		Service Component Identifer within the Service (SCIdS)
+	 * @return			Shared Service
+	 * @throws LookupException
+	 */
+	public Service getDABService(String gcc, String eid, String sid,
+			String scids) throws LookupException {
+		long key = ServiceRegistry.dabKey(gcc, eid, sid, scids);
+		if (key == ServiceRegistry.NO_KEY) {
+			return lookupDABService(gcc, eid, sid, scids);
+		}
+		Service s = mServiceRegistry.get(key);
+		if (s == null) {
+			s = mServiceRegistry.putIfAbsent(key, share(lookupDABService(gcc, eid, sid, scids)));
+		}
+		return s;
+	}
+
+	/**
+	 * Get the shared Service for the given AM broadcast parameters, see
+	 * {@link #getFMService(String, String, int)}
+	 * 
+	 * @param type		Type of AM Service (either "drm" or "amss")
+	 * @param sid		SID value for AM Service
+	 * @return			Shared Service
+	 * @throws LookupException
+	 */
+	public Service getAMService(String type, String sid)
+			throws LookupException {
+		long key = ServiceRegistry.amKey(type, sid);
+		if (key == ServiceRegistry.NO_KEY) {
+			return lookupAMService(type, sid);
+		}
+		Service s = mServiceRegistry.get(key);
+		if (s == null) {
+			s = mServiceRegistry.putIfAbsent(key, share(lookupAMService(type, sid)));
+		}
+		return s;
+	}
+
+	/**
+	 * Get the shared Service for the given HD broadcast parameters, see
+	 * {@link #getFMService(String, String, int)}
+	 * 
+	 * @param tx		Transmitter identifier
+	 * @param cc		Country code
+	 * @return			Shared Service
+	 * @throws LookupException
+	 */
+	public Service getHDService(String tx, String cc) throws LookupException {
+		long key = ServiceRegistry.hdKey(cc, tx);
+		if (key == ServiceRegistry.NO_KEY) {
+			return lookupHDService(tx, cc);
+		}
+		Service s = mServiceRegistry.get(key);
+		if (s == null) {
+			s = mServiceRegistry.putIfAbsent(key, share(lookupHDService(tx, cc)));
+		}
+		return s;
+	}
+
+	/**
+	 * Get the shared Service for the given numeric FM broadcast parameters,
+	 * see {@link #getFMService(String, String, int)}
+	 * 
+	 * @param gcc				Global Country Code (GCC)
+	 * @param pi				Programme Identification (PI) value
+	 * @param frequency			Frequency value in KHz
+	 * @return					Shared Service
+	 * @throws LookupException
+	 */
+	public Service getFMService(int gcc, int pi, int frequency)
+			throws LookupException {
+		long key = ServiceRegistry.fmKey(gcc, pi, frequency);
+		if (key == ServiceRegistry.NO_KEY) {
+			return lookupFMService(gcc, pi, frequency);
+		}
+		Service s = mServiceRegistry.get(key);
+		if (s == null) {
+			s = mServiceRegistry.putIfAbsent(key, share(lookupFMService(gcc, pi, frequency)));
+		}
+		return s;
+	}
+
+	/**
+	 * Get the shared Service for the given numeric DAB broadcast parameters,
+	 * see {@link #getFMService(String, String, int)}. Only Services with a
+	 * 16-bit SId are shared.
+	 * 
+	 * @param gcc		Global Country Code (GCC)
+	 * @param eid		Ensemble Identifier (EId)
+	 * @param sid		Service Identifer (SId)
+	 * @param scids		Service Component Identifer within the Service (SCIdS)
+	 * @return			Shared Service
+	 * @throws LookupException
+	 */
+	public Service getDABService(int gcc, int eid, long sid,
+			int scids) throws LookupException {
+		long key = ServiceRegistry.dabKey(gcc, eid, sid, scids);
+		if (key == ServiceRegistry.NO_KEY) {
+			return lookupDABService(gcc, eid, sid, scids);
+		}
+		Service s = mServiceRegistry.get(key);
+		if (s == null) {
+			s = mServiceRegistry.putIfAbsent(key, share(lookupDABService(gcc, eid, sid, scids)));
+		}
+		return s;
+	}
+
+	/**
+	 * Get the shared Service for the given AM broadcast parameters with a
+	 * numeric SID, see {@link #getFMService(String, String, int)}
+	 * 
+	 * @param type		Type of AM Service (either "drm" or "amss")
+	 * @param sid		SID value for AM Service
+	 * @return			Shared Service
+	 * @throws LookupException
+	 */
+	public Service getAMService(String type, int sid)
+			throws LookupException {
+		long key = ServiceRegistry.amKey(type, sid);
+		if (key == ServiceRegistry.NO_KEY) {
+			return lookupAMService(type, sid);
+		}
+		Service s = mServiceRegistry.get(key);
+		if (s == null) {
+			s = mServiceRegistry.putIfAbsent(key, share(lookupAMService(type, sid)));
+		}
+		return s;
+	}
+
+	/**
+	 * Get the shared Service for the given numeric HD broadcast parameters,
+	 * see {@link #getFMService(String, String, int)}
+	 * 
+	 * @param cc		Country code
+	 * @param tx		Transmitter identifier
+	 * @return			Shared Service
+	 * @throws LookupException
+	 */
+	public Service getHDService(int cc, int tx) throws LookupException {
+		long key = ServiceRegistry.hdKey(cc, tx);
+		if (key == ServiceRegistry.NO_KEY) {
+			return lookupHDService(cc, tx);
+		}
+		Service s = mServiceRegistry.get(key);
+		if (s == null) {
+			s = mServiceRegistry.putIfAbsent(key, share(lookupHDService(cc, tx)));
+		}
+		return s;
+	}
+
+	/**
+	 * Mark a new Service as shared before it is registered, so that its
+	 * settings can no longer be changed by one of the callers holding it
+	 * 
+	 * @param s		Service
+	 * @return		Service
+	 */
+	private static Service share(Service s) {
+		s.mShared = true;
+		return s;
+	}
+
+	/**
+	 * Apply the lookup settings of this instance to a new Service
+	 * 
+	 * @param s		Service
+	 * @return		Service
+	 */
+	Service configure(Service s) {
+		s.mDNSHostname = mDNSHostname;
+		if (mResolver != null) {
+			s.setResolver(mResolver);
+			s.setDnssecPolicy(mResolverConfig.getDnssecPolicy());
+		} else {
+			s.setResolverConfig(mResolverConfig);
+		}
+		if (mResolutionCache != null)
+			s.setResolutionCache(mResolutionCache);
+		if (mExecutor != null)
+			s.setExecutor(mExecutor);
+		if (mLookupListener != null)
+			s.setLookupListener(mLookupListener);
+		s.setResolveAddresses(mResolveAddresses);
 		return s;
 	}
 }
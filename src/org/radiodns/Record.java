@@ -16,6 +16,11 @@
 
 package org.radiodns;
 
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.Collections;
+import java.util.List;
+
 import org.minidns.dnsname.DnsName;
 import org.minidns.record.Record.TYPE;
 import org.minidns.record.SRV;
@@ -30,6 +35,7 @@ import org.minidns.record.SRV;
 public class Record {
 
 	private SRV mRecord;
+	private volatile List<InetAddress> mAddresses = Collections.emptyList();
 
 	public Record(SRV record) {
 		mRecord = record;
@@ -82,6 +88,55 @@ public class Record {
 		return mRecord.target;
 	}
 
+	/**
+	 * Host name of the target, without the trailing dot
+	 * 
+	 * @return		Host name, empty if the service is not available
+	 */
+	public String getHost() {
+		String host = mRecord.target.toString();
+		return host.endsWith(".") ? host.substring(0, host.length() - 1) : host;
+	}
+
+	/**
+	 * Addresses of the target, if they were resolved along with the SRV
+	 * record, see {@link RadioDNS#setResolveAddresses(boolean)}
+	 * 
+	 * @return		IPv4 addresses followed by IPv6 addresses, or an empty list
+	 */
+	public List<InetAddress> getAddresses() {
+		return mAddresses;
+	}
+
+	void setAddresses(List<InetAddress> addresses) {
+		mAddresses = Collections.unmodifiableList(addresses);
+	}
+
+	/**
+	 * Socket address of the target, ready to connect to. It is resolved if
+	 * the addresses of the target were resolved along with the SRV record,
+	 * unresolved otherwise.
+	 * 
+	 * @return		Socket address
+	 */
+	public InetSocketAddress getSocketAddress() {
+		List<InetAddress> addresses = mAddresses;
+		if (!addresses.isEmpty()) {
+			return new InetSocketAddress(addresses.get(0), mRecord.port);
+		}
+		return InetSocketAddress.createUnresolved(getHost(), mRecord.port);
+	}
+
+	/**
+	 * Whether the record points at a target, i.e. is not the "." target
+	 * stating that the service is not available (RFC 2782)
+	 * 
+	 * @return		true if the target can be connected to
+	 */
+	public boolean isAvailable() {
+		return !getHost().isEmpty();
+	}
+
 	/**
 	 * @return
 	 */
@@ -0,0 +1,197 @@
+/*
+ * Copyright (c) 2012 Global Radio UK Limited
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.    
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+
+package org.radiodns;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Re-resolves hot entries of a {@link ResolutionCache} on a small background
+ * executor shortly before they expire, so requests keep being answered from
+ * the cache across TTL boundaries. The previous value keeps being served
+ * until the new one replaces it.
+ * 
+ * An entry is refreshed once it has been served at least the hot threshold
+ * number of times and the remaining part of its TTL has dropped below the
+ * refresh fraction. Refreshes are limited to a maximum rate; entries that
+ * miss out are simply resolved again on expiry.
+ * 
+ * <pre>
+ * cache.setRefreshAhead(new RefreshAhead(10, 0.2, 50));
+ * </pre>
+ */
+public class RefreshAhead {
+
+	public static final int DEFAULT_HOT_THRESHOLD = 10;
+	public static final double DEFAULT_REFRESH_FRACTION = 0.2;
+	public static final int DEFAULT_MAXIMUM_RATE = 50;
+	public static final int DEFAULT_THREADS = 2;
+
+	private static final int QUEUE_SIZE = 1024;
+
+	private final int mHotThreshold;
+	private final double mRefreshFraction;
+	private final int mMaximumRate;
+	private final ThreadPoolExecutor mExecutor;
+
+	/*
+	 * Fixed one second window rate limiter
+	 */
+	private long mWindowStart;
+	private int mWindowCount = 0;
+
+	private final AtomicLong mRefreshCount = new AtomicLong();
+	private final AtomicLong mRateLimitedCount = new AtomicLong();
+
+	public RefreshAhead() {
+		this(DEFAULT_HOT_THRESHOLD, DEFAULT_REFRESH_FRACTION, DEFAULT_MAXIMUM_RATE);
+	}
+
+	/**
+	 * Class constructor
+	 * 
+	 * @param hotThreshold		Number of times an entry must have been served
+	 * 							to be refreshed
+	 * @param refreshFraction	Fraction of the TTL, at the end of it, during
+	 * 							which a hot entry is refreshed, e.g. 0.2
+	 * @param maximumRate		Maximum number of refreshes started per second
+	 */
+	public RefreshAhead(int hotThreshold, double refreshFraction, int maximumRate) {
+		this(hotThreshold, refreshFraction, maximumRate, DEFAULT_THREADS);
+	}
+
+	/**
+	 * Class constructor
+	 * 
+	 * @param hotThreshold		Number of times an entry must have been served
+	 * 							to be refreshed
+	 * @param refreshFraction	Fraction of the TTL, at the end of it, during
+	 * 							which a hot entry is refreshed, e.g. 0.2
+	 * @param maximumRate		Maximum number of refreshes started per second
+	 * @param threads			Number of background threads
+	 */
+	public RefreshAhead(int hotThreshold, double refreshFraction, int maximumRate, int threads) {
+		if (hotThreshold < 0) {
+			throw new IllegalArgumentException("Hot threshold must not be negative");
+		}
+		if (refreshFraction <= 0 || refreshFraction >= 1) {
+			throw new IllegalArgumentException("Refresh fraction must be between 0 and 1");
+		}
+		if (maximumRate <= 0 || threads <= 0) {
+			throw new IllegalArgumentException("Rate and threads must be greater than zero");
+		}
+		mHotThreshold = hotThreshold;
+		mRefreshFraction = refreshFraction;
+		mMaximumRate = maximumRate;
+		mWindowStart = System.nanoTime();
+		mExecutor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+				new ArrayBlockingQueue<Runnable>(QUEUE_SIZE), LookupExecutor.newThreadFactory("radiodns-refresh"));
+		mExecutor.allowCoreThreadTimeOut(true);
+	}
+
+	public int getHotThreshold() {
+		return mHotThreshold;
+	}
+
+	public double getRefreshFraction() {
+		return mRefreshFraction;
+	}
+
+	public int getMaximumRate() {
+		return mMaximumRate;
+	}
+
+	/**
+	 * @return		Number of refreshes started
+	 */
+	public long getRefreshCount() {
+		return mRefreshCount.get();
+	}
+
+	/**
+	 * @return		Number of due refreshes skipped because of the rate limit
+	 */
+	public long getRateLimitedCount() {
+		return mRateLimitedCount.get();
+	}
+
+	/**
+	 * Stop the background threads
+	 */
+	public void shutdown() {
+		mExecutor.shutdownNow();
+	}
+
+	/**
+	 * Run the refresh task if the entry is hot, close to expiry and not
+	 * already being refreshed. The task must call
+	 * {@link CacheEntry#endRefresh()} if it fails to replace the entry.
+	 * 
+	 * @param entry		Entry just served
+	 * @param task		Task re-resolving the entry
+	 * @return			Whether the task was submitted
+	 */
+	boolean refreshIfDue(CacheEntry<?> entry, Runnable task) {
+		if (!isDue(entry, System.currentTimeMillis())) {
+			return false;
+		}
+		if (!entry.startRefresh()) {
+			return false;
+		}
+		if (!tryAcquire()) {
+			entry.endRefresh();
+			mRateLimitedCount.incrementAndGet();
+			return false;
+		}
+		try {
+			mExecutor.execute(task);
+		} catch (RejectedExecutionException e) {
+			entry.endRefresh();
+			return false;
+		}
+		mRefreshCount.incrementAndGet();
+		return true;
+	}
+
+	/**
+	 * Whether the entry is hot and within the refresh window, without
+	 * claiming it
+	 */
+	boolean isDue(CacheEntry<?> entry, long now) {
+		if (entry.getHits() < mHotThreshold || entry.isExpired(now)) {
+			return false;
+		}
+		long ttl = entry.getExpires() - entry.getCreated();
+		return now >= entry.getExpires() - (long) (ttl * mRefreshFraction);
+	}
+
+	private synchronized boolean tryAcquire() {
+		long now = System.nanoTime();
+		if (now - mWindowStart >= TimeUnit.SECONDS.toNanos(1)) {
+			mWindowStart = now;
+			mWindowCount = 0;
+		}
+		if (mWindowCount >= mMaximumRate) {
+			return false;
+		}
+		mWindowCount++;
+		return true;
+	}
+}
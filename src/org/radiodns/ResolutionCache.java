@@ -0,0 +1,371 @@
+/*
+ * Copyright (c) 2012 Global Radio UK Limited
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.    
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+
+package org.radiodns;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bounded, TTL-aware cache of RadioDNS resolution results. Authoritative FQDNs
+ * are keyed on the RadioDNS FQDN of the Service they were resolved for, and
+ * Applications on the SRV query name (application FQDN). Positive answers are
+ * kept for the minimum TTL of the DNS answer, negative answers for the
+ * configured negative TTL. When the size limit is reached the least recently
+ * used entry is evicted.
+ * 
+ * With a stale grace period set, positive answers are kept for that long
+ * after they expire and are served, marked stale, when resolving them again
+ * fails, e.g. during an upstream DNS outage.
+ * 
+ * The cache can be saved to a snapshot file and loaded again at startup, so a
+ * restarted process answers from the cache straight away, see
+ * {@link #save(File)} and {@link #load(File)}.
+ * 
+ * A single instance is intended to be shared by every Service created by a
+ * RadioDNS instance, see {@link RadioDNS#setResolutionCache(ResolutionCache)}.
+ */
+public class ResolutionCache {
+
+	public static final int DEFAULT_MAXIMUM_SIZE = 10000;
+	public static final long DEFAULT_NEGATIVE_TTL = 60;
+	public static final long DEFAULT_MAXIMUM_TTL = 86400;
+
+	private final int mMaximumSize;
+	private long mNegativeTtl = DEFAULT_NEGATIVE_TTL;
+	private long mMaximumTtl = DEFAULT_MAXIMUM_TTL;
+	private long mStaleGracePeriod = 0;
+
+	private final LinkedHashMap<String, CacheEntry<?>> mEntries;
+
+	private volatile RefreshAhead mRefreshAhead = null;
+
+	private long mHitCount = 0;
+	private long mMissCount = 0;
+	private long mEvictionCount = 0;
+	private long mStaleCount = 0;
+
+	public ResolutionCache() {
+		this(DEFAULT_MAXIMUM_SIZE);
+	}
+
+	/**
+	 * Class constructor
+	 * 
+	 * @param maximumSize	Maximum number of entries held before evicting
+	 */
+	public ResolutionCache(int maximumSize) {
+		if (maximumSize <= 0) {
+			throw new IllegalArgumentException("Maximum size must be greater than zero");
+		}
+		mMaximumSize = maximumSize;
+		mEntries = new LinkedHashMap<String, CacheEntry<?>>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, CacheEntry<?>> eldest) {
+				if (size() > mMaximumSize) {
+					mEvictionCount++;
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	/**
+	 * Set how long negative answers (NXDOMAIN or no records) are cached
+	 * 
+	 * @param seconds	Negative TTL in seconds
+	 */
+	public synchronized void setNegativeTtl(long seconds) {
+		if (seconds < 0) {
+			throw new IllegalArgumentException("Negative TTL must not be negative");
+		}
+		mNegativeTtl = seconds;
+	}
+
+	public synchronized long getNegativeTtl() {
+		return mNegativeTtl;
+	}
+
+	/**
+	 * Set the upper bound applied to the TTL of positive answers
+	 * 
+	 * @param seconds	Maximum TTL in seconds
+	 */
+	public synchronized void setMaximumTtl(long seconds) {
+		if (seconds < 0) {
+			throw new IllegalArgumentException("Maximum TTL must not be negative");
+		}
+		mMaximumTtl = seconds;
+	}
+
+	public synchronized long getMaximumTtl() {
+		return mMaximumTtl;
+	}
+
+	/**
+	 * Set how long positive answers are kept after they expire, to be served
+	 * stale when resolving them again fails
+	 * 
+	 * @param seconds	Grace period in seconds, or 0 to disable
+	 */
+	public synchronized void setStaleGracePeriod(long seconds) {
+		if (seconds < 0) {
+			throw new IllegalArgumentException("Stale grace period must not be negative");
+		}
+		mStaleGracePeriod = seconds;
+	}
+
+	public synchronized long getStaleGracePeriod() {
+		return mStaleGracePeriod;
+	}
+
+	/**
+	 * Supply the scheduler that re-resolves hot entries shortly before they
+	 * expire
+	 * 
+	 * @param refreshAhead		Refresh-ahead scheduler, or null to disable
+	 */
+	public void setRefreshAhead(RefreshAhead refreshAhead) {
+		mRefreshAhead = refreshAhead;
+	}
+
+	public RefreshAhead getRefreshAhead() {
+		return mRefreshAhead;
+	}
+
+	public int getMaximumSize() {
+		return mMaximumSize;
+	}
+
+	/**
+	 * Get the cached authoritative FQDN entry for a RadioDNS FQDN
+	 * 
+	 * @param radioDnsFqdn		RadioDNS FQDN
+	 * @return					Cache entry, or null if not cached or expired
+	 */
+	@SuppressWarnings("unchecked")
+	CacheEntry<String> getAuthoritativeFqdn(String radioDnsFqdn) {
+		return (CacheEntry<String>) get(radioDnsFqdn);
+	}
+
+	/**
+	 * Get the last positive authoritative FQDN entry for a RadioDNS FQDN,
+	 * expired but within the stale grace period
+	 * 
+	 * @param radioDnsFqdn		RadioDNS FQDN
+	 * @return					Cache entry, or null if none can be served stale
+	 */
+	@SuppressWarnings("unchecked")
+	CacheEntry<String> getStaleAuthoritativeFqdn(String radioDnsFqdn) {
+		return (CacheEntry<String>) getStale(radioDnsFqdn);
+	}
+
+	/**
+	 * Cache the authoritative FQDN for a RadioDNS FQDN
+	 * 
+	 * @param radioDnsFqdn		RadioDNS FQDN
+	 * @param authoritativeFqdn	Authoritative FQDN, or null for a negative answer
+	 * @param ttl				TTL of the DNS answer in seconds
+	 * @return					Entry holding the effective expiry time
+	 */
+	CacheEntry<String> putAuthoritativeFqdn(String radioDnsFqdn, String authoritativeFqdn, long ttl) {
+		return put(radioDnsFqdn, authoritativeFqdn, ttl);
+	}
+
+	/**
+	 * Get the cached Application entry for an application FQDN
+	 * 
+	 * @param applicationFqdn	SRV query name, e.g. _radiovis._tcp.rdns.musicradio.com
+	 * @return					Cache entry, or null if not cached or expired
+	 */
+	@SuppressWarnings("unchecked")
+	CacheEntry<Application> getApplication(String applicationFqdn) {
+		return (CacheEntry<Application>) get(applicationFqdn);
+	}
+
+	/**
+	 * Get the last positive Application entry for an application FQDN,
+	 * expired but within the stale grace period
+	 * 
+	 * @param applicationFqdn	SRV query name
+	 * @return					Cache entry, or null if none can be served stale
+	 */
+	@SuppressWarnings("unchecked")
+	CacheEntry<Application> getStaleApplication(String applicationFqdn) {
+		return (CacheEntry<Application>) getStale(applicationFqdn);
+	}
+
+	/**
+	 * Cache the Application resolved for an application FQDN
+	 * 
+	 * @param applicationFqdn	SRV query name
+	 * @param application		Application, or null for a negative answer
+	 * @param ttl				TTL of the DNS answer in seconds
+	 * @return					Entry holding the effective expiry time
+	 */
+	CacheEntry<Application> putApplication(String applicationFqdn, Application application, long ttl) {
+		return put(applicationFqdn, application, ttl);
+	}
+
+	private synchronized CacheEntry<?> get(String key) {
+		CacheEntry<?> entry = mEntries.get(key.toLowerCase());
+		if (entry == null) {
+			mMissCount++;
+			return null;
+		}
+		long now = System.currentTimeMillis();
+		if (entry.isExpired(now)) {
+			if (entry.isNegative() || entry.isExpired(now - mStaleGracePeriod * 1000)) {
+				mEntries.remove(key.toLowerCase());
+			}
+			mMissCount++;
+			return null;
+		}
+		mHitCount++;
+		entry.recordHit();
+		return entry;
+	}
+
+	private synchronized CacheEntry<?> getStale(String key) {
+		CacheEntry<?> entry = mEntries.get(key.toLowerCase());
+		if (entry == null || entry.isNegative()
+				|| entry.isExpired(System.currentTimeMillis() - mStaleGracePeriod * 1000)) {
+			return null;
+		}
+		mStaleCount++;
+		return entry;
+	}
+
+	private synchronized <T> CacheEntry<T> put(String key, T value, long ttl) {
+		long seconds = (value == null) ? mNegativeTtl : Math.min(Math.max(ttl, 0), mMaximumTtl);
+		CacheEntry<T> entry = new CacheEntry<T>(value, System.currentTimeMillis() + seconds * 1000);
+		if (seconds > 0) {
+			mEntries.put(key.toLowerCase(), entry);
+		}
+		return entry;
+	}
+
+	/**
+	 * Remove all expired entries, except positive ones still within the stale
+	 * grace period
+	 */
+	public synchronized void purgeExpired() {
+		long now = System.currentTimeMillis();
+		Iterator<CacheEntry<?>> it = mEntries.values().iterator();
+		while (it.hasNext()) {
+			CacheEntry<?> entry = it.next();
+			if (entry.isExpired(entry.isNegative() ? now : now - mStaleGracePeriod * 1000)) {
+				it.remove();
+			}
+		}
+	}
+
+	/**
+	 * Write the entries, with their expiry times, to a binary snapshot file.
+	 * The file is replaced atomically where the file system allows it.
+	 * 
+	 * @param file		Snapshot file
+	 * @throws IOException
+	 */
+	public void save(File file) throws IOException {
+		List<Map.Entry<String, CacheEntry<?>>> entries;
+		synchronized (this) {
+			entries = new ArrayList<Map.Entry<String, CacheEntry<?>>>(mEntries.size());
+			for (Map.Entry<String, CacheEntry<?>> entry : mEntries.entrySet()) {
+				entries.add(new SimpleImmutableEntry<String, CacheEntry<?>>(entry));
+			}
+		}
+		CacheSnapshot.save(entries, file);
+	}
+
+	/**
+	 * Load the entries of a snapshot file written by {@link #save(File)}.
+	 * Entries already expired are dropped, except positive ones still within
+	 * the stale grace period; the others are resolved again once they expire.
+	 * Entries already in the cache are kept.
+	 * 
+	 * @param file		Snapshot file
+	 * @return			Number of entries loaded, 0 if the file does not exist
+	 * @throws IOException	if the file cannot be read or is not a valid
+	 * 						snapshot
+	 */
+	public int load(File file) throws IOException {
+		if (!file.exists()) {
+			return 0;
+		}
+		long now = System.currentTimeMillis();
+		List<Map.Entry<String, CacheEntry<?>>> entries =
+				CacheSnapshot.load(file, now - getStaleGracePeriod() * 1000);
+		int loaded = 0;
+		synchronized (this) {
+			for (Map.Entry<String, CacheEntry<?>> entry : entries) {
+				CacheEntry<?> cacheEntry = entry.getValue();
+				String key = entry.getKey().toLowerCase();
+				if ((cacheEntry.isNegative() && cacheEntry.isExpired(now)) || mEntries.containsKey(key)) {
+					continue;
+				}
+				mEntries.put(key, cacheEntry);
+				loaded++;
+			}
+		}
+		return loaded;
+	}
+
+	/**
+	 * Remove all entries
+	 */
+	public synchronized void invalidateAll() {
+		mEntries.clear();
+	}
+
+	public synchronized int size() {
+		return mEntries.size();
+	}
+
+	public synchronized long getHitCount() {
+		return mHitCount;
+	}
+
+	public synchronized long getMissCount() {
+		return mMissCount;
+	}
+
+	public synchronized long getEvictionCount() {
+		return mEvictionCount;
+	}
+
+	/**
+	 * @return		Number of expired answers served stale after a failure
+	 */
+	public synchronized long getStaleCount() {
+		return mStaleCount;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return String.format("ResolutionCache[size=%d/%d, hits=%d, misses=%d, evictions=%d, stale=%d]",
+				mEntries.size(), mMaximumSize, mHitCount, mMissCount, mEvictionCount, mStaleCount);
+	}
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright (c) 2012 Global Radio UK Limited
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.    
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+
+package org.radiodns;
+
+import java.io.IOException;
+
+import org.minidns.record.Data;
+
+/**
+ * Performs the DNS queries of RadioDNS lookups. {@link MiniDnsResolver} is
+ * used unless another implementation is supplied, e.g. an
+ * {@link InMemoryResolver} for offline tests and benchmarks.
+ * 
+ * Implementations must be thread-safe.
+ */
+public interface Resolver {
+
+	/**
+	 * Query records of the given type
+	 * 
+	 * @param name		Name to query
+	 * @param type		Record data class, e.g. SRV.class
+	 * @return			Lookup result
+	 * @throws IOException	if the query could not be answered
+	 */
+	<D extends Data> LookupResult<D> resolve(String name, Class<D> type) throws IOException;
+}
@@ -0,0 +1,301 @@
+/*
+ * Copyright (c) 2012 Global Radio UK Limited
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.    
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+
+package org.radiodns;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable configuration of the DNS servers queried by RadioDNS lookups.
+ * Upstreams are tried in order: an upstream that cannot be reached after the
+ * configured number of retries, or that answers SERVFAIL or REFUSED, fails
+ * over to the next one. With no upstreams the system DNS servers are used,
+ * with the same timeout and retries.
+ * 
+ * Each upstream has a circuit breaker: after the configured number of
+ * consecutive failures it is skipped for the open time, so lookups fail fast
+ * while it is down instead of waiting for the timeout on every query.
+ * 
+ * The number of queries in flight to each upstream can be limited, so that
+ * lookups running on many threads, e.g. one virtual thread per lookup, wait
+ * for their turn instead of flooding the upstream.
+ * 
+ * With a DNSSEC policy other than {@link DnssecPolicy#OFF}, the system DNS
+ * servers are queried through a validating client, which caches the DNSKEY
+ * and DS records of the chain of trust across lookups. Configured upstreams
+ * are asked for DNSSEC records, and their Authenticated Data flag is trusted,
+ * so they should be validating resolvers on a trusted path.
+ * 
+ * Resolver clients are pooled per configuration, so every Service using an
+ * equal ResolverConfig shares one client and its DNS cache.
+ */
+public final class ResolverConfig {
+
+	public static final int DEFAULT_PORT = 53;
+	public static final int DEFAULT_TIMEOUT = 5000;
+	public static final int DEFAULT_RETRIES = 1;
+	public static final int DEFAULT_CACHE_SIZE = 1024;
+	public static final int DEFAULT_FAILURE_THRESHOLD = 5;
+	public static final int DEFAULT_OPEN_TIME = 30000;
+	public static final int UNLIMITED = 0;
+
+	/**
+	 * Configuration using the system DNS servers
+	 */
+	public static final ResolverConfig SYSTEM = new ResolverConfig();
+
+	private final List<String> mUpstreams;
+	private final int mTimeout;
+	private final int mRetries;
+	private final int mCacheSize;
+	private final int mFailureThreshold;
+	private final int mOpenTime;
+	private final int mMaxConcurrency;
+	private final DnssecPolicy mDnssecPolicy;
+
+	/**
+	 * Class constructor
+	 * 
+	 * @param upstreams		DNS servers to query, as hostname or address with
+	 * 						an optional ":port" suffix
+	 */
+	public ResolverConfig(String... upstreams) {
+		this(Arrays.asList(upstreams), DEFAULT_TIMEOUT, DEFAULT_RETRIES, DEFAULT_CACHE_SIZE);
+	}
+
+	/**
+	 * Class constructor
+	 * 
+	 * @param upstreams		DNS servers to query, as hostname or address with
+	 * 						an optional ":port" suffix
+	 * @param timeout		Socket timeout per query in milliseconds
+	 * @param retries		Number of times a query is retried on the same
+	 * 						upstream before failing over
+	 * @param cacheSize		Number of DNS messages cached by the client
+	 */
+	public ResolverConfig(List<String> upstreams, int timeout, int retries, int cacheSize) {
+		this(upstreams, timeout, retries, cacheSize, DEFAULT_FAILURE_THRESHOLD, DEFAULT_OPEN_TIME);
+	}
+
+	/**
+	 * Class constructor
+	 * 
+	 * @param upstreams			DNS servers to query, as hostname or address
+	 * 							with an optional ":port" suffix
+	 * @param timeout			Socket timeout per query in milliseconds
+	 * @param retries			Number of times a query is retried on the same
+	 * 							upstream before failing over
+	 * @param cacheSize			Number of DNS messages cached by the client
+	 * @param failureThreshold	Number of consecutive failures opening the
+	 * 							circuit breaker of an upstream, or 0 to disable
+	 * @param openTime			Time in milliseconds an open upstream is skipped
+	 * 							before a trial query is let through
+	 */
+	public ResolverConfig(List<String> upstreams, int timeout, int retries, int cacheSize,
+			int failureThreshold, int openTime) {
+		this(upstreams, timeout, retries, cacheSize, failureThreshold, openTime, UNLIMITED, DnssecPolicy.OFF);
+	}
+
+	private ResolverConfig(List<String> upstreams, int timeout, int retries, int cacheSize,
+			int failureThreshold, int openTime, int maxConcurrency, DnssecPolicy dnssecPolicy) {
+		if (timeout <= 0) {
+			throw new IllegalArgumentException("Timeout must be greater than zero");
+		}
+		if (retries < 0) {
+			throw new IllegalArgumentException("Retries must not be negative");
+		}
+		if (cacheSize < 0) {
+			throw new IllegalArgumentException("Cache size must not be negative");
+		}
+		if (failureThreshold < 0) {
+			throw new IllegalArgumentException("Failure threshold must not be negative");
+		}
+		if (openTime <= 0) {
+			throw new IllegalArgumentException("Open time must be greater than zero");
+		}
+		if (maxConcurrency < 0) {
+			throw new IllegalArgumentException("Maximum concurrency must not be negative");
+		}
+		if (dnssecPolicy == null) {
+			throw new IllegalArgumentException("DNSSEC policy is null");
+		}
+		List<String> normalized = new ArrayList<String>();
+		for (String upstream : upstreams) {
+			if (upstream == null || upstream.trim().isEmpty()) {
+				throw new IllegalArgumentException("Upstream is null or empty");
+			}
+			upstream = upstream.trim().toLowerCase();
+			int port = getPort(upstream);
+			if (port <= 0 || port > 65535) {
+				throw new IllegalArgumentException("Invalid upstream port: " + upstream);
+			}
+			normalized.add(upstream);
+		}
+		mUpstreams = Collections.unmodifiableList(normalized);
+		mTimeout = timeout;
+		mRetries = retries;
+		mCacheSize = cacheSize;
+		mFailureThreshold = failureThreshold;
+		mOpenTime = openTime;
+		mMaxConcurrency = maxConcurrency;
+		mDnssecPolicy = dnssecPolicy;
+	}
+
+	public List<String> getUpstreams() {
+		return mUpstreams;
+	}
+
+	public int getTimeout() {
+		return mTimeout;
+	}
+
+	public int getRetries() {
+		return mRetries;
+	}
+
+	public int getCacheSize() {
+		return mCacheSize;
+	}
+
+	public int getFailureThreshold() {
+		return mFailureThreshold;
+	}
+
+	public int getOpenTime() {
+		return mOpenTime;
+	}
+
+	/**
+	 * @return		Maximum number of queries in flight per upstream, or
+	 * 				{@link #UNLIMITED}
+	 */
+	public int getMaxConcurrency() {
+		return mMaxConcurrency;
+	}
+
+	public DnssecPolicy getDnssecPolicy() {
+		return mDnssecPolicy;
+	}
+
+	public boolean isSystem() {
+		return mUpstreams.isEmpty();
+	}
+
+	public ResolverConfig withTimeout(int timeout) {
+		return new ResolverConfig(mUpstreams, timeout, mRetries, mCacheSize, mFailureThreshold, mOpenTime,
+				mMaxConcurrency, mDnssecPolicy);
+	}
+
+	public ResolverConfig withRetries(int retries) {
+		return new ResolverConfig(mUpstreams, mTimeout, retries, mCacheSize, mFailureThreshold, mOpenTime,
+				mMaxConcurrency, mDnssecPolicy);
+	}
+
+	public ResolverConfig withCacheSize(int cacheSize) {
+		return new ResolverConfig(mUpstreams, mTimeout, mRetries, cacheSize, mFailureThreshold, mOpenTime,
+				mMaxConcurrency, mDnssecPolicy);
+	}
+
+	public ResolverConfig withCircuitBreaker(int failureThreshold, int openTime) {
+		return new ResolverConfig(mUpstreams, mTimeout, mRetries, mCacheSize, failureThreshold, openTime,
+				mMaxConcurrency, mDnssecPolicy);
+	}
+
+	public ResolverConfig withMaxConcurrency(int maxConcurrency) {
+		return new ResolverConfig(mUpstreams, mTimeout, mRetries, mCacheSize, mFailureThreshold, mOpenTime,
+				maxConcurrency, mDnssecPolicy);
+	}
+
+	public ResolverConfig withDnssecPolicy(DnssecPolicy dnssecPolicy) {
+		return new ResolverConfig(mUpstreams, mTimeout, mRetries, mCacheSize, mFailureThreshold, mOpenTime,
+				mMaxConcurrency, dnssecPolicy);
+	}
+
+	/**
+	 * Get the host part of an upstream, e.g. "8.8.8.8" for "8.8.8.8:53"
+	 */
+	static String getHost(String upstream) {
+		if (upstream.startsWith("[") && upstream.contains("]")) {
+			return upstream.substring(1, upstream.indexOf(']'));
+		}
+		int colon = upstream.indexOf(':');
+		if (colon > 0 && upstream.lastIndexOf(':') == colon) {
+			return upstream.substring(0, colon);
+		}
+		return upstream;
+	}
+
+	/**
+	 * Get the port part of an upstream, or the default DNS port if none
+	 */
+	static int getPort(String upstream) {
+		String port = null;
+		if (upstream.startsWith("[") && upstream.contains("]:")) {
+			port = upstream.substring(upstream.indexOf("]:") + 2);
+		} else {
+			int colon = upstream.indexOf(':');
+			if (colon > 0 && upstream.lastIndexOf(':') == colon) {
+				port = upstream.substring(colon + 1);
+			}
+		}
+		if (port == null) {
+			return DEFAULT_PORT;
+		}
+		try {
+			return Integer.parseInt(port);
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) {
+			return true;
+		}
+		if (!(o instanceof ResolverConfig)) {
+			return false;
+		}
+		ResolverConfig other = (ResolverConfig) o;
+		return mUpstreams.equals(other.mUpstreams) && mTimeout == other.mTimeout
+				&& mRetries == other.mRetries && mCacheSize == other.mCacheSize
+				&& mFailureThreshold == other.mFailureThreshold && mOpenTime == other.mOpenTime
+				&& mMaxConcurrency == other.mMaxConcurrency && mDnssecPolicy == other.mDnssecPolicy;
+	}
+
+	@Override
+	public int hashCode() {
+		int result = mUpstreams.hashCode();
+		result = 31 * result + mTimeout;
+		result = 31 * result + mRetries;
+		result = 31 * result + mCacheSize;
+		result = 31 * result + mFailureThreshold;
+		result = 31 * result + mOpenTime;
+		result = 31 * result + mMaxConcurrency;
+		result = 31 * result + mDnssecPolicy.hashCode();
+		return result;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("ResolverConfig[upstreams=%s, timeout=%d, retries=%d, cacheSize=%d, failureThreshold=%d, openTime=%d, maxConcurrency=%d, dnssecPolicy=%s]",
+				isSystem() ? "system" : mUpstreams, mTimeout, mRetries, mCacheSize, mFailureThreshold, mOpenTime,
+				mMaxConcurrency, mDnssecPolicy);
+	}
+}
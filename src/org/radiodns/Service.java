@@ -16,16 +16,36 @@
 
 package org.radiodns;
 
-import org.minidns.hla.DnssecResolverApi;
-import org.minidns.hla.ResolverResult;
+import org.minidns.dnsmessage.DnsMessage.RESPONSE_CODE;
+import org.minidns.dnssec.DnssecValidationFailedException;
+import org.minidns.record.A;
+import org.minidns.record.AAAA;
 import org.minidns.record.CNAME;
+import org.minidns.record.InternetAddressRR;
 import org.minidns.record.SRV;
+import org.minidns.util.MultipleIoException;
+import org.radiodns.LookupListener.CacheEvent;
+import org.radiodns.LookupListener.Outcome;
+import org.radiodns.LookupListener.Phase;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.InetAddress;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BiConsumer;
 
 /**
  * Represents a Radio Service from which RadioDNS Applications can be resolved
@@ -36,6 +56,25 @@ import java.util.Set;
 public abstract class Service {
 
 	String mDNSHostname = null;
+	Resolver mResolver = null;
+	boolean mResolverSupplied = false;
+	ResolutionCache mResolutionCache = null;
+	Executor mExecutor = null;
+	LookupListener mLookupListener = null;
+	boolean mResolveAddresses = false;
+	DnssecPolicy mDnssecPolicy = DnssecPolicy.OFF;
+
+	/*
+	 * Set once the Service is shared by RadioDNS, after which its lookup
+	 * settings can no longer be changed
+	 */
+	volatile boolean mShared = false;
+
+	/*
+	 * Authoritative FQDN memoized for this Service until its TTL expires
+	 */
+	private volatile CacheEntry<String> mAuthoritativeFqdn = null;
+	private volatile boolean mAuthoritativeFqdnStale = false;
 	
 	/**
 	 * Get RadioDNS FQDN
@@ -45,12 +84,73 @@ public abstract class Service {
 	public abstract String getRadioDNSFqdn();
 
 	/**
-	 * Get Authoritative FQDN
+	 * Get the labels of the RadioDNS FQDN in reverse order, without the
+	 * radiodns.org suffix, e.g. "fm/ce1/c479/09580" for
+	 * "09580.c479.ce1.fm.radiodns.org". This is the path of the Service in
+	 * RadioVIS topics and SPI document URLs.
+	 * 
+	 * @return		Service identifier path, or null if the Service has no
+	 * 				RadioDNS FQDN, i.e. is an {@link IPService}
+	 */
+	public String getServiceIdentifierPath() {
+		String fqdn = getRadioDNSFqdn();
+		if (fqdn == null) {
+			return null;
+		}
+		fqdn = fqdn.toLowerCase();
+		if (fqdn.endsWith(".")) {
+			fqdn = fqdn.substring(0, fqdn.length() - 1);
+		}
+		if (fqdn.endsWith(Fqdn.RADIODNS_SUFFIX)) {
+			fqdn = fqdn.substring(0, fqdn.length() - Fqdn.RADIODNS_SUFFIX.length());
+		}
+		String[] labels = fqdn.split("\\.");
+		StringBuilder sb = new StringBuilder(fqdn.length());
+		for (int i = labels.length - 1; i >= 0; i--) {
+			sb.append(labels[i]);
+			if (i > 0) {
+				sb.append('/');
+			}
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Get Authoritative FQDN. The result of the CNAME lookup is kept until
+	 * its TTL expires.
 	 * 
 	 * @return		Authoritative FQDN
 	 */
 	public String getAuthoritativeFqdn() {
-		return resolveAuthoritativeFQDN();
+		CacheEntry<String> entry = mAuthoritativeFqdn;
+		if (entry != null && !entry.isExpired(System.currentTimeMillis())) {
+			entry.recordHit();
+			refreshAhead(entry, getRadioDNSFqdn());
+			return entry.getValue();
+		}
+		return refreshAuthoritativeFqdn();
+	}
+
+	/**
+	 * Whether the Authoritative FQDN last resolved is an expired answer served
+	 * because resolving it again failed, see
+	 * {@link ResolutionCache#setStaleGracePeriod(long)}
+	 * 
+	 * @return		true if the Authoritative FQDN may be out of date
+	 */
+	public boolean isAuthoritativeFqdnStale() {
+		return mAuthoritativeFqdnStale;
+	}
+
+	/**
+	 * Discard the memoized Authoritative FQDN and resolve it again
+	 * 
+	 * @return		Authoritative FQDN
+	 */
+	public String refreshAuthoritativeFqdn() {
+		CacheEntry<String> entry = lookupAuthoritativeFqdn();
+		mAuthoritativeFqdn = entry;
+		return (entry != null) ? entry.getValue() : null;
 	}
 
 	/**
@@ -70,8 +170,109 @@ public abstract class Service {
 	 */
 	public Map<String, Application> getApplications() throws LookupException {
 		Map<String, Application> applications = new HashMap<String, Application>();
+		String authoritativeFqdn = getAuthoritativeFqdn();
 		for (String applicationId : RadioDNS.KNOWN_APPLICATIONS) {
-			applications.put(applicationId, resolveApplication(applicationId));
+			applications.put(applicationId, resolveApplication(applicationId, null, authoritativeFqdn));
+		}
+		return applications;
+	}
+
+	/**
+	 * Get all known RadioDNS Applications, resolving them concurrently on the
+	 * Executor supplied to this Service or, if none was supplied, on the
+	 * library-managed Executor
+	 * 
+	 * @param timeout	Overall deadline for the lookup
+	 * @param unit		Unit of the timeout
+	 * @return			Map of RadioDNS Applications, without the entries of
+	 * 					Applications not resolved before the deadline
+	 * @throws LookupException
+	 */
+	public Map<String, Application> getApplications(long timeout, TimeUnit unit) throws LookupException {
+		return getApplications(getExecutor(), timeout, unit);
+	}
+
+	/**
+	 * Get all known RadioDNS Applications, issuing the SRV lookups for every
+	 * Application at once on the given Executor. Lookups still outstanding at
+	 * the deadline are cancelled and left out of the returned Map.
+	 * 
+	 * The deadline covers the CNAME lookup of the Authoritative FQDN too,
+	 * which runs on the Executor unless a fresh answer is already held. If it
+	 * does not complete in time the returned Map is empty; the lookup is left
+	 * to finish in the background so a later call can use its answer.
+	 * 
+	 * @param executor	Executor on which to run the lookups
+	 * @param timeout	Overall deadline for the lookup
+	 * @param unit		Unit of the timeout
+	 * @return			Map of RadioDNS Applications, without the entries of
+	 * 					Applications not resolved before the deadline
+	 * @throws LookupException
+	 */
+	public Map<String, Application> getApplications(Executor executor, long timeout, TimeUnit unit) throws LookupException {
+		if (executor == null) {
+			throw new IllegalArgumentException("Executor is null");
+		}
+		long deadline = System.nanoTime() + unit.toNanos(timeout);
+
+		Map<String, Application> applications = new HashMap<String, Application>();
+		ExecutorCompletionService<Application> completionService = new ExecutorCompletionService<Application>(executor);
+		List<Future<Application>> futures = new ArrayList<Future<Application>>();
+		Map<Future<Application>, String> applicationIds = new HashMap<Future<Application>, String>();
+		try {
+			final String authoritativeFqdn;
+			CacheEntry<String> entry = mAuthoritativeFqdn;
+			if (entry != null && !entry.isExpired(System.currentTimeMillis())) {
+				authoritativeFqdn = getAuthoritativeFqdn();
+			} else {
+				FutureTask<String> task = new FutureTask<String>(new Callable<String>() {
+					@Override
+					public String call() {
+						return getAuthoritativeFqdn();
+					}
+				});
+				executor.execute(task);
+				try {
+					authoritativeFqdn = task.get(Math.max(deadline - System.nanoTime(), 0), TimeUnit.NANOSECONDS);
+				} catch (TimeoutException e) {
+					return applications;
+				}
+			}
+			if (authoritativeFqdn == null) {
+				for (String applicationId : RadioDNS.KNOWN_APPLICATIONS) {
+					applications.put(applicationId, null);
+				}
+				return applications;
+			}
+
+			for (final String applicationId : RadioDNS.KNOWN_APPLICATIONS) {
+				Future<Application> future = completionService.submit(new Callable<Application>() {
+					@Override
+					public Application call() {
+						return resolveApplication(applicationId, null, authoritativeFqdn);
+					}
+				});
+				futures.add(future);
+				applicationIds.put(future, applicationId);
+			}
+
+			for (int i = 0; i < futures.size(); i++) {
+				long remaining = deadline - System.nanoTime();
+				Future<Application> future = completionService.poll(Math.max(remaining, 0), TimeUnit.NANOSECONDS);
+				if (future == null) {
+					break;
+				}
+				applications.put(applicationIds.get(future), future.get());
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new LookupException("Interrupted while resolving applications", e);
+		} catch (ExecutionException e) {
+			throw new LookupException("Failed to resolve applications", e.getCause());
+		} finally {
+			for (Future<Application> future : futures) {
+				future.cancel(true);
+			}
 		}
 		return applications;
 	}
@@ -82,9 +283,269 @@ public abstract class Service {
 	 * @param hostname	DNS Server to query
 	 */
 	public void setDNSHostname(String hostname) {
+		checkConfigurable();
 		mDNSHostname = hostname;
+		setResolverConfig(((hostname != null) ? new ResolverConfig(hostname) : ResolverConfig.SYSTEM)
+				.withDnssecPolicy(mDnssecPolicy));
+	}
+
+	/**
+	 * Supply the configuration of the DNS servers to query when performing
+	 * lookups. The resolver client is shared with every other Service using
+	 * an equal configuration.
+	 * 
+	 * @param config	Resolver configuration
+	 */
+	public void setResolverConfig(ResolverConfig config) {
+		checkConfigurable();
+		mResolver = MiniDnsResolver.forConfig(config);
+		mResolverSupplied = false;
+		mDnssecPolicy = config.getDnssecPolicy();
+	}
+
+	/**
+	 * Set the DNSSEC validation policy. With {@link DnssecPolicy#REQUIRED},
+	 * answers that were not validated are rejected. A Resolver supplied with
+	 * {@link #setResolver(Resolver)} is kept as it is, so it must report
+	 * validated answers itself.
+	 * 
+	 * @param policy	DNSSEC validation policy
+	 */
+	public void setDnssecPolicy(DnssecPolicy policy) {
+		checkConfigurable();
+		if (policy == null) {
+			throw new IllegalArgumentException("DNSSEC policy is null");
+		}
+		Resolver resolver = getResolver();
+		if (!mResolverSupplied && resolver instanceof MiniDnsResolver) {
+			mResolver = MiniDnsResolver.forConfig(((MiniDnsResolver) resolver).getConfig().withDnssecPolicy(policy));
+		}
+		mDnssecPolicy = policy;
+	}
+
+	public DnssecPolicy getDnssecPolicy() {
+		return mDnssecPolicy;
+	}
+
+	/**
+	 * Supply the Resolver performing the DNS queries of this Service, e.g. an
+	 * InMemoryResolver for tests
+	 * 
+	 * @param resolver	Resolver, or null to use the system DNS servers
+	 */
+	public void setResolver(Resolver resolver) {
+		checkConfigurable();
+		mResolver = resolver;
+		mResolverSupplied = (resolver != null);
+	}
+
+	Resolver getResolver() {
+		return (mResolver != null) ? mResolver : MiniDnsResolver.getDefault();
+	}
+
+	/**
+	 * Supply the listener notified of every DNS query and cache read
+	 * 
+	 * @param listener	Listener, or null to use {@link LookupListener#DEFAULT}
+	 */
+	public void setLookupListener(LookupListener listener) {
+		checkConfigurable();
+		mLookupListener = listener;
+	}
+
+	LookupListener getLookupListener() {
+		return (mLookupListener != null) ? mLookupListener : LookupListener.DEFAULT;
+	}
+
+	/**
+	 * Resolve the A and AAAA addresses of the SRV targets of every Application
+	 * along with it, see {@link Record#getAddresses()}. Addresses given in the
+	 * additional section of the SRV answer are used as they are; the others
+	 * are resolved concurrently.
+	 * 
+	 * @param resolveAddresses	true to resolve the addresses of SRV targets
+	 */
+	public void setResolveAddresses(boolean resolveAddresses) {
+		checkConfigurable();
+		mResolveAddresses = resolveAddresses;
+	}
+
+	/**
+	 * Supply a cache in which resolved authoritative FQDNs and Applications
+	 * are kept, typically shared with other Services
+	 * 
+	 * @param cache		Resolution cache, or null to disable caching
+	 */
+	public void setResolutionCache(ResolutionCache cache) {
+		checkConfigurable();
+		mResolutionCache = cache;
 	}
 	
+	/**
+	 * Resolve Authoritative FQDN for the service without blocking the caller
+	 * 
+	 * @param executor	Executor on which to run the lookup, or null to use the
+	 * 					Executor of this Service
+	 * @return			Future completed with the Authoritative FQDN String
+	 */
+	public CompletableFuture<String> resolveAuthoritativeFQDNAsync(Executor executor) {
+		return AsyncLookup.supply(new Callable<String>() {
+			@Override
+			public String call() {
+				return resolveAuthoritativeFQDN();
+			}
+		}, (executor != null) ? executor : getExecutor());
+	}
+
+	/**
+	 * Resolve Authoritative FQDN for the service without blocking the caller.
+	 * The returned future completes with a TimeoutException, and the lookup is
+	 * interrupted, if it does not complete within the timeout.
+	 * 
+	 * @param executor	Executor on which to run the lookup, or null to use the
+	 * 					Executor of this Service
+	 * @param timeout	Timeout for the lookup
+	 * @param unit		Unit of the timeout
+	 * @return			Future completed with the Authoritative FQDN String
+	 */
+	public CompletableFuture<String> resolveAuthoritativeFQDNAsync(Executor executor, long timeout, TimeUnit unit) {
+		return AsyncLookup.withTimeout(resolveAuthoritativeFQDNAsync(executor), timeout, unit);
+	}
+
+	/**
+	 * Get given RadioDNS Application without blocking the caller
+	 * 
+	 * @param applicationId		RadioDNS Application Identifier
+	 * @param executor			Executor on which to run the lookup, or null to
+	 * 							use the Executor of this Service
+	 * @return					Future completed with the RadioDNS Application
+	 */
+	public CompletableFuture<Application> getApplicationAsync(final String applicationId, Executor executor) {
+		return AsyncLookup.supply(new Callable<Application>() {
+			@Override
+			public Application call() {
+				return resolveApplication(applicationId);
+			}
+		}, (executor != null) ? executor : getExecutor());
+	}
+
+	/**
+	 * Get given RadioDNS Application without blocking the caller. The
+	 * returned future completes with a TimeoutException, and the lookup is
+	 * interrupted, if it does not complete within the timeout.
+	 * 
+	 * @param applicationId		RadioDNS Application Identifier
+	 * @param executor			Executor on which to run the lookup, or null to
+	 * 							use the Executor of this Service
+	 * @param timeout			Timeout for the lookup
+	 * @param unit				Unit of the timeout
+	 * @return					Future completed with the RadioDNS Application
+	 */
+	public CompletableFuture<Application> getApplicationAsync(String applicationId, Executor executor,
+			long timeout, TimeUnit unit) {
+		return AsyncLookup.withTimeout(getApplicationAsync(applicationId, executor), timeout, unit);
+	}
+
+	/**
+	 * Get all known RadioDNS Applications without blocking the caller. The
+	 * authoritative FQDN is resolved first, then the SRV lookups of all
+	 * Applications are issued at once.
+	 * 
+	 * @param executor	Executor on which to run the lookups, or null to use the
+	 * 					Executor of this Service
+	 * @return			Future completed with the Map of RadioDNS Applications
+	 */
+	public CompletableFuture<Map<String, Application>> getApplicationsAsync(Executor executor) {
+		final Executor lookupExecutor = (executor != null) ? executor : getExecutor();
+		final CompletableFuture<Map<String, Application>> result = new CompletableFuture<Map<String, Application>>();
+		final CompletableFuture<String> authoritativeFqdnFuture = AsyncLookup.supply(new Callable<String>() {
+			@Override
+			public String call() {
+				return getAuthoritativeFqdn();
+			}
+		}, lookupExecutor);
+		AsyncLookup.cancelOnFailure(result, authoritativeFqdnFuture);
+
+		authoritativeFqdnFuture.whenComplete(new BiConsumer<String, Throwable>() {
+			@Override
+			public void accept(final String authoritativeFqdn, Throwable t) {
+				if (t != null) {
+					result.completeExceptionally(t);
+					return;
+				}
+				final String[] applicationIds = RadioDNS.KNOWN_APPLICATIONS;
+				@SuppressWarnings({ "unchecked", "rawtypes" })
+				final CompletableFuture<Application>[] futures = new CompletableFuture[applicationIds.length];
+				for (int i = 0; i < applicationIds.length; i++) {
+					final String applicationId = applicationIds[i];
+					futures[i] = AsyncLookup.supply(new Callable<Application>() {
+						@Override
+						public Application call() {
+							return resolveApplication(applicationId, null, authoritativeFqdn);
+						}
+					}, lookupExecutor);
+				}
+				AsyncLookup.cancelOnFailure(result, futures);
+
+				CompletableFuture.allOf(futures).whenComplete(new BiConsumer<Void, Throwable>() {
+					@Override
+					public void accept(Void v, Throwable t) {
+						if (t != null) {
+							result.completeExceptionally(t);
+							return;
+						}
+						Map<String, Application> applications = new HashMap<String, Application>();
+						for (int i = 0; i < applicationIds.length; i++) {
+							applications.put(applicationIds[i], futures[i].join());
+						}
+						result.complete(applications);
+					}
+				});
+			}
+		});
+		return result;
+	}
+
+	/**
+	 * Get all known RadioDNS Applications without blocking the caller. The
+	 * returned future completes with a TimeoutException, and all outstanding
+	 * lookups are interrupted, if it does not complete within the timeout.
+	 * 
+	 * @param executor	Executor on which to run the lookups, or null to use the
+	 * 					Executor of this Service
+	 * @param timeout	Timeout for all lookups
+	 * @param unit		Unit of the timeout
+	 * @return			Future completed with the Map of RadioDNS Applications
+	 */
+	public CompletableFuture<Map<String, Application>> getApplicationsAsync(Executor executor, long timeout,
+			TimeUnit unit) {
+		return AsyncLookup.withTimeout(getApplicationsAsync(executor), timeout, unit);
+	}
+
+	/**
+	 * Supply the Executor used for concurrent lookups
+	 * 
+	 * @param executor	Executor, or null to use the library-managed Executor
+	 */
+	public void setExecutor(Executor executor) {
+		checkConfigurable();
+		mExecutor = executor;
+	}
+
+	Executor getExecutor() {
+		return (mExecutor != null) ? mExecutor : LookupExecutor.getDefault();
+	}
+
+	/*
+	 * Reject changes to the settings of a Service shared by RadioDNS, which
+	 * would apply to every other caller holding it
+	 */
+	private void checkConfigurable() {
+		if (mShared) {
+			throw new IllegalStateException("Shared Service cannot be reconfigured");
+		}
+	}
+
 	/**
 	 * Get RadioDNS Application for the given Application ID
 	 * 
@@ -105,7 +566,20 @@ public abstract class Service {
 	 */
 	Application resolveApplication(String applicationId,
 			String transportProtocol) {
-		String authoritativeFqdn = getAuthoritativeFqdn();
+		return resolveApplication(applicationId, transportProtocol, getAuthoritativeFqdn());
+	}
+
+	/**
+	 * Get RadioDNS Application for the given Application ID and Transport 
+	 * Protocol under an already resolved Authoritative FQDN
+	 * 
+	 * @param applicationId			RadioDNS Application Identifier
+	 * @param transportProtocol		Transport Protocol
+	 * @param authoritativeFqdn		Authoritative FQDN
+	 * @return
+	 */
+	Application resolveApplication(String applicationId,
+			String transportProtocol, String authoritativeFqdn) {
 		if (applicationId == null) {
 			throw new IllegalArgumentException("Application ID is null");
 		}
@@ -121,62 +595,396 @@ public abstract class Service {
 				applicationId.toLowerCase(), transportProtocol.toLowerCase(),
 				authoritativeFqdn);
 
+		if (mResolutionCache != null) {
+			CacheEntry<Application> entry = mResolutionCache.getApplication(applicationFqdn);
+			if (entry != null) {
+				getLookupListener().onCache(Phase.SRV, CacheEvent.HIT);
+				refreshAhead(entry, applicationId, applicationFqdn);
+				return entry.getValue();
+			}
+			getLookupListener().onCache(Phase.SRV, CacheEvent.MISS);
+		}
+
+		CacheEntry<Application> entry = queryApplication(applicationId, applicationFqdn);
+		if (entry == null && mResolutionCache != null) {
+			CacheEntry<Application> stale = mResolutionCache.getStaleApplication(applicationFqdn);
+			if (stale != null) {
+				getLookupListener().onCache(Phase.SRV, CacheEvent.STALE);
+				return stale.getValue().asStale();
+			}
+		}
+		return (entry != null) ? entry.getValue() : null;
+	}
 
+	/**
+	 * Query the SRV records of an Application, bypassing the resolution cache
+	 * but storing the answer in it
+	 * 
+	 * @param applicationId			RadioDNS Application Identifier
+	 * @param applicationFqdn		SRV name of the Application
+	 * @return			Entry holding the Application (null value for a
+	 * 					negative answer) and its expiry, or null on error
+	 */
+	CacheEntry<Application> queryApplication(String applicationId, String applicationFqdn) {
+		LookupListener listener = getLookupListener();
+		long start = System.nanoTime();
 		try {
-			ResolverResult<SRV> result = DnssecResolverApi.INSTANCE.resolve(applicationFqdn, SRV.class);
+			LookupResult<SRV> result = getResolver().resolve(applicationFqdn, SRV.class);
 
-			if (!result.wasSuccessful()) {
-				//error
+			if (isDnssecRejected(result)) {
+				listener.onQuery(Phase.SRV, Outcome.DNSSEC_REJECTED, System.nanoTime() - start);
 				return null;
 			}
 
-			if (result.isAuthenticData()) {
+			if (result.isNegative()) {
+				listener.onQuery(Phase.SRV, negativeOutcome(result), System.nanoTime() - start);
+				return cacheApplication(applicationFqdn, null, 0);
+			}
+
+			if (!result.wasSuccessful()) {
+				listener.onQuery(Phase.SRV, Outcome.ERROR, System.nanoTime() - start);
 				return null;
 			}
+			listener.onQuery(Phase.SRV, Outcome.SUCCESS, System.nanoTime() - start);
 
 			Set<SRV> srvs = result.getAnswers();
 			ArrayList<Record> records = new ArrayList<>();
 			for (SRV srv : srvs) {
 				records.add(new Record(srv));
 			}
-			return new Application(applicationId, records);
+			long ttl = result.getTtl();
+			if (mResolveAddresses) {
+				ttl = Math.min(ttl, resolveAddresses(records, result));
+			}
+			Application application = new Application(applicationId, records);
+			return cacheApplication(applicationFqdn, application, ttl);
+
+		} catch (IOException e) {
+			listener.onQuery(Phase.SRV, failureOutcome(e), System.nanoTime() - start);
+			listener.onError(Phase.SRV, applicationFqdn, e);
+			return null;
+		}
+	}
+
+	/**
+	 * Set the addresses of the targets of the records, taken from the
+	 * additional section of the SRV answer or else resolved concurrently
+	 * 
+	 * @return		Minimum TTL of the addresses in seconds
+	 */
+	private long resolveAddresses(List<Record> records, LookupResult<SRV> result) {
+		long ttl = Long.MAX_VALUE;
+		Map<String, List<InetAddress>> addresses = new HashMap<String, List<InetAddress>>();
+		List<String> hosts = new ArrayList<String>();
+		List<Callable<LookupResult<? extends InternetAddressRR<?>>>> lookups =
+				new ArrayList<Callable<LookupResult<? extends InternetAddressRR<?>>>>();
+		for (Record record : records) {
+			final String host = record.getHost();
+			if (!record.isAvailable() || addresses.containsKey(host)) {
+				continue;
+			}
+			List<InetAddress> additional = result.getAdditionalAddresses(host);
+			addresses.put(host, new ArrayList<InetAddress>(additional));
+			if (!additional.isEmpty()) {
+				ttl = Math.min(ttl, result.getAdditionalTtl());
+				continue;
+			}
+			hosts.add(host);
+			lookups.add(new Callable<LookupResult<? extends InternetAddressRR<?>>>() {
+				@Override
+				public LookupResult<? extends InternetAddressRR<?>> call() {
+					return queryAddresses(host, A.class);
+				}
+			});
+			lookups.add(new Callable<LookupResult<? extends InternetAddressRR<?>>>() {
+				@Override
+				public LookupResult<? extends InternetAddressRR<?>> call() {
+					return queryAddresses(host, AAAA.class);
+				}
+			});
+		}
+
+		if (!lookups.isEmpty()) {
+			try {
+				List<LookupResult<? extends InternetAddressRR<?>>> results = AsyncLookup.invokeAll(lookups, getExecutor());
+				for (int i = 0; i < results.size(); i++) {
+					LookupResult<? extends InternetAddressRR<?>> addressResult = results.get(i);
+					if (addressResult == null || addressResult.getAnswers().isEmpty()) {
+						continue;
+					}
+					List<InetAddress> list = addresses.get(hosts.get(i / 2));
+					for (InternetAddressRR<?> address : addressResult.getAnswers()) {
+						list.add(address.getInetAddress());
+					}
+					ttl = Math.min(ttl, addressResult.getTtl());
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} catch (ExecutionException e) {
+				getLookupListener().onError(Phase.ADDRESS, hosts.toString(), e);
+			}
+		}
+
+		for (Record record : records) {
+			List<InetAddress> list = addresses.get(record.getHost());
+			if (list != null) {
+				record.setAddresses(list);
+			}
+		}
+		return ttl;
+	}
 
+	/**
+	 * Query the A or AAAA records of an SRV target
+	 * 
+	 * @return			Result, or null on error
+	 */
+	private <D extends InternetAddressRR<?>> LookupResult<D> queryAddresses(String host, Class<D> type) {
+		LookupListener listener = getLookupListener();
+		long start = System.nanoTime();
+		try {
+			LookupResult<D> result = getResolver().resolve(host, type);
+			if (isDnssecRejected(result)) {
+				listener.onQuery(Phase.ADDRESS, Outcome.DNSSEC_REJECTED, System.nanoTime() - start);
+				return null;
+			}
+			Outcome outcome = result.isNegative() ? negativeOutcome(result)
+					: (result.wasSuccessful() ? Outcome.SUCCESS : Outcome.ERROR);
+			listener.onQuery(Phase.ADDRESS, outcome, System.nanoTime() - start);
+			return result;
 		} catch (IOException e) {
-			e.printStackTrace();
+			listener.onQuery(Phase.ADDRESS, failureOutcome(e), System.nanoTime() - start);
+			listener.onError(Phase.ADDRESS, host, e);
 			return null;
 		}
 	}
 
+	private CacheEntry<Application> cacheApplication(String applicationFqdn, Application application, long ttl) {
+		if (mResolutionCache != null) {
+			return mResolutionCache.putApplication(applicationFqdn, application, ttl);
+		}
+		long seconds = (application == null) ? ResolutionCache.DEFAULT_NEGATIVE_TTL : ttl;
+		return new CacheEntry<Application>(application, System.currentTimeMillis() + seconds * 1000);
+	}
+
 	/**
 	 * Resolve Authoritative FQDN for the service
 	 * 
 	 * @return			Authoritative FQDN String
 	 */
 	public String resolveAuthoritativeFQDN() {
+		CacheEntry<String> entry = lookupAuthoritativeFqdn();
+		return (entry != null) ? entry.getValue() : null;
+	}
+
+	/**
+	 * Resolve Authoritative FQDN for the service, consulting the resolution
+	 * cache first
+	 * 
+	 * @return			Entry holding the Authoritative FQDN (null value for a
+	 * 					negative answer) and its expiry, or null on error
+	 */
+	CacheEntry<String> lookupAuthoritativeFqdn() {
 		try {
-			ResolverResult<CNAME> result = DnssecResolverApi.INSTANCE.resolve(getRadioDNSFqdn(), CNAME.class);
+			return lookupAuthoritativeFqdnOrThrow();
+		} catch (IOException e) {
+			return null;
+		}
+	}
 
-			if (!result.wasSuccessful()) {
-				//error
-				return null;
-			}
+	/**
+	 * Get the Authoritative FQDN like {@link #getAuthoritativeFqdn()}, but
+	 * report why it could not be resolved
+	 * 
+	 * @return			Authoritative FQDN, or null if the RadioDNS FQDN has none
+	 * @throws IOException	if the lookup failed and no stale answer could be
+	 * 					served
+	 */
+	String fetchAuthoritativeFqdn() throws IOException {
+		CacheEntry<String> entry = mAuthoritativeFqdn;
+		if (entry != null && !entry.isExpired(System.currentTimeMillis())) {
+			return getAuthoritativeFqdn();
+		}
+		entry = lookupAuthoritativeFqdnOrThrow();
+		mAuthoritativeFqdn = entry;
+		return entry.getValue();
+	}
 
-			if (result.isAuthenticData()) {
-				return null;
+	private CacheEntry<String> lookupAuthoritativeFqdnOrThrow() throws IOException {
+		String radioDnsFqdn = getRadioDNSFqdn();
+		if (mResolutionCache != null) {
+			CacheEntry<String> entry = mResolutionCache.getAuthoritativeFqdn(radioDnsFqdn);
+			if (entry != null) {
+				getLookupListener().onCache(Phase.CNAME, CacheEvent.HIT);
+				refreshAhead(entry, radioDnsFqdn);
+				markAuthoritativeFqdnStale(false);
+				return entry;
 			}
+			getLookupListener().onCache(Phase.CNAME, CacheEvent.MISS);
+		}
 
-			Set<CNAME> cnames = result.getAnswers();
-			if (cnames.size() > 0) {
-				CNAME cname = cnames.iterator().next();
-				return cname.target.toString();
+		try {
+			CacheEntry<String> entry = queryAuthoritativeFqdn(radioDnsFqdn);
+			markAuthoritativeFqdnStale(false);
+			return entry;
+		} catch (IOException e) {
+			CacheEntry<String> entry = null;
+			if (mResolutionCache != null) {
+				entry = mResolutionCache.getStaleAuthoritativeFqdn(radioDnsFqdn);
+				if (entry != null) {
+					getLookupListener().onCache(Phase.CNAME, CacheEvent.STALE);
+				}
 			}
+			markAuthoritativeFqdnStale(entry != null);
+			if (entry == null) {
+				throw e;
+			}
+			return entry;
+		}
+	}
+
+	private void markAuthoritativeFqdnStale(boolean stale) {
+		if (mAuthoritativeFqdnStale != stale) {
+			mAuthoritativeFqdnStale = stale;
+		}
+	}
 
+	/**
+	 * Query the CNAME record of the RadioDNS FQDN, bypassing the resolution
+	 * cache but storing the answer in it
+	 * 
+	 * @param radioDnsFqdn	RadioDNS FQDN
+	 * @return			Entry holding the Authoritative FQDN (null value for a
+	 * 					negative answer) and its expiry
+	 * @throws IOException	if the lookup failed or its answer was rejected
+	 */
+	CacheEntry<String> queryAuthoritativeFqdn(String radioDnsFqdn) throws IOException {
+		LookupListener listener = getLookupListener();
+		long start = System.nanoTime();
+		LookupResult<CNAME> result;
+		try {
+			result = getResolver().resolve(radioDnsFqdn, CNAME.class);
 		} catch (IOException e) {
-			e.printStackTrace();
-			return null;
+			listener.onQuery(Phase.CNAME, failureOutcome(e), System.nanoTime() - start);
+			listener.onError(Phase.CNAME, radioDnsFqdn, e);
+			throw e;
+		}
+
+		if (isDnssecRejected(result)) {
+			listener.onQuery(Phase.CNAME, Outcome.DNSSEC_REJECTED, System.nanoTime() - start);
+			throw new DnssecValidationFailedException("Answer for " + radioDnsFqdn + " was not validated");
 		}
 
+		if (result.isNegative()) {
+			listener.onQuery(Phase.CNAME, negativeOutcome(result), System.nanoTime() - start);
+			return memoize(radioDnsFqdn, null, 0);
+		}
 
-		return null;
+		if (!result.wasSuccessful()) {
+			listener.onQuery(Phase.CNAME, Outcome.ERROR, System.nanoTime() - start);
+			throw new IOException("Lookup of " + radioDnsFqdn + " failed with " + result.getResponseCode());
+		}
+		listener.onQuery(Phase.CNAME, Outcome.SUCCESS, System.nanoTime() - start);
+
+		Set<CNAME> cnames = result.getAnswers();
+		CNAME cname = cnames.iterator().next();
+		return memoize(radioDnsFqdn, cname.target.toString(), result.getTtl());
+	}
+
+	/**
+	 * Whether an answer is rejected by the DNSSEC policy, i.e. it was not
+	 * validated while validation is required
+	 */
+	private boolean isDnssecRejected(LookupResult<?> result) {
+		return mDnssecPolicy == DnssecPolicy.REQUIRED && !result.isAuthenticData();
+	}
+
+	private static Outcome negativeOutcome(LookupResult<?> result) {
+		return (result.getResponseCode() == RESPONSE_CODE.NX_DOMAIN) ? Outcome.NXDOMAIN : Outcome.EMPTY;
+	}
+
+	private static Outcome failureOutcome(IOException e) {
+		if (e instanceof DnssecValidationFailedException) {
+			return Outcome.DNSSEC_REJECTED;
+		}
+		return isTimeout(e) ? Outcome.TIMEOUT : Outcome.ERROR;
+	}
+
+	/*
+	 * minidns reports the failures of all the servers it tried, or of both
+	 * UDP and TCP, together in a MultipleIoException: it is a timeout if each
+	 * of them is
+	 */
+	private static boolean isTimeout(Throwable t) {
+		while (t != null) {
+			if (t instanceof InterruptedIOException) {
+				return true;
+			}
+			if (t instanceof MultipleIoException) {
+				List<IOException> exceptions = ((MultipleIoException) t).getExceptions();
+				for (IOException e : exceptions) {
+					if (!isTimeout(e)) {
+						return false;
+					}
+				}
+				return !exceptions.isEmpty();
+			}
+			t = (t.getCause() != t) ? t.getCause() : null;
+		}
+		return false;
+	}
+
+	/**
+	 * Re-resolve a cached Authoritative FQDN in the background if the
+	 * refresh-ahead policy of the resolution cache finds it due
+	 */
+	private void refreshAhead(final CacheEntry<String> entry, final String radioDnsFqdn) {
+		RefreshAhead refreshAhead = (mResolutionCache != null) ? mResolutionCache.getRefreshAhead() : null;
+		if (refreshAhead == null) {
+			return;
+		}
+		refreshAhead.refreshIfDue(entry, new Runnable() {
+			@Override
+			public void run() {
+				CacheEntry<String> refreshed;
+				try {
+					refreshed = queryAuthoritativeFqdn(radioDnsFqdn);
+				} catch (IOException e) {
+					entry.endRefresh();
+					return;
+				}
+				if (mAuthoritativeFqdn == entry) {
+					mAuthoritativeFqdn = refreshed;
+				}
+			}
+		});
+	}
+
+	/**
+	 * Re-resolve a cached Application in the background if the refresh-ahead
+	 * policy of the resolution cache finds it due
+	 */
+	private void refreshAhead(final CacheEntry<Application> entry, final String applicationId,
+			final String applicationFqdn) {
+		RefreshAhead refreshAhead = mResolutionCache.getRefreshAhead();
+		if (refreshAhead == null) {
+			return;
+		}
+		refreshAhead.refreshIfDue(entry, new Runnable() {
+			@Override
+			public void run() {
+				if (queryApplication(applicationId, applicationFqdn) == null) {
+					entry.endRefresh();
+				}
+			}
+		});
+	}
+
+	private CacheEntry<String> memoize(String radioDnsFqdn, String authoritativeFqdn, long ttl) {
+		if (mResolutionCache != null) {
+			return mResolutionCache.putAuthoritativeFqdn(radioDnsFqdn, authoritativeFqdn, ttl);
+		}
+		long seconds = (authoritativeFqdn == null) ? ResolutionCache.DEFAULT_NEGATIVE_TTL : ttl;
+		return new CacheEntry<String>(authoritativeFqdn, System.currentTimeMillis() + seconds * 1000);
 	}
 }
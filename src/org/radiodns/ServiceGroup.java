@@ -0,0 +1,213 @@
+/*
+ * Copyright (c) 2012 Global Radio UK Limited
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.    
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+
+package org.radiodns;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The bearers of one station, e.g. several FM frequencies and a DAB service,
+ * resolved together. The CNAMEs of all bearers are resolved concurrently,
+ * bearers pointing at the same authoritative FQDN are collapsed, and the
+ * Applications are resolved once per distinct authoritative FQDN, using a
+ * {@link BatchResolver}.
+ * 
+ * <pre>
+ * ServiceGroup station = new ServiceGroup();
+ * station.add(rdns.getFMService("ce1", "c479", 95800));
+ * station.add(rdns.getFMService("ce1", "c479", 96100));
+ * station.add(rdns.getDABService("ce1", "c185", "c479", "0"));
+ * station.resolve();
+ * Application vis = station.getApplication(RadioDNS.RADIOVIS);
+ * </pre>
+ */
+public class ServiceGroup {
+
+	public static final int DEFAULT_CONCURRENCY = 16;
+
+	private final List<Service> mBearers = new ArrayList<Service>();
+	private int mConcurrency = DEFAULT_CONCURRENCY;
+
+	private Map<String, List<Service>> mBearersByFqdn = Collections.emptyMap();
+	private Map<String, Map<String, Application>> mApplicationsByFqdn = Collections.emptyMap();
+	private List<Service> mUnresolved = Collections.emptyList();
+	private Map<Service, Exception> mExceptions = Collections.emptyMap();
+
+	public ServiceGroup() {
+	}
+
+	/**
+	 * Class constructor
+	 * 
+	 * @param bearers	Services of the bearers of the station
+	 */
+	public ServiceGroup(Collection<? extends Service> bearers) {
+		for (Service bearer : bearers) {
+			add(bearer);
+		}
+	}
+
+	/**
+	 * Add the Service of a bearer
+	 * 
+	 * @param bearer	Service
+	 */
+	public synchronized void add(Service bearer) {
+		if (bearer == null) {
+			throw new IllegalArgumentException("Service is null");
+		}
+		mBearers.add(bearer);
+	}
+
+	public synchronized List<Service> getBearers() {
+		return new ArrayList<Service>(mBearers);
+	}
+
+	/**
+	 * Set the maximum number of lookups in flight while resolving
+	 * 
+	 * @param concurrency	Maximum number of lookups in flight
+	 */
+	public synchronized void setConcurrency(int concurrency) {
+		if (concurrency <= 0) {
+			throw new IllegalArgumentException("Concurrency must be greater than zero");
+		}
+		mConcurrency = concurrency;
+	}
+
+	public synchronized int getConcurrency() {
+		return mConcurrency;
+	}
+
+	/**
+	 * Resolve the authoritative FQDNs of all bearers, then the Applications
+	 * of each distinct authoritative FQDN, replacing the results of any
+	 * previous call
+	 * 
+	 * @throws InterruptedException
+	 */
+	public void resolve() throws InterruptedException {
+		List<Service> bearers = getBearers();
+		BatchResolver batch = new BatchResolver(null, Math.min(getConcurrency(), Math.max(bearers.size(), 1)));
+		batch.addAll(bearers);
+
+		final Map<Service, BatchResult> results = new IdentityHashMap<Service, BatchResult>();
+		batch.resolve(new BatchResolver.Listener() {
+			@Override
+			public void onResult(BatchResult result) {
+				results.put(result.getService(), result);
+			}
+		});
+
+		Map<String, List<Service>> bearersByFqdn = new LinkedHashMap<String, List<Service>>();
+		Map<String, Map<String, Application>> applicationsByFqdn = new HashMap<String, Map<String, Application>>();
+		List<Service> unresolved = new ArrayList<Service>();
+		Map<Service, Exception> exceptions = new IdentityHashMap<Service, Exception>();
+		for (Service bearer : bearers) {
+			BatchResult result = results.get(bearer);
+			if (result == null || !result.isSuccessful() || result.getAuthoritativeFqdn() == null) {
+				unresolved.add(bearer);
+				if (result != null && result.getException() != null) {
+					exceptions.put(bearer, result.getException());
+				}
+				continue;
+			}
+			String fqdn = result.getAuthoritativeFqdn().toLowerCase();
+			List<Service> group = bearersByFqdn.get(fqdn);
+			if (group == null) {
+				group = new ArrayList<Service>();
+				bearersByFqdn.put(fqdn, group);
+				applicationsByFqdn.put(fqdn, result.getApplications());
+			}
+			group.add(bearer);
+		}
+
+		synchronized (this) {
+			mBearersByFqdn = bearersByFqdn;
+			mApplicationsByFqdn = applicationsByFqdn;
+			mUnresolved = unresolved;
+			mExceptions = exceptions;
+		}
+	}
+
+	/**
+	 * @return		Distinct authoritative FQDNs of the bearers, in the order of
+	 * 				the first bearer pointing at each
+	 */
+	public synchronized Set<String> getAuthoritativeFqdns() {
+		return Collections.unmodifiableSet(mBearersByFqdn.keySet());
+	}
+
+	/**
+	 * @param authoritativeFqdn		Authoritative FQDN
+	 * @return		Bearers pointing at the authoritative FQDN
+	 */
+	public synchronized List<Service> getBearers(String authoritativeFqdn) {
+		List<Service> bearers = mBearersByFqdn.get(authoritativeFqdn.toLowerCase());
+		return (bearers != null) ? Collections.unmodifiableList(bearers) : Collections.<Service>emptyList();
+	}
+
+	/**
+	 * @param authoritativeFqdn		Authoritative FQDN
+	 * @return		Applications of the authoritative FQDN, keyed on their
+	 * 				identifier, or null if none of the bearers points at it
+	 */
+	public synchronized Map<String, Application> getApplications(String authoritativeFqdn) {
+		return mApplicationsByFqdn.get(authoritativeFqdn.toLowerCase());
+	}
+
+	/**
+	 * Get an Application of the station, from the first authoritative FQDN
+	 * providing it
+	 * 
+	 * @param applicationId		RadioDNS Application Identifier
+	 * @return		Application, or null if no authoritative FQDN provides it
+	 */
+	public synchronized Application getApplication(String applicationId) {
+		for (String fqdn : mBearersByFqdn.keySet()) {
+			Map<String, Application> applications = mApplicationsByFqdn.get(fqdn);
+			Application application = (applications != null) ? applications.get(applicationId) : null;
+			if (application != null) {
+				return application;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @return		Bearers without an authoritative FQDN, because it does not
+	 * 				exist or could not be resolved
+	 */
+	public synchronized List<Service> getUnresolvedBearers() {
+		return Collections.unmodifiableList(mUnresolved);
+	}
+
+	/**
+	 * @param bearer	Service of a bearer
+	 * @return			Exception raised while resolving the bearer, or null
+	 */
+	public synchronized Exception getException(Service bearer) {
+		return mExceptions.get(bearer);
+	}
+}
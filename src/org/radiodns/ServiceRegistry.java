@@ -0,0 +1,350 @@
+/*
+ * Copyright (c) 2012 Global Radio UK Limited
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.    
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+
+package org.radiodns;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Registry of canonical Service instances keyed on bearer parameters packed
+ * into a long. Keys are held in an open-addressing table with linear probing,
+ * so a lookup of a registered Service allocates nothing. Reads take no lock:
+ * a Service is published before its key, and a resized table is published
+ * only once it is fully populated.
+ * 
+ * When the registry reaches its maximum size it is cleared, so memory use
+ * stays bounded while recurring bearers are registered again on next use.
+ * 
+ * Bearers whose parameters do not fit a key (DAB with an 8-character SId,
+ * Packet Address or X-PAD, ISO country codes that are not two letters) are
+ * not registered.
+ */
+final class ServiceRegistry {
+
+	/**
+	 * Returned by the key functions when parameters cannot be packed
+	 */
+	static final long NO_KEY = -1L;
+
+	static final int DEFAULT_MAXIMUM_SIZE = 65536;
+
+	private static final long FM = 1L << 61;
+	private static final long DAB = 2L << 61;
+	private static final long AM = 3L << 61;
+	private static final long HD = 4L << 61;
+
+	private static final int INITIAL_CAPACITY = 64;
+
+	/*
+	 * Open-addressing table; a key of 0 marks an empty slot
+	 */
+	private static final class Table {
+		final AtomicLongArray keys;
+		final AtomicReferenceArray<Service> values;
+		final int mask;
+
+		Table(int capacity) {
+			keys = new AtomicLongArray(capacity);
+			values = new AtomicReferenceArray<Service>(capacity);
+			mask = capacity - 1;
+		}
+	}
+
+	private final int mMaximumSize;
+	private volatile Table mTable = new Table(INITIAL_CAPACITY);
+	private int mSize = 0;
+
+	ServiceRegistry() {
+		this(DEFAULT_MAXIMUM_SIZE);
+	}
+
+	ServiceRegistry(int maximumSize) {
+		mMaximumSize = maximumSize;
+	}
+
+	/**
+	 * Get the Service registered under the key
+	 * 
+	 * @param key	Packed bearer key
+	 * @return		Service, or null if none is registered
+	 */
+	Service get(long key) {
+		Table table = mTable;
+		int i = index(key, table.mask);
+		while (true) {
+			long k = table.keys.get(i);
+			if (k == key) {
+				return table.values.get(i);
+			}
+			if (k == 0) {
+				return null;
+			}
+			i = (i + 1) & table.mask;
+		}
+	}
+
+	/**
+	 * Register the Service under the key unless another one already is
+	 * 
+	 * @param key		Packed bearer key
+	 * @param service	Service
+	 * @return			The registered Service
+	 */
+	synchronized Service putIfAbsent(long key, Service service) {
+		Service existing = get(key);
+		if (existing != null) {
+			return existing;
+		}
+		if (mSize >= mMaximumSize) {
+			clear();
+		}
+		Table table = mTable;
+		if ((mSize + 1) * 2 > table.keys.length()) {
+			table = resize(table, table.keys.length() * 2);
+		}
+		insert(table, key, service);
+		mSize++;
+		return service;
+	}
+
+	synchronized void clear() {
+		mTable = new Table(INITIAL_CAPACITY);
+		mSize = 0;
+	}
+
+	synchronized int size() {
+		return mSize;
+	}
+
+	private Table resize(Table table, int capacity) {
+		Table resized = new Table(capacity);
+		for (int i = 0; i < table.keys.length(); i++) {
+			long k = table.keys.get(i);
+			if (k != 0) {
+				insert(resized, k, table.values.get(i));
+			}
+		}
+		mTable = resized;
+		return resized;
+	}
+
+	private static void insert(Table table, long key, Service service) {
+		int i = index(key, table.mask);
+		while (table.keys.get(i) != 0) {
+			i = (i + 1) & table.mask;
+		}
+		table.values.set(i, service);
+		table.keys.set(i, key);
+	}
+
+	private static int index(long key, int mask) {
+		key ^= key >>> 33;
+		key *= 0xff51afd7ed558ccdL;
+		key ^= key >>> 33;
+		return (int) key & mask;
+	}
+
+	/**
+	 * Pack FM bearer parameters: ISO flag (1 bit), country (12), PI (16),
+	 * frequency (17)
+	 * 
+	 * @return		Key, or NO_KEY if the parameters cannot be packed or are
+	 * 				not accepted by FMService
+	 */
+	static long fmKey(String country, String pi, int frequency) {
+		if (country == null || pi == null || frequency < 76000 || frequency > 108000) {
+			return NO_KEY;
+		}
+		long piValue = hex(pi, 4);
+		if (piValue < 0) {
+			return NO_KEY;
+		}
+		long countryValue;
+		long iso = 0;
+		if (country.length() == 2) {
+			/*
+			 * FMService rejects a PI country nibble not allocated to a known
+			 * ISO country code. The ISO form keeps its own key, as the Service
+			 * reports the country it was created with.
+			 */
+			if (CountryCodes.getGcc(country, (int) (piValue >> 12)) == CountryCodes.MISMATCH) {
+				return NO_KEY;
+			}
+			int c0 = letter(country.charAt(0));
+			int c1 = letter(country.charAt(1));
+			if (c0 < 0 || c1 < 0) {
+				return NO_KEY;
+			}
+			countryValue = (c0 << 5) | c1;
+			iso = 1;
+		} else {
+			countryValue = hex(country, 3);
+			/*
+			 * FMService compares the first characters case-sensitively
+			 */
+			if (countryValue < 0 || country.charAt(0) != pi.charAt(0)) {
+				return NO_KEY;
+			}
+		}
+		return FM | (iso << 45) | (countryValue << 33) | (piValue << 17) | frequency;
+	}
+
+	/**
+	 * Pack numeric FM bearer parameters, see {@link #fmKey(String, String, int)}
+	 */
+	static long fmKey(int gcc, int pi, int frequency) {
+		if (gcc < 0 || gcc > 0xfff || pi < 0 || pi > 0xffff || (pi >> 12) != (gcc >> 8)
+				|| frequency < 76000 || frequency > 108000) {
+			return NO_KEY;
+		}
+		return FM | ((long) gcc << 33) | ((long) pi << 17) | frequency;
+	}
+
+	/**
+	 * Pack DAB bearer parameters: GCC (12 bits), EId (16), 4-character SId
+	 * (16), SCIdS length flag (1), SCIdS (12)
+	 * 
+	 * @return		Key, or NO_KEY if the parameters cannot be packed or are
+	 * 				not accepted by DABService
+	 */
+	static long dabKey(String gcc, String eid, String sid, String scids) {
+		if (gcc == null || eid == null || sid == null || scids == null) {
+			return NO_KEY;
+		}
+		long gccValue = hex(gcc, 3);
+		long eidValue = hex(eid, 4);
+		long sidValue = hex(sid, 4);
+		long scidsValue = (scids.length() == 1) ? hex(scids, 1) : hex(scids, 3);
+		if (gccValue < 0 || eidValue < 0 || sidValue < 0 || scidsValue < 0) {
+			return NO_KEY;
+		}
+		long scidsLength = (scids.length() == 3) ? 1 : 0;
+		return DAB | (gccValue << 45) | (eidValue << 29) | (sidValue << 13) | (scidsLength << 12) | scidsValue;
+	}
+
+	/**
+	 * Pack numeric DAB bearer parameters, see
+	 * {@link #dabKey(String, String, String, String)}
+	 */
+	static long dabKey(int gcc, int eid, long sid, int scids) {
+		if (gcc < 0 || gcc > 0xfff || eid < 0 || eid > 0xffff || sid < 0 || sid > 0xffff
+				|| scids < 0 || scids > 0xfff) {
+			return NO_KEY;
+		}
+		long scidsLength = (scids > 0xf) ? 1 : 0;
+		return DAB | ((long) gcc << 45) | ((long) eid << 29) | (sid << 13) | (scidsLength << 12) | scids;
+	}
+
+	/**
+	 * Pack AM bearer parameters: type (1 bit), SId (24)
+	 * 
+	 * @return		Key, or NO_KEY if the parameters cannot be packed or are
+	 * 				not accepted by AMService
+	 */
+	static long amKey(String type, String sid) {
+		if (type == null || sid == null) {
+			return NO_KEY;
+		}
+		long typeValue;
+		if (type.equals("drm")) {
+			typeValue = 0;
+		} else if (type.equals("amss")) {
+			typeValue = 1;
+		} else {
+			return NO_KEY;
+		}
+		long sidValue = hex(sid, 6);
+		if (sidValue < 0) {
+			return NO_KEY;
+		}
+		return AM | (typeValue << 24) | sidValue;
+	}
+
+	/**
+	 * Pack numeric AM bearer parameters, see {@link #amKey(String, String)}
+	 */
+	static long amKey(String type, int sid) {
+		if (type == null || sid < 0 || sid > 0xffffff) {
+			return NO_KEY;
+		}
+		if (type.equals("drm")) {
+			return AM | sid;
+		} else if (type.equals("amss")) {
+			return AM | (1L << 24) | sid;
+		}
+		return NO_KEY;
+	}
+
+	/**
+	 * Pack HD bearer parameters: CC (12 bits), TX (20)
+	 * 
+	 * @return		Key, or NO_KEY if the parameters cannot be packed or are
+	 * 				not accepted by HDService
+	 */
+	static long hdKey(String cc, String tx) {
+		if (cc == null || tx == null) {
+			return NO_KEY;
+		}
+		long ccValue = hex(cc, 3);
+		long txValue = hex(tx, 5);
+		if (ccValue < 0 || txValue < 0) {
+			return NO_KEY;
+		}
+		return HD | (ccValue << 20) | txValue;
+	}
+
+	/**
+	 * Pack numeric HD bearer parameters, see {@link #hdKey(String, String)}
+	 */
+	static long hdKey(int cc, int tx) {
+		if (cc < 0 || cc > 0xfff || tx < 0 || tx > 0xfffff) {
+			return NO_KEY;
+		}
+		return HD | ((long) cc << 20) | tx;
+	}
+
+	/*
+	 * Parse a hexadecimal value of exactly the given length, or -1
+	 */
+	private static long hex(String value, int length) {
+		if (value.length() != length) {
+			return -1;
+		}
+		long result = 0;
+		for (int i = 0; i < length; i++) {
+			int digit = Character.digit(value.charAt(i), 16);
+			if (digit < 0 || !Validation.isHex(value.charAt(i))) {
+				return -1;
+			}
+			result = (result << 4) | digit;
+		}
+		return result;
+	}
+
+	/*
+	 * Map an ASCII letter to 0-25, or -1
+	 */
+	private static int letter(char c) {
+		if (c >= 'a' && c <= 'z') {
+			return c - 'a';
+		}
+		if (c >= 'A' && c <= 'Z') {
+			return c - 'A';
+		}
+		return -1;
+	}
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2012 Global Radio UK Limited
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.    
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+
+package org.radiodns;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Shares one outstanding call between concurrent callers asking for the same
+ * key. The first caller runs the call; callers arriving while it is in flight
+ * wait for it and get the same result or exception.
+ */
+final class SingleFlight {
+
+	/**
+	 * Call run on behalf of every waiter
+	 */
+	interface Call<V> {
+		V call() throws IOException;
+	}
+
+	private final ConcurrentMap<String, CompletableFuture<Object>> mInFlight =
+			new ConcurrentHashMap<String, CompletableFuture<Object>>();
+	private final AtomicLong mCoalescedCount = new AtomicLong();
+
+	/**
+	 * Run the call, or join the identical call already in flight
+	 * 
+	 * @param key		Key identifying the call; calls with equal keys must
+	 * 					return the same type
+	 * @param call		Call to run
+	 * @return			Result of the call
+	 * @throws IOException
+	 */
+	@SuppressWarnings("unchecked")
+	<V> V execute(String key, Call<V> call) throws IOException {
+		CompletableFuture<Object> future = new CompletableFuture<Object>();
+		CompletableFuture<Object> inFlight = mInFlight.putIfAbsent(key, future);
+		if (inFlight != null) {
+			mCoalescedCount.incrementAndGet();
+			return (V) await(inFlight);
+		}
+
+		try {
+			V result = call.call();
+			future.complete(result);
+			return result;
+		} catch (IOException | RuntimeException | Error e) {
+			future.completeExceptionally(e);
+			throw e;
+		} finally {
+			mInFlight.remove(key, future);
+		}
+	}
+
+	private static Object await(CompletableFuture<Object> future) throws IOException {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for an identical lookup");
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			}
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new IOException(cause);
+		}
+	}
+
+	/**
+	 * @return		Number of calls that joined a call already in flight
+	 */
+	long getCoalescedCount() {
+		return mCoalescedCount.get();
+	}
+
+	/**
+	 * @return		Number of calls currently in flight
+	 */
+	int getInFlightCount() {
+		return mInFlight.size();
+	}
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2012 Global Radio UK Limited
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.    
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+
+package org.radiodns;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.minidns.dnssec.DnssecUnverifiedReason;
+
+/**
+ * Names recently found to be unsigned, so that their lookups skip DNSSEC
+ * validation and the DNSKEY and DS queries it takes. A name is only
+ * remembered when the validator reports that its answer carries no
+ * signatures; answers failing validation for any other reason are not.
+ * 
+ * Names are kept as they are rather than approximated to their zone, as the
+ * zone cut is not known from the answer.
+ */
+final class UnsignedNames {
+
+	/**
+	 * Default maximum number of names remembered
+	 */
+	static final int DEFAULT_CAPACITY = 4096;
+
+	/**
+	 * Bounds in seconds of the time a name is remembered as unsigned
+	 */
+	static final long MIN_TTL = 60;
+	static final long MAX_TTL = 3600;
+
+	private final ConcurrentHashMap<String, Long> mNames = new ConcurrentHashMap<String, Long>();
+	private final int mCapacity;
+
+	/**
+	 * @param capacity	Maximum number of names remembered, or 0 to remember
+	 * 					none
+	 */
+	UnsignedNames(int capacity) {
+		mCapacity = capacity;
+	}
+
+	/**
+	 * Whether a name is remembered as unsigned
+	 */
+	boolean contains(String name) {
+		if (mNames.isEmpty()) {
+			return false;
+		}
+		String key = LookupResult.hostKey(name);
+		Long expiry = mNames.get(key);
+		if (expiry == null) {
+			return false;
+		}
+		if (expiry > System.currentTimeMillis()) {
+			return true;
+		}
+		mNames.remove(key, expiry);
+		return false;
+	}
+
+	/**
+	 * Remember a name as unsigned
+	 * 
+	 * @param name		Name of an answer proven to carry no signatures
+	 * @param ttl		TTL of the answer in seconds
+	 */
+	void add(String name, long ttl) {
+		if (mCapacity == 0) {
+			return;
+		}
+		String key = LookupResult.hostKey(name);
+		long now = System.currentTimeMillis();
+		if (mNames.size() >= mCapacity && !mNames.containsKey(key)) {
+			purgeExpired(now);
+			if (mNames.size() >= mCapacity) {
+				return;
+			}
+		}
+		mNames.put(key, now + Math.max(MIN_TTL, Math.min(MAX_TTL, ttl)) * 1000);
+	}
+
+	int size() {
+		return mNames.size();
+	}
+
+	private void purgeExpired(long now) {
+		Iterator<Map.Entry<String, Long>> it = mNames.entrySet().iterator();
+		while (it.hasNext()) {
+			if (it.next().getValue() <= now) {
+				it.remove();
+			}
+		}
+	}
+
+	/**
+	 * Whether the reasons an answer was not validated prove it unsigned, i.e.
+	 * there are reasons and each is the absence of signatures
+	 */
+	static boolean isUnsigned(Set<DnssecUnverifiedReason> reasons) {
+		if (reasons == null || reasons.isEmpty()) {
+			return false;
+		}
+		for (DnssecUnverifiedReason reason : reasons) {
+			if (!(reason instanceof DnssecUnverifiedReason.NoSignaturesReason)) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
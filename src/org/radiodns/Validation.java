@@ -0,0 +1,62 @@
+/*
+ * Copyright (c) 2012 Global Radio UK Limited
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.    
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+
+package org.radiodns;
+
+/**
+ * Character-by-character validation of broadcast parameters. Each check
+ * accepts exactly the same values as the case-insensitive regular expression
+ * it replaces, without compiling a Pattern or allocating.
+ */
+final class Validation {
+
+	private Validation() {
+	}
+
+	/**
+	 * Equivalent to value.matches("(?i)^[0-9A-F]{length}$")
+	 */
+	static boolean isHex(String value, int length) {
+		return value.length() == length && isHexRange(value, 0, length);
+	}
+
+	/**
+	 * Equivalent to value.matches("(?i)^[0-9A-F]{length}$|^[0-9A-F]{alternative}$")
+	 */
+	static boolean isHex(String value, int length, int alternative) {
+		return isHex(value, length) || isHex(value, alternative);
+	}
+
+	/**
+	 * Equivalent to value.matches("(?i)^[0-9A-F]{2}-[0-9A-F]{3}$")
+	 */
+	static boolean isXpad(String value) {
+		return value.length() == 6 && isHexRange(value, 0, 2) && value.charAt(2) == '-' && isHexRange(value, 3, 6);
+	}
+
+	static boolean isHex(char c) {
+		return (c >= '0' && c <= '9') || (c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F');
+	}
+
+	private static boolean isHexRange(String value, int start, int end) {
+		for (int i = start; i < end; i++) {
+			if (!isHex(value.charAt(i))) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2012 Global Radio UK Limited
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.    
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+
+package org.radiodns.spi;
+
+/**
+ * Programme of a Programme Information document
+ */
+public class Programme {
+
+	private final String mId;
+	private final String mShortId;
+	private final String mShortName;
+	private final String mMediumName;
+	private final String mLongName;
+	private final String mDescription;
+	private final long mStartTime;
+	private final long mDuration;
+
+	/**
+	 * Class constructor
+	 * 
+	 * @param id			Programme CRID, or null
+	 * @param shortId		Short identifier, or null
+	 * @param shortName		Short name, or null
+	 * @param mediumName	Medium name, or null
+	 * @param longName		Long name, or null
+	 * @param description	First short or long description, or null
+	 * @param startTime		Start time in milliseconds since the epoch, or -1
+	 * @param duration		Duration in seconds, or -1
+	 */
+	public Programme(String id, String shortId, String shortName, String mediumName, String longName,
+			String description, long startTime, long duration) {
+		mId = id;
+		mShortId = shortId;
+		mShortName = shortName;
+		mMediumName = mediumName;
+		mLongName = longName;
+		mDescription = description;
+		mStartTime = startTime;
+		mDuration = duration;
+	}
+
+	public String getId() {
+		return mId;
+	}
+
+	public String getShortId() {
+		return mShortId;
+	}
+
+	public String getShortName() {
+		return mShortName;
+	}
+
+	public String getMediumName() {
+		return mMediumName;
+	}
+
+	public String getLongName() {
+		return mLongName;
+	}
+
+	/**
+	 * @return		Longest name given, or null if the programme has none
+	 */
+	public String getName() {
+		return (mLongName != null) ? mLongName : (mMediumName != null) ? mMediumName : mShortName;
+	}
+
+	public String getDescription() {
+		return mDescription;
+	}
+
+	/**
+	 * @return		Start time in milliseconds since the epoch, or -1 if the
+	 * 				programme has no time
+	 */
+	public long getStartTime() {
+		return mStartTime;
+	}
+
+	/**
+	 * @return		Duration in seconds, or -1 if the programme has no time
+	 */
+	public long getDuration() {
+		return mDuration;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("Programme[id=%s, name=%s, startTime=%d, duration=%d]", mId, getName(), mStartTime,
+				mDuration);
+	}
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2012 Global Radio UK Limited
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.    
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+
+package org.radiodns.spi;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Service of a Service Information document
+ */
+public class ServiceInfo {
+
+	private final String mShortName;
+	private final String mMediumName;
+	private final String mLongName;
+	private final String mDescription;
+	private final List<String> mBearers;
+	private final List<String> mMultimedia;
+	private final String mRadioDNSFqdn;
+	private final String mServiceIdentifier;
+
+	/**
+	 * Class constructor
+	 * 
+	 * @param shortName			Short name, or null
+	 * @param mediumName		Medium name, or null
+	 * @param longName			Long name, or null
+	 * @param description		First short or long description, or null
+	 * @param bearers			Bearer identifiers, e.g. "fm:ce1.c479.09580"
+	 * @param multimedia		URLs of the logos and other multimedia
+	 * @param radioDNSFqdn		Authoritative FQDN of the radiodns element, or
+	 * 							null
+	 * @param serviceIdentifier	Service identifier of the radiodns element,
+	 * 							or null
+	 */
+	public ServiceInfo(String shortName, String mediumName, String longName, String description,
+			List<String> bearers, List<String> multimedia, String radioDNSFqdn, String serviceIdentifier) {
+		mShortName = shortName;
+		mMediumName = mediumName;
+		mLongName = longName;
+		mDescription = description;
+		mBearers = (bearers != null) ? Collections.unmodifiableList(bearers) : Collections.<String>emptyList();
+		mMultimedia = (multimedia != null) ? Collections.unmodifiableList(multimedia)
+				: Collections.<String>emptyList();
+		mRadioDNSFqdn = radioDNSFqdn;
+		mServiceIdentifier = serviceIdentifier;
+	}
+
+	public String getShortName() {
+		return mShortName;
+	}
+
+	public String getMediumName() {
+		return mMediumName;
+	}
+
+	public String getLongName() {
+		return mLongName;
+	}
+
+	/**
+	 * @return		Longest name given, or null if the service has none
+	 */
+	public String getName() {
+		return (mLongName != null) ? mLongName : (mMediumName != null) ? mMediumName : mShortName;
+	}
+
+	public String getDescription() {
+		return mDescription;
+	}
+
+	/**
+	 * @return		Bearer identifiers, e.g. "fm:ce1.c479.09580" or
+	 * 				"dab:ce1.c185.c479.0"
+	 */
+	public List<String> getBearers() {
+		return mBearers;
+	}
+
+	/**
+	 * @return		URLs of the logos and other multimedia
+	 */
+	public List<String> getMultimedia() {
+		return mMultimedia;
+	}
+
+	public String getRadioDNSFqdn() {
+		return mRadioDNSFqdn;
+	}
+
+	public String getServiceIdentifier() {
+		return mServiceIdentifier;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("ServiceInfo[name=%s, bearers=%s]", getName(), mBearers);
+	}
+}
@@ -0,0 +1,346 @@
+/*
+ * Copyright (c) 2012 Global Radio UK Limited
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.    
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+
+package org.radiodns.spi;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import javax.xml.stream.XMLStreamException;
+
+import org.radiodns.Application;
+import org.radiodns.RadioDNS;
+import org.radiodns.Record;
+import org.radiodns.Service;
+
+/**
+ * Client of the Service and Programme Information documents of a resolved
+ * {@link RadioDNS#RADIOSPI} or {@link RadioDNS#RADIOEPG} Application. The
+ * document URLs are built from the target and port of the SRV records,
+ * targets are tried in the order given by {@link Application#selectRecord()},
+ * and documents are fetched with conditional requests, so a document that
+ * has not changed since the last fetch is not downloaded or parsed again.
+ * Documents are parsed while they are downloaded, see {@link SpiParser}.
+ * 
+ * <pre>
+ * SpiClient spi = new SpiClient(service.getApplication(RadioDNS.RADIOSPI));
+ * spi.fetchProgrammeInformation(service, LocalDate.now(), handler);
+ * </pre>
+ */
+public class SpiClient {
+
+	public static final int DEFAULT_CONNECT_TIMEOUT = 5000;
+	public static final int DEFAULT_READ_TIMEOUT = 30000;
+	public static final int DEFAULT_VALIDATOR_CACHE_SIZE = 1024;
+
+	static final String SPI_PATH = "/radiodns/spi/3.1/";
+	static final String EPG_PATH = "/radiodns/epg/";
+
+	private final Application mApplication;
+	private final String mBasePath;
+	private final String mServiceInformationFile;
+	private volatile int mConnectTimeout = DEFAULT_CONNECT_TIMEOUT;
+	private volatile int mReadTimeout = DEFAULT_READ_TIMEOUT;
+	private final Map<String, Validators> mValidators;
+
+	/*
+	 * ETag and Last-Modified time of a fetched document
+	 */
+	private static final class Validators {
+		final String etag;
+		final long lastModified;
+
+		Validators(String etag, long lastModified) {
+			this.etag = etag;
+			this.lastModified = lastModified;
+		}
+	}
+
+	/**
+	 * Class constructor
+	 * 
+	 * @param application	Resolved RADIOSPI or RADIOEPG Application
+	 */
+	public SpiClient(Application application) {
+		this(application, DEFAULT_VALIDATOR_CACHE_SIZE);
+	}
+
+	/**
+	 * Class constructor
+	 * 
+	 * @param application			Resolved RADIOSPI or RADIOEPG Application
+	 * @param validatorCacheSize	Number of documents whose ETag and
+	 * 								Last-Modified time are kept for
+	 * 								conditional requests
+	 */
+	public SpiClient(Application application, final int validatorCacheSize) {
+		if (application == null) {
+			throw new IllegalArgumentException("Application is null");
+		}
+		if (RadioDNS.RADIOSPI.equals(application.getApplicationId())) {
+			mBasePath = SPI_PATH;
+			mServiceInformationFile = "SI.xml";
+		} else if (RadioDNS.RADIOEPG.equals(application.getApplicationId())) {
+			mBasePath = EPG_PATH;
+			mServiceInformationFile = "XSI.xml";
+		} else {
+			throw new IllegalArgumentException("Not a RadioSPI or RadioEPG Application: "
+					+ application.getApplicationId());
+		}
+		if (validatorCacheSize < 0) {
+			throw new IllegalArgumentException("Validator cache size must not be negative");
+		}
+		mApplication = application;
+		mValidators = new LinkedHashMap<String, Validators>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Validators> eldest) {
+				return size() > validatorCacheSize;
+			}
+		};
+	}
+
+	public Application getApplication() {
+		return mApplication;
+	}
+
+	/**
+	 * @param timeout	Connect timeout in milliseconds
+	 */
+	public void setConnectTimeout(int timeout) {
+		mConnectTimeout = timeout;
+	}
+
+	public int getConnectTimeout() {
+		return mConnectTimeout;
+	}
+
+	/**
+	 * @param timeout	Read timeout in milliseconds
+	 */
+	public void setReadTimeout(int timeout) {
+		mReadTimeout = timeout;
+	}
+
+	public int getReadTimeout() {
+		return mReadTimeout;
+	}
+
+	/**
+	 * Get the URL of the Service Information document on a target
+	 * 
+	 * @param record	SRV record of the target
+	 * @return			Document URL
+	 * @throws MalformedURLException
+	 */
+	public URL getServiceInformationUrl(Record record) throws MalformedURLException {
+		return getUrl(record, mServiceInformationFile);
+	}
+
+	/**
+	 * Get the URL of the Programme Information document of a bearer for a
+	 * day on a target
+	 * 
+	 * @param record	SRV record of the target
+	 * @param bearer	Service of the bearer
+	 * @param date		Day of the schedule
+	 * @return			Document URL
+	 * @throws MalformedURLException
+	 */
+	public URL getProgrammeInformationUrl(Record record, Service bearer, LocalDate date)
+			throws MalformedURLException {
+		return getUrl(record, getProgrammeInformationPath(bearer, date));
+	}
+
+	/**
+	 * Get the service identifier path of a bearer, i.e. the labels of its
+	 * RadioDNS FQDN in reverse order, e.g. "fm/ce1/c479/09580" for
+	 * "09580.c479.ce1.fm.radiodns.org"
+	 * 
+	 * @param bearer	Service of the bearer
+	 * @return			Service identifier path
+	 * @throws IllegalArgumentException	if the bearer has no RadioDNS FQDN,
+	 * 					i.e. is an IPService
+	 */
+	public static String getServiceIdentifierPath(Service bearer) {
+		String path = (bearer != null) ? bearer.getServiceIdentifierPath() : null;
+		if (path == null) {
+			throw new IllegalArgumentException("Bearer has no RadioDNS FQDN to build an SPI document path from");
+		}
+		return path;
+	}
+
+	/**
+	 * Fetch and parse the Service Information document, unless it has not
+	 * changed since it was last fetched by this client
+	 * 
+	 * @param handler	Handler receiving the services
+	 * @return			true if the document was parsed, false if it has not
+	 * 					changed
+	 * @throws IOException	if no target could be reached, the document
+	 * 					could not be fetched or it is invalid
+	 */
+	public boolean fetchServiceInformation(SpiHandler handler) throws IOException {
+		return fetch(mServiceInformationFile, handler);
+	}
+
+	/**
+	 * Fetch and parse the Programme Information document of a bearer for a
+	 * day, unless it has not changed since it was last fetched by this client
+	 * 
+	 * @param bearer	Service of the bearer
+	 * @param date		Day of the schedule
+	 * @param handler	Handler receiving the programmes
+	 * @return			true if the document was parsed, false if it has not
+	 * 					changed
+	 * @throws IOException	if no target could be reached, the document
+	 * 					could not be fetched or it is invalid
+	 */
+	public boolean fetchProgrammeInformation(Service bearer, LocalDate date, SpiHandler handler)
+			throws IOException {
+		return fetch(getProgrammeInformationPath(bearer, date), handler);
+	}
+
+	/**
+	 * Forget the ETags and Last-Modified times, so that the next fetches
+	 * download every document again
+	 */
+	public void clearValidators() {
+		synchronized (mValidators) {
+			mValidators.clear();
+		}
+	}
+
+	private static String getProgrammeInformationPath(Service bearer, LocalDate date) {
+		return getServiceIdentifierPath(bearer) + '/' + date.format(DateTimeFormatter.BASIC_ISO_DATE) + "_PI.xml";
+	}
+
+	private URL getUrl(Record record, String path) throws MalformedURLException {
+		return new URL("http", record.getHost(), record.getPort(), mBasePath + path);
+	}
+
+	/**
+	 * Fetch a document, failing over to the next target while a target
+	 * cannot be reached or answers with a server error. Once the document
+	 * is being parsed, failures are not retried, so the handler never
+	 * receives an object twice.
+	 */
+	private boolean fetch(String path, SpiHandler handler) throws IOException {
+		List<Record> records = mApplication.getRecords();
+		IOException lastException = null;
+		for (int attempt = 0; attempt < records.size(); attempt++) {
+			Record record = mApplication.selectRecord();
+			if (record == null) {
+				break;
+			}
+			URL url = getUrl(record, path);
+			HttpURLConnection connection;
+			int status;
+			try {
+				connection = open(url, path);
+				status = connection.getResponseCode();
+			} catch (IOException e) {
+				mApplication.markFailed(record);
+				lastException = e;
+				continue;
+			}
+			if (status >= HttpURLConnection.HTTP_INTERNAL_ERROR) {
+				close(connection.getErrorStream());
+				mApplication.markFailed(record);
+				lastException = new IOException("HTTP " + status + " from " + url);
+				continue;
+			}
+			mApplication.markSucceeded(record);
+			return read(connection, url, path, status, handler);
+		}
+		throw (lastException != null) ? lastException
+				: new IOException("No target available for " + mApplication.getApplicationId());
+	}
+
+	private HttpURLConnection open(URL url, String path) throws IOException {
+		HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+		connection.setConnectTimeout(mConnectTimeout);
+		connection.setReadTimeout(mReadTimeout);
+		connection.setRequestProperty("Accept-Encoding", "gzip");
+		Validators validators;
+		synchronized (mValidators) {
+			validators = mValidators.get(path);
+		}
+		if (validators != null) {
+			if (validators.etag != null) {
+				connection.setRequestProperty("If-None-Match", validators.etag);
+			}
+			if (validators.lastModified > 0) {
+				connection.setIfModifiedSince(validators.lastModified);
+			}
+		}
+		return connection;
+	}
+
+	private boolean read(HttpURLConnection connection, URL url, String path, int status, SpiHandler handler)
+			throws IOException {
+		if (status == HttpURLConnection.HTTP_NOT_MODIFIED) {
+			close(connection.getInputStream());
+			return false;
+		}
+		if (status != HttpURLConnection.HTTP_OK) {
+			close(connection.getErrorStream());
+			throw new IOException("HTTP " + status + " from " + url);
+		}
+		InputStream in = connection.getInputStream();
+		try {
+			if ("gzip".equalsIgnoreCase(connection.getContentEncoding())) {
+				in = new GZIPInputStream(in);
+			}
+			SpiParser.parse(in, handler);
+		} catch (XMLStreamException e) {
+			throw new IOException("Invalid document " + url, e);
+		} finally {
+			in.close();
+		}
+
+		String etag = connection.getHeaderField("ETag");
+		long lastModified = connection.getLastModified();
+		synchronized (mValidators) {
+			if (etag != null || lastModified > 0) {
+				mValidators.put(path, new Validators(etag, lastModified));
+			} else {
+				mValidators.remove(path);
+			}
+		}
+		return true;
+	}
+
+	private static void close(InputStream in) {
+		if (in != null) {
+			try {
+				in.close();
+			} catch (IOException e) {
+				// ignore
+			}
+		}
+	}
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright (c) 2012 Global Radio UK Limited
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.    
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+
+package org.radiodns.spi;
+
+/**
+ * Receives the services and programmes of a Service and Programme
+ * Information document as they are parsed. Each object is passed as soon as
+ * its element ends and is not retained by the parser.
+ */
+public interface SpiHandler {
+
+	/**
+	 * Called for each service of a Service Information document
+	 * 
+	 * @param service	Service
+	 */
+	void onService(ServiceInfo service);
+
+	/**
+	 * Called for each programme of a Programme Information document
+	 * 
+	 * @param programme		Programme
+	 */
+	void onProgramme(Programme programme);
+}
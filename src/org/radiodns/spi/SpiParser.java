@@ -0,0 +1,229 @@
+/*
+ * Copyright (c) 2012 Global Radio UK Limited
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.    
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+
+package org.radiodns.spi;
+
+import java.io.InputStream;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Streaming parser of Service and Programme Information documents, both of
+ * the RadioDNS SPI (ETSI TS 102 818 v3) and of the earlier RadioEPG format.
+ * Only the service or programme being parsed is held in memory, so memory
+ * use does not depend on the size of the document. Elements are matched on
+ * their local names, whatever their namespace.
+ */
+public final class SpiParser {
+
+	private static final XMLInputFactory sFactory = newFactory();
+
+	/*
+	 * Service or programme being parsed
+	 */
+	private static final class Entity {
+		final boolean programme;
+		final int depth;
+		String id;
+		String shortId;
+		String shortName;
+		String mediumName;
+		String longName;
+		String description;
+		List<String> bearers;
+		List<String> multimedia;
+		String radioDNSFqdn;
+		String serviceIdentifier;
+		long startTime = -1;
+		long duration = -1;
+
+		Entity(boolean programme, int depth) {
+			this.programme = programme;
+			this.depth = depth;
+		}
+
+		void addBearer(String id) {
+			if (id == null) {
+				return;
+			}
+			if (bearers == null) {
+				bearers = new ArrayList<String>(2);
+			}
+			bearers.add(id);
+		}
+
+		void addMultimedia(String url) {
+			if (url == null) {
+				return;
+			}
+			if (multimedia == null) {
+				multimedia = new ArrayList<String>(2);
+			}
+			multimedia.add(url);
+		}
+	}
+
+	private SpiParser() {
+	}
+
+	private static XMLInputFactory newFactory() {
+		XMLInputFactory factory = XMLInputFactory.newInstance();
+		factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+		factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+		factory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
+		return factory;
+	}
+
+	/**
+	 * Parse a Service or Programme Information document, passing each
+	 * service and programme to the handler as soon as its element ends
+	 * 
+	 * @param in			Document
+	 * @param handler		Handler
+	 * @throws XMLStreamException
+	 */
+	public static void parse(InputStream in, SpiHandler handler) throws XMLStreamException {
+		XMLStreamReader reader;
+		synchronized (sFactory) {
+			reader = sFactory.createXMLStreamReader(in);
+		}
+		try {
+			parse(reader, handler);
+		} finally {
+			reader.close();
+		}
+	}
+
+	private static void parse(XMLStreamReader reader, SpiHandler handler) throws XMLStreamException {
+		Entity entity = null;
+		int depth = 0;
+		while (reader.hasNext()) {
+			int event = reader.next();
+			if (event == XMLStreamConstants.END_ELEMENT) {
+				if (entity != null && depth == entity.depth) {
+					dispatch(entity, handler);
+					entity = null;
+				}
+				depth--;
+				continue;
+			}
+			if (event != XMLStreamConstants.START_ELEMENT) {
+				continue;
+			}
+			depth++;
+			String name = reader.getLocalName();
+			if (entity == null) {
+				if ("service".equals(name)) {
+					entity = new Entity(false, depth);
+				} else if ("programme".equals(name)) {
+					entity = new Entity(true, depth);
+					entity.id = reader.getAttributeValue(null, "id");
+					entity.shortId = reader.getAttributeValue(null, "shortId");
+				}
+				continue;
+			}
+
+			int level = depth - entity.depth;
+			if (level == 1) {
+				if ("shortName".equals(name)) {
+					entity.shortName = readText(reader);
+					depth--;
+				} else if ("mediumName".equals(name)) {
+					entity.mediumName = readText(reader);
+					depth--;
+				} else if ("longName".equals(name)) {
+					entity.longName = readText(reader);
+					depth--;
+				} else if ("bearer".equals(name) || "serviceID".equals(name)) {
+					entity.addBearer(reader.getAttributeValue(null, "id"));
+				} else if ("radiodns".equals(name)) {
+					entity.radioDNSFqdn = reader.getAttributeValue(null, "fqdn");
+					entity.serviceIdentifier = reader.getAttributeValue(null, "serviceIdentifier");
+				}
+			} else if (level == 2) {
+				if ("shortDescription".equals(name) || "longDescription".equals(name)) {
+					String description = readText(reader);
+					depth--;
+					if (entity.description == null) {
+						entity.description = description;
+					}
+				} else if ("multimedia".equals(name)) {
+					entity.addMultimedia(reader.getAttributeValue(null, "url"));
+				} else if ("time".equals(name) && entity.startTime < 0) {
+					entity.startTime = parseTime(reader.getAttributeValue(null, "time"));
+					entity.duration = parseDuration(reader.getAttributeValue(null, "duration"));
+				}
+			}
+		}
+	}
+
+	private static void dispatch(Entity entity, SpiHandler handler) {
+		if (entity.programme) {
+			handler.onProgramme(new Programme(entity.id, entity.shortId, entity.shortName, entity.mediumName,
+					entity.longName, entity.description, entity.startTime, entity.duration));
+		} else {
+			handler.onService(new ServiceInfo(entity.shortName, entity.mediumName, entity.longName,
+					entity.description, entity.bearers, entity.multimedia, entity.radioDNSFqdn,
+					entity.serviceIdentifier));
+		}
+	}
+
+	/**
+	 * Read the text of the current element, consuming its end element
+	 * 
+	 * @return		Trimmed text, or null if empty
+	 */
+	private static String readText(XMLStreamReader reader) throws XMLStreamException {
+		String text = reader.getElementText().trim();
+		return text.isEmpty() ? null : text;
+	}
+
+	/**
+	 * @return		Milliseconds since the epoch of an ISO 8601 time, or -1
+	 */
+	static long parseTime(String time) {
+		if (time == null) {
+			return -1;
+		}
+		try {
+			return OffsetDateTime.parse(time.trim()).toInstant().toEpochMilli();
+		} catch (DateTimeParseException e) {
+			return -1;
+		}
+	}
+
+	/**
+	 * @return		Seconds of an ISO 8601 duration, e.g. "PT1H30M", or -1
+	 */
+	static long parseDuration(String duration) {
+		if (duration == null) {
+			return -1;
+		}
+		try {
+			return Duration.parse(duration.trim()).getSeconds();
+		} catch (DateTimeParseException e) {
+			return -1;
+		}
+	}
+}
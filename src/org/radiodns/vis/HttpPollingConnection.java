@@ -0,0 +1,348 @@
+/*
+ * Copyright (c) 2012 Global Radio UK Limited
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.    
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+
+package org.radiodns.vis;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+
+import org.radiodns.Application;
+import org.radiodns.Record;
+
+/**
+ * RadioVIS over HTTP, as specified for the radiovis-http application. A
+ * request long-polls a single topic, so topics are polled by a bounded set
+ * of worker threads shared by every topic of the connection, whatever the
+ * number of subscriptions to them, and connections to the target are
+ * reused between polls.
+ * 
+ * A worker is busy for as long as the server holds a poll open, so with
+ * more topics than workers, topics wait in turn to be polled: a message may
+ * then reach its listeners up to the hold time of the server late for every
+ * further round of polls before its topic comes up, instead of at once.
+ * Raise the number of workers with {@link VisClient#VisClient(int)} when
+ * many HTTP topics are subscribed and latency matters more than threads and
+ * sockets.
+ */
+final class HttpPollingConnection extends VisConnection {
+
+	static final String PATH = "/radiodns/vis/vis.json";
+
+	/**
+	 * Read timeout of a poll in milliseconds, longer than the time the
+	 * server holds a poll open
+	 */
+	static final int POLL_TIMEOUT = 90000;
+
+	/**
+	 * Minimum time in milliseconds between polls answered without a message
+	 */
+	static final long MIN_POLL_INTERVAL = 1000;
+
+	private final int mMaxPollers;
+	private final ConcurrentHashMap<String, Topic> mTopics = new ConcurrentHashMap<String, Topic>();
+	private final DelayQueue<Topic> mQueue = new DelayQueue<Topic>();
+	private final List<Thread> mPollers = new ArrayList<Thread>();
+	private volatile Record mRecord = null;
+	private volatile boolean mConnected = false;
+	private int mFailures = 0;
+
+	/**
+	 * Class constructor
+	 * 
+	 * @param application	Resolved RADIOVIS_HTTP Application
+	 * @param name			Name of the connection, used for its threads
+	 * @param maxPollers	Maximum number of topics polled at once
+	 */
+	HttpPollingConnection(Application application, String name, int maxPollers) {
+		super(application, name);
+		mMaxPollers = maxPollers;
+	}
+
+	@Override
+	void start() {
+	}
+
+	@Override
+	void topicAdded(String topic) {
+		if (mClosed) {
+			return;
+		}
+		Topic state = new Topic(topic);
+		mTopics.put(topic, state);
+		mQueue.add(state);
+		synchronized (mPollers) {
+			if (mPollers.size() < Math.min(mMaxPollers, mTopics.size())) {
+				Thread thread = newThread(new Poller(), "radiovis-http-" + mName);
+				mPollers.add(thread);
+				thread.start();
+			}
+		}
+	}
+
+	@Override
+	void topicRemoved(String topic) {
+		Topic state = mTopics.remove(topic);
+		if (state != null) {
+			state.cancel();
+			mQueue.remove(state);
+		}
+	}
+
+	@Override
+	void close() {
+		mClosed = true;
+		for (Topic state : mTopics.values()) {
+			state.cancel();
+		}
+		mTopics.clear();
+		mQueue.clear();
+		synchronized (mPollers) {
+			for (Thread thread : mPollers) {
+				thread.interrupt();
+			}
+			mPollers.clear();
+		}
+		mConnected = false;
+	}
+
+	@Override
+	boolean isConnected() {
+		return mConnected;
+	}
+
+	/**
+	 * @return		Number of worker threads polling the topics
+	 */
+	int getPollerCount() {
+		synchronized (mPollers) {
+			return mPollers.size();
+		}
+	}
+
+	/**
+	 * Get the target polled by every topic, selecting the next one once it
+	 * has failed
+	 */
+	private Record currentRecord() {
+		Record record = mRecord;
+		if (record == null || mApplication.isFailed(record)) {
+			record = mApplication.selectRecord();
+			mRecord = record;
+		}
+		return record;
+	}
+
+	/**
+	 * Get the delay before the next poll while every target is backing off,
+	 * doubling with every consecutive failure
+	 */
+	private synchronized long failed() {
+		mFailures++;
+		return Math.min(Application.INITIAL_BACKOFF << Math.min(mFailures - 1, 16), Application.MAXIMUM_BACKOFF);
+	}
+
+	private synchronized void succeeded() {
+		mFailures = 0;
+	}
+
+	/**
+	 * Convert a poll response into a message
+	 * 
+	 * @return		Message, or null if the poll ended without one
+	 */
+	static VisMessage toMessage(String topic, Map<String, Object> response) {
+		if (!Boolean.TRUE.equals(response.get("success"))) {
+			return null;
+		}
+		Map<String, String> headers = new HashMap<String, String>();
+		Object values = response.get("headers");
+		if (values instanceof Map) {
+			for (Map.Entry<?, ?> header : ((Map<?, ?>) values).entrySet()) {
+				if (header.getValue() == null) {
+					continue;
+				}
+				String name = header.getKey().toString().toLowerCase();
+				if (name.startsWith("radiovis-")) {
+					name = name.substring("radiovis-".length());
+				}
+				headers.put(name, header.getValue().toString());
+			}
+		}
+		if (!headers.containsKey(VisMessage.DESTINATION)) {
+			headers.put(VisMessage.DESTINATION, topic);
+		}
+		Object body = response.get("body");
+		return VisMessage.parse((body != null) ? body.toString() : null, headers);
+	}
+
+	/*
+	 * Polling state of a topic, queued until its next poll is due
+	 */
+	private static final class Topic implements Delayed {
+
+		final String mTopic;
+		String mLastId = null;
+		volatile long mDue = 0;
+		volatile boolean mCancelled = false;
+		volatile HttpURLConnection mConnection = null;
+
+		Topic(String topic) {
+			mTopic = topic;
+		}
+
+		@Override
+		public long getDelay(TimeUnit unit) {
+			return unit.convert(mDue - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+		}
+
+		@Override
+		public int compareTo(Delayed other) {
+			return Long.compare(mDue, ((Topic) other).mDue);
+		}
+
+		void cancel() {
+			mCancelled = true;
+			HttpURLConnection connection = mConnection;
+			if (connection != null) {
+				connection.disconnect();
+			}
+		}
+	}
+
+	/*
+	 * Polls the topics in turn, one at a time
+	 */
+	private final class Poller implements Runnable {
+
+		@Override
+		public void run() {
+			while (!mClosed) {
+				Topic topic;
+				try {
+					topic = mQueue.take();
+				} catch (InterruptedException e) {
+					break;
+				}
+				if (topic.mCancelled) {
+					continue;
+				}
+				long delay = poll(topic);
+				if (!topic.mCancelled && !mClosed) {
+					topic.mDue = System.currentTimeMillis() + delay;
+					mQueue.add(topic);
+				}
+			}
+		}
+
+		/**
+		 * Poll a topic once, passing its message to the subscriptions
+		 * 
+		 * @return		Delay in milliseconds before the topic is polled again
+		 */
+		private long poll(Topic topic) {
+			Record record = currentRecord();
+			if (record == null || mApplication.isFailed(record)) {
+				return failed();
+			}
+			long start = System.currentTimeMillis();
+			Map<String, Object> response;
+			try {
+				response = poll(record, topic);
+			} catch (IOException e) {
+				if (!topic.mCancelled && !mClosed) {
+					mConnected = false;
+					mApplication.markFailed(record);
+				}
+				return 0;
+			}
+			succeeded();
+			mConnected = true;
+			mApplication.markSucceeded(record);
+
+			VisMessage message = toMessage(topic.mTopic, response);
+			if (message != null) {
+				if (message.getMessageId() != null) {
+					topic.mLastId = message.getMessageId();
+				}
+				if (!topic.mCancelled) {
+					deliver(topic.mTopic, message);
+				}
+				return 0;
+			}
+			return (System.currentTimeMillis() - start < MIN_POLL_INTERVAL) ? MIN_POLL_INTERVAL : 0;
+		}
+
+		private Map<String, Object> poll(Record record, Topic topic) throws IOException {
+			StringBuilder path = new StringBuilder(PATH);
+			path.append("?topic=").append(URLEncoder.encode(topic.mTopic, "UTF-8"));
+			if (topic.mLastId != null) {
+				path.append("&last_id=").append(URLEncoder.encode(topic.mLastId, "UTF-8"));
+			}
+			URL url = new URL("http", record.getHost(), record.getPort(), path.toString());
+			HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+			connection.setConnectTimeout(CONNECT_TIMEOUT);
+			connection.setReadTimeout(POLL_TIMEOUT);
+			topic.mConnection = connection;
+			try {
+				if (topic.mCancelled) {
+					throw new IOException("Poll cancelled");
+				}
+				int status = connection.getResponseCode();
+				if (status != HttpURLConnection.HTTP_OK) {
+					InputStream error = connection.getErrorStream();
+					if (error != null) {
+						error.close();
+					}
+					throw new IOException("HTTP " + status + " from " + url);
+				}
+				return Json.parseObject(readBody(connection.getInputStream()));
+			} finally {
+				topic.mConnection = null;
+			}
+		}
+	}
+
+	private static String readBody(InputStream in) throws IOException {
+		try {
+			ByteArrayOutputStream body = new ByteArrayOutputStream();
+			byte[] buffer = new byte[4096];
+			int n;
+			while ((n = in.read(buffer)) > 0) {
+				if (body.size() + n > StompConnection.MAX_FRAME_SIZE) {
+					throw new IOException("Response too large");
+				}
+				body.write(buffer, 0, n);
+			}
+			return new String(body.toByteArray(), StandardCharsets.UTF_8);
+		} finally {
+			in.close();
+		}
+	}
+}
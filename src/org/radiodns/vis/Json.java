@@ -0,0 +1,218 @@
+/*
+ * Copyright (c) 2012 Global Radio UK Limited
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.    
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+
+package org.radiodns.vis;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Minimal JSON parser for the responses of RadioVIS over HTTP. Objects are
+ * returned as Maps, arrays as Lists, numbers as their String representation,
+ * true and false as Booleans and null as null.
+ */
+final class Json {
+
+	private final String mText;
+	private int mPos = 0;
+
+	private Json(String text) {
+		mText = text;
+	}
+
+	/**
+	 * Parse a JSON object
+	 * 
+	 * @throws IOException	if the text is not a JSON object
+	 */
+	@SuppressWarnings("unchecked")
+	static Map<String, Object> parseObject(String text) throws IOException {
+		Json json = new Json(text);
+		Object value = json.readValue();
+		json.skipWhitespace();
+		if (!(value instanceof Map) || json.mPos != text.length()) {
+			throw new IOException("Not a JSON object");
+		}
+		return (Map<String, Object>) value;
+	}
+
+	private Object readValue() throws IOException {
+		skipWhitespace();
+		if (mPos >= mText.length()) {
+			throw new IOException("Unexpected end of JSON");
+		}
+		char c = mText.charAt(mPos);
+		switch (c) {
+		case '{':
+			return readObject();
+		case '[':
+			return readArray();
+		case '"':
+			return readString();
+		case 't':
+			expect("true");
+			return Boolean.TRUE;
+		case 'f':
+			expect("false");
+			return Boolean.FALSE;
+		case 'n':
+			expect("null");
+			return null;
+		default:
+			return readNumber();
+		}
+	}
+
+	private Map<String, Object> readObject() throws IOException {
+		Map<String, Object> object = new LinkedHashMap<String, Object>();
+		mPos++;
+		skipWhitespace();
+		if (peek() == '}') {
+			mPos++;
+			return object;
+		}
+		while (true) {
+			skipWhitespace();
+			if (peek() != '"') {
+				throw new IOException("Expected a JSON string at " + mPos);
+			}
+			String key = readString();
+			skipWhitespace();
+			if (peek() != ':') {
+				throw new IOException("Expected ':' at " + mPos);
+			}
+			mPos++;
+			object.put(key, readValue());
+			skipWhitespace();
+			char c = peek();
+			mPos++;
+			if (c == '}') {
+				return object;
+			}
+			if (c != ',') {
+				throw new IOException("Expected ',' or '}' at " + (mPos - 1));
+			}
+		}
+	}
+
+	private List<Object> readArray() throws IOException {
+		List<Object> array = new ArrayList<Object>();
+		mPos++;
+		skipWhitespace();
+		if (peek() == ']') {
+			mPos++;
+			return array;
+		}
+		while (true) {
+			array.add(readValue());
+			skipWhitespace();
+			char c = peek();
+			mPos++;
+			if (c == ']') {
+				return array;
+			}
+			if (c != ',') {
+				throw new IOException("Expected ',' or ']' at " + (mPos - 1));
+			}
+		}
+	}
+
+	private String readString() throws IOException {
+		StringBuilder sb = new StringBuilder();
+		mPos++;
+		while (true) {
+			char c = next();
+			if (c == '"') {
+				return sb.toString();
+			}
+			if (c != '\\') {
+				sb.append(c);
+				continue;
+			}
+			c = next();
+			switch (c) {
+			case 'b':
+				sb.append('\b');
+				break;
+			case 'f':
+				sb.append('\f');
+				break;
+			case 'n':
+				sb.append('\n');
+				break;
+			case 'r':
+				sb.append('\r');
+				break;
+			case 't':
+				sb.append('\t');
+				break;
+			case 'u':
+				if (mPos + 4 > mText.length()) {
+					throw new IOException("Unexpected end of JSON");
+				}
+				try {
+					sb.append((char) Integer.parseInt(mText.substring(mPos, mPos + 4), 16));
+				} catch (NumberFormatException e) {
+					throw new IOException("Invalid unicode escape at " + mPos);
+				}
+				mPos += 4;
+				break;
+			default:
+				sb.append(c);
+			}
+		}
+	}
+
+	private String readNumber() throws IOException {
+		int start = mPos;
+		while (mPos < mText.length() && "+-0123456789.eE".indexOf(mText.charAt(mPos)) >= 0) {
+			mPos++;
+		}
+		if (start == mPos) {
+			throw new IOException("Unexpected character at " + mPos);
+		}
+		return mText.substring(start, mPos);
+	}
+
+	private void expect(String literal) throws IOException {
+		if (!mText.startsWith(literal, mPos)) {
+			throw new IOException("Unexpected character at " + mPos);
+		}
+		mPos += literal.length();
+	}
+
+	private char peek() throws IOException {
+		if (mPos >= mText.length()) {
+			throw new IOException("Unexpected end of JSON");
+		}
+		return mText.charAt(mPos);
+	}
+
+	private char next() throws IOException {
+		char c = peek();
+		mPos++;
+		return c;
+	}
+
+	private void skipWhitespace() {
+		while (mPos < mText.length() && Character.isWhitespace(mText.charAt(mPos))) {
+			mPos++;
+		}
+	}
+}
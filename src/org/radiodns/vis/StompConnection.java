@@ -0,0 +1,369 @@
+/*
+ * Copyright (c) 2012 Global Radio UK Limited
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.    
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+
+package org.radiodns.vis;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.radiodns.Application;
+import org.radiodns.Record;
+
+/**
+ * STOMP 1.0 connection to a RadioVIS target, as specified for the radiovis
+ * application. One socket carries the subscriptions to every topic.
+ */
+final class StompConnection extends VisConnection implements Runnable {
+
+	/**
+	 * Maximum size of a frame in bytes, protecting against a runaway peer
+	 */
+	static final int MAX_FRAME_SIZE = 1 << 20;
+
+	private final Thread mThread;
+	private final Object mWriteLock = new Object();
+	/*
+	 * Socket, output and subscribed topics of the current session, guarded
+	 * by mWriteLock
+	 */
+	private Socket mSocket = null;
+	private OutputStream mOut = null;
+	private final Set<String> mSubscribed = new HashSet<String>();
+
+	StompConnection(Application application, String name) {
+		super(application, name);
+		mThread = newThread(this, "radiovis-" + name);
+	}
+
+	@Override
+	void start() {
+		mThread.start();
+	}
+
+	@Override
+	public void run() {
+		int failures = 0;
+		while (!mClosed) {
+			Record record = mApplication.selectRecord();
+			if (record == null || mApplication.isFailed(record)) {
+				if (!backoff(++failures)) {
+					break;
+				}
+				continue;
+			}
+			InputStream in;
+			try {
+				in = connect(record);
+			} catch (IOException e) {
+				disconnect();
+				if (mClosed) {
+					break;
+				}
+				mApplication.markFailed(record);
+				continue;
+			}
+			mApplication.markSucceeded(record);
+			failures = 0;
+			try {
+				read(in);
+			} catch (IOException e) {
+				if (!mClosed) {
+					mApplication.markFailed(record);
+				}
+			} finally {
+				disconnect();
+			}
+		}
+		disconnect();
+	}
+
+	/**
+	 * Connect to a target and subscribe every topic
+	 * 
+	 * @return		Input stream of the session
+	 */
+	private InputStream connect(Record record) throws IOException {
+		InetSocketAddress address = record.getSocketAddress();
+		if (address.isUnresolved()) {
+			address = new InetSocketAddress(address.getHostString(), address.getPort());
+		}
+		Socket socket = new Socket();
+		synchronized (mWriteLock) {
+			if (mClosed) {
+				throw new IOException("Connection closed");
+			}
+			mSocket = socket;
+		}
+		socket.setKeepAlive(true);
+		socket.setTcpNoDelay(true);
+		socket.connect(address, CONNECT_TIMEOUT);
+		socket.setSoTimeout(CONNECT_TIMEOUT);
+		InputStream in = new BufferedInputStream(socket.getInputStream());
+		OutputStream out = new BufferedOutputStream(socket.getOutputStream());
+
+		Map<String, String> headers = new HashMap<String, String>();
+		headers.put("host", record.getHost());
+		writeFrame(out, "CONNECT", headers);
+		Frame frame = readFrame(in);
+		if (frame == null || !"CONNECTED".equals(frame.command)) {
+			throw new IOException("STOMP connection refused by " + address
+					+ ((frame != null && frame.headers.containsKey("message")) ? ": " + frame.headers.get("message") : ""));
+		}
+		socket.setSoTimeout(0);
+
+		synchronized (mWriteLock) {
+			mOut = out;
+			for (String topic : getTopics()) {
+				subscribe(topic);
+			}
+		}
+		return in;
+	}
+
+	/**
+	 * Read frames until the session ends
+	 */
+	private void read(InputStream in) throws IOException {
+		while (!mClosed) {
+			Frame frame = readFrame(in);
+			if (frame == null) {
+				throw new EOFException("Connection closed by peer");
+			}
+			if ("MESSAGE".equals(frame.command)) {
+				String topic = frame.headers.get(VisMessage.DESTINATION);
+				VisMessage message = VisMessage.parse(frame.body, frame.headers);
+				if (topic != null && message != null) {
+					deliver(topic, message);
+				}
+			} else if ("ERROR".equals(frame.command)) {
+				throw new IOException("STOMP error: " + frame.headers.get("message"));
+			}
+		}
+	}
+
+	private void disconnect() {
+		Socket socket;
+		synchronized (mWriteLock) {
+			socket = mSocket;
+			mSocket = null;
+			mOut = null;
+			mSubscribed.clear();
+		}
+		if (socket != null) {
+			try {
+				socket.close();
+			} catch (IOException e) {
+				// ignore
+			}
+		}
+	}
+
+	@Override
+	void topicAdded(String topic) {
+		synchronized (mWriteLock) {
+			if (mOut != null) {
+				subscribe(topic);
+			}
+		}
+	}
+
+	@Override
+	void topicRemoved(String topic) {
+		synchronized (mWriteLock) {
+			if (mOut != null && mSubscribed.remove(topic)) {
+				Map<String, String> headers = new HashMap<String, String>();
+				headers.put(VisMessage.DESTINATION, topic);
+				headers.put("id", topic);
+				send("UNSUBSCRIBE", headers);
+			}
+		}
+	}
+
+	/**
+	 * Subscribe a topic in the current session, once. Called while holding
+	 * mWriteLock.
+	 */
+	private void subscribe(String topic) {
+		if (mSubscribed.add(topic)) {
+			Map<String, String> headers = new HashMap<String, String>();
+			headers.put(VisMessage.DESTINATION, topic);
+			headers.put("id", topic);
+			headers.put("ack", "auto");
+			send("SUBSCRIBE", headers);
+		}
+	}
+
+	/**
+	 * Send a frame in the current session. A failure closes the socket, so
+	 * the reading thread reconnects. Called while holding mWriteLock.
+	 */
+	private void send(String command, Map<String, String> headers) {
+		try {
+			writeFrame(mOut, command, headers);
+		} catch (IOException e) {
+			try {
+				mSocket.close();
+			} catch (IOException ignored) {
+				// ignore
+			}
+		}
+	}
+
+	@Override
+	void close() {
+		mClosed = true;
+		synchronized (mWriteLock) {
+			if (mOut != null) {
+				send("DISCONNECT", new HashMap<String, String>());
+			}
+		}
+		disconnect();
+		mThread.interrupt();
+	}
+
+	@Override
+	boolean isConnected() {
+		synchronized (mWriteLock) {
+			return mOut != null;
+		}
+	}
+
+	/*
+	 * Received STOMP frame
+	 */
+	static final class Frame {
+		final String command;
+		final Map<String, String> headers;
+		final String body;
+
+		Frame(String command, Map<String, String> headers, String body) {
+			this.command = command;
+			this.headers = headers;
+			this.body = body;
+		}
+	}
+
+	static void writeFrame(OutputStream out, String command, Map<String, String> headers) throws IOException {
+		StringBuilder sb = new StringBuilder(64);
+		sb.append(command).append('\n');
+		for (Map.Entry<String, String> header : headers.entrySet()) {
+			sb.append(header.getKey()).append(':').append(header.getValue()).append('\n');
+		}
+		sb.append('\n');
+		out.write(sb.toString().getBytes(StandardCharsets.UTF_8));
+		out.write(0);
+		out.flush();
+	}
+
+	/**
+	 * Read a frame, skipping the newlines sent between frames
+	 * 
+	 * @return		Frame, or null at the end of the stream
+	 */
+	static Frame readFrame(InputStream in) throws IOException {
+		String command;
+		do {
+			command = readLine(in);
+			if (command == null) {
+				return null;
+			}
+		} while (command.isEmpty());
+
+		Map<String, String> headers = new HashMap<String, String>();
+		String line;
+		while ((line = readLine(in)) != null && !line.isEmpty()) {
+			int colon = line.indexOf(':');
+			if (colon > 0 && !headers.containsKey(line.substring(0, colon).toLowerCase())) {
+				headers.put(line.substring(0, colon).toLowerCase(), line.substring(colon + 1));
+			}
+		}
+		if (line == null) {
+			return null;
+		}
+
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		String contentLength = headers.get("content-length");
+		if (contentLength != null) {
+			int length;
+			try {
+				length = Integer.parseInt(contentLength.trim());
+			} catch (NumberFormatException e) {
+				throw new IOException("Invalid content-length: " + contentLength);
+			}
+			if (length < 0 || length > MAX_FRAME_SIZE) {
+				throw new IOException("Frame too large: " + length);
+			}
+			for (int i = 0; i < length; i++) {
+				int b = in.read();
+				if (b < 0) {
+					return null;
+				}
+				body.write(b);
+			}
+			int b;
+			while ((b = in.read()) != 0) {
+				if (b < 0) {
+					return null;
+				}
+			}
+		} else {
+			int b;
+			while ((b = in.read()) != 0) {
+				if (b < 0) {
+					return null;
+				}
+				if (body.size() >= MAX_FRAME_SIZE) {
+					throw new IOException("Frame too large");
+				}
+				body.write(b);
+			}
+		}
+		return new Frame(command, headers, new String(body.toByteArray(), StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * @return		Line without its end of line, or null at the end of the
+	 * 				stream
+	 */
+	private static String readLine(InputStream in) throws IOException {
+		ByteArrayOutputStream line = new ByteArrayOutputStream(64);
+		int b;
+		while ((b = in.read()) != '\n') {
+			if (b < 0) {
+				return null;
+			}
+			if (line.size() >= MAX_FRAME_SIZE) {
+				throw new IOException("Header too large");
+			}
+			line.write(b);
+		}
+		byte[] bytes = line.toByteArray();
+		int length = (bytes.length > 0 && bytes[bytes.length - 1] == '\r') ? bytes.length - 1 : bytes.length;
+		return new String(bytes, 0, length, StandardCharsets.UTF_8);
+	}
+}
@@ -0,0 +1,223 @@
+/*
+ * Copyright (c) 2012 Global Radio UK Limited
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.    
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+
+package org.radiodns.vis;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.radiodns.Application;
+import org.radiodns.RadioDNS;
+import org.radiodns.Record;
+import org.radiodns.Service;
+
+/**
+ * RadioVIS client of resolved {@link RadioDNS#RADIOVIS} (STOMP) and
+ * {@link RadioDNS#RADIOVIS_HTTP} (HTTP long-polling) Applications. One
+ * connection is kept per set of SRV targets and shared by every
+ * subscription to them: each topic is subscribed once upstream and its
+ * messages are fanned out to the local listeners, so any number of
+ * subscribers share a handful of sockets. Over HTTP, where a request polls a
+ * single topic, at most {@link #DEFAULT_HTTP_POLLERS} topics per connection
+ * are polled at once unless configured otherwise. Lost connections are
+ * reconnected with backoff, trying the targets in SRV priority order.
+ * 
+ * <pre>
+ * VisClient vis = new VisClient();
+ * VisSubscription subscription = vis.subscribe(service.getApplication(RadioDNS.RADIOVIS),
+ *         VisClient.getTopic(service, VisClient.IMAGE), listener);
+ * ...
+ * subscription.cancel();
+ * </pre>
+ */
+public class VisClient {
+
+	public static final String TEXT = "text";
+	public static final String IMAGE = "image";
+
+	/**
+	 * Default maximum number of topics long-polled at once per
+	 * {@link RadioDNS#RADIOVIS_HTTP} connection
+	 */
+	public static final int DEFAULT_HTTP_POLLERS = 8;
+
+	private final Map<String, VisConnection> mConnections = new HashMap<String, VisConnection>();
+	private final int mHttpPollers;
+	private boolean mClosed = false;
+
+	/**
+	 * Class constructor
+	 */
+	public VisClient() {
+		this(DEFAULT_HTTP_POLLERS);
+	}
+
+	/**
+	 * Class constructor
+	 * 
+	 * @param httpPollers	Maximum number of topics long-polled at once per
+	 * 						RADIOVIS_HTTP connection, each by its own thread
+	 * 						and socket. Further topics wait for their turn.
+	 */
+	public VisClient(int httpPollers) {
+		if (httpPollers < 1) {
+			throw new IllegalArgumentException("Number of HTTP pollers must be positive");
+		}
+		mHttpPollers = httpPollers;
+	}
+
+	/**
+	 * Get the RadioVIS topic of a bearer, e.g.
+	 * "/topic/fm/ce1/c479/09580/image"
+	 * 
+	 * @param bearer	Service of the bearer
+	 * @param type		{@link #TEXT} or {@link #IMAGE}
+	 * @return			Topic
+	 * @throws IllegalArgumentException	if the bearer has no RadioDNS FQDN,
+	 * 					i.e. is an IPService
+	 */
+	public static String getTopic(Service bearer, String type) {
+		String path = (bearer != null) ? bearer.getServiceIdentifierPath() : null;
+		if (path == null) {
+			throw new IllegalArgumentException("Bearer has no RadioDNS FQDN to build a RadioVIS topic from");
+		}
+		return "/topic/" + path + "/" + type;
+	}
+
+	/**
+	 * Subscribe a listener to a topic, connecting to the targets of the
+	 * Application unless a connection to them is already open
+	 * 
+	 * @param application	Resolved RADIOVIS or RADIOVIS_HTTP Application
+	 * @param topic			Topic, see {@link #getTopic(Service, String)}
+	 * @param listener		Listener receiving the messages of the topic
+	 * @return				Subscription, to be cancelled when no longer needed
+	 */
+	public synchronized VisSubscription subscribe(Application application, String topic, VisListener listener) {
+		if (application == null) {
+			throw new IllegalArgumentException("Application is null");
+		}
+		boolean http = RadioDNS.RADIOVIS_HTTP.equals(application.getApplicationId());
+		if (!http && !RadioDNS.RADIOVIS.equals(application.getApplicationId())) {
+			throw new IllegalArgumentException("Not a RadioVIS Application: " + application.getApplicationId());
+		}
+		if (topic == null || listener == null) {
+			throw new IllegalArgumentException("Topic or listener is null");
+		}
+		if (mClosed) {
+			throw new IllegalStateException("Client is closed");
+		}
+
+		String key = key(application);
+		VisConnection connection = mConnections.get(key);
+		if (connection == null) {
+			Record record = application.selectRecord();
+			if (record == null) {
+				throw new IllegalArgumentException("Application has no available target");
+			}
+			String name = record.getHost() + ":" + record.getPort();
+			connection = http ? new HttpPollingConnection(application, name, mHttpPollers) : new StompConnection(application, name);
+			mConnections.put(key, connection);
+			connection.start();
+		}
+		VisSubscription subscription = new VisSubscription(this, connection, topic, listener);
+		connection.add(subscription);
+		return subscription;
+	}
+
+	/**
+	 * Subscribe a listener to the text or image topic of a bearer
+	 * 
+	 * @param application	Resolved RADIOVIS or RADIOVIS_HTTP Application
+	 * @param bearer		Service of the bearer
+	 * @param type			{@link #TEXT} or {@link #IMAGE}
+	 * @param listener		Listener receiving the messages of the topic
+	 * @return				Subscription, to be cancelled when no longer needed
+	 */
+	public VisSubscription subscribe(Application application, Service bearer, String type, VisListener listener) {
+		return subscribe(application, getTopic(bearer, type), listener);
+	}
+
+	synchronized void cancel(VisSubscription subscription) {
+		VisConnection connection = subscription.getConnection();
+		if (connection.remove(subscription)) {
+			Iterator<VisConnection> it = mConnections.values().iterator();
+			while (it.hasNext()) {
+				if (it.next() == connection) {
+					it.remove();
+				}
+			}
+			connection.close();
+		}
+	}
+
+	/**
+	 * @return		Number of open connections
+	 */
+	public synchronized int getConnectionCount() {
+		return mConnections.size();
+	}
+
+	/**
+	 * @return		Number of subscriptions not cancelled yet
+	 */
+	public synchronized int getSubscriptionCount() {
+		int count = 0;
+		for (VisConnection connection : mConnections.values()) {
+			count += connection.getSubscriptionCount();
+		}
+		return count;
+	}
+
+	/**
+	 * Whether the connection to the targets of an Application is currently
+	 * established
+	 * 
+	 * @param application	RADIOVIS or RADIOVIS_HTTP Application
+	 * @return				true if connected
+	 */
+	public synchronized boolean isConnected(Application application) {
+		VisConnection connection = mConnections.get(key(application));
+		return connection != null && connection.isConnected();
+	}
+
+	/**
+	 * Close every connection. Subscriptions stop receiving messages.
+	 */
+	public synchronized void close() {
+		mClosed = true;
+		for (VisConnection connection : mConnections.values()) {
+			connection.close();
+		}
+		mConnections.clear();
+	}
+
+	/**
+	 * Get the key of the connection to the targets of an Application
+	 */
+	private static String key(Application application) {
+		List<String> targets = new ArrayList<String>();
+		for (Record record : application.getRecords()) {
+			targets.add(record.getHost().toLowerCase() + ":" + record.getPort());
+		}
+		Collections.sort(targets);
+		return application.getApplicationId() + targets;
+	}
+}
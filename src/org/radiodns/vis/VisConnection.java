@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) 2012 Global Radio UK Limited
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.    
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+
+package org.radiodns.vis;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.radiodns.Application;
+
+/**
+ * Connection to the targets of a RadioVIS Application, shared by every
+ * subscription to them. Each topic is subscribed once upstream and its
+ * messages are fanned out to the local subscriptions. The connection fails
+ * over to the next target in the order given by
+ * {@link Application#selectRecord()} as soon as a target fails, and waits
+ * for a backoff period doubling with every consecutive failure while every
+ * target is backing off.
+ */
+abstract class VisConnection {
+
+	static final int CONNECT_TIMEOUT = 5000;
+
+	final Application mApplication;
+	final String mName;
+	volatile boolean mClosed = false;
+
+	private final ConcurrentHashMap<String, CopyOnWriteArrayList<VisSubscription>> mSubscriptions =
+			new ConcurrentHashMap<String, CopyOnWriteArrayList<VisSubscription>>();
+
+	VisConnection(Application application, String name) {
+		mApplication = application;
+		mName = name;
+	}
+
+	/**
+	 * Add a subscription, subscribing its topic upstream if it is the first
+	 * one to the topic. Called while holding the lock of the VisClient.
+	 */
+	void add(VisSubscription subscription) {
+		String topic = subscription.getTopic();
+		CopyOnWriteArrayList<VisSubscription> subscriptions = mSubscriptions.get(topic);
+		if (subscriptions == null) {
+			subscriptions = new CopyOnWriteArrayList<VisSubscription>();
+			subscriptions.add(subscription);
+			mSubscriptions.put(topic, subscriptions);
+			topicAdded(topic);
+		} else {
+			subscriptions.add(subscription);
+		}
+	}
+
+	/**
+	 * Remove a subscription, unsubscribing its topic upstream if it was the
+	 * last one to the topic. Called while holding the lock of the VisClient.
+	 * 
+	 * @return		true if the connection has no subscriptions left
+	 */
+	boolean remove(VisSubscription subscription) {
+		String topic = subscription.getTopic();
+		CopyOnWriteArrayList<VisSubscription> subscriptions = mSubscriptions.get(topic);
+		if (subscriptions != null && subscriptions.remove(subscription) && subscriptions.isEmpty()) {
+			mSubscriptions.remove(topic);
+			topicRemoved(topic);
+		}
+		return mSubscriptions.isEmpty();
+	}
+
+	Set<String> getTopics() {
+		return mSubscriptions.keySet();
+	}
+
+	boolean hasTopic(String topic) {
+		return mSubscriptions.containsKey(topic);
+	}
+
+	int getSubscriptionCount() {
+		int count = 0;
+		for (List<VisSubscription> subscriptions : mSubscriptions.values()) {
+			count += subscriptions.size();
+		}
+		return count;
+	}
+
+	/**
+	 * Pass a message to the subscriptions of its topic
+	 */
+	void deliver(String topic, VisMessage message) {
+		List<VisSubscription> subscriptions = mSubscriptions.get(topic);
+		if (subscriptions == null) {
+			return;
+		}
+		for (VisSubscription subscription : subscriptions) {
+			try {
+				subscription.getListener().onMessage(message);
+			} catch (RuntimeException e) {
+				// a failing listener must not break the shared connection
+			}
+		}
+	}
+
+	/**
+	 * Wait before reconnecting while every target is backing off after a
+	 * failure
+	 * 
+	 * @return		false if the connection was closed while waiting
+	 */
+	boolean backoff(int failures) {
+		long backoff = Math.min(Application.INITIAL_BACKOFF << Math.min(Math.max(failures, 1) - 1, 16),
+				Application.MAXIMUM_BACKOFF);
+		try {
+			Thread.sleep(backoff);
+		} catch (InterruptedException e) {
+			return false;
+		}
+		return !mClosed;
+	}
+
+	Thread newThread(Runnable runnable, String name) {
+		Thread thread = new Thread(runnable, name);
+		thread.setDaemon(true);
+		return thread;
+	}
+
+	/**
+	 * Start connecting
+	 */
+	abstract void start();
+
+	/**
+	 * Subscribe a topic upstream
+	 */
+	abstract void topicAdded(String topic);
+
+	/**
+	 * Unsubscribe a topic upstream
+	 */
+	abstract void topicRemoved(String topic);
+
+	/**
+	 * Close the connection for good
+	 */
+	abstract void close();
+
+	/**
+	 * @return		Whether the connection is currently established
+	 */
+	abstract boolean isConnected();
+}
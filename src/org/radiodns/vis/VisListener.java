@@ -0,0 +1,32 @@
+/*
+ * Copyright (c) 2012 Global Radio UK Limited
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.    
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+
+package org.radiodns.vis;
+
+/**
+ * Receives the RadioVIS messages of a subscribed topic. Messages are passed
+ * on the thread reading the shared connection, so implementations should
+ * return quickly and hand any slow work over to another thread.
+ */
+public interface VisListener {
+
+	/**
+	 * Called for each message of the subscribed topic
+	 * 
+	 * @param message	Message
+	 */
+	void onMessage(VisMessage message);
+}
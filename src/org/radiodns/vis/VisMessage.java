@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2012 Global Radio UK Limited
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.    
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+
+package org.radiodns.vis;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * RadioVIS message, i.e. a TEXT message carrying the text to display or a
+ * SHOW message carrying the URL of the slide to show
+ */
+public class VisMessage {
+
+	/**
+	 * Type of a RadioVIS message
+	 */
+	public enum Type {
+		TEXT, SHOW
+	}
+
+	public static final String DESTINATION = "destination";
+	public static final String MESSAGE_ID = "message-id";
+	public static final String LINK = "link";
+	public static final String TRIGGER_TIME = "trigger-time";
+
+	private final Type mType;
+	private final String mBody;
+	private final Map<String, String> mHeaders;
+
+	/**
+	 * Class constructor
+	 * 
+	 * @param type		Message type
+	 * @param body		Text of a TEXT message or URL of a SHOW message
+	 * @param headers	Message headers, keyed on their lower case STOMP names
+	 */
+	public VisMessage(Type type, String body, Map<String, String> headers) {
+		mType = type;
+		mBody = body;
+		mHeaders = (headers != null) ? Collections.unmodifiableMap(headers)
+				: Collections.<String, String>emptyMap();
+	}
+
+	/**
+	 * Create from the body and headers of a received message
+	 * 
+	 * @return		Message, or null if the body is neither TEXT nor SHOW
+	 */
+	static VisMessage parse(String body, Map<String, String> headers) {
+		if (body == null) {
+			return null;
+		}
+		if (body.startsWith("TEXT ")) {
+			return new VisMessage(Type.TEXT, body.substring(5), headers);
+		}
+		if (body.startsWith("SHOW ")) {
+			return new VisMessage(Type.SHOW, body.substring(5).trim(), headers);
+		}
+		return null;
+	}
+
+	public Type getType() {
+		return mType;
+	}
+
+	/**
+	 * @return		Text of a TEXT message or URL of a SHOW message
+	 */
+	public String getBody() {
+		return mBody;
+	}
+
+	/**
+	 * @return		Topic the message was sent to
+	 */
+	public String getDestination() {
+		return mHeaders.get(DESTINATION);
+	}
+
+	public String getMessageId() {
+		return mHeaders.get(MESSAGE_ID);
+	}
+
+	/**
+	 * @return		URL to open when the slide is selected, or null
+	 */
+	public String getLink() {
+		return mHeaders.get(LINK);
+	}
+
+	/**
+	 * @return		Time to show the slide, "NOW" or an ISO 8601 time, or null
+	 */
+	public String getTriggerTime() {
+		return mHeaders.get(TRIGGER_TIME);
+	}
+
+	public Map<String, String> getHeaders() {
+		return mHeaders;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("VisMessage[destination=%s, type=%s, body=%s]", getDestination(), mType, mBody);
+	}
+}
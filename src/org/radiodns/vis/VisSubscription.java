@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 2012 Global Radio UK Limited
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.    
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+
+package org.radiodns.vis;
+
+/**
+ * Subscription of a listener to a RadioVIS topic, see
+ * {@link VisClient#subscribe(org.radiodns.Application, String, VisListener)}
+ */
+public final class VisSubscription {
+
+	private final VisClient mClient;
+	private final VisConnection mConnection;
+	private final String mTopic;
+	private final VisListener mListener;
+	private volatile boolean mCancelled = false;
+
+	VisSubscription(VisClient client, VisConnection connection, String topic, VisListener listener) {
+		mClient = client;
+		mConnection = connection;
+		mTopic = topic;
+		mListener = listener;
+	}
+
+	public String getTopic() {
+		return mTopic;
+	}
+
+	public VisListener getListener() {
+		return mListener;
+	}
+
+	VisConnection getConnection() {
+		return mConnection;
+	}
+
+	/**
+	 * Stop passing messages to the listener. The shared connection is closed
+	 * once no subscription uses it any more.
+	 */
+	public void cancel() {
+		if (!mCancelled) {
+			mCancelled = true;
+			mClient.cancel(this);
+		}
+	}
+
+	public boolean isCancelled() {
+		return mCancelled;
+	}
+}
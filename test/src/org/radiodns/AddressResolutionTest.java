@@ -0,0 +1,174 @@
+/*
+ * Copyright (c) 2012 Global Radio UK Limited
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.    
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+
+package org.radiodns;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.minidns.dnsmessage.DnsMessage;
+import org.minidns.dnsmessage.Question;
+import org.minidns.record.A;
+import org.minidns.record.AAAA;
+import org.minidns.record.Data;
+import org.minidns.record.Record.CLASS;
+import org.minidns.record.Record.TYPE;
+import org.minidns.record.SRV;
+
+public class AddressResolutionTest {
+
+	private static final String ZONE = "$ORIGIN radiodns.org.\n"
+			+ "$TTL 300\n"
+			+ "09580.c479.ce1.fm CNAME rdns.musicradio.com.\n"
+			+ "$ORIGIN musicradio.com.\n"
+			+ "_radiovis._tcp.rdns SRV 0 100 61613 vis.musicradio.com.\n"
+			+ "_radiovis._tcp.rdns SRV 10 100 61613 vis2.musicradio.com.\n"
+			+ "_radiovis._tcp.rdns SRV 20 100 61613 vis2.musicradio.com.\n"
+			+ "vis A 203.0.113.10\n"
+			+ "vis AAAA 2001:db8::10\n"
+			+ "vis2 1 A 203.0.113.20\n";
+
+	private InMemoryResolver mResolver;
+	private RadioDNS mRadioDNS;
+
+	/*
+	 * Queries made per record type, with the additional section of SRV
+	 * answers optionally stripped to force separate address lookups
+	 */
+	private final ConcurrentMap<Class<?>, AtomicInteger> mQueries = new ConcurrentHashMap<Class<?>, AtomicInteger>();
+	private volatile boolean mStripAdditional = false;
+
+	private final Resolver mCounting = new Resolver() {
+		@Override
+		public <D extends Data> LookupResult<D> resolve(String name, Class<D> type) throws IOException {
+			AtomicInteger count = mQueries.get(type);
+			if (count == null) {
+				mQueries.putIfAbsent(type, new AtomicInteger());
+				count = mQueries.get(type);
+			}
+			count.incrementAndGet();
+			LookupResult<D> result = mResolver.resolve(name, type);
+			if (mStripAdditional) {
+				return new LookupResult<D>(result.getResponseCode(), result.getAnswers().isEmpty() ? null
+						: new HashSet<D>(result.getAnswers()), result.isAuthenticData(), result.getTtl());
+			}
+			return result;
+		}
+	};
+
+	@Before
+	public void setUp() {
+		mResolver = InMemoryResolver.fromZone(ZONE);
+		mRadioDNS = new RadioDNS();
+		mRadioDNS.setResolver(mCounting);
+	}
+
+	private int queries(Class<?> type) {
+		AtomicInteger count = mQueries.get(type);
+		return (count != null) ? count.get() : 0;
+	}
+
+	private Application lookup() throws LookupException {
+		return mRadioDNS.lookupFMService("ce1", "c479", 95800).getApplication(RadioDNS.RADIOVIS);
+	}
+
+	@Test
+	public void addressesAreNotResolvedByDefault() throws Exception {
+		assertFalse(mRadioDNS.isResolveAddresses());
+		Application application = lookup();
+		Record primary = application.getRecords().get(0);
+		assertEquals(Collections.<InetAddress>emptyList(), primary.getAddresses());
+		assertTrue(primary.getSocketAddress().isUnresolved());
+		assertEquals(0, queries(A.class) + queries(AAAA.class));
+	}
+
+	@Test
+	public void additionalAddressesAreUsed() throws Exception {
+		mRadioDNS.setResolveAddresses(true);
+		Application application = lookup();
+		Record primary = application.getRecords().get(0);
+		assertEquals(Arrays.asList(InetAddress.getByName("203.0.113.10"), InetAddress.getByName("2001:db8::10")),
+				primary.getAddresses());
+		InetSocketAddress address = primary.getSocketAddress();
+		assertFalse(address.isUnresolved());
+		assertEquals(InetAddress.getByName("203.0.113.10"), address.getAddress());
+		assertEquals(61613, address.getPort());
+		assertEquals(Arrays.asList(InetAddress.getByName("203.0.113.20")),
+				application.getRecords().get(2).getAddresses());
+		assertEquals(0, queries(A.class) + queries(AAAA.class));
+	}
+
+	@Test
+	public void missingAddressesAreQueriedOncePerTarget() throws Exception {
+		mStripAdditional = true;
+		mRadioDNS.setResolveAddresses(true);
+		Application application = lookup();
+		assertEquals(Arrays.asList(InetAddress.getByName("203.0.113.10"), InetAddress.getByName("2001:db8::10")),
+				application.getRecords().get(0).getAddresses());
+		assertEquals(Arrays.asList(InetAddress.getByName("203.0.113.20")),
+				application.getRecords().get(1).getAddresses());
+		assertEquals(application.getRecords().get(1).getAddresses(), application.getRecords().get(2).getAddresses());
+		assertEquals(2, queries(A.class));
+		assertEquals(2, queries(AAAA.class));
+	}
+
+	@Test
+	public void applicationExpiresWithItsAddresses() throws Exception {
+		ResolutionCache cache = new ResolutionCache();
+		mRadioDNS.setResolutionCache(cache);
+		mRadioDNS.setResolveAddresses(true);
+		lookup();
+		lookup();
+		assertEquals(1, queries(SRV.class));
+
+		Thread.sleep(1100);
+		lookup();
+		assertEquals(2, queries(SRV.class));
+	}
+
+	@Test
+	public void additionalAddressesOfOtherOwnersAreIgnored() throws Exception {
+		Question question = new Question("_radiovis._tcp.rdns.musicradio.com", TYPE.SRV);
+		DnsMessage response = DnsMessage.builder()
+				.setQuestion(question)
+				.setQrFlag(true)
+				.addAnswer(new org.minidns.record.Record<SRV>(question.name, TYPE.SRV, CLASS.IN, 300,
+						new SRV(0, 100, 61613, "vis.musicradio.com"), false))
+				.addAdditionalResourceRecord(new org.minidns.record.Record<A>("VIS.musicradio.com.", TYPE.A, CLASS.IN, 300,
+						new A("203.0.113.10"), false))
+				.addAdditionalResourceRecord(new org.minidns.record.Record<A>("www.example.com", TYPE.A, CLASS.IN, 60,
+						new A("198.51.100.1"), false))
+				.build();
+		LookupResult<SRV> result = LookupResult.from(question, response);
+		assertEquals(Arrays.asList(InetAddress.getByName("203.0.113.10")),
+				result.getAdditionalAddresses("vis.musicradio.com"));
+		assertTrue(result.getAdditionalAddresses("www.example.com").isEmpty());
+		assertEquals(300, result.getAdditionalTtl());
+	}
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright (c) 2012 Global Radio UK Limited
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.    
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+
+package org.radiodns;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.minidns.record.SRV;
+
+public class ApplicationTest {
+
+	private static Application newApplication() {
+		return new Application("radiovis", Arrays.asList(
+				new Record(new SRV(0, 100, 61613, "vis.musicradio.com")),
+				new Record(new SRV(10, 100, 61613, "vis2.musicradio.com"))));
+	}
+
+	@Test
+	public void staleApplicationKeepsBackoff() {
+		Application application = newApplication();
+		Record primary = application.getRecords().get(0);
+		Record secondary = application.getRecords().get(1);
+		application.markFailed(primary, 1, TimeUnit.MINUTES);
+
+		Application stale = application.asStale();
+		assertTrue(stale.isStale());
+		assertFalse(application.isStale());
+		assertTrue(stale.isFailed(primary));
+		assertSame(secondary, stale.selectRecord());
+	}
+
+	@Test
+	public void failuresOnStaleApplicationAreShared() {
+		Application application = newApplication();
+		Record primary = application.getRecords().get(0);
+		application.asStale().markFailed(primary, 1, TimeUnit.MINUTES);
+		assertTrue(application.isFailed(primary));
+		assertTrue(application.asStale().isFailed(primary));
+
+		application.asStale().markSucceeded(primary);
+		assertFalse(application.isFailed(primary));
+	}
+
+	@Test
+	public void staleApplicationIsNotCopiedAgain() {
+		Application stale = newApplication().asStale();
+		assertSame(stale, stale.asStale());
+		assertEquals(2, stale.getRecords().size());
+	}
+
+	private static Map<String, Integer> countSelections(Application application, int count) {
+		Map<String, Integer> counts = new HashMap<String, Integer>();
+		for (int i = 0; i < count; i++) {
+			String host = application.selectRecord().getHost();
+			Integer n = counts.get(host);
+			counts.put(host, (n != null) ? n + 1 : 1);
+		}
+		return counts;
+	}
+
+	@Test
+	public void recordsAreSortedByPriority() {
+		Application application = new Application("radiovis", Arrays.asList(
+				new Record(new SRV(20, 100, 61613, "c.musicradio.com")),
+				new Record(new SRV(0, 100, 61613, "a.musicradio.com")),
+				new Record(new SRV(10, 100, 61613, "b.musicradio.com"))));
+		assertEquals("a.musicradio.com", application.getRecords().get(0).getHost());
+		assertEquals("b.musicradio.com", application.getRecords().get(1).getHost());
+		assertEquals("c.musicradio.com", application.getRecords().get(2).getHost());
+		assertEquals(1, countSelections(application, 100).size());
+		assertEquals("a.musicradio.com", application.selectRecord().getHost());
+	}
+
+	@Test
+	public void equalPrioritySelectedByWeight() {
+		Application application = new Application("radiovis", Arrays.asList(
+				new Record(new SRV(0, 90, 61613, "a.musicradio.com")),
+				new Record(new SRV(0, 10, 61613, "b.musicradio.com")),
+				new Record(new SRV(10, 100, 61613, "c.musicradio.com"))));
+		Map<String, Integer> counts = countSelections(application, 10000);
+		int a = counts.get("a.musicradio.com");
+		assertTrue("a selected " + a + " times", a > 8500 && a < 9500);
+		assertEquals(10000 - a, (int) counts.get("b.musicradio.com"));
+		assertFalse(counts.containsKey("c.musicradio.com"));
+	}
+
+	@Test
+	public void zeroWeightSelectedOnlyWithoutWeightedTarget() {
+		Application weighted = new Application("radiovis", Arrays.asList(
+				new Record(new SRV(0, 0, 61613, "a.musicradio.com")),
+				new Record(new SRV(0, 1, 61613, "b.musicradio.com"))));
+		assertEquals(1, countSelections(weighted, 1000).size());
+		assertEquals("b.musicradio.com", weighted.selectRecord().getHost());
+
+		Application unweighted = new Application("radiovis", Arrays.asList(
+				new Record(new SRV(0, 0, 61613, "a.musicradio.com")),
+				new Record(new SRV(0, 0, 61613, "b.musicradio.com"))));
+		assertEquals(2, countSelections(unweighted, 1000).size());
+	}
+
+	@Test
+	public void failedTargetIsSkippedUntilSucceeded() {
+		Application application = newApplication();
+		Record primary = application.getRecords().get(0);
+		Record secondary = application.getRecords().get(1);
+		application.markFailed(primary);
+		assertTrue(application.isFailed(primary));
+		assertSame(secondary, application.selectRecord());
+
+		application.markSucceeded(primary);
+		assertFalse(application.isFailed(primary));
+		assertSame(primary, application.selectRecord());
+	}
+
+	@Test
+	public void backoffDoublesWithConsecutiveFailures() throws InterruptedException {
+		Application application = newApplication();
+		Record primary = application.getRecords().get(0);
+		application.markFailed(primary);
+		application.markFailed(primary);
+		Thread.sleep(Application.INITIAL_BACKOFF + 200);
+		assertTrue(application.isFailed(primary));
+	}
+
+	@Test
+	public void soonestTargetSelectedWhenAllFailed() {
+		Application application = newApplication();
+		Record primary = application.getRecords().get(0);
+		Record secondary = application.getRecords().get(1);
+		application.markFailed(primary, 1, TimeUnit.MINUTES);
+		application.markFailed(secondary, 1, TimeUnit.SECONDS);
+		assertSame(secondary, application.selectRecord());
+	}
+
+	@Test
+	public void unavailableTargetIsNeverSelected() {
+		Record none = new Record(new SRV(0, 100, 0, "."));
+		assertFalse(none.isAvailable());
+		assertEquals("", none.getHost());
+		assertNull(new Application("radiovis", Arrays.asList(none)).selectRecord());
+		assertNull(new Application("radiovis", null).selectRecord());
+
+		Application application = new Application("radiovis", Arrays.asList(none,
+				new Record(new SRV(10, 100, 61613, "vis.musicradio.com"))));
+		assertEquals("vis.musicradio.com", application.selectRecord().getHost());
+	}
+
+	@Test
+	public void unresolvedSocketAddress() {
+		InetSocketAddress address = new Record(new SRV(0, 100, 61613, "vis.musicradio.com.")).getSocketAddress();
+		assertTrue(address.isUnresolved());
+		assertEquals("vis.musicradio.com", address.getHostString());
+		assertEquals(61613, address.getPort());
+	}
+}
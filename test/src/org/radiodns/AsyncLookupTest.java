@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) 2012 Global Radio UK Limited
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.    
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+
+package org.radiodns;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class AsyncLookupTest {
+
+	private ExecutorService mExecutor;
+
+	@Before
+	public void setUp() {
+		mExecutor = Executors.newCachedThreadPool();
+	}
+
+	@After
+	public void tearDown() {
+		mExecutor.shutdownNow();
+	}
+
+	private static Callable<String> constant(final String value) {
+		return new Callable<String>() {
+			@Override
+			public String call() {
+				return value;
+			}
+		};
+	}
+
+	@Test
+	public void supplyCompletesWithResultOrException() throws Exception {
+		assertEquals("a", AsyncLookup.supply(constant("a"), mExecutor).get(5, TimeUnit.SECONDS));
+
+		CompletableFuture<String> failed = AsyncLookup.supply(new Callable<String>() {
+			@Override
+			public String call() throws LookupException {
+				throw new LookupException("no bearer");
+			}
+		}, mExecutor);
+		try {
+			failed.get(5, TimeUnit.SECONDS);
+			fail("Expected ExecutionException");
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof LookupException);
+		}
+	}
+
+	@Test
+	public void supplyReportsRejection() throws Exception {
+		CompletableFuture<String> future = AsyncLookup.supply(constant("a"), new Executor() {
+			@Override
+			public void execute(Runnable command) {
+				throw new RejectedExecutionException("saturated");
+			}
+		});
+		assertTrue(future.isCompletedExceptionally());
+	}
+
+	@Test
+	public void timeoutInterruptsLookup() throws Exception {
+		final CountDownLatch started = new CountDownLatch(1);
+		final CountDownLatch interrupted = new CountDownLatch(1);
+		CompletableFuture<String> future = AsyncLookup.withTimeout(AsyncLookup.supply(new Callable<String>() {
+			@Override
+			public String call() {
+				started.countDown();
+				try {
+					Thread.sleep(10000);
+				} catch (InterruptedException e) {
+					interrupted.countDown();
+				}
+				return "late";
+			}
+		}, mExecutor), 100, TimeUnit.MILLISECONDS);
+		assertTrue(started.await(5, TimeUnit.SECONDS));
+		try {
+			future.get(5, TimeUnit.SECONDS);
+			fail("Expected ExecutionException");
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof TimeoutException);
+		}
+		assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void invokeAllRunsRejectedLookupsOnCaller() throws Exception {
+		List<Callable<String>> tasks = Arrays.asList(constant("a"), constant("b"), constant("c"));
+		List<String> results = AsyncLookup.invokeAll(tasks, new Executor() {
+			@Override
+			public void execute(Runnable command) {
+				throw new RejectedExecutionException("saturated");
+			}
+		});
+		assertEquals(Arrays.asList("a", "b", "c"), results);
+		assertEquals(Arrays.asList("a", "b", "c"), AsyncLookup.invokeAll(tasks, mExecutor));
+	}
+
+	@Test
+	public void serviceLookupsCompleteAsynchronously() throws Exception {
+		RadioDNS radioDNS = new RadioDNS();
+		radioDNS.setResolver(InMemoryResolver.fromZone("$ORIGIN radiodns.org.\n"
+				+ "09580.c479.ce1.fm 300 CNAME rdns.musicradio.com.\n"
+				+ "$ORIGIN rdns.musicradio.com.\n"
+				+ "_radiovis._tcp 300 SRV 0 100 61613 vis.musicradio.com.\n"));
+		Service service = radioDNS.lookupFMService("ce1", "c479", 95800);
+
+		assertEquals("rdns.musicradio.com",
+				service.resolveAuthoritativeFQDNAsync(mExecutor).get(5, TimeUnit.SECONDS));
+		Application application = service.getApplicationAsync(RadioDNS.RADIOVIS, mExecutor)
+				.get(5, TimeUnit.SECONDS);
+		assertEquals(61613, application.getRecords().get(0).getPort());
+		Map<String, Application> applications = service.getApplicationsAsync(mExecutor)
+				.get(5, TimeUnit.SECONDS);
+		assertEquals(RadioDNS.KNOWN_APPLICATIONS.length, applications.size());
+		assertNull(applications.get(RadioDNS.RADIOEPG));
+	}
+}
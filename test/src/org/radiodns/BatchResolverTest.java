@@ -0,0 +1,178 @@
+/*
+ * Copyright (c) 2012 Global Radio UK Limited
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.    
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+
+package org.radiodns;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class BatchResolverTest {
+
+	private static final int STATIONS = 100;
+
+	private InMemoryResolver mResolver;
+	private RadioDNS mRadioDNS;
+
+	@Before
+	public void setUp() {
+		StringBuilder zone = new StringBuilder();
+		for (int i = 0; i < STATIONS; i++) {
+			zone.append(String.format("09580.c4%02x.ce1.fm.radiodns.org. CNAME rdns%d.example.com.%n", i, i));
+			zone.append(String.format("_radiovis._tcp.rdns%d.example.com. SRV 0 100 61613 vis.example.com.%n", i));
+		}
+		zone.append("09590.c400.ce1.fm.radiodns.org. CNAME rdns0.example.com.\n");
+		zone.append("1a2b3.c4a.hd.radiodns.org. CNAME rdns1.example.com.\n");
+		mResolver = InMemoryResolver.fromZone(zone.toString());
+		mRadioDNS = new RadioDNS();
+		mRadioDNS.setResolver(mResolver);
+	}
+
+	private static class Collector implements BatchResolver.Listener {
+
+		final List<BatchResult> mResults = new ArrayList<BatchResult>();
+		long mQueriesAtFirstResult = -1;
+		private final InMemoryResolver mResolver;
+
+		Collector(InMemoryResolver resolver) {
+			mResolver = resolver;
+		}
+
+		@Override
+		public void onResult(BatchResult result) {
+			if (mResults.isEmpty()) {
+				mQueriesAtFirstResult = mResolver.getQueryCount();
+			}
+			mResults.add(result);
+		}
+
+		BatchResult get(String bearer) {
+			for (BatchResult result : mResults) {
+				if (result.getBearer().equals(bearer)) {
+					return result;
+				}
+			}
+			return null;
+		}
+	}
+
+	@Test
+	public void resultsStreamWhileItemsAreQueued() throws InterruptedException {
+		mResolver.setLatency(2, 2, TimeUnit.MILLISECONDS);
+		BatchResolver batch = new BatchResolver(mRadioDNS, 4);
+		for (int i = 0; i < STATIONS; i++) {
+			batch.addFMService("ce1", String.format("c4%02x", i), 95800);
+		}
+		Collector collector = new Collector(mResolver);
+		batch.resolve(collector);
+
+		assertEquals(STATIONS, collector.mResults.size());
+		for (BatchResult result : collector.mResults) {
+			assertTrue(result.isSuccessful());
+			assertEquals(1, result.getApplications().get(RadioDNS.RADIOVIS).getRecords().size());
+		}
+		/*
+		 * each item makes one CNAME and five SRV queries, so the first result
+		 * must arrive long before every CNAME has been sent
+		 */
+		assertTrue("first result after " + collector.mQueriesAtFirstResult + " queries",
+				collector.mQueriesAtFirstResult < STATIONS / 2);
+		assertEquals(STATIONS * (1 + RadioDNS.KNOWN_APPLICATIONS.length), mResolver.getQueryCount());
+	}
+
+	@Test
+	public void sharedAuthoritativeFqdnIsResolvedOnce() throws InterruptedException {
+		BatchResolver batch = new BatchResolver(mRadioDNS, 4);
+		batch.addFMService("ce1", "c400", 95800);
+		batch.addFMService("ce1", "c400", 95900);
+		Collector collector = new Collector(mResolver);
+		batch.resolve(collector);
+
+		assertEquals(2, collector.mResults.size());
+		assertEquals(2 + RadioDNS.KNOWN_APPLICATIONS.length, mResolver.getQueryCount());
+		for (BatchResult result : collector.mResults) {
+			assertEquals("rdns0.example.com", result.getAuthoritativeFqdn());
+			assertNotNull(result.getApplications().get(RadioDNS.RADIOVIS));
+		}
+	}
+
+	@Test
+	public void failedItemsDoNotAbortTheBatch() throws InterruptedException {
+		BatchResolver batch = new BatchResolver(mRadioDNS, 2);
+		batch.addFMService("ce1", "c400", 95800);
+		batch.addFMService("ce1", "zzzz", 95800);
+		batch.addFMService("ce1", "c4ff", 95800);
+		assertEquals(3, batch.size());
+		Collector collector = new Collector(mResolver);
+		batch.resolve(collector);
+
+		assertEquals(3, collector.mResults.size());
+		assertTrue(collector.get("fm:ce1.c400.95800").isSuccessful());
+
+		BatchResult invalid = collector.get("fm:ce1.zzzz.95800");
+		assertFalse(invalid.isSuccessful());
+		assertTrue(invalid.getException() instanceof LookupException);
+
+		BatchResult unknown = collector.get("fm:ce1.c4ff.95800");
+		assertTrue(unknown.isSuccessful());
+		assertNull(unknown.getAuthoritativeFqdn());
+		assertTrue(unknown.getApplications().isEmpty());
+	}
+
+	@Test
+	public void lookupFailureIsReported() throws InterruptedException {
+		mResolver.setFailureRate(1.0);
+		BatchResolver batch = new BatchResolver(mRadioDNS, 2);
+		batch.addFMService("ce1", "c400", 95800);
+		Collector collector = new Collector(mResolver);
+		batch.resolve(collector);
+
+		BatchResult failed = collector.get("fm:ce1.c400.95800");
+		assertFalse(failed.isSuccessful());
+		assertTrue(failed.getException() instanceof IOException);
+		assertNull(failed.getAuthoritativeFqdn());
+		assertNull(failed.getApplications());
+	}
+
+	@Test
+	public void hdBearerIsResolved() throws InterruptedException {
+		BatchResolver batch = new BatchResolver(mRadioDNS, 2);
+		batch.addHDService("1a2b3", "c4a");
+		Collector collector = new Collector(mResolver);
+		batch.resolve(collector);
+
+		BatchResult result = collector.get("hd:1a2b3.c4a");
+		assertTrue(result.isSuccessful());
+		assertEquals("1a2b3.c4a.hd.radiodns.org", result.getService().getRadioDNSFqdn());
+		assertEquals("rdns1.example.com", result.getAuthoritativeFqdn());
+		assertNotNull(result.getApplications().get(RadioDNS.RADIOVIS));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void concurrencyMustBePositive() {
+		new BatchResolver(mRadioDNS, 0);
+	}
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright (c) 2012 Global Radio UK Limited
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.    
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+
+package org.radiodns;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.InetAddress;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.minidns.record.SRV;
+
+public class CacheSnapshotTest {
+
+	private static final String RADIODNS_FQDN = "09580.c479.ce1.fm.radiodns.org";
+	private static final String APPLICATION_FQDN = "_radiovis._tcp.rdns.musicradio.com";
+
+	private File mFile;
+
+	@Before
+	public void setUp() throws IOException {
+		mFile = File.createTempFile("resolution-cache", ".bin");
+		mFile.delete();
+	}
+
+	@After
+	public void tearDown() {
+		mFile.delete();
+	}
+
+	private static Application application() throws IOException {
+		Record primary = new Record(new SRV(0, 100, 61613, "vis.musicradio.com"));
+		primary.setAddresses(Arrays.asList(InetAddress.getByName("203.0.113.10"),
+				InetAddress.getByName("2001:db8::10")));
+		Record backup = new Record(new SRV(10, 50, 61614, "vis2.musicradio.com"));
+		return new Application(RadioDNS.RADIOVIS, Arrays.asList(backup, primary));
+	}
+
+	@Test
+	public void entriesSurviveRoundTrip() throws IOException {
+		ResolutionCache cache = new ResolutionCache();
+		CacheEntry<String> fqdn = cache.putAuthoritativeFqdn(RADIODNS_FQDN, "rdns.musicradio.com", 300);
+		cache.putAuthoritativeFqdn("09590.c479.ce1.fm.radiodns.org", null, 0);
+		CacheEntry<Application> application = cache.putApplication(APPLICATION_FQDN, application(), 600);
+		cache.save(mFile);
+
+		ResolutionCache loaded = new ResolutionCache();
+		assertEquals(3, loaded.load(mFile));
+		CacheEntry<String> loadedFqdn = loaded.getAuthoritativeFqdn(RADIODNS_FQDN);
+		assertEquals("rdns.musicradio.com", loadedFqdn.getValue());
+		assertEquals(fqdn.getExpires(), loadedFqdn.getExpires());
+		assertEquals(fqdn.getCreated(), loadedFqdn.getCreated());
+		assertTrue(loaded.getAuthoritativeFqdn("09590.c479.ce1.fm.radiodns.org").isNegative());
+
+		CacheEntry<Application> loadedApplication = loaded.getApplication(APPLICATION_FQDN);
+		assertEquals(application.getExpires(), loadedApplication.getExpires());
+		Application app = loadedApplication.getValue();
+		assertEquals(RadioDNS.RADIOVIS, app.getApplicationId());
+		assertEquals(2, app.getRecords().size());
+		Record primary = app.getRecords().get(0);
+		assertEquals("vis.musicradio.com", primary.getHost());
+		assertEquals(61613, primary.getPort());
+		assertEquals(100, primary.getWeight());
+		assertEquals(Arrays.asList(InetAddress.getByName("203.0.113.10"), InetAddress.getByName("2001:db8::10")),
+				primary.getAddresses());
+		assertEquals(10, app.getRecords().get(1).getPriority());
+		assertTrue(app.getRecords().get(1).getAddresses().isEmpty());
+	}
+
+	@Test
+	public void expiredAndPresentEntriesAreNotLoaded() throws Exception {
+		ResolutionCache cache = new ResolutionCache();
+		cache.putAuthoritativeFqdn(RADIODNS_FQDN, "rdns.musicradio.com", 1);
+		cache.putApplication(APPLICATION_FQDN, application(), 600);
+		cache.save(mFile);
+		Thread.sleep(1100);
+
+		ResolutionCache loaded = new ResolutionCache();
+		loaded.putApplication(APPLICATION_FQDN, null, 0);
+		assertEquals(0, loaded.load(mFile));
+		assertNull(loaded.getAuthoritativeFqdn(RADIODNS_FQDN));
+		assertTrue(loaded.getApplication(APPLICATION_FQDN).isNegative());
+
+		ResolutionCache graceful = new ResolutionCache();
+		graceful.setStaleGracePeriod(60);
+		assertEquals(2, graceful.load(mFile));
+		assertEquals("rdns.musicradio.com", graceful.getStaleAuthoritativeFqdn(RADIODNS_FQDN).getValue());
+	}
+
+	@Test
+	public void shortFileNameIsReplaced() throws IOException {
+		File directory = Files.createTempDirectory("resolution-cache").toFile();
+		File file = new File(directory, "c");
+		try {
+			ResolutionCache cache = new ResolutionCache();
+			cache.putAuthoritativeFqdn(RADIODNS_FQDN, "rdns.musicradio.com", 300);
+			cache.save(file);
+			ResolutionCache loaded = new ResolutionCache();
+			assertEquals(1, loaded.load(file));
+
+			loaded.putApplication(APPLICATION_FQDN, application(), 600);
+			loaded.save(file);
+			assertEquals(2, new ResolutionCache().load(file));
+			assertEquals(Arrays.asList("c"), Arrays.asList(directory.list()));
+		} finally {
+			file.delete();
+			directory.delete();
+		}
+	}
+
+	@Test
+	public void missingFileLoadsNothing() throws IOException {
+		assertEquals(0, new ResolutionCache().load(mFile));
+	}
+
+	@Test
+	public void invalidSnapshotsAreRejected() throws IOException {
+		FileOutputStream out = new FileOutputStream(mFile);
+		out.write("not a snapshot".getBytes("UTF-8"));
+		out.close();
+		assertRejected();
+
+		ResolutionCache cache = new ResolutionCache();
+		cache.putApplication(APPLICATION_FQDN, application(), 600);
+		cache.save(mFile);
+		RandomAccessFile file = new RandomAccessFile(mFile, "rw");
+		file.setLength(file.length() - 3);
+		file.close();
+		assertRejected();
+	}
+
+	private void assertRejected() {
+		ResolutionCache cache = new ResolutionCache();
+		try {
+			cache.load(mFile);
+			fail("Loaded an invalid snapshot");
+		} catch (IOException e) {
+			assertEquals(0, cache.size());
+		}
+	}
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2012 Global Radio UK Limited
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.    
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+
+package org.radiodns;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class CircuitBreakerTest {
+
+	@Test
+	public void opensAfterConsecutiveFailures() {
+		CircuitBreaker breaker = new CircuitBreaker(3, 60000);
+		breaker.recordFailure();
+		breaker.recordFailure();
+		breaker.recordSuccess();
+		breaker.recordFailure();
+		breaker.recordFailure();
+		assertFalse(breaker.isOpen());
+		assertTrue(breaker.allowRequest());
+
+		breaker.recordFailure();
+		assertTrue(breaker.isOpen());
+		assertFalse(breaker.allowRequest());
+		assertFalse(breaker.allowRequest());
+		assertEquals(2, breaker.getRejectedCount());
+	}
+
+	@Test
+	public void letsOneTrialThroughAfterOpenTime() throws InterruptedException {
+		CircuitBreaker breaker = new CircuitBreaker(1, 50);
+		breaker.recordFailure();
+		assertFalse(breaker.allowRequest());
+
+		Thread.sleep(80);
+		assertTrue(breaker.allowRequest());
+		assertFalse(breaker.allowRequest());
+
+		breaker.recordFailure();
+		assertTrue(breaker.isOpen());
+		assertFalse(breaker.allowRequest());
+
+		Thread.sleep(80);
+		assertTrue(breaker.allowRequest());
+		breaker.recordSuccess();
+		assertFalse(breaker.isOpen());
+		assertTrue(breaker.allowRequest());
+		assertTrue(breaker.allowRequest());
+	}
+
+	@Test
+	public void abandonedTrialLetsNextTrialThrough() throws InterruptedException {
+		CircuitBreaker breaker = new CircuitBreaker(1, 50);
+		breaker.recordFailure();
+		Thread.sleep(80);
+		assertTrue(breaker.allowRequest());
+		assertFalse(breaker.allowRequest());
+
+		breaker.abandonRequest();
+		assertTrue(breaker.isOpen());
+		assertTrue(breaker.allowRequest());
+		breaker.recordSuccess();
+		assertFalse(breaker.isOpen());
+	}
+
+	@Test
+	public void zeroThresholdNeverOpens() {
+		CircuitBreaker breaker = new CircuitBreaker(0, 60000);
+		for (int i = 0; i < 100; i++) {
+			breaker.recordFailure();
+		}
+		assertFalse(breaker.isOpen());
+		assertTrue(breaker.allowRequest());
+	}
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2012 Global Radio UK Limited
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.    
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+
+package org.radiodns;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.minidns.record.CNAME;
+import org.minidns.record.SRV;
+
+public class CoalescingResolverTest {
+
+	private static final String NAME = "09580.c479.ce1.fm.radiodns.org";
+	private static final int CALLERS = 8;
+
+	private InMemoryResolver mUpstream;
+	private CoalescingResolver mResolver;
+	private ExecutorService mExecutor;
+
+	@Before
+	public void setUp() {
+		mUpstream = InMemoryResolver.fromZone(NAME + ". 300 CNAME rdns.musicradio.com.\n");
+		mUpstream.setLatency(500, 500, TimeUnit.MILLISECONDS);
+		mResolver = new CoalescingResolver(mUpstream);
+		mExecutor = Executors.newFixedThreadPool(CALLERS);
+	}
+
+	@After
+	public void tearDown() {
+		mExecutor.shutdownNow();
+	}
+
+	private List<Future<LookupResult<CNAME>>> resolveConcurrently(final String name) {
+		List<Future<LookupResult<CNAME>>> futures = new ArrayList<Future<LookupResult<CNAME>>>();
+		for (int i = 0; i < CALLERS; i++) {
+			futures.add(mExecutor.submit(new Callable<LookupResult<CNAME>>() {
+				@Override
+				public LookupResult<CNAME> call() throws IOException {
+					return mResolver.resolve(name, CNAME.class);
+				}
+			}));
+		}
+		return futures;
+	}
+
+	@Test
+	public void concurrentIdenticalQueriesShareOneLookup() throws Exception {
+		List<Future<LookupResult<CNAME>>> futures = resolveConcurrently(NAME);
+		LookupResult<CNAME> result = futures.get(0).get(5, TimeUnit.SECONDS);
+		for (Future<LookupResult<CNAME>> future : futures) {
+			assertSame(result, future.get(5, TimeUnit.SECONDS));
+		}
+		assertEquals(1, mUpstream.getQueryCount());
+		assertEquals(CALLERS - 1, mResolver.getCoalescedCount());
+
+		mResolver.resolve(NAME.toUpperCase(), CNAME.class);
+		assertEquals(2, mUpstream.getQueryCount());
+	}
+
+	@Test
+	public void failureIsSharedWithWaiters() throws Exception {
+		mUpstream.setFailureRate(1.0);
+		for (Future<LookupResult<CNAME>> future : resolveConcurrently(NAME)) {
+			try {
+				future.get(5, TimeUnit.SECONDS);
+				fail("Expected IOException");
+			} catch (ExecutionException e) {
+				assertTrue(e.getCause() instanceof IOException);
+			}
+		}
+		assertEquals(1, mUpstream.getQueryCount());
+	}
+
+	@Test
+	public void differentQueriesAreNotShared() throws Exception {
+		mUpstream.setLatency(0, 0, TimeUnit.MILLISECONDS);
+		mResolver.resolve(NAME, CNAME.class);
+		mResolver.resolve(NAME, SRV.class);
+		mResolver.resolve("rdns.musicradio.com", CNAME.class);
+		assertEquals(3, mUpstream.getQueryCount());
+		assertEquals(0, mResolver.getCoalescedCount());
+		assertFalse(CoalescingResolver.key(NAME, CNAME.class).equals(CoalescingResolver.key(NAME, SRV.class)));
+	}
+
+	@Test
+	public void singleFlightForgetsCompletedCalls() throws IOException {
+		SingleFlight singleFlight = new SingleFlight();
+		assertEquals("a", singleFlight.execute("k", new SingleFlight.Call<String>() {
+			@Override
+			public String call() {
+				return "a";
+			}
+		}));
+		assertEquals(0, singleFlight.getInFlightCount());
+		try {
+			singleFlight.execute("k", new SingleFlight.Call<String>() {
+				@Override
+				public String call() {
+					throw new IllegalStateException("broken");
+				}
+			});
+			fail("Expected IllegalStateException");
+		} catch (IllegalStateException e) {
+			// expected
+		}
+		assertEquals(0, singleFlight.getInFlightCount());
+		assertEquals(0, singleFlight.getCoalescedCount());
+	}
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright (c) 2012 Global Radio UK Limited
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.    
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+
+package org.radiodns;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class CountryCodesTest {
+
+	@Test
+	public void mapsAllocatedNibble() {
+		assertEquals(0xce1, CountryCodes.getGcc("gb", 0xc));
+		assertEquals(0xce1, CountryCodes.getGcc("GB", 0xc));
+		assertEquals(0xfe1, CountryCodes.getGcc("fr", 0xf));
+		assertEquals(0x4e1, CountryCodes.getGcc("ch", 0x4));
+	}
+
+	@Test
+	public void rejectsUnallocatedNibble() {
+		assertEquals(CountryCodes.MISMATCH, CountryCodes.getGcc("gb", 0xd));
+	}
+
+	@Test
+	public void unknownCountry() {
+		assertEquals(CountryCodes.UNKNOWN, CountryCodes.getGcc("us", 0x1));
+		assertEquals(CountryCodes.UNKNOWN, CountryCodes.getGcc("g1", 0xc));
+		assertEquals(CountryCodes.UNKNOWN, CountryCodes.getGcc(null, 0xc));
+		assertEquals(CountryCodes.UNKNOWN, CountryCodes.getGcc("gb", 16));
+	}
+}
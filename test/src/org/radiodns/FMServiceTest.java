@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2012 Global Radio UK Limited
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.    
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+
+package org.radiodns;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+public class FMServiceTest {
+
+	@Test
+	public void isoCountryCodeIsMappedToGcc() throws LookupException {
+		FMService iso = new FMService("gb", "c479", 95800);
+		FMService gcc = new FMService("ce1", "c479", 95800);
+		assertEquals("09580.c479.ce1.fm.radiodns.org", iso.getRadioDNSFqdn());
+		assertEquals(gcc.getRadioDNSFqdn(), iso.getRadioDNSFqdn());
+	}
+
+	@Test
+	public void getCountryReturnsGivenValue() throws LookupException {
+		FMService iso = new FMService("gb", "c479", 95800);
+		assertEquals("gb", iso.getCountry());
+		assertEquals("gb", iso.getIso3166CountryCode());
+		assertEquals("ce1", iso.getGcc());
+
+		FMService gcc = new FMService("ce1", "c479", 95800);
+		assertEquals("ce1", gcc.getCountry());
+		assertEquals("ce1", gcc.getGcc());
+		assertNull(gcc.getIso3166CountryCode());
+
+		FMService numeric = new FMService(0xce1, 0xc479, 95800);
+		assertEquals("ce1", numeric.getCountry());
+		assertEquals("ce1", numeric.getGcc());
+	}
+
+	@Test
+	public void unknownIsoCountryCodeKeepsIsoForm() throws LookupException {
+		FMService service = new FMService("us", "1234", 95800);
+		assertEquals("us", service.getCountry());
+		assertNull(service.getGcc());
+		assertEquals("09580.1234.us.fm.radiodns.org", service.getRadioDNSFqdn());
+	}
+
+	@Test
+	public void sharedPiNibbleMapsToEachCountry() throws LookupException {
+		assertEquals("9e1", new FMService("dk", "9123", 95800).getGcc());
+		assertEquals("9e1", new FMService("fo", "9123", 95800).getGcc());
+		assertEquals("de0", new FMService("de", "d123", 95800).getGcc());
+		assertEquals("1e0", new FMService("de", "1123", 95800).getGcc());
+	}
+
+	@Test(expected = LookupException.class)
+	public void unallocatedPiNibbleIsRejected() throws LookupException {
+		new FMService("gb", "d479", 95800);
+	}
+
+	@Test
+	public void registryKeepsCountryForm() throws LookupException {
+		RadioDNS rdns = new RadioDNS();
+		Service iso = rdns.lookupFMService("gb", "c479", 95800);
+		Service gcc = rdns.lookupFMService("ce1", "c479", 95800);
+		assertNotSame(iso, gcc);
+		assertEquals("gb", ((FMService) iso).getCountry());
+		assertEquals("ce1", ((FMService) gcc).getCountry());
+		assertEquals(gcc.getRadioDNSFqdn(), iso.getRadioDNSFqdn());
+	}
+}
@@ -0,0 +1,191 @@
+/*
+ * Copyright (c) 2012 Global Radio UK Limited
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.    
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+
+package org.radiodns;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.minidns.dnsmessage.DnsMessage;
+import org.minidns.dnsmessage.DnsMessage.RESPONSE_CODE;
+import org.minidns.dnsmessage.Question;
+import org.minidns.dnsqueryresult.DnsQueryResult;
+import org.minidns.dnsqueryresult.DnsQueryResult.QueryMethod;
+import org.minidns.dnsname.DnsName;
+import org.minidns.dnsqueryresult.StandardDnsQueryResult;
+import org.minidns.record.Data;
+import org.minidns.record.Record;
+import org.minidns.record.Record.CLASS;
+import org.minidns.record.Record.TYPE;
+import org.minidns.record.RRSIG;
+import org.minidns.record.SOA;
+import org.minidns.source.AbstractDnsDataSource;
+
+/**
+ * Data source answering from records held in memory, for testing
+ * MiniDnsResolver without network access. Failures and response codes can be
+ * set per server address.
+ */
+class FakeDataSource extends AbstractDnsDataSource {
+
+	interface Failure {
+		IOException create();
+	}
+
+	private final Map<String, List<Record<? extends Data>>> mRecords =
+			new ConcurrentHashMap<String, List<Record<? extends Data>>>();
+	private final Map<InetAddress, Failure> mFailures = new ConcurrentHashMap<InetAddress, Failure>();
+	private final Map<InetAddress, RESPONSE_CODE> mResponseCodes = new ConcurrentHashMap<InetAddress, RESPONSE_CODE>();
+	private final List<InetAddress> mServers = new CopyOnWriteArrayList<InetAddress>();
+	private final AtomicInteger mQueryCount = new AtomicInteger();
+	private volatile Failure mFailure;
+	private volatile boolean mAuthenticData;
+	private volatile long mLatency;
+
+	/**
+	 * Add a record to answer with. RRSIG records are added to the answers
+	 * of the type they cover, and NSEC records to the authority section of
+	 * answers without records in the same zone, when the query asks for
+	 * DNSSEC records.
+	 */
+	void addRecord(String name, long ttl, Data data) {
+		List<Record<? extends Data>> records = mRecords.get(name);
+		if (records == null) {
+			records = new CopyOnWriteArrayList<Record<? extends Data>>();
+			mRecords.put(name, records);
+		}
+		records.add(new Record<Data>(name, data.getType(), CLASS.IN, ttl, data, false));
+	}
+
+	/**
+	 * Fail every query
+	 */
+	void setFailure(Failure failure) {
+		mFailure = failure;
+	}
+
+	/**
+	 * Fail the queries sent to the given server
+	 */
+	void setFailure(InetAddress server, Failure failure) {
+		mFailures.put(server, failure);
+	}
+
+	void setResponseCode(InetAddress server, RESPONSE_CODE responseCode) {
+		mResponseCodes.put(server, responseCode);
+	}
+
+	void setAuthenticData(boolean authenticData) {
+		mAuthenticData = authenticData;
+	}
+
+	void setLatency(long millis) {
+		mLatency = millis;
+	}
+
+	int getQueryCount() {
+		return mQueryCount.get();
+	}
+
+	/**
+	 * @return		Servers queried, in order
+	 */
+	List<InetAddress> getServers() {
+		return Collections.unmodifiableList(new ArrayList<InetAddress>(mServers));
+	}
+
+	@Override
+	public DnsQueryResult query(DnsMessage message, InetAddress address, int port) throws IOException {
+		mQueryCount.incrementAndGet();
+		mServers.add(address);
+		if (mLatency > 0) {
+			try {
+				Thread.sleep(mLatency);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		Failure failure = mFailures.get(address);
+		if (failure == null) {
+			failure = mFailure;
+		}
+		if (failure != null) {
+			throw failure.create();
+		}
+
+		Question question = message.getQuestion();
+		RESPONSE_CODE responseCode = mResponseCodes.get(address);
+		DnsMessage.Builder response;
+		if (responseCode != null) {
+			response = message.getResponseBuilder(responseCode);
+		} else {
+			List<Record<? extends Data>> records = mRecords.get(question.name.toString());
+			response = message.getResponseBuilder((records != null) ? RESPONSE_CODE.NO_ERROR : RESPONSE_CODE.NX_DOMAIN);
+			boolean answered = false;
+			if (records != null) {
+				for (Record<? extends Data> record : records) {
+					if (record.type == question.type) {
+						response.addAnswer(record);
+						answered = true;
+					}
+				}
+			}
+			if (!answered) {
+				response.addNameserverRecords(new Record<SOA>(zoneOf(question.name), TYPE.SOA, CLASS.IN, 60,
+						new SOA("ns.radiodns.org", "hostmaster.radiodns.org", 1, 3600, 600, 86400, 60), false));
+			}
+			if (answered && message.isDnssecOk()) {
+				for (Record<? extends Data> record : records) {
+					if (record.type == TYPE.RRSIG && ((RRSIG) record.payloadData).typeCovered == question.type) {
+						response.addAnswer(record);
+					}
+				}
+			} else if (message.isDnssecOk()) {
+				for (List<Record<? extends Data>> held : mRecords.values()) {
+					for (Record<? extends Data> record : held) {
+						if (record.type == TYPE.NSEC && zoneOf(record.name).equals(zoneOf(question.name))) {
+							response.addNameserverRecords(record);
+						}
+					}
+				}
+			}
+		}
+		/*
+		 * answer like a recursive server, echoing the DNSSEC flags of the query
+		 */
+		response.setRecursionAvailable(true);
+		response.setCheckingDisabled(message.checkingDisabled);
+		if (message.isDnssecOk()) {
+			response.getEdnsBuilder().setDnssecOk();
+		}
+		response.setAuthenticData(mAuthenticData);
+		return new StandardDnsQueryResult(address, port, QueryMethod.udp, message, response.build());
+	}
+
+	/**
+	 * @return		Zone holding the name, taken as its last two labels
+	 */
+	private static DnsName zoneOf(DnsName name) {
+		return (name.getLabelCount() > 2) ? name.stripToLabels(2) : name;
+	}
+}
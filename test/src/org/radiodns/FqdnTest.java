@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2012 Global Radio UK Limited
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.    
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+
+package org.radiodns;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class FqdnTest {
+
+	private RadioDNS mRadioDNS;
+
+	@Before
+	public void setUp() {
+		mRadioDNS = new RadioDNS();
+		mRadioDNS.setResolver(new InMemoryResolver());
+	}
+
+	@Test
+	public void appendsLowerCaseAndPaddedValues() {
+		assertEquals("ce1.\u00e9", Fqdn.appendLower(new StringBuilder(), "CE1.\u00c9").toString());
+		assertEquals("09580", Fqdn.appendPadded(new StringBuilder(), 9580, 5).toString());
+		assertEquals("108000", Fqdn.appendPadded(new StringBuilder(), 108000, 5).toString());
+		assertEquals("0", Fqdn.appendPadded(new StringBuilder(), 0, 1).toString());
+		assertEquals("00c479", Fqdn.toHex(0xc479, 6));
+		assertEquals("fffffff", Fqdn.toHex(0xfffffffL, 7));
+	}
+
+	@Test
+	public void buildsFqdnOfEveryBearer() throws LookupException {
+		assertEquals("09580.c479.ce1.fm.radiodns.org",
+				mRadioDNS.lookupFMService("CE1", "C479", 95800).getRadioDNSFqdn());
+		assertEquals("08760.c479.ce1.fm.radiodns.org",
+				mRadioDNS.lookupFMService("GB", "c479", 87600).getRadioDNSFqdn());
+		assertEquals("0.c221.ce15.ce1.dab.radiodns.org",
+				mRadioDNS.lookupDABService("CE1", "CE15", "C221", "0").getRadioDNSFqdn());
+		assertEquals("1.0.c221.ce15.ce1.dab.radiodns.org",
+				mRadioDNS.lookupDABService("ce1", "ce15", "c221", "0", 1).getRadioDNSFqdn());
+		assertEquals("0a-1b2.0.c221.ce15.ce1.dab.radiodns.org",
+				mRadioDNS.lookupDABService("ce1", "ce15", "c221", "0", "0A-1B2").getRadioDNSFqdn());
+		assertEquals("e1c238.drm.am.radiodns.org", mRadioDNS.lookupAMService("drm", "E1C238").getRadioDNSFqdn());
+	}
+
+	@Test
+	public void fqdnIsSharedBetweenServices() throws LookupException {
+		Service first = mRadioDNS.lookupFMService("ce1", "c479", 95800);
+		Service second = mRadioDNS.lookupFMService("CE1", "C479", 95800);
+		assertSame(first.getRadioDNSFqdn(), first.getRadioDNSFqdn());
+		assertSame(first.getRadioDNSFqdn(), second.getRadioDNSFqdn());
+	}
+
+	@Test
+	public void poolReturnsSharedInstance() {
+		String fqdn = new String("09580.c479.ce1.fm.radiodns.org");
+		String pooled = Fqdn.canonicalize(fqdn);
+		assertSame(pooled, Fqdn.canonicalize(new String(fqdn)));
+		String other = new String("09590.c479.ce1.fm.radiodns.org");
+		assertSame(other, Fqdn.canonicalize(other));
+	}
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2012 Global Radio UK Limited
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.    
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+
+package org.radiodns;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.minidns.dnsmessage.DnsMessage.RESPONSE_CODE;
+import org.minidns.record.A;
+import org.minidns.record.CNAME;
+import org.minidns.record.SRV;
+
+public class InMemoryResolverTest {
+
+	private static final String ZONE = "; RadioDNS zone\n"
+			+ "$ORIGIN radiodns.org.\n"
+			+ "$TTL 600\n"
+			+ "09580.c479.ce1.fm        CNAME  rdns.musicradio.com.\n"
+			+ "$ORIGIN rdns.musicradio.com.\n"
+			+ "_radiovis._tcp  300 IN SRV 0 100 61613 vis\n"
+			+ "_radiovis._tcp  120 IN SRV 10 100 61613 vis2.musicradio.com.\n"
+			+ "vis             A      203.0.113.10\n"
+			+ "vis             AAAA   2001:db8::10\n";
+
+	@Test
+	public void answersFromZone() throws IOException {
+		InMemoryResolver resolver = InMemoryResolver.fromZone(ZONE);
+		LookupResult<CNAME> cname = resolver.resolve("09580.C479.ce1.fm.radiodns.org.", CNAME.class);
+		assertTrue(cname.wasSuccessful());
+		assertEquals(600, cname.getTtl());
+		assertEquals("rdns.musicradio.com", cname.getAnswers().iterator().next().target.toString());
+
+		LookupResult<SRV> srv = resolver.resolve("_radiovis._tcp.rdns.musicradio.com", SRV.class);
+		assertEquals(2, srv.getAnswers().size());
+		assertEquals(120, srv.getTtl());
+		assertEquals(Arrays.asList(InetAddress.getByName("203.0.113.10"), InetAddress.getByName("2001:db8::10")),
+				srv.getAdditionalAddresses("vis.rdns.musicradio.com"));
+		assertEquals(600, srv.getAdditionalTtl());
+		assertEquals(2, resolver.getQueryCount());
+	}
+
+	@Test
+	public void answersNegatively() throws IOException {
+		InMemoryResolver resolver = InMemoryResolver.fromZone(ZONE);
+		LookupResult<SRV> missing = resolver.resolve("_radioepg._tcp.rdns.musicradio.com", SRV.class);
+		assertEquals(RESPONSE_CODE.NX_DOMAIN, missing.getResponseCode());
+		assertTrue(missing.isNegative());
+
+		LookupResult<CNAME> noData = resolver.resolve("vis.rdns.musicradio.com", CNAME.class);
+		assertEquals(RESPONSE_CODE.NO_ERROR, noData.getResponseCode());
+		assertTrue(noData.getAnswers().isEmpty());
+		assertTrue(noData.isNegative());
+	}
+
+	@Test
+	public void addsAndClearsRecords() throws Exception {
+		InMemoryResolver resolver = new InMemoryResolver();
+		resolver.addRecord("vis.musicradio.com.", 60, new A(new byte[] { (byte) 203, 0, 113, 10 }));
+		assertEquals(Arrays.asList("vis.musicradio.com"), resolver.getNames());
+		assertFalse(resolver.resolve("VIS.musicradio.com", A.class).isNegative());
+		resolver.clear();
+		assertTrue(resolver.resolve("vis.musicradio.com", A.class).isNegative());
+	}
+
+	@Test
+	public void simulatesFailuresAndLatency() throws Exception {
+		InMemoryResolver resolver = InMemoryResolver.fromZone(ZONE);
+		resolver.setFailureRate(1.0);
+		try {
+			resolver.resolve("09580.c479.ce1.fm.radiodns.org", CNAME.class);
+			fail("Expected IOException");
+		} catch (IOException e) {
+			// expected
+		}
+		assertEquals(1, resolver.getFailureCount());
+
+		resolver.setFailureRate(0);
+		resolver.setLatency(50, 50, TimeUnit.MILLISECONDS);
+		long start = System.nanoTime();
+		resolver.resolve("09580.c479.ce1.fm.radiodns.org", CNAME.class);
+		assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+	}
+
+	@Test
+	public void rejectsInvalidZone() {
+		String[] zones = { "vis.musicradio.com. SRV 0 100\n", "$ORIGIN musicradio.com.\nvis A 2001:db8::10\n",
+				"$ORIGIN musicradio.com.\nvis MX 10 mail\n", "@ CNAME rdns.musicradio.com.\n" };
+		for (String zone : zones) {
+			try {
+				InMemoryResolver.fromZone(zone);
+				fail("Loaded " + zone);
+			} catch (IllegalArgumentException e) {
+				// expected
+			}
+		}
+	}
+}
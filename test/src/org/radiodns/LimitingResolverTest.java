@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2012 Global Radio UK Limited
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.    
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+
+package org.radiodns;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.minidns.record.CNAME;
+import org.minidns.record.Data;
+
+public class LimitingResolverTest {
+
+	private static final String NAME = "09580.c479.ce1.fm.radiodns.org";
+
+	private ExecutorService mExecutor;
+
+	/*
+	 * Resolver recording the highest number of queries it answered at once
+	 */
+	private final AtomicInteger mActive = new AtomicInteger();
+	private final AtomicInteger mMaxActive = new AtomicInteger();
+	private final InMemoryResolver mUpstream = InMemoryResolver.fromZone(NAME + ". 300 CNAME rdns.musicradio.com.\n");
+	private final Resolver mCounting = new Resolver() {
+		@Override
+		public <D extends Data> LookupResult<D> resolve(String name, Class<D> type) throws IOException {
+			int active = mActive.incrementAndGet();
+			int max;
+			while (active > (max = mMaxActive.get()) && !mMaxActive.compareAndSet(max, active)) {
+				// retry
+			}
+			try {
+				return mUpstream.resolve(name, type);
+			} finally {
+				mActive.decrementAndGet();
+			}
+		}
+	};
+
+	@Before
+	public void setUp() {
+		mExecutor = Executors.newCachedThreadPool();
+		mUpstream.setLatency(50, 50, TimeUnit.MILLISECONDS);
+	}
+
+	@After
+	public void tearDown() {
+		mExecutor.shutdownNow();
+	}
+
+	@Test
+	public void queriesInFlightAreBounded() throws Exception {
+		final LimitingResolver resolver = new LimitingResolver(mCounting, 3);
+		List<Future<LookupResult<CNAME>>> futures = new ArrayList<Future<LookupResult<CNAME>>>();
+		for (int i = 0; i < 12; i++) {
+			futures.add(mExecutor.submit(new Callable<LookupResult<CNAME>>() {
+				@Override
+				public LookupResult<CNAME> call() throws IOException {
+					return resolver.resolve(NAME, CNAME.class);
+				}
+			}));
+		}
+		for (Future<LookupResult<CNAME>> future : futures) {
+			assertTrue(future.get(5, TimeUnit.SECONDS).wasSuccessful());
+		}
+		assertEquals(12, mUpstream.getQueryCount());
+		assertTrue(mMaxActive.get() <= 3);
+		assertEquals(0, resolver.getActiveCount());
+		assertEquals(0, resolver.getWaitingCount());
+	}
+
+	@Test
+	public void permitIsReleasedOnFailure() throws Exception {
+		LimitingResolver resolver = new LimitingResolver(mCounting, 1);
+		mUpstream.setFailureRate(1.0);
+		try {
+			resolver.resolve(NAME, CNAME.class);
+			fail("Expected IOException");
+		} catch (IOException e) {
+			// expected
+		}
+		assertEquals(0, resolver.getActiveCount());
+		mUpstream.setFailureRate(0);
+		assertTrue(resolver.resolve(NAME, CNAME.class).wasSuccessful());
+	}
+
+	@Test
+	public void waitingCallerCanBeInterrupted() throws Exception {
+		mUpstream.setLatency(2, 2, TimeUnit.SECONDS);
+		final LimitingResolver resolver = new LimitingResolver(mCounting, 1);
+		mExecutor.submit(new Callable<Object>() {
+			@Override
+			public Object call() throws IOException {
+				return resolver.resolve(NAME, CNAME.class);
+			}
+		});
+		while (resolver.getActiveCount() == 0) {
+			Thread.sleep(10);
+		}
+		final CountDownLatch interrupted = new CountDownLatch(1);
+		Thread waiter = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					resolver.resolve(NAME, CNAME.class);
+				} catch (InterruptedIOException e) {
+					interrupted.countDown();
+				} catch (IOException e) {
+					// not expected
+				}
+			}
+		});
+		waiter.start();
+		while (resolver.getWaitingCount() == 0) {
+			Thread.sleep(10);
+		}
+		waiter.interrupt();
+		assertTrue(interrupted.await(1, TimeUnit.SECONDS));
+		assertEquals(1, mUpstream.getQueryCount());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsZeroConcurrency() {
+		new LimitingResolver(mUpstream, 0);
+	}
+}
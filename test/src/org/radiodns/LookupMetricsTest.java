@@ -0,0 +1,167 @@
+/*
+ * Copyright (c) 2012 Global Radio UK Limited
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.    
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+
+package org.radiodns;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.minidns.record.CNAME;
+import org.minidns.util.MultipleIoException;
+import org.radiodns.LookupListener.CacheEvent;
+import org.radiodns.LookupListener.Outcome;
+import org.radiodns.LookupListener.Phase;
+
+public class LookupMetricsTest {
+
+	private LookupMetrics mMetrics;
+	private RadioDNS mRadioDNS;
+
+	@Before
+	public void setUp() {
+		mMetrics = new LookupMetrics();
+		mRadioDNS = new RadioDNS();
+		mRadioDNS.setLookupListener(mMetrics);
+	}
+
+	private Service newService() throws LookupException {
+		return mRadioDNS.lookupFMService("ce1", "c479", 95800);
+	}
+
+	/*
+	 * Data source failing every query like minidns does when both UDP and TCP
+	 * time out
+	 */
+	private static FakeDataSource timingOut() {
+		FakeDataSource dataSource = new FakeDataSource();
+		dataSource.setFailure(new FakeDataSource.Failure() {
+			@Override
+			public IOException create() {
+				try {
+					MultipleIoException.throwIfRequired(Arrays.asList(
+							new SocketTimeoutException("UDP timeout"), new SocketTimeoutException("TCP timeout")));
+				} catch (IOException e) {
+					return e;
+				}
+				throw new AssertionError();
+			}
+		});
+		return dataSource;
+	}
+
+	@Test
+	public void wrappedTimeoutsAreCountedAsTimeouts() throws LookupException {
+		Service service = newService();
+		service.setResolver(new MiniDnsResolver(ResolverConfig.SYSTEM.withRetries(0), timingOut()));
+		assertNull(service.getAuthoritativeFqdn());
+		assertEquals(1, mMetrics.getCount(Phase.CNAME, Outcome.TIMEOUT));
+		assertEquals(0, mMetrics.getCount(Phase.CNAME, Outcome.ERROR));
+
+		service = newService();
+		service.setResolver(new MiniDnsResolver(new ResolverConfig("192.0.2.1").withRetries(0), timingOut()));
+		assertNull(service.getAuthoritativeFqdn());
+		assertEquals(2, mMetrics.getCount(Phase.CNAME, Outcome.TIMEOUT));
+	}
+
+	@Test
+	public void otherFailuresAreCountedAsErrors() throws LookupException {
+		FakeDataSource dataSource = new FakeDataSource();
+		dataSource.setFailure(new FakeDataSource.Failure() {
+			@Override
+			public IOException create() {
+				try {
+					MultipleIoException.throwIfRequired(Arrays.asList(
+							new SocketTimeoutException("UDP timeout"), new IOException("Connection refused")));
+				} catch (IOException e) {
+					return e;
+				}
+				throw new AssertionError();
+			}
+		});
+		Service service = newService();
+		service.setResolver(new MiniDnsResolver(ResolverConfig.SYSTEM.withRetries(0), dataSource));
+		assertNull(service.getAuthoritativeFqdn());
+		assertEquals(0, mMetrics.getCount(Phase.CNAME, Outcome.TIMEOUT));
+		assertEquals(1, mMetrics.getCount(Phase.CNAME, Outcome.ERROR));
+	}
+
+	@Test
+	public void outcomesAndCacheEventsAreCounted() throws LookupException {
+		InMemoryResolver resolver = InMemoryResolver.fromZone(
+				"09580.c479.ce1.fm.radiodns.org. CNAME rdns.musicradio.com.\n"
+				+ "_radiovis._tcp.rdns.musicradio.com. SRV 0 100 61613 vis.musicradio.com.\n");
+		mRadioDNS.setResolver(resolver);
+		mRadioDNS.setResolutionCache(new ResolutionCache());
+		Service service = newService();
+		service.getApplications();
+		newService().getApplications();
+
+		assertEquals(1, mMetrics.getCount(Phase.CNAME, Outcome.SUCCESS));
+		assertEquals(1, mMetrics.getCount(Phase.SRV, Outcome.SUCCESS));
+		assertEquals(RadioDNS.KNOWN_APPLICATIONS.length - 1, mMetrics.getCount(Phase.SRV, Outcome.NXDOMAIN));
+		assertEquals(1, mMetrics.getCacheCount(Phase.CNAME, CacheEvent.MISS));
+		assertEquals(1, mMetrics.getCacheCount(Phase.CNAME, CacheEvent.HIT));
+		assertEquals(RadioDNS.KNOWN_APPLICATIONS.length, mMetrics.getCacheCount(Phase.SRV, CacheEvent.HIT));
+		assertEquals(resolver.getQueryCount(), mMetrics.getQueryCount(Phase.CNAME) + mMetrics.getQueryCount(Phase.SRV));
+	}
+
+	@Test
+	public void memoizedAuthoritativeFqdnIsNotCounted() throws LookupException {
+		mRadioDNS.setResolver(InMemoryResolver.fromZone(
+				"09580.c479.ce1.fm.radiodns.org. CNAME rdns.musicradio.com.\n"));
+		mRadioDNS.setResolutionCache(new ResolutionCache());
+		Service service = newService();
+		assertEquals("rdns.musicradio.com", service.getAuthoritativeFqdn());
+		assertEquals("rdns.musicradio.com", service.getAuthoritativeFqdn());
+		assertEquals(1, mMetrics.getCacheCount(Phase.CNAME, CacheEvent.MISS));
+		assertEquals(0, mMetrics.getCacheCount(Phase.CNAME, CacheEvent.HIT));
+	}
+
+	@Test
+	public void errorsAreReportedByDefault() throws LookupException {
+		Service service = new RadioDNS().lookupFMService("ce1", "c479", 95800);
+		assertSame(LookupListener.DEFAULT, service.getLookupListener());
+		service.setLookupListener(LookupListener.NONE);
+		assertSame(LookupListener.NONE, service.getLookupListener());
+	}
+
+	@Test
+	public void latenciesAreBucketed() {
+		assertEquals(0, LookupMetrics.bucket(999));
+		assertEquals(1, LookupMetrics.bucket(1000));
+		assertEquals(2, LookupMetrics.bucket(2000));
+		assertEquals(10, LookupMetrics.bucket(TimeUnit.MILLISECONDS.toNanos(1)));
+		assertEquals(LookupMetrics.BUCKETS - 1, LookupMetrics.bucket(Long.MAX_VALUE));
+		assertEquals(0, LookupMetrics.bucket(-1));
+
+		for (int i = 0; i < 99; i++) {
+			mMetrics.onQuery(Phase.SRV, Outcome.SUCCESS, TimeUnit.MICROSECONDS.toNanos(100));
+		}
+		mMetrics.onQuery(Phase.SRV, Outcome.TIMEOUT, TimeUnit.MILLISECONDS.toNanos(100));
+		assertEquals(128, mMetrics.getLatencyPercentile(Phase.SRV, 0.5, TimeUnit.MICROSECONDS));
+		assertEquals(131072, mMetrics.getLatencyPercentile(Phase.SRV, 1, TimeUnit.MICROSECONDS));
+		assertEquals(100, mMetrics.getQueryCount(Phase.SRV));
+		assertEquals(1099, mMetrics.getMeanLatency(Phase.SRV, TimeUnit.MICROSECONDS));
+	}
+}
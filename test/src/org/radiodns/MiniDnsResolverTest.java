@@ -0,0 +1,269 @@
+/*
+ * Copyright (c) 2012 Global Radio UK Limited
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.    
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+
+package org.radiodns;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.SocketTimeoutException;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.minidns.constants.DnssecConstants.SignatureAlgorithm;
+import org.minidns.dnsmessage.DnsMessage;
+import org.minidns.dnsmessage.DnsMessage.RESPONSE_CODE;
+import org.minidns.dnsqueryresult.DnsQueryResult;
+import org.minidns.dnssec.DnssecValidationFailedException;
+import org.minidns.record.CNAME;
+import org.minidns.record.NSEC;
+import org.minidns.record.RRSIG;
+import org.minidns.record.Record.TYPE;
+import org.minidns.record.SRV;
+
+public class MiniDnsResolverTest {
+
+	private static final String RADIODNS_FQDN = "09580.c479.ce1.fm.radiodns.org";
+
+	private FakeDataSource mDataSource;
+
+	@Before
+	public void setUp() {
+		mDataSource = new FakeDataSource();
+		mDataSource.addRecord(RADIODNS_FQDN, 300, new CNAME("rdns.musicradio.com"));
+		mDataSource.addRecord("_radiovis._tcp.rdns.musicradio.com", 60, new SRV(0, 100, 61613, "vis.musicradio.com"));
+	}
+
+	private static FakeDataSource.Failure timeout() {
+		return new FakeDataSource.Failure() {
+			@Override
+			public IOException create() {
+				return new SocketTimeoutException("Timeout");
+			}
+		};
+	}
+
+	@Test
+	public void systemServersAnswer() throws IOException {
+		MiniDnsResolver resolver = new MiniDnsResolver(ResolverConfig.SYSTEM, mDataSource);
+		LookupResult<CNAME> result = resolver.resolve(RADIODNS_FQDN, CNAME.class);
+		assertTrue(result.wasSuccessful());
+		assertEquals("rdns.musicradio.com", result.getAnswers().iterator().next().target.toString());
+		assertEquals(300, result.getTtl());
+
+		LookupResult<SRV> srv = resolver.resolve("_radiovis._tcp.rdns.musicradio.com", SRV.class);
+		assertEquals(61613, srv.getAnswers().iterator().next().port);
+
+		LookupResult<CNAME> negative = resolver.resolve("09590.c479.ce1.fm.radiodns.org", CNAME.class);
+		assertTrue(negative.isNegative());
+	}
+
+	@Test
+	public void systemServersUseConfiguredTimeout() {
+		new MiniDnsResolver(ResolverConfig.SYSTEM.withTimeout(1234), mDataSource);
+		assertEquals(1234, mDataSource.getTimeout());
+	}
+
+	@Test
+	public void systemServersAreRetried() {
+		mDataSource.setFailure(timeout());
+		MiniDnsResolver resolver = new MiniDnsResolver(ResolverConfig.SYSTEM.withRetries(2), mDataSource);
+		try {
+			resolver.resolve(RADIODNS_FQDN, CNAME.class);
+			fail("Expected IOException");
+		} catch (IOException e) {
+			// expected
+		}
+		/*
+		 * every system DNS server is tried on each of the three attempts
+		 */
+		int queries = mDataSource.getQueryCount();
+		assertTrue(queries >= 3);
+		assertEquals(0, queries % 3);
+	}
+
+	@Test
+	public void upstreamIsRetriedThenFailsOver() throws IOException {
+		InetAddress primary = InetAddress.getByName("192.0.2.1");
+		InetAddress secondary = InetAddress.getByName("192.0.2.2");
+		mDataSource.setFailure(primary, timeout());
+		MiniDnsResolver resolver = new MiniDnsResolver(
+				new ResolverConfig("192.0.2.1", "192.0.2.2").withRetries(1), mDataSource);
+		assertTrue(resolver.resolve(RADIODNS_FQDN, CNAME.class).wasSuccessful());
+		assertEquals(Arrays.asList(primary, primary, secondary), mDataSource.getServers());
+	}
+
+	@Test
+	public void upstreamServerFailureFailsOver() throws IOException {
+		InetAddress primary = InetAddress.getByName("192.0.2.1");
+		mDataSource.setResponseCode(primary, RESPONSE_CODE.SERVER_FAIL);
+		MiniDnsResolver resolver = new MiniDnsResolver(new ResolverConfig("192.0.2.1", "192.0.2.2"), mDataSource);
+		assertTrue(resolver.resolve(RADIODNS_FQDN, CNAME.class).wasSuccessful());
+		assertEquals(2, mDataSource.getQueryCount());
+
+		mDataSource.setResponseCode(InetAddress.getByName("192.0.2.2"), RESPONSE_CODE.REFUSED);
+		LookupResult<CNAME> result = resolver.resolve(RADIODNS_FQDN, CNAME.class);
+		assertFalse(result.wasSuccessful());
+		assertEquals(RESPONSE_CODE.REFUSED, result.getResponseCode());
+	}
+
+	@Test
+	public void unexpectedTrialFailureDoesNotKeepCircuitOpen() throws Exception {
+		final AtomicInteger queries = new AtomicInteger();
+		FakeDataSource dataSource = new FakeDataSource() {
+			@Override
+			public DnsQueryResult query(DnsMessage message, InetAddress address, int port) throws IOException {
+				switch (queries.incrementAndGet()) {
+				case 1:
+					throw new SocketTimeoutException("Timeout");
+				case 2:
+					throw new IllegalStateException("Unexpected failure");
+				default:
+					return super.query(message, address, port);
+				}
+			}
+		};
+		dataSource.addRecord(RADIODNS_FQDN, 300, new CNAME("rdns.musicradio.com"));
+		MiniDnsResolver resolver = new MiniDnsResolver(
+				new ResolverConfig("192.0.2.1").withRetries(0).withCircuitBreaker(1, 50), dataSource);
+		try {
+			resolver.resolve(RADIODNS_FQDN, CNAME.class);
+			fail("Expected IOException");
+		} catch (IOException e) {
+			// expected
+		}
+		assertTrue(resolver.isCircuitOpen("192.0.2.1"));
+
+		Thread.sleep(80);
+		try {
+			resolver.resolve(RADIODNS_FQDN, CNAME.class);
+			fail("Expected IllegalStateException");
+		} catch (IllegalStateException e) {
+			// expected
+		}
+		assertTrue(resolver.resolve(RADIODNS_FQDN, CNAME.class).wasSuccessful());
+		assertFalse(resolver.isCircuitOpen("192.0.2.1"));
+		assertEquals(3, queries.get());
+	}
+
+	@Test
+	public void resolversArePooledPerConfig() {
+		ResolverConfig config = new ResolverConfig("192.0.2.1").withTimeout(1000);
+		assertTrue(MiniDnsResolver.forConfig(config) == MiniDnsResolver.forConfig(
+				new ResolverConfig("192.0.2.1").withTimeout(1000)));
+		assertFalse(MiniDnsResolver.forConfig(config) == MiniDnsResolver.forConfig(config.withRetries(3)));
+		assertTrue(MiniDnsResolver.getDefault() == MiniDnsResolver.forConfig(ResolverConfig.SYSTEM));
+	}
+
+	@Test
+	public void unsignedNamesAreRemembered() throws IOException {
+		MiniDnsResolver resolver = new MiniDnsResolver(
+				ResolverConfig.SYSTEM.withDnssecPolicy(DnssecPolicy.OPPORTUNISTIC), mDataSource);
+		LookupResult<CNAME> result = resolver.resolve(RADIODNS_FQDN, CNAME.class);
+		assertTrue(result.wasSuccessful());
+		assertFalse(result.isAuthenticData());
+		assertEquals(1, resolver.getUnsignedNameCount());
+
+		resolver.resolve("_radiovis._tcp.rdns.musicradio.com", SRV.class);
+		assertEquals(2, resolver.getUnsignedNameCount());
+
+		/*
+		 * negative answers are not remembered
+		 */
+		resolver.resolve("09590.c479.ce1.fm.radiodns.org", CNAME.class);
+		assertEquals(2, resolver.getUnsignedNameCount());
+	}
+
+	@Test
+	public void nothingIsRememberedWithDnssecOff() throws IOException {
+		MiniDnsResolver resolver = new MiniDnsResolver(ResolverConfig.SYSTEM, mDataSource);
+		assertTrue(resolver.resolve(RADIODNS_FQDN, CNAME.class).wasSuccessful());
+		assertEquals(0, resolver.getUnsignedNameCount());
+	}
+
+	private static DnssecValidationFailedException expectValidationFailure(MiniDnsResolver resolver, String name) {
+		try {
+			resolver.resolve(name, CNAME.class);
+		} catch (DnssecValidationFailedException e) {
+			return e;
+		} catch (IOException e) {
+			fail("Unexpected " + e);
+		}
+		fail("Expected DnssecValidationFailedException");
+		return null;
+	}
+
+	@Test
+	public void validationFailureIsNotRetriedNorRemembered() throws IOException {
+		/*
+		 * the only NSEC record does not cover the name, so the validating
+		 * client rejects the negative answer
+		 */
+		String name = "09590.c479.ce1.fm.radiodns.org";
+		mDataSource.addRecord("0.c479.ce1.fm.radiodns.org", 60,
+				new NSEC("09000.c479.ce1.fm.radiodns.org", TYPE.CNAME, TYPE.NSEC));
+		MiniDnsResolver resolver = new MiniDnsResolver(ResolverConfig.SYSTEM
+				.withDnssecPolicy(DnssecPolicy.OPPORTUNISTIC).withRetries(2).withCircuitBreaker(1, 60000),
+				mDataSource);
+		assertTrue(expectValidationFailure(resolver, name).getMessage().contains("Invalid NSEC"));
+		assertEquals(1, mDataSource.getQueryCount());
+		assertEquals(0, resolver.getUnsignedNameCount());
+		assertFalse(resolver.isCircuitOpen(null));
+		assertTrue(resolver.resolve(RADIODNS_FQDN, CNAME.class).wasSuccessful());
+	}
+
+	@Test
+	public void wrappedValidationFailureIsNotRetried() {
+		mDataSource.setFailure(new FakeDataSource.Failure() {
+			@Override
+			public IOException create() {
+				return new DnssecValidationFailedException("Bogus signature");
+			}
+		});
+		MiniDnsResolver resolver = new MiniDnsResolver(ResolverConfig.SYSTEM
+				.withDnssecPolicy(DnssecPolicy.OPPORTUNISTIC).withRetries(2).withCircuitBreaker(1, 60000),
+				mDataSource);
+		assertEquals("Bogus signature", expectValidationFailure(resolver, RADIODNS_FQDN).getMessage());
+		/*
+		 * a retry would query the system DNS servers again
+		 */
+		List<InetAddress> servers = mDataSource.getServers();
+		assertEquals(new HashSet<InetAddress>(servers).size(), servers.size());
+		assertFalse(resolver.isCircuitOpen(null));
+	}
+
+	@Test
+	public void expiredSignaturesAreRejected() {
+		long now = System.currentTimeMillis();
+		mDataSource.addRecord(RADIODNS_FQDN, 300, new RRSIG(TYPE.CNAME, SignatureAlgorithm.RSASHA256, (byte) 5, 300,
+				new Date(now - 86400000L), new Date(now - 2 * 86400000L), 12345, "radiodns.org", new byte[64]));
+		for (DnssecPolicy policy : new DnssecPolicy[] { DnssecPolicy.OPPORTUNISTIC, DnssecPolicy.REQUIRED }) {
+			MiniDnsResolver resolver = new MiniDnsResolver(ResolverConfig.SYSTEM.withDnssecPolicy(policy),
+					mDataSource);
+			assertTrue(expectValidationFailure(resolver, RADIODNS_FQDN).getMessage().contains("active signatures"));
+			assertEquals(0, resolver.getUnsignedNameCount());
+		}
+	}
+}
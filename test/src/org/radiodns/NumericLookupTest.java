@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2012 Global Radio UK Limited
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.    
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+
+package org.radiodns;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class NumericLookupTest {
+
+	private RadioDNS mRadioDNS;
+
+	@Before
+	public void setUp() {
+		mRadioDNS = new RadioDNS();
+		mRadioDNS.setResolver(new InMemoryResolver());
+	}
+
+	@Test
+	public void numericBearersMatchStringBearers() throws LookupException {
+		assertEquals(mRadioDNS.lookupFMService("ce1", "c479", 95800).getRadioDNSFqdn(),
+				mRadioDNS.lookupFMService(0xce1, 0xc479, 95800).getRadioDNSFqdn());
+		assertEquals(mRadioDNS.lookupFMService("ce1", "c479", 87500).getRadioDNSFqdn(),
+				mRadioDNS.lookupFMService(0xce1, 0xc479, 87500).getRadioDNSFqdn());
+		assertEquals(mRadioDNS.lookupDABService("ce1", "ce15", "c221", "0").getRadioDNSFqdn(),
+				mRadioDNS.lookupDABService(0xce1, 0xce15, 0xc221L, 0).getRadioDNSFqdn());
+		assertEquals(mRadioDNS.lookupDABService("ce1", "0e15", "0221", "012", 3).getRadioDNSFqdn(),
+				mRadioDNS.lookupDABService(0xce1, 0x0e15, 0x0221L, 0x12, 3).getRadioDNSFqdn());
+		assertEquals(mRadioDNS.lookupDABService("ce1", "ce15", "e1c0c221", "0").getRadioDNSFqdn(),
+				mRadioDNS.lookupDABService(0xce1, 0xce15, 0xe1c0c221L, 0).getRadioDNSFqdn());
+		assertEquals(mRadioDNS.lookupAMService("amss", "00c238").getRadioDNSFqdn(),
+				mRadioDNS.lookupAMService("amss", 0xc238).getRadioDNSFqdn());
+		assertEquals("0ea31.337.hd.radiodns.org", mRadioDNS.lookupHDService(0x337, 0x0ea31).getRadioDNSFqdn());
+	}
+
+	@Test
+	public void numericBearersReportHexValues() throws LookupException {
+		FMService fm = (FMService) mRadioDNS.lookupFMService(0xce1, 0xc479, 95800);
+		assertEquals("c479", fm.getPiCode());
+		assertEquals("ce1", fm.getGcc());
+		DABService dab = (DABService) mRadioDNS.lookupDABService(0xce1, 0xce15, 0xc221L, 0x12);
+		assertEquals("c221", dab.getSid());
+		assertEquals("012", dab.getScids());
+	}
+
+	@Test
+	public void outOfRangeValuesAreRejected() {
+		int[][] fm = { { 0x1ce1, 0xc479, 95800 }, { 0xce1, 0x1c479, 95800 }, { 0xce1, 0xd479, 95800 },
+				{ 0xce1, 0xc479, 75900 }, { -1, 0xc479, 95800 } };
+		for (int[] parameters : fm) {
+			try {
+				mRadioDNS.lookupFMService(parameters[0], parameters[1], parameters[2]);
+				fail("Accepted FM " + parameters[0] + " " + parameters[1] + " " + parameters[2]);
+			} catch (LookupException e) {
+				// expected
+			}
+		}
+		try {
+			mRadioDNS.lookupDABService(0xce1, 0xce15, 0x100000000L, 0);
+			fail("Accepted DAB SId of 33 bits");
+		} catch (LookupException e) {
+			// expected
+		}
+		try {
+			mRadioDNS.lookupAMService("drm", 0x1000000);
+			fail("Accepted AM SId of 25 bits");
+		} catch (LookupException e) {
+			// expected
+		}
+		try {
+			mRadioDNS.lookupHDService(0x337, 0x100000);
+			fail("Accepted HD TX of 21 bits");
+		} catch (LookupException e) {
+			// expected
+		}
+	}
+}
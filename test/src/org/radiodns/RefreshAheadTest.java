@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2012 Global Radio UK Limited
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.    
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+
+package org.radiodns;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class RefreshAheadTest {
+
+	private RefreshAhead mRefreshAhead;
+
+	@After
+	public void tearDown() {
+		if (mRefreshAhead != null) {
+			mRefreshAhead.shutdown();
+		}
+	}
+
+	/**
+	 * Entry created a second ago and expiring in a second, i.e. in the last
+	 * half of its TTL
+	 */
+	private static CacheEntry<String> dueEntry(int hits) {
+		long now = System.currentTimeMillis();
+		CacheEntry<String> entry = new CacheEntry<String>("rdns.musicradio.com", now - 1000, now + 1000);
+		for (int i = 0; i < hits; i++) {
+			entry.recordHit();
+		}
+		return entry;
+	}
+
+	private static Runnable endRefresh(final CacheEntry<?> entry) {
+		return new Runnable() {
+			@Override
+			public void run() {
+				entry.endRefresh();
+			}
+		};
+	}
+
+	@Test
+	public void rateLimitAppliesFromConstruction() {
+		mRefreshAhead = new RefreshAhead(0, 0.5, 2, 1);
+		int submitted = 0;
+		for (int i = 0; i < 3; i++) {
+			CacheEntry<String> entry = dueEntry(0);
+			if (mRefreshAhead.refreshIfDue(entry, endRefresh(entry))) {
+				submitted++;
+			}
+		}
+		assertEquals(2, submitted);
+		assertEquals(2, mRefreshAhead.getRefreshCount());
+		assertEquals(1, mRefreshAhead.getRateLimitedCount());
+	}
+
+	@Test
+	public void coldEntryIsNotDue() {
+		mRefreshAhead = new RefreshAhead(10, 0.5, 50);
+		assertFalse(mRefreshAhead.isDue(dueEntry(9), System.currentTimeMillis()));
+		assertTrue(mRefreshAhead.isDue(dueEntry(10), System.currentTimeMillis()));
+	}
+
+	@Test
+	public void entryIsNotDueBeforeRefreshWindow() {
+		mRefreshAhead = new RefreshAhead(0, 0.2, 50);
+		long now = System.currentTimeMillis();
+		CacheEntry<String> entry = new CacheEntry<String>("x", now, now + 10000);
+		assertFalse(mRefreshAhead.isDue(entry, now + 7999));
+		assertTrue(mRefreshAhead.isDue(entry, now + 8000));
+		assertFalse(mRefreshAhead.isDue(entry, now + 10000));
+	}
+
+	@Test
+	public void entryIsRefreshedOnceAtATime() {
+		mRefreshAhead = new RefreshAhead(0, 0.5, 50);
+		CacheEntry<String> entry = dueEntry(0);
+		assertTrue(entry.startRefresh());
+		assertFalse(mRefreshAhead.refreshIfDue(entry, endRefresh(entry)));
+		entry.endRefresh();
+		assertTrue(mRefreshAhead.refreshIfDue(entry, endRefresh(entry)));
+	}
+
+	@Test
+	public void hotAuthoritativeFqdnIsResolvedBeforeExpiry() throws Exception {
+		InMemoryResolver resolver = InMemoryResolver.fromZone(
+				"09580.c479.ce1.fm.radiodns.org. 2 CNAME rdns.musicradio.com.\n");
+		ResolutionCache cache = new ResolutionCache();
+		mRefreshAhead = new RefreshAhead(3, 0.5, 10);
+		cache.setRefreshAhead(mRefreshAhead);
+		RadioDNS rdns = new RadioDNS();
+		rdns.setResolver(resolver);
+		rdns.setResolutionCache(cache);
+		Service service = rdns.lookupFMService("ce1", "c479", 95800);
+
+		for (int i = 0; i < 5; i++) {
+			assertEquals("rdns.musicradio.com", service.getAuthoritativeFqdn());
+		}
+		assertEquals(1, resolver.getQueryCount());
+		assertEquals(0, mRefreshAhead.getRefreshCount());
+
+		Thread.sleep(1100);
+		assertEquals("rdns.musicradio.com", service.getAuthoritativeFqdn());
+		long deadline = System.currentTimeMillis() + 2000;
+		while (resolver.getQueryCount() < 2 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		assertEquals(1, mRefreshAhead.getRefreshCount());
+		assertEquals(2, resolver.getQueryCount());
+	}
+}
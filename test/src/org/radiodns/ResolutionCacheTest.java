@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2012 Global Radio UK Limited
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.    
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+
+package org.radiodns;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class ResolutionCacheTest {
+
+	private static final String RADIODNS_FQDN = "09580.c479.ce1.fm.radiodns.org";
+	private static final String AUTHORITATIVE_FQDN = "rdns.musicradio.com";
+	private static final String APPLICATION_FQDN = "_radiovis._tcp.rdns.musicradio.com";
+
+	private ResolutionCache mCache;
+
+	@Before
+	public void setUp() {
+		mCache = new ResolutionCache();
+	}
+
+	private static Application application() {
+		return new Application(RadioDNS.RADIOVIS, Collections.<Record>emptyList());
+	}
+
+	@Test
+	public void positiveAnswerIsServedUntilItsTtl() throws Exception {
+		mCache.putAuthoritativeFqdn(RADIODNS_FQDN, AUTHORITATIVE_FQDN, 1);
+		assertEquals(AUTHORITATIVE_FQDN, mCache.getAuthoritativeFqdn(RADIODNS_FQDN.toUpperCase()).getValue());
+		assertEquals(1, mCache.getHitCount());
+
+		Thread.sleep(1100);
+		assertNull(mCache.getAuthoritativeFqdn(RADIODNS_FQDN));
+		assertEquals(1, mCache.getMissCount());
+		assertEquals(0, mCache.size());
+	}
+
+	@Test
+	public void negativeAnswerUsesNegativeTtl() {
+		mCache.setNegativeTtl(30);
+		long before = System.currentTimeMillis();
+		CacheEntry<Application> entry = mCache.putApplication(APPLICATION_FQDN, null, 3600);
+		assertTrue(entry.isNegative());
+		assertTrue(entry.getExpires() - before <= 30000 + 100);
+		assertSame(entry, mCache.getApplication(APPLICATION_FQDN));
+	}
+
+	@Test
+	public void ttlIsCappedAndZeroTtlIsNotCached() {
+		mCache.setMaximumTtl(10);
+		long before = System.currentTimeMillis();
+		CacheEntry<Application> entry = mCache.putApplication(APPLICATION_FQDN, application(), 86400);
+		assertTrue(entry.getExpires() - before <= 10000 + 100);
+
+		mCache.putAuthoritativeFqdn(RADIODNS_FQDN, AUTHORITATIVE_FQDN, 0);
+		assertNull(mCache.getAuthoritativeFqdn(RADIODNS_FQDN));
+		assertEquals(1, mCache.size());
+	}
+
+	@Test
+	public void leastRecentlyUsedEntryIsEvicted() {
+		ResolutionCache cache = new ResolutionCache(2);
+		cache.putAuthoritativeFqdn("a", "x", 60);
+		cache.putAuthoritativeFqdn("b", "x", 60);
+		assertNotNull(cache.getAuthoritativeFqdn("a"));
+		cache.putAuthoritativeFqdn("c", "x", 60);
+		assertNull(cache.getAuthoritativeFqdn("b"));
+		assertNotNull(cache.getAuthoritativeFqdn("a"));
+		assertNotNull(cache.getAuthoritativeFqdn("c"));
+		assertEquals(1, cache.getEvictionCount());
+	}
+
+	@Test
+	public void purgeKeepsPositiveAnswersWithinGracePeriod() throws Exception {
+		mCache.setStaleGracePeriod(60);
+		mCache.putApplication(APPLICATION_FQDN, application(), 1);
+		mCache.setNegativeTtl(1);
+		mCache.putAuthoritativeFqdn(RADIODNS_FQDN, null, 0);
+		Thread.sleep(1100);
+
+		mCache.purgeExpired();
+		assertEquals(1, mCache.size());
+		assertNull(mCache.getApplication(APPLICATION_FQDN));
+		assertNotNull(mCache.getStaleApplication(APPLICATION_FQDN));
+		assertNull(mCache.getStaleAuthoritativeFqdn(RADIODNS_FQDN));
+		assertEquals(1, mCache.getStaleCount());
+	}
+
+	@Test
+	public void cacheIsSharedAcrossServices() throws Exception {
+		InMemoryResolver resolver = InMemoryResolver.fromZone("$ORIGIN radiodns.org.\n"
+				+ "09580.c479.ce1.fm 300 CNAME rdns.musicradio.com.\n"
+				+ "$ORIGIN rdns.musicradio.com.\n"
+				+ "_radiovis._tcp 300 SRV 0 100 61613 vis.musicradio.com.\n");
+		RadioDNS radioDNS = new RadioDNS();
+		radioDNS.setResolver(resolver);
+		radioDNS.setResolutionCache(mCache);
+
+		assertNotNull(radioDNS.lookupFMService("ce1", "c479", 95800).getApplication(RadioDNS.RADIOVIS));
+		long queries = resolver.getQueryCount();
+		assertNotNull(radioDNS.lookupFMService("ce1", "c479", 95800).getApplication(RadioDNS.RADIOVIS));
+		assertEquals(queries, resolver.getQueryCount());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsEmptyCache() {
+		new ResolutionCache(0);
+	}
+}
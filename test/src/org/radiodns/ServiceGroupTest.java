@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2012 Global Radio UK Limited
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.    
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+
+package org.radiodns;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.minidns.record.Data;
+import org.minidns.record.SRV;
+
+public class ServiceGroupTest {
+
+	private static final String ZONE = "$ORIGIN radiodns.org.\n"
+			+ "09580.c479.ce1.fm CNAME rdns.musicradio.com.\n"
+			+ "09610.c479.ce1.fm CNAME RDNS.musicradio.com.\n"
+			+ "0.c479.c185.ce1.dab CNAME rdns.heart.co.uk.\n"
+			+ "_radiovis._tcp.rdns.musicradio.com. SRV 0 100 61613 vis.musicradio.com.\n"
+			+ "_radioepg._tcp.rdns.musicradio.com. SRV 0 100 80 epg.musicradio.com.\n"
+			+ "_radioepg._tcp.rdns.heart.co.uk. SRV 0 100 80 epg.heart.co.uk.\n"
+			+ "_radiotag._tcp.rdns.heart.co.uk. SRV 0 100 80 tag.heart.co.uk.\n";
+
+	private InMemoryResolver mResolver;
+	private RadioDNS mRadioDNS;
+
+	/*
+	 * SRV queries made per name
+	 */
+	private final ConcurrentMap<String, AtomicInteger> mSrvQueries = new ConcurrentHashMap<String, AtomicInteger>();
+
+	private final Resolver mCounting = new Resolver() {
+		@Override
+		public <D extends Data> LookupResult<D> resolve(String name, Class<D> type) throws IOException {
+			if (type == SRV.class) {
+				mSrvQueries.putIfAbsent(name.toLowerCase(), new AtomicInteger());
+				mSrvQueries.get(name.toLowerCase()).incrementAndGet();
+			}
+			return mResolver.resolve(name, type);
+		}
+	};
+
+	@Before
+	public void setUp() {
+		mResolver = InMemoryResolver.fromZone(ZONE);
+		mResolver.setLatency(20, 50, TimeUnit.MILLISECONDS);
+		mRadioDNS = new RadioDNS();
+		mRadioDNS.setResolver(mCounting);
+	}
+
+	private ServiceGroup newStation() throws LookupException {
+		ServiceGroup station = new ServiceGroup();
+		station.add(mRadioDNS.getFMService("ce1", "c479", 95800));
+		station.add(mRadioDNS.getFMService("ce1", "c479", 96100));
+		station.add(mRadioDNS.getDABService("ce1", "c185", "c479", "0"));
+		station.add(mRadioDNS.getFMService("ce1", "c479", 97000));
+		return station;
+	}
+
+	@Test
+	public void bearersAreCollapsedByAuthoritativeFqdn() throws Exception {
+		ServiceGroup station = newStation();
+		station.resolve();
+		assertEquals(Arrays.asList("rdns.musicradio.com", "rdns.heart.co.uk"),
+				Arrays.asList(station.getAuthoritativeFqdns().toArray()));
+		assertEquals(station.getBearers().subList(0, 2), station.getBearers("RDNS.musicradio.com"));
+		assertEquals(station.getBearers().subList(2, 3), station.getBearers("rdns.heart.co.uk"));
+		assertEquals(station.getBearers().subList(3, 4), station.getUnresolvedBearers());
+		assertNull(station.getException(station.getBearers().get(3)));
+		assertTrue(station.getBearers("rdns.example.com").isEmpty());
+	}
+
+	@Test
+	public void applicationsAreResolvedOncePerAuthoritativeFqdn() throws Exception {
+		ServiceGroup station = newStation();
+		station.resolve();
+		assertEquals(2 * RadioDNS.KNOWN_APPLICATIONS.length, mSrvQueries.size());
+		for (AtomicInteger count : mSrvQueries.values()) {
+			assertEquals(1, count.get());
+		}
+		assertEquals("vis.musicradio.com", station.getApplication(RadioDNS.RADIOVIS).selectRecord().getHost());
+		assertEquals("epg.musicradio.com", station.getApplication(RadioDNS.RADIOEPG).selectRecord().getHost());
+		assertEquals("tag.heart.co.uk", station.getApplication(RadioDNS.RADIOTAG).selectRecord().getHost());
+		assertNull(station.getApplication(RadioDNS.RADIOSPI));
+		assertEquals("epg.heart.co.uk", station.getApplications("rdns.heart.co.uk").get(RadioDNS.RADIOEPG)
+				.selectRecord().getHost());
+		assertNull(station.getApplications("rdns.example.com"));
+	}
+
+	@Test
+	public void resolveReplacesPreviousResults() throws Exception {
+		ServiceGroup station = new ServiceGroup(Arrays.asList(mRadioDNS.getFMService("ce1", "c479", 95800)));
+		station.resolve();
+		assertEquals(1, station.getAuthoritativeFqdns().size());
+
+		station.add(mRadioDNS.getDABService("ce1", "c185", "c479", "0"));
+		station.setConcurrency(1);
+		station.resolve();
+		assertEquals(2, station.getAuthoritativeFqdns().size());
+		assertEquals(1, station.getBearers("rdns.musicradio.com").size());
+	}
+
+	@Test
+	public void emptyGroupResolvesToNothing() throws Exception {
+		ServiceGroup station = new ServiceGroup();
+		station.resolve();
+		assertTrue(station.getAuthoritativeFqdns().isEmpty());
+		assertNull(station.getApplication(RadioDNS.RADIOVIS));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsNullBearer() {
+		new ServiceGroup().add(null);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsZeroConcurrency() {
+		new ServiceGroup().setConcurrency(0);
+	}
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2012 Global Radio UK Limited
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.    
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+
+package org.radiodns;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class ServiceRegistryTest {
+
+	private RadioDNS mRadioDNS;
+
+	@Before
+	public void setUp() {
+		mRadioDNS = new RadioDNS();
+		mRadioDNS.setResolver(new InMemoryResolver());
+	}
+
+	@Test
+	public void equalBearersShareOneService() throws LookupException {
+		Service service = mRadioDNS.getFMService("ce1", "c479", 95800);
+		assertSame(service, mRadioDNS.getFMService("ce1", "c479", 95800));
+		assertSame(service, mRadioDNS.getFMService("CE1", "C479", 95800));
+		assertSame(service, mRadioDNS.getFMService(0xce1, 0xc479, 95800));
+		assertNotSame(service, mRadioDNS.getFMService("ce1", "c479", 95900));
+
+		Service dab = mRadioDNS.getDABService("ce1", "ce15", "c221", "0");
+		assertSame(dab, mRadioDNS.getDABService(0xce1, 0xce15, 0xc221L, 0));
+		Service am = mRadioDNS.getAMService("drm", "e1c238");
+		assertSame(am, mRadioDNS.getAMService("drm", 0xe1c238));
+		assertNotSame(am, mRadioDNS.getAMService("amss", "e1c238"));
+		Service hd = mRadioDNS.getHDService("0ea31", "337");
+		assertSame(hd, mRadioDNS.getHDService(0x337, 0x0ea31));
+	}
+
+	@Test
+	public void isoCountryKeepsItsOwnService() throws LookupException {
+		Service iso = mRadioDNS.getFMService("gb", "c479", 95800);
+		Service gcc = mRadioDNS.getFMService("ce1", "c479", 95800);
+		assertNotSame(iso, gcc);
+		assertSame(iso, mRadioDNS.getFMService("GB", "c479", 95800));
+		assertEquals(iso.getRadioDNSFqdn(), gcc.getRadioDNSFqdn());
+	}
+
+	@Test
+	public void unpackableBearersAreNotShared() throws LookupException {
+		assertEquals(ServiceRegistry.NO_KEY, ServiceRegistry.dabKey("ce1", "ce15", "1234c221", "0"));
+		assertNotSame(mRadioDNS.getDABService("ce1", "ce15", "1234c221", "0"),
+				mRadioDNS.getDABService("ce1", "ce15", "1234c221", "0"));
+		assertEquals(ServiceRegistry.NO_KEY, ServiceRegistry.fmKey("ce1", "d479", 95800));
+		assertEquals(ServiceRegistry.NO_KEY, ServiceRegistry.fmKey(0xce1, 0xd479, 95800));
+		assertEquals(ServiceRegistry.NO_KEY, ServiceRegistry.amKey("DRM", "e1c238"));
+		assertEquals(ServiceRegistry.NO_KEY, ServiceRegistry.hdKey("337", "0ea3"));
+	}
+
+	@Test
+	public void sharedServicesCannotBeReconfigured() throws LookupException {
+		Service service = mRadioDNS.getHDService("0ea31", "337");
+		assertEquals("0ea31.337.hd.radiodns.org", service.getRadioDNSFqdn());
+		try {
+			service.setResolver(null);
+			fail("Expected IllegalStateException");
+		} catch (IllegalStateException e) {
+			// expected
+		}
+		try {
+			service.setDNSHostname("8.8.8.8");
+			fail("Expected IllegalStateException");
+		} catch (IllegalStateException e) {
+			// expected
+		}
+		assertTrue(service.getResolver() instanceof InMemoryResolver);
+
+		Service own = mRadioDNS.lookupHDService("0ea31", "337");
+		own.setResolver(null);
+		assertSame(service, mRadioDNS.getHDService("0ea31", "337"));
+	}
+
+	@Test(expected = LookupException.class)
+	public void invalidBearerIsStillRejected() throws LookupException {
+		mRadioDNS.getFMService("ce1", "c479", 200000);
+	}
+
+	@Test
+	public void configurationChangeDropsSharedServices() throws LookupException {
+		Service service = mRadioDNS.getFMService("ce1", "c479", 95800);
+		mRadioDNS.setDnssecPolicy(DnssecPolicy.OPPORTUNISTIC);
+		assertNotSame(service, mRadioDNS.getFMService("ce1", "c479", 95800));
+	}
+
+	@Test
+	public void registryGrowsAndIsBounded() throws LookupException {
+		ServiceRegistry registry = new ServiceRegistry(1000);
+		Service[] services = new Service[1000];
+		for (int i = 0; i < services.length; i++) {
+			services[i] = new FMService(0xce1, 0xc000 + i, 95800);
+			long key = ServiceRegistry.fmKey(0xce1, 0xc000 + i, 95800);
+			assertSame(services[i], registry.putIfAbsent(key, services[i]));
+			assertSame(services[i], registry.putIfAbsent(key, new FMService(0xce1, 0xc000 + i, 95800)));
+		}
+		assertEquals(1000, registry.size());
+		for (int i = 0; i < services.length; i++) {
+			assertSame(services[i], registry.get(ServiceRegistry.fmKey(0xce1, 0xc000 + i, 95800)));
+		}
+
+		long key = ServiceRegistry.fmKey(0xce1, 0xcfff, 95800);
+		registry.putIfAbsent(key, new FMService(0xce1, 0xcfff, 95800));
+		assertEquals(1, registry.size());
+		assertNull(registry.get(ServiceRegistry.fmKey(0xce1, 0xc000, 95800)));
+		assertNotNull(registry.get(key));
+	}
+}
@@ -0,0 +1,219 @@
+/*
+ * Copyright (c) 2012 Global Radio UK Limited
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.    
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+
+package org.radiodns;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.minidns.dnssec.DnssecValidationFailedException;
+import org.minidns.record.CNAME;
+import org.minidns.record.Data;
+import org.radiodns.LookupListener.Outcome;
+import org.radiodns.LookupListener.Phase;
+
+public class ServiceTest {
+
+	private static final String ZONE = "$ORIGIN radiodns.org.\n"
+			+ "$TTL 1\n"
+			+ "09580.c479.ce1.fm CNAME rdns.musicradio.com.\n"
+			+ "$ORIGIN rdns.musicradio.com.\n"
+			+ "_radiovis._tcp SRV 0 100 61613 vis.musicradio.com.\n"
+			+ "_radiovis._tcp SRV 10 100 61613 vis2.musicradio.com.\n";
+
+	private InMemoryResolver mResolver;
+	private ResolutionCache mCache;
+	private RadioDNS mRadioDNS;
+	private ExecutorService mExecutor;
+
+	@Before
+	public void setUp() {
+		mResolver = InMemoryResolver.fromZone(ZONE);
+		mCache = new ResolutionCache();
+		mRadioDNS = new RadioDNS();
+		mRadioDNS.setResolver(mResolver);
+		mRadioDNS.setResolutionCache(mCache);
+		mExecutor = Executors.newCachedThreadPool();
+	}
+
+	@After
+	public void tearDown() {
+		mExecutor.shutdownNow();
+	}
+
+	private Service newService() throws LookupException {
+		return mRadioDNS.lookupFMService("ce1", "c479", 95800);
+	}
+
+	@Test
+	public void staleAnswerIsServedOnFailure() throws Exception {
+		mCache.setStaleGracePeriod(60);
+		Service service = newService();
+		Application application = service.getApplication("radiovis");
+		assertFalse(application.isStale());
+		Record primary = application.getRecords().get(0);
+		application.markFailed(primary, 1, TimeUnit.MINUTES);
+
+		Thread.sleep(1100);
+		mResolver.setFailureRate(1.0);
+		Application stale = service.getApplication("radiovis");
+		assertTrue(stale.isStale());
+		assertTrue(service.isAuthoritativeFqdnStale());
+		assertEquals(2, stale.getRecords().size());
+		assertTrue(stale.isFailed(stale.getRecords().get(0)));
+		assertEquals("vis2.musicradio.com", stale.selectRecord().getTarget().toString());
+
+		mResolver.setFailureRate(0);
+		assertFalse(service.getApplication("radiovis").isStale());
+		assertFalse(service.isAuthoritativeFqdnStale());
+	}
+
+	@Test
+	public void staleAnswerIsNotServedAfterGracePeriod() throws Exception {
+		Service service = newService();
+		assertFalse(service.getApplication("radiovis").isStale());
+
+		Thread.sleep(1100);
+		mResolver.setFailureRate(1.0);
+		assertNull(service.getApplication("radiovis"));
+	}
+
+	@Test
+	public void applicationsAreResolvedConcurrently() throws Exception {
+		mResolver.setLatency(100, 100, TimeUnit.MILLISECONDS);
+		Service service = newService();
+		long start = System.nanoTime();
+		Map<String, Application> applications = service.getApplications(mExecutor, 5, TimeUnit.SECONDS);
+		long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+		assertEquals(RadioDNS.KNOWN_APPLICATIONS.length, applications.size());
+		assertEquals(2, applications.get(RadioDNS.RADIOVIS).getRecords().size());
+		assertNull(applications.get(RadioDNS.RADIOEPG));
+		assertTrue("took " + elapsed + "ms", elapsed < 500);
+	}
+
+	@Test
+	public void deadlineCoversAuthoritativeFqdnLookup() throws Exception {
+		mResolver.setLatency(300, 300, TimeUnit.MILLISECONDS);
+		Service service = newService();
+		long start = System.nanoTime();
+		Map<String, Application> applications = service.getApplications(mExecutor, 100, TimeUnit.MILLISECONDS);
+		long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+		assertTrue(applications.isEmpty());
+		assertTrue("took " + elapsed + "ms", elapsed < 250);
+
+		/*
+		 * the CNAME lookup completes in the background
+		 */
+		Thread.sleep(400);
+		mResolver.setLatency(0, 0, TimeUnit.MILLISECONDS);
+		long queries = mResolver.getQueryCount();
+		applications = service.getApplications(mExecutor, 5, TimeUnit.SECONDS);
+		assertEquals(RadioDNS.KNOWN_APPLICATIONS.length, applications.size());
+		assertEquals(queries + RadioDNS.KNOWN_APPLICATIONS.length, mResolver.getQueryCount());
+	}
+
+	@Test
+	public void unresolvedAuthoritativeFqdnMapsEveryApplicationToNull() throws Exception {
+		Service service = mRadioDNS.lookupFMService("ce1", "c479", 95900);
+		Map<String, Application> applications = service.getApplications(mExecutor, 5, TimeUnit.SECONDS);
+		assertEquals(RadioDNS.KNOWN_APPLICATIONS.length, applications.size());
+		for (Application application : applications.values()) {
+			assertNull(application);
+		}
+	}
+
+	@Test
+	public void requiredDnssecRejectsUnvalidatedAnswers() throws Exception {
+		LookupMetrics metrics = new LookupMetrics();
+		mRadioDNS.setLookupListener(metrics);
+		mRadioDNS.setDnssecPolicy(DnssecPolicy.REQUIRED);
+		assertNull(newService().getAuthoritativeFqdn());
+		assertEquals(1, metrics.getCount(Phase.CNAME, Outcome.DNSSEC_REJECTED));
+
+		mRadioDNS.setDnssecPolicy(DnssecPolicy.OPPORTUNISTIC);
+		assertEquals("rdns.musicradio.com", newService().getAuthoritativeFqdn());
+	}
+
+	@Test
+	public void validationFailureIsReportedAsRejected() throws Exception {
+		LookupMetrics metrics = new LookupMetrics();
+		mRadioDNS.setLookupListener(metrics);
+		mRadioDNS.setDnssecPolicy(DnssecPolicy.OPPORTUNISTIC);
+		mRadioDNS.setResolver(new Resolver() {
+			@Override
+			public <D extends Data> LookupResult<D> resolve(String name, Class<D> type) throws IOException {
+				throw new DnssecValidationFailedException("Bogus signature");
+			}
+		});
+		assertNull(newService().getAuthoritativeFqdn());
+		assertEquals(1, metrics.getCount(Phase.CNAME, Outcome.DNSSEC_REJECTED));
+		assertEquals(0, metrics.getCount(Phase.CNAME, Outcome.ERROR));
+	}
+
+	@Test
+	public void suppliedResolverIsKeptWithDnssecPolicy() throws Exception {
+		MiniDnsResolver resolver = new MiniDnsResolver(ResolverConfig.SYSTEM, new FakeDataSource());
+		mRadioDNS.setResolver(resolver);
+		mRadioDNS.setDnssecPolicy(DnssecPolicy.OPPORTUNISTIC);
+		Service service = newService();
+		assertTrue(service.getResolver() == resolver);
+		assertEquals(DnssecPolicy.OPPORTUNISTIC, service.getDnssecPolicy());
+
+		service.setResolverConfig(ResolverConfig.SYSTEM);
+		service.setDnssecPolicy(DnssecPolicy.REQUIRED);
+		assertEquals(DnssecPolicy.REQUIRED, ((MiniDnsResolver) service.getResolver()).getConfig().getDnssecPolicy());
+	}
+
+	@Test
+	public void authoritativeFqdnIsResolvedOncePerTtl() throws Exception {
+		final AtomicInteger cnameQueries = new AtomicInteger();
+		mRadioDNS.setResolver(new Resolver() {
+			@Override
+			public <D extends Data> LookupResult<D> resolve(String name, Class<D> type) throws IOException {
+				if (type == CNAME.class) {
+					cnameQueries.incrementAndGet();
+				}
+				return mResolver.resolve(name, type);
+			}
+		});
+		Service service = newService();
+		service.setResolutionCache(null);
+
+		assertEquals(RadioDNS.KNOWN_APPLICATIONS.length, service.getApplications().size());
+		assertEquals(1, cnameQueries.get());
+		service.getApplications(mExecutor, 5, TimeUnit.SECONDS);
+		assertEquals("rdns.musicradio.com", service.getAuthoritativeFqdn());
+		assertEquals(1, cnameQueries.get());
+
+		Thread.sleep(1100);
+		assertEquals("rdns.musicradio.com", service.getAuthoritativeFqdn());
+		assertEquals(2, cnameQueries.get());
+		service.refreshAuthoritativeFqdn();
+		assertEquals(3, cnameQueries.get());
+	}
+}
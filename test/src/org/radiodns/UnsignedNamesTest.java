@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2012 Global Radio UK Limited
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.    
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+
+package org.radiodns;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+import org.minidns.dnsmessage.Question;
+import org.minidns.dnsname.DnsName;
+import org.minidns.dnssec.DnssecUnverifiedReason;
+import org.minidns.record.Record.TYPE;
+
+public class UnsignedNamesTest {
+
+	@Test
+	public void remembersExactNameOnly() {
+		UnsignedNames names = new UnsignedNames(UnsignedNames.DEFAULT_CAPACITY);
+		names.add("bbc.co.uk", 300);
+		assertTrue(names.contains("bbc.co.uk"));
+		assertTrue(names.contains("BBC.co.uk."));
+		assertFalse(names.contains("co.uk"));
+		assertFalse(names.contains("www.bbc.co.uk"));
+		assertFalse(names.contains("_radiovis._tcp.bbc.co.uk"));
+		assertEquals(1, names.size());
+	}
+
+	@Test
+	public void capacityIsBounded() {
+		UnsignedNames names = new UnsignedNames(2);
+		names.add("a.example.com", 300);
+		names.add("b.example.com", 300);
+		names.add("c.example.com", 300);
+		assertEquals(2, names.size());
+		assertFalse(names.contains("c.example.com"));
+
+		names.add("a.example.com", 600);
+		assertTrue(names.contains("a.example.com"));
+
+		UnsignedNames none = new UnsignedNames(0);
+		none.add("a.example.com", 300);
+		assertEquals(0, none.size());
+		assertFalse(none.contains("a.example.com"));
+	}
+
+	@Test
+	public void onlyMissingSignaturesProveUnsigned() {
+		Question question = new Question("rdns.musicradio.com", TYPE.CNAME);
+		DnssecUnverifiedReason noSignatures = new DnssecUnverifiedReason.NoSignaturesReason(question);
+		DnssecUnverifiedReason noTrustAnchor = new DnssecUnverifiedReason.NoTrustAnchorReason(
+				DnsName.from("musicradio.com"));
+
+		assertTrue(UnsignedNames.isUnsigned(Collections.singleton(noSignatures)));
+		assertFalse(UnsignedNames.isUnsigned(Collections.singleton(noTrustAnchor)));
+		Set<DnssecUnverifiedReason> both = new HashSet<DnssecUnverifiedReason>(
+				Arrays.asList(noSignatures, noTrustAnchor));
+		assertFalse(UnsignedNames.isUnsigned(both));
+		assertFalse(UnsignedNames.isUnsigned(Collections.<DnssecUnverifiedReason>emptySet()));
+		assertFalse(UnsignedNames.isUnsigned(null));
+	}
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2012 Global Radio UK Limited
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.    
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+
+package org.radiodns;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+public class ValidationTest {
+
+	private static final String[] VALUES = { "", "0", "c", "C", "g", "ce1", "CE1", "c-1", "ce", "ce12", "c479",
+			"C47G", "c4791", "00000", "fffff", "0000g", "1a-b2c", "1A-B2C", "1a_b2c", "1a-b2", "1ab-2c", " ce1",
+			"ce1 ", "\u0661e1", "\uff43e1" };
+
+	@Test
+	public void hexMatchesRegularExpression() {
+		for (String value : VALUES) {
+			for (int length = 0; length <= 6; length++) {
+				assertEquals(value + "/" + length, value.matches("(?i)^[0-9A-F]{" + length + "}$"),
+						Validation.isHex(value, length));
+				for (int alternative = 0; alternative <= 6; alternative++) {
+					assertEquals(value + "/" + length + "/" + alternative,
+							value.matches("(?i)^[0-9A-F]{" + length + "}$|^[0-9A-F]{" + alternative + "}$"),
+							Validation.isHex(value, length, alternative));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void xpadMatchesRegularExpression() {
+		for (String value : VALUES) {
+			assertEquals(value, value.matches("(?i)^[0-9A-F]{2}-[0-9A-F]{3}$"), Validation.isXpad(value));
+		}
+	}
+
+	@Test
+	public void lookupsRejectInvalidParameters() {
+		RadioDNS radioDNS = new RadioDNS();
+		radioDNS.setResolver(new InMemoryResolver());
+		String[][] invalid = { { "c", "c479" }, { "ce1x", "c479" }, { "ce1", "c47g" }, { "ce1", "c4791" }, { "ce1 ", "c479" } };
+		for (String[] parameters : invalid) {
+			try {
+				radioDNS.lookupFMService(parameters[0], parameters[1], 95800);
+				fail("Accepted " + parameters[0] + " " + parameters[1]);
+			} catch (LookupException e) {
+				// expected
+			}
+		}
+		assertFalse(Validation.isHex('g'));
+	}
+}
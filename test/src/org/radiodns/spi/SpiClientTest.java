@@ -0,0 +1,288 @@
+/*
+ * Copyright (c) 2012 Global Radio UK Limited
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.    
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+
+package org.radiodns.spi;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.minidns.record.SRV;
+import org.radiodns.Application;
+import org.radiodns.FMService;
+import org.radiodns.IPService;
+import org.radiodns.RadioDNS;
+import org.radiodns.Record;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+public class SpiClientTest {
+
+	private static final String ETAG = "\"si-1\"";
+	private static final String LAST_MODIFIED = "Mon, 01 Jan 2024 00:00:00 GMT";
+
+	private HttpServer mServer;
+	private int mPort;
+
+	/*
+	 * Requests received by the stub, with their conditional headers
+	 */
+	private final List<String> mRequests = new CopyOnWriteArrayList<String>();
+
+	@Before
+	public void setUp() throws IOException {
+		mServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		mServer.createContext("/radiodns/spi/3.1/SI.xml", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				String etag = exchange.getRequestHeaders().getFirst("If-None-Match");
+				mRequests.add("SI.xml " + etag);
+				if (ETAG.equals(etag)) {
+					send(exchange, 304, null, false);
+					return;
+				}
+				exchange.getResponseHeaders().add("ETag", ETAG);
+				send(exchange, 200, SpiParserTest.SI, false);
+			}
+		});
+		mServer.createContext("/radiodns/spi/3.1/fm/ce1/c479/09580/20240101_PI.xml", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				String since = exchange.getRequestHeaders().getFirst("If-Modified-Since");
+				mRequests.add("PI.xml " + since + " " + exchange.getRequestHeaders().getFirst("Accept-Encoding"));
+				exchange.getResponseHeaders().add("Last-Modified", LAST_MODIFIED);
+				if (since != null) {
+					send(exchange, 304, null, false);
+					return;
+				}
+				send(exchange, 200, SpiParserTest.PI, true);
+			}
+		});
+		mServer.createContext("/radiodns/epg/XSI.xml", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				mRequests.add("XSI.xml");
+				send(exchange, 200, SpiParserTest.XSI, false);
+			}
+		});
+		mServer.start();
+		mPort = mServer.getAddress().getPort();
+	}
+
+	@After
+	public void tearDown() {
+		mServer.stop(0);
+	}
+
+	private static void send(HttpExchange exchange, int status, String body, boolean gzip) throws IOException {
+		if (body == null) {
+			exchange.sendResponseHeaders(status, -1);
+			exchange.close();
+			return;
+		}
+		if (gzip) {
+			exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+		}
+		exchange.sendResponseHeaders(status, 0);
+		OutputStream out = exchange.getResponseBody();
+		if (gzip) {
+			out = new GZIPOutputStream(out);
+		}
+		out.write(body.getBytes("UTF-8"));
+		out.close();
+	}
+
+	private static int closedPort() throws IOException {
+		ServerSocket socket = new ServerSocket(0);
+		int port = socket.getLocalPort();
+		socket.close();
+		return port;
+	}
+
+	private static Record target(int priority, int port) {
+		return new Record(new SRV(priority, 100, port, "127.0.0.1"));
+	}
+
+	private Application application(String applicationId) {
+		return new Application(applicationId, Arrays.asList(target(0, mPort)));
+	}
+
+	@Test
+	public void conditionalRequestWithETag() throws IOException {
+		SpiClient client = new SpiClient(application(RadioDNS.RADIOSPI));
+		SpiParserTest.Collector collector = new SpiParserTest.Collector();
+		assertTrue(client.fetchServiceInformation(collector));
+		assertEquals(2, collector.mServices.size());
+
+		assertFalse(client.fetchServiceInformation(collector));
+		assertEquals(2, collector.mServices.size());
+		assertEquals(Arrays.asList("SI.xml null", "SI.xml " + ETAG), mRequests);
+
+		client.clearValidators();
+		assertTrue(client.fetchServiceInformation(collector));
+		assertEquals(4, collector.mServices.size());
+	}
+
+	@Test
+	public void conditionalRequestWithLastModifiedAndGzip() throws Exception {
+		SpiClient client = new SpiClient(application(RadioDNS.RADIOSPI));
+		SpiParserTest.Collector collector = new SpiParserTest.Collector();
+		FMService bearer = new FMService("ce1", "c479", 95800);
+		LocalDate date = LocalDate.of(2024, 1, 1);
+		assertTrue(client.fetchProgrammeInformation(bearer, date, collector));
+		assertEquals(2, collector.mProgrammes.size());
+		assertEquals("Breakfast", collector.mProgrammes.get(0).getMediumName());
+
+		assertFalse(client.fetchProgrammeInformation(bearer, date, collector));
+		assertEquals(2, collector.mProgrammes.size());
+		assertEquals(Arrays.asList("PI.xml null gzip", "PI.xml " + LAST_MODIFIED + " gzip"), mRequests);
+	}
+
+	@Test
+	public void validatorsAreBounded() throws IOException {
+		SpiClient client = new SpiClient(application(RadioDNS.RADIOSPI), 0);
+		SpiParserTest.Collector collector = new SpiParserTest.Collector();
+		assertTrue(client.fetchServiceInformation(collector));
+		assertTrue(client.fetchServiceInformation(collector));
+		assertEquals(Arrays.asList("SI.xml null", "SI.xml null"), mRequests);
+	}
+
+	@Test
+	public void failsOverToNextTarget() throws IOException {
+		Application application = new Application(RadioDNS.RADIOSPI,
+				Arrays.asList(target(0, closedPort()), target(10, mPort)));
+		Record primary = application.getRecords().get(0);
+		SpiClient client = new SpiClient(application);
+		SpiParserTest.Collector collector = new SpiParserTest.Collector();
+		assertTrue(client.fetchServiceInformation(collector));
+		assertEquals(2, collector.mServices.size());
+		assertTrue(application.isFailed(primary));
+		assertFalse(application.isFailed(application.getRecords().get(1)));
+	}
+
+	@Test
+	public void failsOverOnServerError() throws IOException {
+		HttpServer broken = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		broken.createContext("/", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				send(exchange, 503, null, false);
+			}
+		});
+		broken.start();
+		try {
+			Application application = new Application(RadioDNS.RADIOSPI,
+					Arrays.asList(target(0, broken.getAddress().getPort()), target(10, mPort)));
+			SpiParserTest.Collector collector = new SpiParserTest.Collector();
+			assertTrue(new SpiClient(application).fetchServiceInformation(collector));
+			assertEquals(2, collector.mServices.size());
+			assertTrue(application.isFailed(application.getRecords().get(0)));
+		} finally {
+			broken.stop(0);
+		}
+	}
+
+	@Test
+	public void failsWhenNoTargetAnswers() throws IOException {
+		Application application = new Application(RadioDNS.RADIOSPI,
+				Arrays.asList(target(0, closedPort()), target(10, closedPort())));
+		try {
+			new SpiClient(application).fetchServiceInformation(new SpiParserTest.Collector());
+			fail("Expected IOException");
+		} catch (IOException e) {
+			// expected
+		}
+		assertTrue(application.isFailed(application.getRecords().get(0)));
+		assertTrue(application.isFailed(application.getRecords().get(1)));
+	}
+
+	@Test
+	public void missingDocumentIsNotFailedOver() throws Exception {
+		Application application = application(RadioDNS.RADIOSPI);
+		SpiClient client = new SpiClient(application);
+		try {
+			client.fetchProgrammeInformation(new FMService("ce1", "c479", 95800), LocalDate.of(2024, 1, 2),
+					new SpiParserTest.Collector());
+			fail("Expected IOException");
+		} catch (IOException e) {
+			assertTrue(e.getMessage().contains("404"));
+		}
+		assertFalse(application.isFailed(application.getRecords().get(0)));
+	}
+
+	@Test
+	public void radioEpgUsesServiceInformationOfRadioEpg() throws IOException {
+		SpiClient client = new SpiClient(application(RadioDNS.RADIOEPG));
+		SpiParserTest.Collector collector = new SpiParserTest.Collector();
+		assertTrue(client.fetchServiceInformation(collector));
+		assertEquals("Heart", collector.mServices.get(0).getShortName());
+		assertEquals(Arrays.asList("XSI.xml"), mRequests);
+	}
+
+	@Test
+	public void buildsDocumentUrls() throws Exception {
+		Record record = new Record(new SRV(0, 100, 8080, "epg.musicradio.com"));
+		SpiClient client = new SpiClient(new Application(RadioDNS.RADIOSPI, Arrays.asList(record)));
+		assertEquals("http://epg.musicradio.com:8080/radiodns/spi/3.1/SI.xml",
+				client.getServiceInformationUrl(record).toString());
+		assertEquals("http://epg.musicradio.com:8080/radiodns/spi/3.1/fm/ce1/c479/09580/20240101_PI.xml",
+				client.getProgrammeInformationUrl(record, new FMService("ce1", "c479", 95800),
+						LocalDate.of(2024, 1, 1)).toString());
+	}
+
+	@Test
+	public void rejectsIpBearers() throws Exception {
+		Record record = new Record(new SRV(0, 100, 8080, "epg.musicradio.com"));
+		SpiClient client = new SpiClient(new Application(RadioDNS.RADIOSPI, Arrays.asList(record)));
+		IPService bearer = new IPService("rdns.musicradio.com");
+		assertNull(bearer.getServiceIdentifierPath());
+		try {
+			client.getProgrammeInformationUrl(record, bearer, LocalDate.of(2024, 1, 1));
+			fail("Expected IllegalArgumentException");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+		try {
+			client.fetchProgrammeInformation(bearer, LocalDate.of(2024, 1, 1), new SpiParserTest.Collector());
+			fail("Expected IllegalArgumentException");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+		assertTrue(mRequests.isEmpty());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsOtherApplications() {
+		new SpiClient(application(RadioDNS.RADIOVIS));
+	}
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright (c) 2012 Global Radio UK Limited
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.    
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+
+package org.radiodns.spi;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.UnsupportedEncodingException;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.xml.stream.XMLStreamException;
+
+import org.junit.Test;
+
+public class SpiParserTest {
+
+	static final String SI = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+			+ "<serviceInformation xmlns=\"http://www.worlddab.org/schemas/spi/31\" version=\"1\">\n"
+			+ "  <services>\n"
+			+ "    <serviceProvider><shortName>Global</shortName></serviceProvider>\n"
+			+ "    <service>\n"
+			+ "      <shortName>Heart</shortName>\n"
+			+ "      <mediumName>Heart FM</mediumName>\n"
+			+ "      <longName>Heart London</longName>\n"
+			+ "      <mediaDescription><shortDescription> More music variety </shortDescription></mediaDescription>\n"
+			+ "      <mediaDescription><longDescription>Not this one</longDescription></mediaDescription>\n"
+			+ "      <mediaDescription><multimedia url=\"http://example.com/heart_32x32.png\" width=\"32\" height=\"32\"/></mediaDescription>\n"
+			+ "      <mediaDescription><multimedia url=\"http://example.com/heart_600x600.png\" width=\"600\" height=\"600\"/></mediaDescription>\n"
+			+ "      <bearer id=\"fm:ce1.c479.09580\" cost=\"50\"/>\n"
+			+ "      <bearer id=\"dab:ce1.c185.c479.0\" cost=\"20\"/>\n"
+			+ "      <radiodns fqdn=\"rdns.musicradio.com\" serviceIdentifier=\"heart\"/>\n"
+			+ "    </service>\n"
+			+ "    <service>\n"
+			+ "      <shortName>Capital</shortName>\n"
+			+ "      <bearer id=\"fm:ce1.c460.09590\"/>\n"
+			+ "    </service>\n"
+			+ "  </services>\n"
+			+ "</serviceInformation>\n";
+
+	static final String PI = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+			+ "<epg xmlns=\"http://www.worlddab.org/schemas/spi/31\">\n"
+			+ "  <schedule>\n"
+			+ "    <scope startTime=\"2024-01-01T00:00:00Z\" stopTime=\"2024-01-02T00:00:00Z\"/>\n"
+			+ "    <programme id=\"crid://musicradio.com/heart/breakfast\" shortId=\"1001\">\n"
+			+ "      <mediumName>Breakfast</mediumName>\n"
+			+ "      <longName>Heart Breakfast</longName>\n"
+			+ "      <location>\n"
+			+ "        <time time=\"2024-01-01T06:00:00+01:00\" duration=\"PT4H\"/>\n"
+			+ "        <time time=\"2024-01-01T18:00:00+01:00\" duration=\"PT1H\"/>\n"
+			+ "      </location>\n"
+			+ "      <mediaDescription><longDescription>Wake up with Heart</longDescription></mediaDescription>\n"
+			+ "      <programmeEvent id=\"crid://musicradio.com/heart/breakfast/news\">\n"
+			+ "        <shortName>News</shortName>\n"
+			+ "      </programmeEvent>\n"
+			+ "    </programme>\n"
+			+ "    <programme id=\"crid://musicradio.com/heart/drive\" shortId=\"1002\">\n"
+			+ "      <shortName>Drive</shortName>\n"
+			+ "      <location><time time=\"bad\" duration=\"bad\"/></location>\n"
+			+ "    </programme>\n"
+			+ "  </schedule>\n"
+			+ "</epg>\n";
+
+	static final String XSI = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+			+ "<serviceInformation xmlns=\"http://www.worlddab.org/schemas/epgSI/14\" originator=\"Global\">\n"
+			+ "  <ensemble id=\"ce1.c185\">\n"
+			+ "    <shortName>Digital1</shortName>\n"
+			+ "    <service>\n"
+			+ "      <serviceID id=\"dab:ce1.c185.c479.0\"/>\n"
+			+ "      <shortName>Heart</shortName>\n"
+			+ "      <mediumName>Heart FM</mediumName>\n"
+			+ "      <mediaDescription><shortDescription>Hits</shortDescription></mediaDescription>\n"
+			+ "    </service>\n"
+			+ "  </ensemble>\n"
+			+ "</serviceInformation>\n";
+
+	static class Collector implements SpiHandler {
+
+		final List<ServiceInfo> mServices = new ArrayList<ServiceInfo>();
+		final List<Programme> mProgrammes = new ArrayList<Programme>();
+
+		@Override
+		public void onService(ServiceInfo service) {
+			mServices.add(service);
+		}
+
+		@Override
+		public void onProgramme(Programme programme) {
+			mProgrammes.add(programme);
+		}
+	}
+
+	private static Collector parse(String document) throws XMLStreamException, UnsupportedEncodingException {
+		Collector collector = new Collector();
+		SpiParser.parse(new ByteArrayInputStream(document.getBytes("UTF-8")), collector);
+		return collector;
+	}
+
+	@Test
+	public void parsesServiceInformation() throws Exception {
+		Collector collector = parse(SI);
+		assertEquals(0, collector.mProgrammes.size());
+		assertEquals(2, collector.mServices.size());
+
+		ServiceInfo heart = collector.mServices.get(0);
+		assertEquals("Heart", heart.getShortName());
+		assertEquals("Heart FM", heart.getMediumName());
+		assertEquals("Heart London", heart.getLongName());
+		assertEquals("More music variety", heart.getDescription());
+		assertEquals(Arrays.asList("fm:ce1.c479.09580", "dab:ce1.c185.c479.0"), heart.getBearers());
+		assertEquals(Arrays.asList("http://example.com/heart_32x32.png", "http://example.com/heart_600x600.png"),
+				heart.getMultimedia());
+		assertEquals("rdns.musicradio.com", heart.getRadioDNSFqdn());
+		assertEquals("heart", heart.getServiceIdentifier());
+
+		ServiceInfo capital = collector.mServices.get(1);
+		assertEquals("Capital", capital.getShortName());
+		assertNull(capital.getDescription());
+		assertNull(capital.getRadioDNSFqdn());
+		assertEquals(Arrays.asList("fm:ce1.c460.09590"), capital.getBearers());
+	}
+
+	@Test
+	public void parsesProgrammeInformation() throws Exception {
+		Collector collector = parse(PI);
+		assertEquals(0, collector.mServices.size());
+		assertEquals(2, collector.mProgrammes.size());
+
+		Programme breakfast = collector.mProgrammes.get(0);
+		assertEquals("crid://musicradio.com/heart/breakfast", breakfast.getId());
+		assertEquals("1001", breakfast.getShortId());
+		assertEquals("Breakfast", breakfast.getMediumName());
+		assertEquals("Heart Breakfast", breakfast.getLongName());
+		assertNull(breakfast.getShortName());
+		assertEquals("Wake up with Heart", breakfast.getDescription());
+		assertEquals(OffsetDateTime.parse("2024-01-01T05:00:00Z").toInstant().toEpochMilli(),
+				breakfast.getStartTime());
+		assertEquals(4 * 3600, breakfast.getDuration());
+
+		Programme drive = collector.mProgrammes.get(1);
+		assertEquals("Drive", drive.getShortName());
+		assertEquals(-1, drive.getStartTime());
+		assertEquals(-1, drive.getDuration());
+	}
+
+	@Test
+	public void parsesRadioEpgServiceInformation() throws Exception {
+		Collector collector = parse(XSI);
+		assertEquals(1, collector.mServices.size());
+		ServiceInfo heart = collector.mServices.get(0);
+		assertEquals("Heart", heart.getShortName());
+		assertEquals("Hits", heart.getDescription());
+		assertEquals(Arrays.asList("dab:ce1.c185.c479.0"), heart.getBearers());
+	}
+
+	@Test(expected = XMLStreamException.class)
+	public void rejectsDoctype() throws Exception {
+		parse("<?xml version=\"1.0\"?>\n"
+				+ "<!DOCTYPE serviceInformation [<!ENTITY name SYSTEM \"file:///etc/passwd\">]>\n"
+				+ "<serviceInformation><services><service><shortName>&name;</shortName></service></services>"
+				+ "</serviceInformation>");
+	}
+
+	@Test(expected = XMLStreamException.class)
+	public void rejectsMalformedDocument() throws Exception {
+		parse("<serviceInformation><services><service>");
+	}
+
+	@Test
+	public void parsesTimesAndDurations() {
+		assertEquals(0, SpiParser.parseTime("1970-01-01T00:00:00Z"));
+		assertEquals(3600000, SpiParser.parseTime(" 1970-01-01T02:00:00+01:00 "));
+		assertEquals(-1, SpiParser.parseTime("2024-01-01"));
+		assertEquals(-1, SpiParser.parseTime(null));
+		assertEquals(5400, SpiParser.parseDuration("PT1H30M"));
+		assertEquals(-1, SpiParser.parseDuration("90"));
+		assertEquals(-1, SpiParser.parseDuration(null));
+	}
+}
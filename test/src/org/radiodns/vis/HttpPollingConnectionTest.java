@@ -0,0 +1,235 @@
+/*
+ * Copyright (c) 2012 Global Radio UK Limited
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.    
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+
+package org.radiodns.vis;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.minidns.record.SRV;
+import org.radiodns.Application;
+import org.radiodns.RadioDNS;
+import org.radiodns.Record;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+public class HttpPollingConnectionTest {
+
+	private static final String TOPIC = "/topic/fm/ce1/c479/09580/text";
+	private static final String MESSAGE = "{\"success\": true, \"headers\": {\"RadioVIS-Message-ID\": \"42\", "
+			+ "\"RadioVIS-Trigger-Time\": \"NOW\"}, \"body\": \"TEXT caf\\u00e9 \\\"live\\\"\"}";
+
+	private HttpServer mServer;
+	private ExecutorService mExecutor;
+	private VisClient mClient;
+
+	/*
+	 * Time in milliseconds the stub holds a poll open before answering
+	 * without a message
+	 */
+	private volatile long mHold = 200;
+
+	/*
+	 * Messages the stub answers polls of a topic with, once each
+	 */
+	private final Map<String, BlockingQueue<String>> mPending = new ConcurrentHashMap<String, BlockingQueue<String>>();
+	private final List<String> mQueries = new CopyOnWriteArrayList<String>();
+	private final Set<String> mPolledTopics = ConcurrentHashMap.newKeySet();
+	private final AtomicInteger mInFlight = new AtomicInteger();
+	private final AtomicInteger mMaxInFlight = new AtomicInteger();
+	private final BlockingQueue<VisMessage> mMessages = new LinkedBlockingQueue<VisMessage>();
+
+	private final VisListener mListener = new VisListener() {
+		@Override
+		public void onMessage(VisMessage message) {
+			mMessages.add(message);
+		}
+	};
+
+	@Before
+	public void setUp() throws IOException {
+		mServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		mExecutor = Executors.newCachedThreadPool();
+		mServer.setExecutor(mExecutor);
+		mServer.createContext(HttpPollingConnection.PATH, new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				String query = exchange.getRequestURI().getQuery();
+				mQueries.add(query);
+				String topic = query.substring("topic=".length()).split("&")[0];
+				mPolledTopics.add(topic);
+				int inFlight = mInFlight.incrementAndGet();
+				int max;
+				while (inFlight > (max = mMaxInFlight.get()) && !mMaxInFlight.compareAndSet(max, inFlight)) {
+					// retry
+				}
+				String body = null;
+				try {
+					BlockingQueue<String> pending = mPending.get(topic);
+					if (pending != null) {
+						body = pending.poll(mHold, TimeUnit.MILLISECONDS);
+					} else {
+						Thread.sleep(mHold);
+					}
+				} catch (InterruptedException e) {
+					// answer without a message
+				} finally {
+					mInFlight.decrementAndGet();
+				}
+				byte[] bytes = ((body != null) ? body : "{\"success\": false}").getBytes("UTF-8");
+				exchange.sendResponseHeaders(200, bytes.length);
+				OutputStream out = exchange.getResponseBody();
+				out.write(bytes);
+				out.close();
+			}
+		});
+		mServer.start();
+	}
+
+	@After
+	public void tearDown() {
+		if (mClient != null) {
+			mClient.close();
+		}
+		mServer.stop(0);
+		mExecutor.shutdownNow();
+	}
+
+	private Application application() {
+		Record record = new Record(new SRV(0, 100, mServer.getAddress().getPort(), "127.0.0.1"));
+		return new Application(RadioDNS.RADIOVIS_HTTP, Arrays.asList(record));
+	}
+
+	private void queue(String topic, String body) {
+		BlockingQueue<String> pending = mPending.get(topic);
+		if (pending == null) {
+			pending = new LinkedBlockingQueue<String>();
+			mPending.put(topic, pending);
+		}
+		pending.add(body);
+	}
+
+	@Test
+	public void deliversMessageAndResumesFromItsId() throws Exception {
+		queue(TOPIC, MESSAGE);
+		mClient = new VisClient();
+		Application application = application();
+		mClient.subscribe(application, TOPIC, mListener);
+		mClient.subscribe(application, TOPIC, mListener);
+
+		VisMessage message = mMessages.poll(5, TimeUnit.SECONDS);
+		assertEquals(VisMessage.Type.TEXT, message.getType());
+		assertEquals("caf\u00e9 \"live\"", message.getBody());
+		assertEquals("42", message.getMessageId());
+		assertEquals("NOW", message.getTriggerTime());
+		assertEquals(TOPIC, message.getDestination());
+		assertEquals(message, mMessages.poll(5, TimeUnit.SECONDS));
+
+		Thread.sleep(500);
+		assertTrue(mQueries.size() >= 2);
+		assertEquals("topic=" + TOPIC, mQueries.get(0));
+		assertEquals("topic=" + TOPIC + "&last_id=42", mQueries.get(1));
+		assertTrue(mClient.isConnected(application));
+		assertNull(mMessages.poll());
+	}
+
+	@Test
+	public void topicsShareBoundedPollers() throws Exception {
+		mClient = new VisClient(2);
+		Application application = application();
+		for (int i = 0; i < 6; i++) {
+			mClient.subscribe(application, "/topic/fm/ce1/c479/0958" + i + "/text", mListener);
+		}
+		long deadline = System.currentTimeMillis() + 10000;
+		while (mPolledTopics.size() < 6 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(50);
+		}
+		assertEquals(6, mPolledTopics.size());
+		assertTrue(mMaxInFlight.get() <= 2);
+		assertEquals(2, countPollerThreads());
+	}
+
+	@Test
+	public void closeStopsPollers() throws Exception {
+		mHold = 5000;
+		mClient = new VisClient(4);
+		VisSubscription subscription = mClient.subscribe(application(), TOPIC, mListener);
+		long deadline = System.currentTimeMillis() + 5000;
+		while (mInFlight.get() == 0 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(20);
+		}
+		assertEquals(1, countPollerThreads());
+		subscription.cancel();
+		deadline = System.currentTimeMillis() + 2000;
+		while (countPollerThreads() > 0 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(20);
+		}
+		assertEquals(0, countPollerThreads());
+		assertEquals(0, mClient.getConnectionCount());
+	}
+
+	@Test
+	public void convertsPollResponse() throws IOException {
+		Map<String, Object> response = Json.parseObject(MESSAGE);
+		VisMessage message = HttpPollingConnection.toMessage(TOPIC, response);
+		assertEquals("42", message.getMessageId());
+		assertEquals(TOPIC, message.getDestination());
+
+		assertNull(HttpPollingConnection.toMessage(TOPIC, Json.parseObject("{\"success\": false}")));
+		Map<String, Object> other = new HashMap<String, Object>();
+		other.put("success", Boolean.TRUE);
+		other.put("body", "OTHER x");
+		assertNull(HttpPollingConnection.toMessage(TOPIC, other));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsNoPollers() {
+		new VisClient(0);
+	}
+
+	private static int countPollerThreads() {
+		int count = 0;
+		for (Thread thread : Thread.getAllStackTraces().keySet()) {
+			if (thread.isAlive() && thread.getName().startsWith("radiovis-http-")) {
+				count++;
+			}
+		}
+		return count;
+	}
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2012 Global Radio UK Limited
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.    
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+
+package org.radiodns.vis;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class JsonTest {
+
+	@Test
+	public void parsesValues() throws IOException {
+		Map<String, Object> object = Json.parseObject(
+				" {\"s\": \"a\\\"b\\\\c\\n\\u00e9\", \"n\": -1.5e3, \"t\": true, \"f\": false, \"z\": null,"
+				+ " \"a\": [1, \"x\", []], \"o\": {}} ");
+		assertEquals("a\"b\\c\n\u00e9", object.get("s"));
+		assertEquals("-1.5e3", object.get("n"));
+		assertEquals(Boolean.TRUE, object.get("t"));
+		assertEquals(Boolean.FALSE, object.get("f"));
+		assertTrue(object.containsKey("z"));
+		assertNull(object.get("z"));
+		assertEquals(Arrays.asList("1", "x", Arrays.asList()), object.get("a"));
+		assertTrue(((Map<?, ?>) object.get("o")).isEmpty());
+	}
+
+	@Test
+	public void rejectsInvalidDocuments() {
+		String[] documents = { "", "[]", "\"s\"", "{", "{\"a\" 1}", "{\"a\": 1,}", "{\"a\": 1} x",
+				"{\"a\": \"\\u00\"}", "{\"a\": tru}", "{a: 1}" };
+		for (String document : documents) {
+			try {
+				Json.parseObject(document);
+				fail("Parsed " + document);
+			} catch (IOException e) {
+				// expected
+			}
+		}
+	}
+}
@@ -0,0 +1,206 @@
+/*
+ * Copyright (c) 2012 Global Radio UK Limited
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.    
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+
+package org.radiodns.vis;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.radiodns.Application;
+import org.radiodns.FMService;
+import org.radiodns.IPService;
+import org.radiodns.RadioDNS;
+
+public class StompConnectionTest {
+
+	private static final String TOPIC = "/topic/fm/ce1/c479/09580/image";
+	private static final String TEXT_TOPIC = "/topic/fm/ce1/c479/09580/text";
+
+	private VisClient mClient;
+	private StompStub mPrimary;
+	private StompStub mBackup;
+	private final BlockingQueue<VisMessage> mMessages = new LinkedBlockingQueue<VisMessage>();
+
+	private final VisListener mListener = new VisListener() {
+		@Override
+		public void onMessage(VisMessage message) {
+			mMessages.add(message);
+		}
+	};
+
+	@Before
+	public void setUp() throws IOException {
+		mClient = new VisClient();
+		mPrimary = new StompStub();
+		mBackup = new StompStub();
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		mClient.close();
+		mPrimary.close();
+		mBackup.close();
+	}
+
+	private static ByteArrayInputStream stream(String frames) throws IOException {
+		return new ByteArrayInputStream(frames.getBytes("UTF-8"));
+	}
+
+	@Test
+	public void writtenFrameIsRead() throws IOException {
+		Map<String, String> headers = new LinkedHashMap<String, String>();
+		headers.put("destination", TOPIC);
+		headers.put("id", TOPIC);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		StompConnection.writeFrame(out, "SUBSCRIBE", headers);
+		assertEquals("SUBSCRIBE\ndestination:" + TOPIC + "\nid:" + TOPIC + "\n\n\0", out.toString("UTF-8"));
+
+		StompConnection.Frame frame = StompConnection.readFrame(new ByteArrayInputStream(out.toByteArray()));
+		assertEquals("SUBSCRIBE", frame.command);
+		assertEquals(headers, frame.headers);
+		assertEquals("", frame.body);
+	}
+
+	@Test
+	public void readsConsecutiveFrames() throws IOException {
+		ByteArrayInputStream in = stream("\n\r\nMESSAGE\r\nDestination:" + TOPIC + "\r\ndestination:other\r\n\r\n"
+				+ "SHOW http://x/1.png\0\nMESSAGE\nmessage-id:2\n\nTEXT caf\u00e9\0");
+		StompConnection.Frame frame = StompConnection.readFrame(in);
+		assertEquals("MESSAGE", frame.command);
+		assertEquals(TOPIC, frame.headers.get("destination"));
+		assertEquals("SHOW http://x/1.png", frame.body);
+
+		frame = StompConnection.readFrame(in);
+		assertEquals("2", frame.headers.get("message-id"));
+		assertEquals("TEXT caf\u00e9", frame.body);
+		assertNull(StompConnection.readFrame(in));
+	}
+
+	@Test
+	public void contentLengthAllowsNulInBody() throws IOException {
+		ByteArrayInputStream in = stream("MESSAGE\ncontent-length:5\n\nTEXT\0\0\nCONNECTED\n\n\0");
+		assertEquals("TEXT\0", StompConnection.readFrame(in).body);
+		assertEquals("CONNECTED", StompConnection.readFrame(in).command);
+	}
+
+	@Test
+	public void truncatedFrameIsEndOfStream() throws IOException {
+		assertNull(StompConnection.readFrame(stream("MESSAGE\ndestination:x\n\nTEXT no terminator")));
+		assertNull(StompConnection.readFrame(stream("MESSAGE\ncontent-length:10\n\nTEXT\0")));
+		assertNull(StompConnection.readFrame(stream("MESSAGE\ndestination:x")));
+	}
+
+	@Test(expected = IOException.class)
+	public void rejectsInvalidContentLength() throws IOException {
+		StompConnection.readFrame(stream("MESSAGE\ncontent-length:abc\n\n\0"));
+	}
+
+	@Test(expected = IOException.class)
+	public void rejectsOversizedContentLength() throws IOException {
+		StompConnection.readFrame(stream("MESSAGE\ncontent-length:" + (StompConnection.MAX_FRAME_SIZE + 1) + "\n\n\0"));
+	}
+
+	@Test
+	public void topicIsBuiltFromBearer() throws Exception {
+		assertEquals(TOPIC, VisClient.getTopic(new FMService("ce1", "c479", 95800), VisClient.IMAGE));
+		Application application = new Application(RadioDNS.RADIOVIS, Arrays.asList(mPrimary.record(0)));
+		try {
+			mClient.subscribe(application, new IPService("rdns.musicradio.com"), VisClient.IMAGE, mListener);
+			fail("Expected IllegalArgumentException");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+		assertEquals(0, mClient.getConnectionCount());
+		assertNull(mPrimary.nextFrame(200));
+	}
+
+	@Test
+	public void subscribesOnceAndFansOut() throws Exception {
+		Application application = new Application(RadioDNS.RADIOVIS, Arrays.asList(mPrimary.record(0)));
+		VisSubscription first = mClient.subscribe(application, TOPIC, mListener);
+		VisSubscription second = mClient.subscribe(application, TOPIC, mListener);
+		assertEquals("CONNECT null", mPrimary.nextFrame(5000));
+		assertEquals("SUBSCRIBE " + TOPIC, mPrimary.nextFrame(5000));
+
+		mPrimary.message(TOPIC, "1", "SHOW http://x/1.png");
+		mPrimary.message(TOPIC, "2", "OTHER ignored");
+		assertEquals("http://x/1.png", mMessages.poll(5, TimeUnit.SECONDS).getBody());
+		assertEquals("http://x/1.png", mMessages.poll(5, TimeUnit.SECONDS).getBody());
+		assertEquals(1, mClient.getConnectionCount());
+		assertEquals(2, mClient.getSubscriptionCount());
+
+		first.cancel();
+		second.cancel();
+		assertEquals("UNSUBSCRIBE " + TOPIC, mPrimary.nextFrame(5000));
+		assertEquals("DISCONNECT null", mPrimary.nextFrame(5000));
+		assertEquals(0, mClient.getConnectionCount());
+		assertNull(mMessages.poll());
+	}
+
+	@Test
+	public void resubscribesOnReconnect() throws Exception {
+		Application application = new Application(RadioDNS.RADIOVIS, Arrays.asList(mPrimary.record(0)));
+		mClient.subscribe(application, TOPIC, mListener);
+		mClient.subscribe(application, TEXT_TOPIC, mListener);
+		assertEquals("CONNECT null", mPrimary.nextFrame(5000));
+		mPrimary.nextFrame(5000);
+		mPrimary.nextFrame(5000);
+
+		mPrimary.dropSession();
+		assertEquals("CONNECT null", mPrimary.nextFrame(10000));
+		assertTrue(Arrays.asList(mPrimary.nextFrame(5000), mPrimary.nextFrame(5000)).containsAll(
+				Arrays.asList("SUBSCRIBE " + TOPIC, "SUBSCRIBE " + TEXT_TOPIC)));
+		assertEquals(2, mPrimary.getSessionCount());
+
+		mPrimary.message(TEXT_TOPIC, "3", "TEXT Now playing");
+		assertEquals("Now playing", mMessages.poll(5, TimeUnit.SECONDS).getBody());
+	}
+
+	@Test
+	public void failsOverToBackupTarget() throws Exception {
+		Application application = new Application(RadioDNS.RADIOVIS,
+				Arrays.asList(mPrimary.record(0), mBackup.record(10)));
+		mClient.subscribe(application, TOPIC, mListener);
+		assertEquals("CONNECT null", mPrimary.nextFrame(5000));
+		assertEquals("SUBSCRIBE " + TOPIC, mPrimary.nextFrame(5000));
+
+		mPrimary.close();
+		assertEquals("CONNECT null", mBackup.nextFrame(5000));
+		assertEquals("SUBSCRIBE " + TOPIC, mBackup.nextFrame(5000));
+		assertTrue(application.isFailed(application.getRecords().get(0)));
+
+		mBackup.message(TOPIC, "4", "SHOW http://x/2.png");
+		VisMessage message = mMessages.poll(5, TimeUnit.SECONDS);
+		assertEquals(VisMessage.Type.SHOW, message.getType());
+		assertEquals("4", message.getMessageId());
+		assertTrue(mClient.isConnected(application));
+	}
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2012 Global Radio UK Limited
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.    
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+
+package org.radiodns.vis;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.minidns.record.SRV;
+import org.radiodns.Record;
+
+/**
+ * In-process STOMP server answering CONNECT and recording the frames it
+ * receives, for testing StompConnection without a RadioVIS broker. One
+ * session is served at a time.
+ */
+class StompStub implements Runnable {
+
+	private final ServerSocket mServerSocket;
+	private final BlockingQueue<String> mFrames = new LinkedBlockingQueue<String>();
+	private volatile Socket mSocket;
+	private volatile OutputStream mOut;
+	private volatile int mSessions = 0;
+
+	StompStub() throws IOException {
+		mServerSocket = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+		Thread thread = new Thread(this, "stomp-stub");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * @return		SRV record of the stub
+	 */
+	Record record(int priority) {
+		return new Record(new SRV(priority, 100, mServerSocket.getLocalPort(), "127.0.0.1"));
+	}
+
+	int getSessionCount() {
+		return mSessions;
+	}
+
+	/**
+	 * Wait for the next frame received
+	 *
+	 * @return		Frame as "COMMAND destination", or null on timeout
+	 */
+	String nextFrame(long timeout) throws InterruptedException {
+		return mFrames.poll(timeout, TimeUnit.MILLISECONDS);
+	}
+
+	@Override
+	public void run() {
+		while (!mServerSocket.isClosed()) {
+			try {
+				Socket socket = mServerSocket.accept();
+				mSocket = socket;
+				mOut = socket.getOutputStream();
+				mSessions++;
+				serve(new BufferedInputStream(socket.getInputStream()));
+			} catch (IOException e) {
+				// session ended
+			}
+		}
+	}
+
+	private void serve(InputStream in) throws IOException {
+		StompConnection.Frame frame;
+		while ((frame = StompConnection.readFrame(in)) != null) {
+			mFrames.add(frame.command + " " + frame.headers.get(VisMessage.DESTINATION));
+			if ("CONNECT".equals(frame.command)) {
+				send("CONNECTED", new HashMap<String, String>(), "");
+			}
+		}
+	}
+
+	synchronized void send(String command, Map<String, String> headers, String body) throws IOException {
+		StringBuilder frame = new StringBuilder(command).append('\n');
+		for (Map.Entry<String, String> header : headers.entrySet()) {
+			frame.append(header.getKey()).append(':').append(header.getValue()).append('\n');
+		}
+		frame.append('\n').append(body);
+		mOut.write(frame.toString().getBytes("UTF-8"));
+		mOut.write(0);
+		mOut.write('\n');
+		mOut.flush();
+	}
+
+	/**
+	 * Send a MESSAGE frame in the current session
+	 */
+	void message(String topic, String id, String body) throws IOException {
+		Map<String, String> headers = new HashMap<String, String>();
+		headers.put(VisMessage.DESTINATION, topic);
+		headers.put(VisMessage.MESSAGE_ID, id);
+		send("MESSAGE", headers, body);
+	}
+
+	/**
+	 * Close the current session, leaving the stub listening
+	 */
+	void dropSession() throws IOException {
+		Socket socket = mSocket;
+		if (socket != null) {
+			socket.close();
+		}
+	}
+
+	/**
+	 * Stop listening and close the current session
+	 */
+	void close() throws IOException {
+		mServerSocket.close();
+		dropSession();
+	}
+}